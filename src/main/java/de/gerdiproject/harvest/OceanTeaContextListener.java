@@ -18,6 +18,7 @@ package de.gerdiproject.harvest;
 import java.util.Arrays;
 import java.util.List;
 
+import javax.servlet.ServletContextEvent;
 import javax.servlet.annotation.WebListener;
 
 import de.gerdiproject.harvest.application.ContextListener;
@@ -33,10 +34,23 @@ import de.gerdiproject.harvest.etls.TimeSeriesETL;
 @WebListener
 public class OceanTeaContextListener extends ContextListener
 {
+    private TimeSeriesETL timeSeriesETL;
+
 
     @Override
     protected List<? extends AbstractETL<?, ?>> createETLs()
     {
-        return Arrays.asList(new TimeSeriesETL());
+        timeSeriesETL = new TimeSeriesETL();
+        return Arrays.asList(timeSeriesETL);
+    }
+
+
+    @Override
+    public void contextDestroyed(final ServletContextEvent sce)
+    {
+        super.contextDestroyed(sce);
+
+        if (timeSeriesETL != null)
+            timeSeriesETL.unregisterMetrics();
     }
 }
\ No newline at end of file
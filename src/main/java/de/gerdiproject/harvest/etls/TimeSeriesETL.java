@@ -15,10 +15,29 @@
  */
 package de.gerdiproject.harvest.etls;
 
+import java.io.File;
+import java.io.IOException;
+
+import com.google.gson.Gson;
+
+import de.gerdiproject.harvest.config.Configuration;
+import de.gerdiproject.harvest.config.parameters.BooleanParameter;
+import de.gerdiproject.harvest.config.parameters.IntegerParameter;
+import de.gerdiproject.harvest.config.parameters.StringParameter;
 import de.gerdiproject.harvest.etls.extractors.TimeSeriesExtractor;
 import de.gerdiproject.harvest.etls.transformers.TimeSeriesTransformer;
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import de.gerdiproject.harvest.oceantea.metrics.HarvestMetrics;
+import de.gerdiproject.harvest.oceantea.utils.CircuitBreaker;
+import de.gerdiproject.harvest.oceantea.utils.DocumentBatcher;
+import de.gerdiproject.harvest.oceantea.utils.HarvestCheckpoint;
+import de.gerdiproject.harvest.oceantea.utils.OceanTeaMirror;
+import de.gerdiproject.harvest.oceantea.utils.OceanTeaSnapshotWriter;
+import de.gerdiproject.harvest.oceantea.utils.PooledHttpClient;
+import de.gerdiproject.harvest.oceantea.utils.RetryPolicy;
 import de.gerdiproject.harvest.oceantea.utils.TimeSeries;
 import de.gerdiproject.json.datacite.DataCiteJson;
+import lombok.Getter;
 
 /**
  * An {@linkplain StaticIteratorETL} implementation for harvesting
@@ -28,6 +47,41 @@ import de.gerdiproject.json.datacite.DataCiteJson;
  */
 public class TimeSeriesETL extends StaticIteratorETL<TimeSeries, DataCiteJson>
 {
+    /**
+     *  Metrics of the harvest phases, which are readable via JMX
+     */
+    @Getter
+    private final HarvestMetrics metrics = new HarvestMetrics();
+
+    private IntegerParameter concurrentDownloadsParameter;
+    private IntegerParameter datasetCacheSizeParameter;
+    private BooleanParameter incrementalHarvestParameter;
+    private BooleanParameter virtualThreadsParameter;
+    private BooleanParameter stagedPipelineParameter;
+    private IntegerParameter assemblyThreadsParameter;
+    private IntegerParameter pipelineQueueCapacityParameter;
+    private IntegerParameter maxBatchDocumentsParameter;
+    private IntegerParameter maxBatchBytesParameter;
+    private IntegerParameter batchFlushIntervalParameter;
+    private IntegerParameter connectTimeoutParameter;
+    private IntegerParameter readTimeoutParameter;
+    private IntegerParameter maxConnectionsPerHostParameter;
+    private IntegerParameter requestDeadlineParameter;
+    private IntegerParameter maxRetriesParameter;
+    private IntegerParameter retryBaseDelayParameter;
+    private IntegerParameter retryMaxDelayParameter;
+    private IntegerParameter circuitBreakerThresholdParameter;
+    private IntegerParameter circuitBreakerPauseParameter;
+    private IntegerParameter checkpointIntervalParameter;
+    private StringParameter mirrorParameter;
+    private StringParameter snapshotParameter;
+    private PooledHttpClient httpClient;
+    private CircuitBreaker circuitBreaker;
+    private HarvestCheckpoint checkpoint;
+    private OceanTeaMirror mirror;
+    private OceanTeaSnapshotWriter snapshotWriter;
+
+
     /**
      * Constructor that initializes the extractor and transformer components.
      */
@@ -35,4 +89,485 @@ public class TimeSeriesETL extends StaticIteratorETL<TimeSeries, DataCiteJson>
     {
         super(new TimeSeriesExtractor(), new TimeSeriesTransformer());
     }
-}
+
+
+    /**
+     * Initializes the ETL and registers the harvest metrics as MBean under
+     * the name of the ETL. If the ETL is initialized again, the previous
+     * registration is replaced.
+     *
+     * @param moduleName the name of the harvester service
+     */
+    @Override
+    public void init(final String moduleName)
+    {
+        super.init(moduleName);
+        metrics.registerMBean(getName());
+    }
+
+
+    /**
+     * Removes the harvest metrics from the MBean server. This must be called
+     * when the harvester is shut down.
+     */
+    public void unregisterMetrics()
+    {
+        metrics.unregisterMBean();
+    }
+
+
+    @Override
+    protected void registerParameters()
+    {
+        super.registerParameters();
+
+        this.concurrentDownloadsParameter = Configuration.registerParameter(
+                                                new IntegerParameter(
+                                                    OceanTeaTimeSeriesDownloaderConstants.CONCURRENT_DOWNLOADS_PARAM_KEY,
+                                                    getName(),
+                                                    OceanTeaTimeSeriesDownloaderConstants.CONCURRENT_DOWNLOADS_DEFAULT));
+
+        this.datasetCacheSizeParameter = Configuration.registerParameter(
+                                             new IntegerParameter(
+                                                 OceanTeaTimeSeriesDownloaderConstants.DATASET_CACHE_SIZE_PARAM_KEY,
+                                                 getName(),
+                                                 OceanTeaTimeSeriesDownloaderConstants.DATASET_CACHE_SIZE_DEFAULT));
+
+        this.incrementalHarvestParameter = Configuration.registerParameter(
+                                               new BooleanParameter(
+                                                   OceanTeaTimeSeriesDownloaderConstants.INCREMENTAL_HARVEST_PARAM_KEY,
+                                                   getName(),
+                                                   OceanTeaTimeSeriesDownloaderConstants.INCREMENTAL_HARVEST_DEFAULT));
+
+        this.virtualThreadsParameter = Configuration.registerParameter(
+                                           new BooleanParameter(
+                                               OceanTeaTimeSeriesDownloaderConstants.VIRTUAL_THREADS_PARAM_KEY,
+                                               getName(),
+                                               OceanTeaTimeSeriesDownloaderConstants.VIRTUAL_THREADS_DEFAULT));
+
+        this.stagedPipelineParameter = Configuration.registerParameter(
+                                           new BooleanParameter(
+                                               OceanTeaTimeSeriesDownloaderConstants.STAGED_PIPELINE_PARAM_KEY,
+                                               getName(),
+                                               OceanTeaTimeSeriesDownloaderConstants.STAGED_PIPELINE_DEFAULT));
+
+        this.assemblyThreadsParameter = Configuration.registerParameter(
+                                            new IntegerParameter(
+                                                OceanTeaTimeSeriesDownloaderConstants.ASSEMBLY_THREADS_PARAM_KEY,
+                                                getName(),
+                                                OceanTeaTimeSeriesDownloaderConstants.ASSEMBLY_THREADS_DEFAULT));
+
+        this.pipelineQueueCapacityParameter = Configuration.registerParameter(
+                                                  new IntegerParameter(
+                                                      OceanTeaTimeSeriesDownloaderConstants.PIPELINE_QUEUE_CAPACITY_PARAM_KEY,
+                                                      getName(),
+                                                      OceanTeaTimeSeriesDownloaderConstants.PIPELINE_QUEUE_CAPACITY_DEFAULT));
+
+        this.maxBatchDocumentsParameter = Configuration.registerParameter(
+                                              new IntegerParameter(
+                                                  OceanTeaTimeSeriesDownloaderConstants.MAX_BATCH_DOCUMENTS_PARAM_KEY,
+                                                  getName(),
+                                                  OceanTeaTimeSeriesDownloaderConstants.MAX_BATCH_DOCUMENTS_DEFAULT));
+
+        this.maxBatchBytesParameter = Configuration.registerParameter(
+                                          new IntegerParameter(
+                                              OceanTeaTimeSeriesDownloaderConstants.MAX_BATCH_BYTES_PARAM_KEY,
+                                              getName(),
+                                              OceanTeaTimeSeriesDownloaderConstants.MAX_BATCH_BYTES_DEFAULT));
+
+        this.batchFlushIntervalParameter = Configuration.registerParameter(
+                                               new IntegerParameter(
+                                                   OceanTeaTimeSeriesDownloaderConstants.BATCH_FLUSH_INTERVAL_PARAM_KEY,
+                                                   getName(),
+                                                   OceanTeaTimeSeriesDownloaderConstants.BATCH_FLUSH_INTERVAL_DEFAULT));
+
+        this.connectTimeoutParameter = Configuration.registerParameter(
+                                           new IntegerParameter(
+                                               OceanTeaTimeSeriesDownloaderConstants.CONNECT_TIMEOUT_PARAM_KEY,
+                                               getName(),
+                                               OceanTeaTimeSeriesDownloaderConstants.CONNECT_TIMEOUT_DEFAULT));
+
+        this.readTimeoutParameter = Configuration.registerParameter(
+                                        new IntegerParameter(
+                                            OceanTeaTimeSeriesDownloaderConstants.READ_TIMEOUT_PARAM_KEY,
+                                            getName(),
+                                            OceanTeaTimeSeriesDownloaderConstants.READ_TIMEOUT_DEFAULT));
+
+        this.maxConnectionsPerHostParameter = Configuration.registerParameter(
+                                                  new IntegerParameter(
+                                                      OceanTeaTimeSeriesDownloaderConstants.MAX_CONNECTIONS_PER_HOST_PARAM_KEY,
+                                                      getName(),
+                                                      OceanTeaTimeSeriesDownloaderConstants.MAX_CONNECTIONS_PER_HOST_DEFAULT));
+
+        this.requestDeadlineParameter = Configuration.registerParameter(
+                                            new IntegerParameter(
+                                                OceanTeaTimeSeriesDownloaderConstants.REQUEST_DEADLINE_PARAM_KEY,
+                                                getName(),
+                                                OceanTeaTimeSeriesDownloaderConstants.REQUEST_DEADLINE_DEFAULT));
+
+        this.maxRetriesParameter = Configuration.registerParameter(
+                                       new IntegerParameter(
+                                           OceanTeaTimeSeriesDownloaderConstants.MAX_RETRIES_PARAM_KEY,
+                                           getName(),
+                                           OceanTeaTimeSeriesDownloaderConstants.MAX_RETRIES_DEFAULT));
+
+        this.retryBaseDelayParameter = Configuration.registerParameter(
+                                           new IntegerParameter(
+                                               OceanTeaTimeSeriesDownloaderConstants.RETRY_BASE_DELAY_PARAM_KEY,
+                                               getName(),
+                                               OceanTeaTimeSeriesDownloaderConstants.RETRY_BASE_DELAY_DEFAULT));
+
+        this.retryMaxDelayParameter = Configuration.registerParameter(
+                                          new IntegerParameter(
+                                              OceanTeaTimeSeriesDownloaderConstants.RETRY_MAX_DELAY_PARAM_KEY,
+                                              getName(),
+                                              OceanTeaTimeSeriesDownloaderConstants.RETRY_MAX_DELAY_DEFAULT));
+
+        this.circuitBreakerThresholdParameter = Configuration.registerParameter(
+                                                    new IntegerParameter(
+                                                        OceanTeaTimeSeriesDownloaderConstants.CIRCUIT_BREAKER_THRESHOLD_PARAM_KEY,
+                                                        getName(),
+                                                        OceanTeaTimeSeriesDownloaderConstants.CIRCUIT_BREAKER_THRESHOLD_DEFAULT));
+
+        this.circuitBreakerPauseParameter = Configuration.registerParameter(
+                                                new IntegerParameter(
+                                                    OceanTeaTimeSeriesDownloaderConstants.CIRCUIT_BREAKER_PAUSE_PARAM_KEY,
+                                                    getName(),
+                                                    OceanTeaTimeSeriesDownloaderConstants.CIRCUIT_BREAKER_PAUSE_DEFAULT));
+
+        this.checkpointIntervalParameter = Configuration.registerParameter(
+                                               new IntegerParameter(
+                                                   OceanTeaTimeSeriesDownloaderConstants.CHECKPOINT_INTERVAL_PARAM_KEY,
+                                                   getName(),
+                                                   OceanTeaTimeSeriesDownloaderConstants.CHECKPOINT_INTERVAL_DEFAULT));
+
+        this.mirrorParameter = Configuration.registerParameter(
+                                   new StringParameter(
+                                       OceanTeaTimeSeriesDownloaderConstants.MIRROR_PARAM_KEY,
+                                       getName(),
+                                       OceanTeaTimeSeriesDownloaderConstants.MIRROR_DEFAULT));
+
+        this.snapshotParameter = Configuration.registerParameter(
+                                     new StringParameter(
+                                         OceanTeaTimeSeriesDownloaderConstants.SNAPSHOT_PARAM_KEY,
+                                         getName(),
+                                         OceanTeaTimeSeriesDownloaderConstants.SNAPSHOT_DEFAULT));
+    }
+
+
+    /**
+     * Returns the local mirror of the OceanTEA responses that is to be
+     * harvested instead of OceanTEA itself. The mirror is shared by all
+     * components of this ETL and is reopened if its location was changed.
+     *
+     * @throws IOException if the configured mirror could not be opened
+     *
+     * @return the configured {@linkplain OceanTeaMirror}, or null if OceanTEA is to be harvested online
+     */
+    public synchronized OceanTeaMirror getMirror() throws IOException
+    {
+        final String location = mirrorParameter == null
+                                ? null
+                                : mirrorParameter.getValue();
+
+        if (mirror != null && !mirror.getLocation().equals(location)) {
+            mirror.close();
+            mirror = null;
+        }
+
+        if (mirror == null && location != null && !location.isEmpty())
+            mirror = new OceanTeaMirror(location);
+
+        return mirror;
+    }
+
+
+    /**
+     * Returns the writer of the snapshot that is taken during the current
+     * harvest. All components of this ETL add their responses to the same
+     * snapshot, until it is closed. Snapshots are only taken while OceanTEA
+     * itself is harvested, not while a mirror is harvested.
+     *
+     * @throws IOException if the snapshot could not be created
+     *
+     * @return an {@linkplain OceanTeaSnapshotWriter}, or null if no snapshot is to be taken
+     */
+    public synchronized OceanTeaSnapshotWriter getSnapshotWriter() throws IOException
+    {
+        final String location = snapshotParameter == null
+                                ? null
+                                : snapshotParameter.getValue();
+
+        if (location == null || location.isEmpty() || getMirror() != null)
+            return null;
+
+        if (snapshotWriter == null || snapshotWriter.isClosed())
+            snapshotWriter = new OceanTeaSnapshotWriter(location);
+
+        return snapshotWriter;
+    }
+
+
+    /**
+     * Returns the HTTP client that is shared by all components of this ETL.
+     * If the connection parameters were changed since the client was created,
+     * a new client is created, so that the changes apply to the next harvest.
+     * The connection limits of the client are included in the {@linkplain HarvestMetrics}.
+     *
+     * @return a {@linkplain PooledHttpClient} with the configured timeouts, deadline and connection limit
+     */
+    public synchronized PooledHttpClient getHttpClient()
+    {
+        final int connectTimeout = getIntValue(connectTimeoutParameter, OceanTeaTimeSeriesDownloaderConstants.CONNECT_TIMEOUT_DEFAULT);
+        final int readTimeout = getIntValue(readTimeoutParameter, OceanTeaTimeSeriesDownloaderConstants.READ_TIMEOUT_DEFAULT);
+        final int maxConnectionsPerHost = getIntValue(maxConnectionsPerHostParameter, OceanTeaTimeSeriesDownloaderConstants.MAX_CONNECTIONS_PER_HOST_DEFAULT);
+        final int requestDeadline = getIntValue(requestDeadlineParameter, OceanTeaTimeSeriesDownloaderConstants.REQUEST_DEADLINE_DEFAULT);
+
+        if (httpClient == null
+            || httpClient.getConnectTimeout() != Math.max(0, connectTimeout)
+            || httpClient.getReadTimeout() != Math.max(0, readTimeout)
+            || httpClient.getMaxConnectionsPerHost() != Math.max(1, maxConnectionsPerHost)
+            || httpClient.getRequestDeadline() != Math.max(0, requestDeadline)) {
+            httpClient = new PooledHttpClient(connectTimeout, readTimeout, maxConnectionsPerHost, requestDeadline);
+            metrics.setHttpClient(httpClient);
+        }
+
+        return httpClient;
+    }
+
+
+    /**
+     * Returns the policy for retrying failed dataset downloads.
+     *
+     * @return a {@linkplain RetryPolicy} with the configured number of retries and delays
+     */
+    public RetryPolicy getRetryPolicy()
+    {
+        return new RetryPolicy(
+                   getIntValue(maxRetriesParameter, OceanTeaTimeSeriesDownloaderConstants.MAX_RETRIES_DEFAULT),
+                   getIntValue(retryBaseDelayParameter, OceanTeaTimeSeriesDownloaderConstants.RETRY_BASE_DELAY_DEFAULT),
+                   getIntValue(retryMaxDelayParameter, OceanTeaTimeSeriesDownloaderConstants.RETRY_MAX_DELAY_DEFAULT));
+    }
+
+
+    /**
+     * Returns the circuit breaker that pauses all dataset downloads of this
+     * ETL if OceanTEA seems to be overloaded. If its parameters were changed
+     * since it was created, a new circuit breaker is created.
+     *
+     * @return a {@linkplain CircuitBreaker}, or null if the configured threshold is not positive
+     */
+    public synchronized CircuitBreaker getCircuitBreaker()
+    {
+        final int threshold = getIntValue(circuitBreakerThresholdParameter, OceanTeaTimeSeriesDownloaderConstants.CIRCUIT_BREAKER_THRESHOLD_DEFAULT);
+        final int pause = getIntValue(circuitBreakerPauseParameter, OceanTeaTimeSeriesDownloaderConstants.CIRCUIT_BREAKER_PAUSE_DEFAULT);
+
+        if (threshold <= 0)
+            circuitBreaker = null;
+
+        else if (circuitBreaker == null
+                 || circuitBreaker.getFailureThreshold() != threshold
+                 || circuitBreaker.getPause() != Math.max(0, pause))
+            circuitBreaker = new CircuitBreaker(threshold, pause);
+
+        return circuitBreaker;
+    }
+
+
+    /**
+     * Returns the checkpoint of the current harvest, which is shared by the
+     * extractor, that resumes an interrupted harvest, and the transformer,
+     * that records the progress. If the checkpoint interval was changed since
+     * the checkpoint was created, a new checkpoint is created.
+     *
+     * @return a {@linkplain HarvestCheckpoint}, or null if the configured interval is not positive
+     */
+    public synchronized HarvestCheckpoint getCheckpoint()
+    {
+        final int interval = getIntValue(checkpointIntervalParameter, OceanTeaTimeSeriesDownloaderConstants.CHECKPOINT_INTERVAL_DEFAULT);
+
+        if (interval <= 0)
+            checkpoint = null;
+
+        else if (checkpoint == null || checkpoint.getInterval() != interval)
+            checkpoint = new HarvestCheckpoint(new File(OceanTeaTimeSeriesDownloaderConstants.CHECKPOINT_FILE), interval);
+
+        return checkpoint;
+    }
+
+
+    /**
+     * Creates a batcher that groups the harvested documents into batches for
+     * a loader that can submit many documents in a single request. The loader
+     * adds each document to the batcher and closes it when all documents were
+     * loaded. The batches are bounded by the configured number of documents
+     * and bytes, and are submitted after the configured flush interval at the latest.
+     *
+     * @param gson the {@linkplain Gson} instance that serializes the documents as the loader expects them
+     * @param consumer the submission of a batch
+     * @param <T> the type of the documents
+     *
+     * @return a new {@linkplain DocumentBatcher}
+     */
+    public <T> DocumentBatcher<T> createDocumentBatcher(final Gson gson, final DocumentBatcher.BatchConsumer<T> consumer)
+    {
+        return new DocumentBatcher<>(
+                   getIntValue(maxBatchDocumentsParameter, OceanTeaTimeSeriesDownloaderConstants.MAX_BATCH_DOCUMENTS_DEFAULT),
+                   getIntValue(maxBatchBytesParameter, OceanTeaTimeSeriesDownloaderConstants.MAX_BATCH_BYTES_DEFAULT),
+                   getIntValue(batchFlushIntervalParameter, OceanTeaTimeSeriesDownloaderConstants.BATCH_FLUSH_INTERVAL_DEFAULT),
+                   gson,
+                   consumer);
+    }
+
+
+    /**
+     * Returns the maximum number of time series datasets that are downloaded
+     * concurrently. A value of 1 means that the datasets are downloaded one
+     * after the other.
+     *
+     * @return the maximum number of concurrent dataset downloads, at least 1
+     */
+    public int getConcurrentDownloads()
+    {
+        final Integer concurrentDownloads = concurrentDownloadsParameter == null
+                                            ? null
+                                            : concurrentDownloadsParameter.getValue();
+
+        return concurrentDownloads == null
+               ? OceanTeaTimeSeriesDownloaderConstants.CONCURRENT_DOWNLOADS_DEFAULT
+               : Math.max(1, concurrentDownloads);
+    }
+
+
+    /**
+     * Returns the maximum number of time series datasets that are kept in the
+     * disk cache. A value of 0 disables the cache, which is the default,
+     * because cached datasets without validators are never requested again.
+     *
+     * @return the maximum number of cached datasets, at least 0
+     */
+    public int getDatasetCacheSize()
+    {
+        final Integer datasetCacheSize = datasetCacheSizeParameter == null
+                                         ? null
+                                         : datasetCacheSizeParameter.getValue();
+
+        return datasetCacheSize == null
+               ? OceanTeaTimeSeriesDownloaderConstants.DATASET_CACHE_SIZE_DEFAULT
+               : Math.max(0, datasetCacheSize);
+    }
+
+
+    /**
+     * Checks if only time series that are new or changed since the last
+     * harvest are to be transformed and loaded.
+     *
+     * @return true if the harvest is incremental
+     */
+    public boolean isIncrementalHarvest()
+    {
+        final Boolean isIncremental = incrementalHarvestParameter == null
+                                      ? null
+                                      : incrementalHarvestParameter.getValue();
+
+        return isIncremental == null
+               ? OceanTeaTimeSeriesDownloaderConstants.INCREMENTAL_HARVEST_DEFAULT
+               : isIncremental;
+    }
+
+
+    /**
+     * Returns the file in which the fingerprints of the harvested time series
+     * are stored, so that incremental harvests can skip unchanged time series.
+     *
+     * @return the file of the time series fingerprints
+     */
+    public File getFingerprintsFile()
+    {
+        return new File(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINTS_FILE);
+    }
+
+
+    /**
+     * Checks if each time series is to be downloaded and transformed in a
+     * thread of its own, which is a virtual thread if the JVM supports it.
+     * In this mode, the number of concurrent downloads is the number of time
+     * series that are processed concurrently, instead of a number of threads.
+     *
+     * @return true if a thread is started per time series
+     */
+    public boolean isUsingVirtualThreads()
+    {
+        final Boolean isUsingVirtualThreads = virtualThreadsParameter == null
+                                              ? null
+                                              : virtualThreadsParameter.getValue();
+
+        return isUsingVirtualThreads == null
+               ? OceanTeaTimeSeriesDownloaderConstants.VIRTUAL_THREADS_DEFAULT
+               : isUsingVirtualThreads;
+    }
+
+
+    /**
+     * Checks if the time series are to be transformed by a pipeline of
+     * stages that are connected by bounded queues: the extraction, the
+     * download and the document assembly, which is followed by the loading.
+     * In this mode, the number of concurrent downloads is the number of
+     * workers of the download stage.
+     *
+     * @return true if the time series are transformed by a staged pipeline
+     */
+    public boolean isUsingStagedPipeline()
+    {
+        final Boolean isUsingStagedPipeline = stagedPipelineParameter == null
+                                              ? null
+                                              : stagedPipelineParameter.getValue();
+
+        return isUsingStagedPipeline == null
+               ? OceanTeaTimeSeriesDownloaderConstants.STAGED_PIPELINE_DEFAULT
+               : isUsingStagedPipeline;
+    }
+
+
+    /**
+     * Returns the number of workers of the document assembly stage of the
+     * staged pipeline.
+     *
+     * @return the number of threads that assemble documents, at least 1
+     */
+    public int getAssemblyThreads()
+    {
+        return Math.max(1, getIntValue(assemblyThreadsParameter, OceanTeaTimeSeriesDownloaderConstants.ASSEMBLY_THREADS_DEFAULT));
+    }
+
+
+    /**
+     * Returns the maximum number of time series that wait for each stage of
+     * the staged pipeline.
+     *
+     * @return the capacity of the queues between the stages, at least 1
+     */
+    public int getPipelineQueueCapacity()
+    {
+        return Math.max(1, getIntValue(pipelineQueueCapacityParameter, OceanTeaTimeSeriesDownloaderConstants.PIPELINE_QUEUE_CAPACITY_DEFAULT));
+    }
+
+
+    /**
+     * Returns the value of an {@linkplain IntegerParameter}, or a default
+     * value if the parameter is not registered or has no value.
+     *
+     * @param parameter the parameter of which the value is returned
+     * @param defaultValue the value that is returned if there is no parameter value
+     *
+     * @return the value of the parameter
+     */
+    private static int getIntValue(final IntegerParameter parameter, final int defaultValue)
+    {
+        final Integer value = parameter == null
+                              ? null
+                              : parameter.getValue();
+
+        return value == null ? defaultValue : value;
+    }
+}
\ No newline at end of file
@@ -15,42 +15,86 @@
  */
 package de.gerdiproject.harvest.etls.extractors;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 
 import de.gerdiproject.harvest.etls.AbstractETL;
+import de.gerdiproject.harvest.etls.TimeSeriesETL;
 import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
 import de.gerdiproject.harvest.oceantea.json.AllDataTypesResponse;
 import de.gerdiproject.harvest.oceantea.json.AllTimeSeriesResponse;
 import de.gerdiproject.harvest.oceantea.json.DataTypeResponse;
 import de.gerdiproject.harvest.oceantea.json.TimeSeriesResponse;
+import de.gerdiproject.harvest.oceantea.metrics.HarvestMetrics;
+import de.gerdiproject.harvest.oceantea.metrics.HarvestPhase;
+import de.gerdiproject.harvest.oceantea.utils.ContentEncodingUtils;
+import de.gerdiproject.harvest.oceantea.utils.HarvestCheckpoint;
+import de.gerdiproject.harvest.oceantea.utils.HashUtils;
+import de.gerdiproject.harvest.oceantea.utils.HttpStatusException;
+import de.gerdiproject.harvest.oceantea.utils.OceanTeaMirror;
+import de.gerdiproject.harvest.oceantea.utils.OceanTeaSnapshotWriter;
+import de.gerdiproject.harvest.oceantea.utils.PooledHttpClient;
+import de.gerdiproject.harvest.oceantea.utils.PooledHttpClient.PooledResponse;
 import de.gerdiproject.harvest.oceantea.utils.TimeSeries;
-import de.gerdiproject.harvest.utils.data.HttpRequester;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesIndexReader;
 
 
 /**
  * Extracts a list of {@linkplain TimeSeries} objects that describe the metadata
- * for each time series dataset.
+ * for each time series dataset. The {@linkplain AllTimeSeriesResponse} is
+ * never held in memory as a whole, but streamed twice with a
+ * {@linkplain TimeSeriesIndexReader}: once for counting and hashing the time
+ * series when the extractor is initialized, and once while the
+ * {@linkplain TimeSeries} are extracted. For this, the response is read from
+ * the mirror, if one is configured, or downloaded to a temporary file.
+ * If a {@linkplain HarvestCheckpoint} of an
+ * interrupted harvest of the same catalogue version exists, the extraction
+ * resumes after the last harvested {@linkplain TimeSeries}, unless a snapshot
+ * is taken, which must be complete.
  *
  * @author Ingo Thomsen, Robin Weiss
  */
 public class TimeSeriesExtractor extends AbstractIteratorExtractor<TimeSeries>
 {
-    private final HttpRequester httpRequester = new HttpRequester(new Gson(), StandardCharsets.UTF_8);
+    private static final Logger LOGGER = LoggerFactory.getLogger(TimeSeriesExtractor.class);
+    private static final Gson GSON = new Gson();
 
-    protected Iterator<TimeSeriesResponse> timeSeriesSource;
+    protected TimeSeriesIndexReader timeSeriesSource;
     protected AllDataTypesResponse dataTypeInfoSource;
     private int timeSeriesCount;
+    private int firstIndex;
+    private String versionHash;
+    private Path spooledTimeSeries;
+    private HarvestMetrics metrics;
+    private PooledHttpClient httpClient;
+    private OceanTeaMirror mirror;
+    private OceanTeaSnapshotWriter snapshotWriter;
+    private HarvestCheckpoint checkpoint;
+    private Charset charset = StandardCharsets.UTF_8;
 
 
     @Override
     public String getUniqueVersionString()
     {
-        // the size should be enough for now, because existing elements never change
-        // if the number of timeseries changes, the version should be different
-        return String.valueOf(timeSeriesCount);
+        // a hash of all metadata, so the version changes if any time series is added or changed
+        return versionHash;
     }
 
 
@@ -59,22 +103,342 @@ public class TimeSeriesExtractor extends AbstractIteratorExtractor<TimeSeries>
     {
         super.init(etl);
 
-        httpRequester.setCharset(etl.getCharset());
+        // release the time series of a previous harvest
+        clear();
+
+        this.charset = etl.getCharset();
+        this.metrics = null;
+        this.httpClient = null;
+        this.mirror = null;
+        this.snapshotWriter = null;
+        this.checkpoint = null;
+
+        if (etl instanceof TimeSeriesETL) {
+            final TimeSeriesETL timeSeriesETL = (TimeSeriesETL) etl;
+            this.metrics = timeSeriesETL.getMetrics();
+            this.checkpoint = timeSeriesETL.getCheckpoint();
+            this.httpClient = timeSeriesETL.getHttpClient();
+
+            try {
+                this.mirror = timeSeriesETL.getMirror();
+            } catch (final IOException e) {
+                throw new ExtractorException(String.format(OceanTeaTimeSeriesDownloaderConstants.MIRROR_OPEN_FAILED, e.getMessage()));
+            }
+
+            try {
+                this.snapshotWriter = timeSeriesETL.getSnapshotWriter();
+            } catch (final IOException e) {
+                throw new ExtractorException(String.format(OceanTeaTimeSeriesDownloaderConstants.SNAPSHOT_WRITE_FAILED, e.getMessage()));
+            }
+        }
 
         // get data type info responses
-        this.dataTypeInfoSource = httpRequester.getObjectFromUrl(
+        this.dataTypeInfoSource = fetch(
                                       OceanTeaTimeSeriesDownloaderConstants.DATATYPES_URL,
-                                      AllDataTypesResponse.class);
+                                      OceanTeaTimeSeriesDownloaderConstants.MIRROR_DATA_TYPES_FILE,
+                                      AllDataTypesResponse.class,
+                                      HarvestPhase.DATATYPES_FETCH);
         this.dataTypeInfoSource.getPotentialDensityAnomaly().setUnit("kg/m^3");
 
-        // get all timeseries responses
-        final AllTimeSeriesResponse allTimeSeriesResponse = httpRequester.getObjectFromUrl(
-                                                                OceanTeaTimeSeriesDownloaderConstants.TIMESERIES_URL,
-                                                                AllTimeSeriesResponse.class);
-        this.timeSeriesSource = allTimeSeriesResponse.getAllTimeSeriesResponses().iterator();
+        // count and hash all timeseries responses
+        final long fetchStart = System.nanoTime();
+        final int numberOfTimeSeries;
+
+        try {
+            if (mirror == null)
+                this.spooledTimeSeries = downloadTimeSeries();
+
+            numberOfTimeSeries = hashTimeSeries();
+
+        } catch (final IOException e) {
+            if (metrics != null)
+                metrics.recordError(HarvestPhase.TIMESERIES_FETCH);
+
+            throw new ExtractorException(String.format(OceanTeaTimeSeriesDownloaderConstants.TIMESERIES_READ_FAILED, e.getMessage()));
+        }
+
+        if (metrics != null)
+            metrics.recordLatency(HarvestPhase.TIMESERIES_FETCH, fetchStart);
+
+        if (snapshotWriter != null) {
+            try {
+                snapshotWriter.writeJson(OceanTeaTimeSeriesDownloaderConstants.MIRROR_DATA_TYPES_FILE, dataTypeInfoSource, GSON, charset);
+                snapshotWriter.writeJsonFile(OceanTeaTimeSeriesDownloaderConstants.MIRROR_TIME_SERIES_FILE, spooledTimeSeries);
+            } catch (final IOException e) {
+                throw new ExtractorException(String.format(OceanTeaTimeSeriesDownloaderConstants.SNAPSHOT_WRITE_FAILED, e.getMessage()));
+            }
+        }
+
+        final String lastHarvestedIdentifier = checkpoint == null
+                                               ? null
+                                               : checkpoint.begin(versionHash);
+
+        this.firstIndex = snapshotWriter == null
+                          ? getResumeIndex(lastHarvestedIdentifier, numberOfTimeSeries)
+                          : 0;
 
         // get expected size of extracted elements
-        this.timeSeriesCount = allTimeSeriesResponse.getAllTimeSeriesResponses().size();
+        this.timeSeriesCount = numberOfTimeSeries - firstIndex;
+    }
+
+
+    /**
+     * Looks up the index of the first {@linkplain TimeSeries} that was not
+     * harvested by an interrupted harvest.
+     *
+     * @param lastHarvestedIdentifier the identifier of the last harvested {@linkplain TimeSeries}, or null
+     * @param numberOfTimeSeries the number of {@linkplain TimeSeries} in the catalogue
+     *
+     * @return the index at which the extraction starts
+     */
+    private static int getResumeIndex(final String lastHarvestedIdentifier, final int numberOfTimeSeries)
+    {
+        if (lastHarvestedIdentifier == null)
+            return 0;
+
+        for (int i = 0; i < numberOfTimeSeries; i++) {
+            if (TimeSeries.createIdentifier(i).equals(lastHarvestedIdentifier)) {
+                LOGGER.info(String.format(OceanTeaTimeSeriesDownloaderConstants.HARVEST_RESUMED, lastHarvestedIdentifier, i + 1));
+                return i + 1;
+            }
+        }
+
+        LOGGER.warn(String.format(OceanTeaTimeSeriesDownloaderConstants.CHECKPOINT_NOT_FOUND, lastHarvestedIdentifier));
+        return 0;
+    }
+
+
+    /**
+     * Downloads the {@linkplain AllTimeSeriesResponse} to a temporary file,
+     * so that it can be streamed more than once.
+     *
+     * @throws IOException if the response could not be downloaded
+     *
+     * @return the temporary file containing the decoded response
+     */
+    private Path downloadTimeSeries() throws IOException
+    {
+        final Path spoolFile = Files.createTempFile(OceanTeaTimeSeriesDownloaderConstants.TIMESERIES_SPOOL_FILE_PREFIX,
+                                                    OceanTeaTimeSeriesDownloaderConstants.MIRROR_FILE_EXTENSION);
+
+        try
+            (PooledResponse response = request(OceanTeaTimeSeriesDownloaderConstants.TIMESERIES_URL);
+             InputStream body = decode(response)) {
+            Files.copy(body, spoolFile, StandardCopyOption.REPLACE_EXISTING);
+            return spoolFile;
+
+        } catch (final IOException e) {
+            deleteSpooledTimeSeries(spoolFile);
+            throw e;
+        }
+    }
+
+
+    /**
+     * Requests a URL via the {@linkplain PooledHttpClient} of the ETL, or via
+     * a client with the default settings, if there is none.
+     *
+     * @param url the requested URL
+     *
+     * @throws IOException if the request failed or was answered with an error status
+     *
+     * @return the response, which must be closed
+     */
+    private PooledResponse request(final String url) throws IOException
+    {
+        if (httpClient == null)
+            httpClient = new PooledHttpClient(
+                OceanTeaTimeSeriesDownloaderConstants.CONNECT_TIMEOUT_DEFAULT,
+                OceanTeaTimeSeriesDownloaderConstants.READ_TIMEOUT_DEFAULT,
+                OceanTeaTimeSeriesDownloaderConstants.MAX_CONNECTIONS_PER_HOST_DEFAULT,
+                OceanTeaTimeSeriesDownloaderConstants.REQUEST_DEADLINE_DEFAULT);
+
+        final PooledResponse response = httpClient.get(
+                                            url,
+                                            Collections.singletonMap(OceanTeaTimeSeriesDownloaderConstants.ACCEPT_ENCODING_HEADER,
+                                                                     OceanTeaTimeSeriesDownloaderConstants.ACCEPTED_ENCODINGS));
+
+        try {
+            if (response.getStatusCode() >= HttpURLConnection.HTTP_BAD_REQUEST)
+                throw new HttpStatusException(response.getStatusCode(), url);
+
+        } catch (final IOException e) {
+            response.close();
+            throw e;
+        }
+
+        return response;
+    }
+
+
+    /**
+     * Decodes the body of a response according to its content encoding.
+     *
+     * @param response the response of which the body is decoded
+     *
+     * @throws IOException if the body could not be opened
+     *
+     * @return the decoded body
+     */
+    private static InputStream decode(final PooledResponse response) throws IOException
+    {
+        return ContentEncodingUtils.decode(
+                   response.getBody(),
+                   response.getHeader(OceanTeaTimeSeriesDownloaderConstants.CONTENT_ENCODING_HEADER));
+    }
+
+
+    /**
+     * Opens the {@linkplain AllTimeSeriesResponse} for streaming its
+     * {@linkplain TimeSeriesResponse}s.
+     *
+     * @throws IOException if the response could not be opened
+     *
+     * @return a {@linkplain TimeSeriesIndexReader} that must be closed
+     */
+    private TimeSeriesIndexReader openTimeSeries() throws IOException
+    {
+        final Reader reader = mirror == null
+                              ? Files.newBufferedReader(spooledTimeSeries, charset)
+                              : mirror.open(OceanTeaTimeSeriesDownloaderConstants.MIRROR_TIME_SERIES_FILE, charset);
+
+        try {
+            return new TimeSeriesIndexReader(reader, GSON);
+        } catch (final IOException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Streams all {@linkplain TimeSeriesResponse}s in order to count them and
+     * to hash them together with the data types. The version hash is the same
+     * as the one of the complete {@linkplain AllTimeSeriesResponse}.
+     *
+     * @throws IOException if the response could not be read
+     *
+     * @return the number of {@linkplain TimeSeriesResponse}s
+     */
+    private int hashTimeSeries() throws IOException
+    {
+        final HashUtils.JsonDigest digest = new HashUtils.JsonDigest(OceanTeaTimeSeriesDownloaderConstants.VERSION_HASH_ALGORITHM, GSON);
+        final JsonWriter hashWriter = digest.getJsonWriter();
+        int numberOfTimeSeries = 0;
+
+        try
+            (TimeSeriesIndexReader timeSeriesReader = openTimeSeries()) {
+            hashWriter.beginObject().name(OceanTeaTimeSeriesDownloaderConstants.TIMESERIES_FIELD).beginArray();
+
+            for (TimeSeriesResponse response = timeSeriesReader.next(); response != null; response = timeSeriesReader.next()) {
+                GSON.toJson(response, TimeSeriesResponse.class, hashWriter);
+                numberOfTimeSeries++;
+            }
+
+            hashWriter.endArray().endObject();
+        }
+
+        digest.add(dataTypeInfoSource);
+        this.versionHash = digest.toHexString();
+
+        return numberOfTimeSeries;
+    }
+
+
+    /**
+     * Deletes a temporary file of the {@linkplain AllTimeSeriesResponse}, logging a failure.
+     *
+     * @param spoolFile the file to be deleted
+     */
+    private static void deleteSpooledTimeSeries(final Path spoolFile)
+    {
+        try {
+            Files.deleteIfExists(spoolFile);
+        } catch (final IOException e) {
+            LOGGER.warn(String.format(OceanTeaTimeSeriesDownloaderConstants.TIMESERIES_SPOOL_DELETE_FAILED, spoolFile), e);
+        }
+    }
+
+
+    /**
+     * Retrieves a JSON object from a URL, or from the mirror if one is
+     * configured, and measures how long it took, if metrics are set.
+     *
+     * @param url the URL of the JSON object
+     * @param mirrorFile the path of the JSON object within the mirror
+     * @param targetClass the class of the JSON object
+     * @param phase the {@linkplain HarvestPhase} that is measured
+     * @param <T> the type of the JSON object
+     *
+     * @return the JSON object or null, if the response was empty
+     */
+    private <T> T fetch(final String url, final String mirrorFile, final Class<T> targetClass, final HarvestPhase phase)
+    {
+        final long fetchStart = System.nanoTime();
+        final T response;
+
+        try {
+            response = mirror == null
+                       ? download(url, targetClass)
+                       : readFromMirror(mirrorFile, targetClass);
+        } catch (final RuntimeException e) {
+            if (metrics != null)
+                metrics.recordError(phase);
+
+            throw e;
+        }
+
+        if (metrics != null) {
+            if (response == null)
+                metrics.recordError(phase);
+            else
+                metrics.recordLatency(phase, fetchStart);
+        }
+
+        return response;
+    }
+
+
+    /**
+     * Downloads a JSON object via the same {@linkplain PooledHttpClient} as
+     * the time series and their datasets, so that its timeouts, concurrency
+     * limits and accepted content encodings apply to all requests.
+     *
+     * @param url the URL of the JSON object
+     * @param targetClass the class of the JSON object
+     * @param <T> the type of the JSON object
+     *
+     * @return the JSON object or null, if the response was empty
+     */
+    private <T> T download(final String url, final Class<T> targetClass)
+    {
+        try
+            (PooledResponse response = request(url);
+             Reader reader = new InputStreamReader(decode(response), charset)) {
+            return GSON.fromJson(reader, targetClass);
+        } catch (final IOException e) {
+            throw new ExtractorException(String.format(OceanTeaTimeSeriesDownloaderConstants.JSON_DOWNLOAD_FAILED, url, e.getMessage()));
+        }
+    }
+
+
+    /**
+     * Reads a JSON object from the mirror.
+     *
+     * @param mirrorFile the path of the JSON object within the mirror
+     * @param targetClass the class of the JSON object
+     * @param <T> the type of the JSON object
+     *
+     * @return the JSON object
+     */
+    private <T> T readFromMirror(final String mirrorFile, final Class<T> targetClass)
+    {
+        try
+            (Reader reader = mirror.open(mirrorFile, charset)) {
+            return GSON.fromJson(reader, targetClass);
+        } catch (final IOException e) {
+            throw new ExtractorException(String.format(OceanTeaTimeSeriesDownloaderConstants.MIRROR_READ_FAILED, mirrorFile, e.getMessage()));
+        }
     }
 
 
@@ -88,32 +452,84 @@ public class TimeSeriesExtractor extends AbstractIteratorExtractor<TimeSeries>
     @Override
     protected Iterator<TimeSeries> extractAll() throws ExtractorException
     {
+        closeTimeSeriesSource();
+
+        try {
+            this.timeSeriesSource = openTimeSeries();
+
+            // skip the time series that were harvested before an interruption
+            for (int i = 0; i < firstIndex; i++)
+                timeSeriesSource.skip();
+
+        } catch (final IOException e) {
+            closeTimeSeriesSource();
+            throw new ExtractorException(String.format(OceanTeaTimeSeriesDownloaderConstants.TIMESERIES_READ_FAILED, e.getMessage()));
+        }
+
         return new TimeSeriesIterator();
     }
 
 
     /**
-     * Iterator class that takes the next element of the {@linkplain TimeSeriesResponse} {@linkplain Iterator}
-     * and enriches it with {@linkplain DataTypeResponse} data.
+     * Closes the stream of {@linkplain TimeSeriesResponse}s, if it is open.
+     */
+    private void closeTimeSeriesSource()
+    {
+        if (timeSeriesSource != null) {
+            try {
+                timeSeriesSource.close();
+            } catch (final IOException e) {
+                LOGGER.warn(String.format(OceanTeaTimeSeriesDownloaderConstants.TIMESERIES_READ_FAILED, e.getMessage()), e);
+            }
+
+            timeSeriesSource = null;
+        }
+    }
+
+
+    /**
+     * Iterator class that reads the next {@linkplain TimeSeriesResponse} from
+     * the stream and enriches it with {@linkplain DataTypeResponse} data. The
+     * {@linkplain TimeSeries} are created on demand, so the memory that is
+     * needed for the extraction does not depend on the size of the catalogue.
+     * The stream is closed as soon as all {@linkplain TimeSeries} were read.
      *
      * @author Robin Weiss
      */
     private class TimeSeriesIterator implements Iterator<TimeSeries>
     {
-        private int index = 0; // NOPMD index explicitly starts at 0
+        private int index = firstIndex;
+        private TimeSeriesResponse nextResponse;
 
 
         @Override
         public boolean hasNext()
         {
-            return timeSeriesSource.hasNext();
+            if (nextResponse == null && timeSeriesSource != null) {
+                try {
+                    nextResponse = timeSeriesSource.next();
+                } catch (final IOException e) {
+                    closeTimeSeriesSource();
+                    throw new ExtractorException(String.format(OceanTeaTimeSeriesDownloaderConstants.TIMESERIES_READ_FAILED, e.getMessage()));
+                }
+
+                if (nextResponse == null)
+                    closeTimeSeriesSource();
+            }
+
+            return nextResponse != null;
         }
 
 
         @Override
         public TimeSeries next()
         {
-            final TimeSeriesResponse tsr = timeSeriesSource.next();
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            final TimeSeriesResponse tsr = nextResponse;
+            nextResponse = null;
+
             final DataTypeResponse dataTypeInfo = dataTypeInfoSource.getDatatypeResponseByName(tsr.getDataType());
 
             return new TimeSeries(index++, tsr, dataTypeInfo);
@@ -125,6 +541,11 @@ public class TimeSeriesExtractor extends AbstractIteratorExtractor<TimeSeries>
     @Override
     public void clear()
     {
-        // nothing to clean up
+        closeTimeSeriesSource();
+
+        if (spooledTimeSeries != null) {
+            deleteSpooledTimeSeries(spooledTimeSeries);
+            spooledTimeSeries = null;
+        }
     }
 }
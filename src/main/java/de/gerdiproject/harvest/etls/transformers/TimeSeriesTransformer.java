@@ -15,67 +15,274 @@
  */
 package de.gerdiproject.harvest.etls.transformers;
 
-import java.nio.charset.StandardCharsets;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.stream.StreamSupport;
 
-import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import de.gerdiproject.harvest.etls.AbstractETL;
-import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDataCiteConstants;
-import de.gerdiproject.harvest.oceantea.json.TimeSeriesDatasetResponse;
+import de.gerdiproject.harvest.etls.TimeSeriesETL;
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import de.gerdiproject.harvest.oceantea.metrics.HarvestMetrics;
+import de.gerdiproject.harvest.oceantea.metrics.HarvestPhase;
+import de.gerdiproject.harvest.oceantea.utils.DataCiteDocumentPrototype;
+import de.gerdiproject.harvest.oceantea.utils.HarvestCheckpoint;
+import de.gerdiproject.harvest.oceantea.utils.HarvestExecutors;
+import de.gerdiproject.harvest.oceantea.utils.OceanTeaSnapshotWriter;
+import de.gerdiproject.harvest.oceantea.utils.StagedPipeline;
 import de.gerdiproject.harvest.oceantea.utils.TimeSeries;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesDataset;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesDatasetCache;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesDatasetDownloader;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesFingerprints;
 import de.gerdiproject.harvest.oceantea.utils.TimeSeriesParser;
-import de.gerdiproject.harvest.utils.data.HttpRequester;
 import de.gerdiproject.json.datacite.DataCiteJson;
 
 /**
  * This {@linkplain AbstractIteratorTransformer} implementation transforms OceanTea
  * {@linkplain TimeSeries} to {@linkplain DataCiteJson} documents.
+ * If more than one concurrent download is configured, the datasets of upcoming
+ * {@linkplain TimeSeries} are prefetched and their documents are created
+ * concurrently, while the documents are still handed over in the order of
+ * the extracted {@linkplain TimeSeries}. The prefetching runs either in a
+ * pool of platform threads or in a (virtual) thread per {@linkplain TimeSeries}.
+ * Alternatively, the {@linkplain TimeSeries} pass a {@linkplain StagedPipeline}
+ * of which the download and document assembly stages have their own workers.
+ * In incremental mode, only {@linkplain TimeSeries} that are new or changed
+ * since the last harvest are transformed. If a snapshot is taken, it is
+ * completed as soon as all documents were created, unless the datasets of
+ * some {@linkplain TimeSeries} could not be downloaded, in which case the
+ * incomplete snapshot is discarded.
  *
  * @author Ingo Thomsen, Robin Weiss
  */
 public class TimeSeriesTransformer extends AbstractIteratorTransformer<TimeSeries, DataCiteJson>
 {
-    private final HttpRequester httpRequester = new HttpRequester(new Gson(), StandardCharsets.UTF_8);
+    private static final Logger LOGGER = LoggerFactory.getLogger(TimeSeriesTransformer.class);
 
     /**
-     *  Parser to harvest non-constant information about time series datasets
+     *  Prototype of the sections that all documents have in common
      */
-    private final TimeSeriesParser timeSeriesParser = new TimeSeriesParser();
+    private static final DataCiteDocumentPrototype DOCUMENT_PROTOTYPE = new DataCiteDocumentPrototype();
+
+    /**
+     *  Downloader that summarizes the datasets while streaming them
+     */
+    private final TimeSeriesDatasetDownloader datasetDownloader = new TimeSeriesDatasetDownloader();
+
+    private int concurrentDownloads = 1;
+    private boolean isIncremental;
+    private File fingerprintsFile = new File(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINTS_FILE);
+    private boolean isUsingVirtualThreads;
+    private boolean isUsingStagedPipeline;
+    private int assemblyThreads = 1;
+    private int pipelineQueueCapacity = 1;
+    private ExecutorService downloadExecutor;
+    private StagedPipeline<TransformedTimeSeries> pipeline;
+    private HarvestMetrics metrics;
+    private OceanTeaSnapshotWriter snapshotWriter;
+    private HarvestCheckpoint checkpoint;
 
 
     @Override
     public void init(final AbstractETL<?, ?> etl)
     {
-        // nothing to retrieve from the ETL
+        datasetDownloader.setCharset(etl.getCharset());
+
+        if (etl instanceof TimeSeriesETL) {
+            final TimeSeriesETL timeSeriesETL = (TimeSeriesETL) etl;
+            this.concurrentDownloads = timeSeriesETL.getConcurrentDownloads();
+            this.isIncremental = timeSeriesETL.isIncrementalHarvest();
+            this.fingerprintsFile = timeSeriesETL.getFingerprintsFile();
+            this.isUsingVirtualThreads = timeSeriesETL.isUsingVirtualThreads();
+            this.isUsingStagedPipeline = timeSeriesETL.isUsingStagedPipeline();
+            this.assemblyThreads = timeSeriesETL.getAssemblyThreads();
+            this.pipelineQueueCapacity = timeSeriesETL.getPipelineQueueCapacity();
+            this.metrics = timeSeriesETL.getMetrics();
+            this.checkpoint = timeSeriesETL.getCheckpoint();
+            datasetDownloader.setMetrics(metrics);
+            datasetDownloader.setHttpClient(timeSeriesETL.getHttpClient());
+            datasetDownloader.setRetryPolicy(timeSeriesETL.getRetryPolicy());
+            datasetDownloader.setCircuitBreaker(timeSeriesETL.getCircuitBreaker());
+
+            try {
+                datasetDownloader.setMirror(timeSeriesETL.getMirror());
+            } catch (final IOException e) {
+                throw new TransformerException(String.format(OceanTeaTimeSeriesDownloaderConstants.MIRROR_OPEN_FAILED, e.getMessage()));
+            }
+
+            try {
+                this.snapshotWriter = timeSeriesETL.getSnapshotWriter();
+                datasetDownloader.setSnapshotWriter(snapshotWriter);
+            } catch (final IOException e) {
+                throw new TransformerException(String.format(OceanTeaTimeSeriesDownloaderConstants.SNAPSHOT_WRITE_FAILED, e.getMessage()));
+            }
+
+            final int datasetCacheSize = timeSeriesETL.getDatasetCacheSize();
+            datasetDownloader.setCache(datasetCacheSize > 0
+                                       ? new TimeSeriesDatasetCache(new File(OceanTeaTimeSeriesDownloaderConstants.DATASET_CACHE_FOLDER), datasetCacheSize)
+                                       : null);
+        }
+    }
+
+
+    @Override
+    public Iterator<DataCiteJson> transform(final Iterator<TimeSeries> elements) throws TransformerException
+    {
+        if (concurrentDownloads <= 1 && !isUsingVirtualThreads && !isUsingStagedPipeline
+            && !isIncremental && snapshotWriter == null && checkpoint == null)
+            return super.transform(elements);
+
+        shutdownDownloadExecutor();
+
+        final TimeSeriesFingerprints fingerprints = isIncremental
+                                                    ? new TimeSeriesFingerprints(fingerprintsFile)
+                                                    : null;
+
+        if (isUsingStagedPipeline) {
+            this.pipeline = startPipeline(elements, fingerprints);
+            return new TimeSeriesDocumentIterator(new PipelineSource(pipeline), fingerprints);
+        }
+
+        if (isUsingVirtualThreads)
+            this.downloadExecutor = HarvestExecutors.newThreadPerTaskExecutor(OceanTeaTimeSeriesDownloaderConstants.DOWNLOAD_THREAD_NAME);
+
+        else if (concurrentDownloads > 1)
+            this.downloadExecutor = HarvestExecutors.newDaemonThreadPool(concurrentDownloads, OceanTeaTimeSeriesDownloaderConstants.DOWNLOAD_THREAD_NAME);
+
+        return new TimeSeriesDocumentIterator(new PrefetchWindow(elements, fingerprints == null), fingerprints);
+    }
+
+
+    /**
+     * Starts a {@linkplain StagedPipeline} that downloads the datasets of the
+     * extracted {@linkplain TimeSeries} and assembles their documents, each
+     * stage with its own workers. The stages are observable via the
+     * {@linkplain HarvestMetrics}.
+     *
+     * @param elements an iterator of the extracted {@linkplain TimeSeries}
+     * @param fingerprints the fingerprints of the last harvest, or null if
+     *            all {@linkplain TimeSeries} are to be transformed
+     *
+     * @return the started {@linkplain StagedPipeline}
+     */
+    private StagedPipeline<TransformedTimeSeries> startPipeline(final Iterator<TimeSeries> elements, final TimeSeriesFingerprints fingerprints)
+    {
+        final StagedPipeline<TransformedTimeSeries> stagedPipeline = new StagedPipeline<>(
+            OceanTeaTimeSeriesDownloaderConstants.PIPELINE_EXTRACTION_STAGE,
+            OceanTeaTimeSeriesDownloaderConstants.PIPELINE_LOAD_STAGE,
+            pipelineQueueCapacity);
+
+        stagedPipeline.addStage(OceanTeaTimeSeriesDownloaderConstants.PIPELINE_DOWNLOAD_STAGE, concurrentDownloads, this::downloadDataset);
+
+        stagedPipeline.addStage(OceanTeaTimeSeriesDownloaderConstants.PIPELINE_ASSEMBLY_STAGE, assemblyThreads, (final TransformedTimeSeries transformed) -> {
+            if (fingerprints != null)
+                transformed.compareFingerprint(fingerprints);
+
+            if (!transformed.isUnchanged)
+                transformed.document = assembleDocument(transformed.timeSeries, transformed.dataset);
+        });
+
+        this.downloadExecutor = isUsingVirtualThreads
+                                ? HarvestExecutors.newThreadPerTaskExecutor(OceanTeaTimeSeriesDownloaderConstants.PIPELINE_THREAD_NAME)
+                                : HarvestExecutors.newDaemonThreadPool(stagedPipeline.getNumberOfThreads(), OceanTeaTimeSeriesDownloaderConstants.PIPELINE_THREAD_NAME);
+
+        // the extraction stage only wraps the extracted time series
+        final Iterator<TransformedTimeSeries> source =
+            StreamSupport.stream(Spliterators.spliteratorUnknownSize(elements, Spliterator.ORDERED), false)
+            .map(TransformedTimeSeries::new)
+            .iterator();
+
+        stagedPipeline.start(source, downloadExecutor);
+
+        if (metrics != null)
+            metrics.setPipeline(stagedPipeline);
+
+        return stagedPipeline;
     }
 
 
     @Override
     protected DataCiteJson transformElement(final TimeSeries timeSeries) throws TransformerException
     {
-        // specify the TimeSeries objects for parsing
-        timeSeriesParser.setTimeSeries(timeSeries);
-        timeSeriesParser.setTimeSeriesDataset(
-            httpRequester.getObjectFromUrl(
-                timeSeriesParser.getDownloadUrl(),
-                TimeSeriesDatasetResponse.class)
-        );
-
-        // create the document
-        final DataCiteJson document = new DataCiteJson(timeSeries.getIdentifier());
-
-        // derived from constants
-        document.setResourceType(OceanTeaTimeSeriesDataCiteConstants.RESOURCE_TYPE);
-        document.setPublisher(OceanTeaTimeSeriesDataCiteConstants.PROVIDER);
-        document.setRepositoryIdentifier(OceanTeaTimeSeriesDataCiteConstants.REPOSITORY_ID);
-        document.addCreators(OceanTeaTimeSeriesDataCiteConstants.CREATORS);
-        document.addContributors(OceanTeaTimeSeriesDataCiteConstants.CONTRIBUTORS);
-        document.addResearchDisciplines(OceanTeaTimeSeriesDataCiteConstants.DISCIPLINES);
-        document.addFormats(OceanTeaTimeSeriesDataCiteConstants.FORMATS);
-        document.addSubjects(OceanTeaTimeSeriesDataCiteConstants.SUBJECTS);
-        document.addDescriptions(OceanTeaTimeSeriesDataCiteConstants.DESCRIPTIONS);
-        document.addWebLinks(OceanTeaTimeSeriesDataCiteConstants.WEB_LINKS);
+        final String downloadUrl = TimeSeriesParser.getDownloadUrl(timeSeries);
+
+        try {
+            return assembleDocument(timeSeries, datasetDownloader.download(timeSeries));
+        } catch (final IOException e) {
+            throw createDownloadException(downloadUrl, e);
+        }
+    }
+
+
+    /**
+     * Downloads the dataset of a {@linkplain TimeSeries} that passes the
+     * {@linkplain StagedPipeline}.
+     *
+     * @param transformed the {@linkplain TimeSeries} of which the dataset is downloaded
+     *
+     * @throws TransformerException if the dataset could not be downloaded
+     */
+    private void downloadDataset(final TransformedTimeSeries transformed) throws TransformerException
+    {
+        try {
+            transformed.dataset = datasetDownloader.download(transformed.timeSeries);
+        } catch (final IOException e) {
+            throw createDownloadException(transformed.downloadUrl, e);
+        }
+    }
+
+
+    /**
+     * Creates a document and measures how long it took, if metrics are set.
+     *
+     * @param timeSeries the {@linkplain TimeSeries} to be transformed
+     * @param timeSeriesDataset the summary of the corresponding dataset
+     *
+     * @return a {@linkplain DataCiteJson} document
+     */
+    private DataCiteJson assembleDocument(final TimeSeries timeSeries, final TimeSeriesDataset timeSeriesDataset)
+    {
+        final long assemblyStart = System.nanoTime();
+        final DataCiteJson document = createDocument(timeSeries, timeSeriesDataset);
+
+        if (metrics != null)
+            metrics.recordLatency(HarvestPhase.DOCUMENT_ASSEMBLY, assemblyStart);
+
+        return document;
+    }
+
+
+    /**
+     * Creates a document from a {@linkplain TimeSeries} and its already
+     * downloaded {@linkplain TimeSeriesDataset}. This method does not depend
+     * on any state of the transformer and can be called concurrently.
+     *
+     * @param timeSeries the {@linkplain TimeSeries} to be transformed
+     * @param timeSeriesDataset the summary of the corresponding dataset
+     *
+     * @return a {@linkplain DataCiteJson} document
+     */
+    private static DataCiteJson createDocument(final TimeSeries timeSeries, final TimeSeriesDataset timeSeriesDataset)
+    {
+        // parser to harvest non-constant information about the time series
+        final TimeSeriesParser timeSeriesParser = new TimeSeriesParser(timeSeries, timeSeriesDataset);
+
+        // create the document, which already contains the sections derived from constants
+        final DataCiteJson document = DOCUMENT_PROTOTYPE.createDocument(timeSeries.getIdentifier());
 
         // derived from the harvested entry
         document.addSubjects(timeSeriesParser.getSubjectsStrings());
@@ -91,9 +298,476 @@ public class TimeSeriesTransformer extends AbstractIteratorTransformer<TimeSerie
     }
 
 
+    /**
+     * Creates a {@linkplain TransformerException} for a failed dataset download.
+     *
+     * @param downloadUrl the download URL of the dataset
+     * @param cause the reason why the download failed
+     *
+     * @return a {@linkplain TransformerException}
+     */
+    private static TransformerException createDownloadException(final String downloadUrl, final Throwable cause)
+    {
+        return new TransformerException(String.format(
+                                            OceanTeaTimeSeriesDownloaderConstants.DATASET_DOWNLOAD_FAILED,
+                                            downloadUrl,
+                                            cause.getMessage()));
+    }
+
+
+    /**
+     * Stops all pending downloads and the pipeline of the current harvest,
+     * if there are any.
+     */
+    private void shutdownDownloadExecutor()
+    {
+        if (pipeline != null) {
+            pipeline.close();
+            pipeline = null;
+        }
+
+        if (downloadExecutor != null) {
+            downloadExecutor.shutdownNow();
+            downloadExecutor = null;
+        }
+    }
+
+
+    /**
+     * Completes the snapshot of the current harvest, if one is taken. If
+     * any {@linkplain TimeSeries} failed to be transformed, the snapshot
+     * lacks their datasets and is discarded instead.
+     *
+     * @param numberOfFailures the number of {@linkplain TimeSeries} that failed to be transformed
+     *
+     * @throws TransformerException if the snapshot could not be completed
+     */
+    private void completeSnapshot(final int numberOfFailures) throws TransformerException
+    {
+        if (snapshotWriter == null)
+            return;
+
+        if (numberOfFailures > 0) {
+            snapshotWriter.abort();
+            LOGGER.warn(String.format(OceanTeaTimeSeriesDownloaderConstants.SNAPSHOT_INCOMPLETE, numberOfFailures));
+            return;
+        }
+
+        try {
+            snapshotWriter.close();
+        } catch (final IOException e) {
+            throw new TransformerException(String.format(OceanTeaTimeSeriesDownloaderConstants.SNAPSHOT_WRITE_FAILED, e.getMessage()));
+        }
+    }
+
+
     @Override
     public void clear()
     {
-        // nothing to clean up
+        shutdownDownloadExecutor();
+
+        // discard the snapshot of an unfinished harvest
+        if (snapshotWriter != null)
+            snapshotWriter.abort();
+
+        // keep the progress of an unfinished harvest
+        if (checkpoint != null)
+            checkpoint.save();
+    }
+
+
+    /**
+     * Iterator class that creates the documents in the order of the extracted
+     * {@linkplain TimeSeries}, which are taken from a
+     * {@linkplain TransformedTimeSeriesSource} that downloads their datasets.
+     * If fingerprints are provided, {@linkplain TimeSeries} that did not change
+     * since the last harvest are skipped. The fingerprint of a document is
+     * remembered as soon as the next document is requested, which implies that
+     * the document was loaded. If a {@linkplain HarvestCheckpoint} is set, the
+     * loaded and skipped {@linkplain TimeSeries} are recorded, and the
+     * fingerprints are saved along with each checkpoint, so that an
+     * interrupted harvest can be resumed.
+     *
+     * @author Ingo Thomsen
+     */
+    private class TimeSeriesDocumentIterator implements Iterator<DataCiteJson>
+    {
+        private final TransformedTimeSeriesSource source;
+        private final TimeSeriesFingerprints fingerprints;
+
+        private DataCiteJson nextDocument;
+        private TransformerException nextException;
+        private int numberOfFailures;
+        private String pendingIdentifier;
+        private String pendingFingerprint;
+
+
+        /**
+         * Constructor that requires the source of the transformed {@linkplain TimeSeries}.
+         *
+         * @param source the source of the transformed {@linkplain TimeSeries}
+         * @param fingerprints the fingerprints of the last harvest, or null if
+         *            all {@linkplain TimeSeries} are to be transformed
+         */
+        TimeSeriesDocumentIterator(final TransformedTimeSeriesSource source, final TimeSeriesFingerprints fingerprints)
+        {
+            this.source = source;
+            this.fingerprints = fingerprints;
+        }
+
+
+        @Override
+        public boolean hasNext()
+        {
+            if (nextDocument == null && nextException == null) {
+                try {
+                    nextDocument = transformNext();
+                } catch (final TransformerException e) {
+                    // the exception is thrown when the failed element is requested
+                    nextException = e;
+                    numberOfFailures++;
+                }
+            }
+
+            return nextDocument != null || nextException != null;
+        }
+
+
+        @Override
+        public DataCiteJson next()
+        {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            if (nextException != null) {
+                final TransformerException e = nextException;
+                nextException = null;
+                throw e;
+            }
+
+            final DataCiteJson document = nextDocument;
+            nextDocument = null;
+            return document;
+        }
+
+
+        /**
+         * Transforms the next {@linkplain TimeSeries} that is to be harvested.
+         *
+         * @throws TransformerException if the dataset could not be downloaded
+         *
+         * @return the next document or null, if there are no more documents
+         */
+        private DataCiteJson transformNext() throws TransformerException
+        {
+            commitPendingDocument();
+
+            while (true) {
+                final TransformedTimeSeries transformed = source.take();
+
+                if (transformed == null) {
+                    if (fingerprints != null)
+                        fingerprints.save();
+
+                    completeSnapshot(numberOfFailures);
+
+                    if (checkpoint != null)
+                        checkpoint.complete();
+
+                    // all tasks are finished, so their threads can be released
+                    shutdownDownloadExecutor();
+                    return null;
+                }
+
+                final TimeSeries timeSeries = transformed.timeSeries;
+
+                if (fingerprints != null) {
+                    // the pipeline compares the fingerprints by itself
+                    if (transformed.fingerprint == null)
+                        transformed.compareFingerprint(fingerprints);
+
+                    if (transformed.isUnchanged) {
+                        recordHarvested(timeSeries.getIdentifier());
+                        continue;
+                    }
+
+                    pendingFingerprint = transformed.fingerprint;
+                }
+
+                pendingIdentifier = timeSeries.getIdentifier();
+                return transformed.document == null
+                       ? assembleDocument(timeSeries, transformed.dataset)
+                       : transformed.document;
+            }
+        }
+
+
+        /**
+         * Remembers the fingerprint of the last returned document and records
+         * it at the checkpoint.
+         */
+        private void commitPendingDocument()
+        {
+            if (pendingIdentifier != null) {
+                if (fingerprints != null)
+                    fingerprints.put(pendingIdentifier, pendingFingerprint);
+
+                recordHarvested(pendingIdentifier);
+                pendingIdentifier = null;
+                pendingFingerprint = null;
+            }
+        }
+
+
+        /**
+         * Records a harvested {@linkplain TimeSeries} at the checkpoint, if
+         * it is set, and saves the fingerprints whenever the checkpoint is written.
+         *
+         * @param identifier the identifier of the harvested {@linkplain TimeSeries}
+         */
+        private void recordHarvested(final String identifier)
+        {
+            if (checkpoint != null && checkpoint.recordHarvested(identifier) && fingerprints != null)
+                fingerprints.save();
+        }
+    }
+
+
+    /**
+     * A source of {@linkplain TimeSeries} of which the datasets were
+     * downloaded, in the order of the extracted {@linkplain TimeSeries}.
+     *
+     * @author Ingo Thomsen
+     */
+    private interface TransformedTimeSeriesSource
+    {
+        /**
+         * Waits for the next {@linkplain TimeSeries} to be downloaded.
+         *
+         * @throws TransformerException if the dataset could not be downloaded
+         *
+         * @return the next downloaded {@linkplain TimeSeries}, or null if there are no more
+         */
+        TransformedTimeSeries take() throws TransformerException;
+    }
+
+
+    /**
+     * A {@linkplain TransformedTimeSeriesSource} that keeps a bounded window of
+     * dataset downloads for the upcoming {@linkplain TimeSeries}. Only the
+     * {@linkplain TimeSeries} within the window are taken from the extractor,
+     * so the memory that is needed depends on the window size rather than on
+     * the size of the catalogue. Without a download executor, the window holds
+     * a single {@linkplain TimeSeries} of which the dataset is only downloaded
+     * when it is taken. With a thread per {@linkplain TimeSeries}, the window
+     * is as large as the number of concurrent downloads, whereas a pool of
+     * threads is kept busy with a window of twice that size.
+     *
+     * @author Ingo Thomsen
+     */
+    private class PrefetchWindow implements TransformedTimeSeriesSource
+    {
+        private final Iterator<TimeSeries> timeSeriesIterator;
+        private final Deque<PrefetchedDataset> prefetchedDatasets = new ArrayDeque<>();
+        private final int windowSize;
+        private final boolean isAssembledConcurrently;
+
+
+        /**
+         * Constructor that requires the extracted {@linkplain TimeSeries}.
+         *
+         * @param timeSeriesIterator an iterator of the extracted {@linkplain TimeSeries}
+         * @param isAssemblingDocuments if true, the documents are created by
+         *            the download tasks as well
+         */
+        PrefetchWindow(final Iterator<TimeSeries> timeSeriesIterator, final boolean isAssemblingDocuments)
+        {
+            this.timeSeriesIterator = timeSeriesIterator;
+            this.isAssembledConcurrently = downloadExecutor != null && isAssemblingDocuments;
+
+            if (downloadExecutor == null)
+                this.windowSize = 1;
+            else
+                this.windowSize = isUsingVirtualThreads ? concurrentDownloads : 2 * concurrentDownloads;
+        }
+
+
+        @Override
+        public TransformedTimeSeries take() throws TransformerException
+        {
+            fillWindow();
+            final PrefetchedDataset head = prefetchedDatasets.poll();
+
+            if (head == null)
+                return null;
+
+            // keep the downloads going while the document is created
+            if (downloadExecutor != null)
+                fillWindow();
+
+            return head.await();
+        }
+
+
+        /**
+         * Starts downloads for upcoming {@linkplain TimeSeries} until the window is full.
+         */
+        private void fillWindow()
+        {
+            while (prefetchedDatasets.size() < windowSize && timeSeriesIterator.hasNext()) {
+                final TimeSeries timeSeries = timeSeriesIterator.next();
+                final String downloadUrl = TimeSeriesParser.getDownloadUrl(timeSeries);
+
+                final FutureTask<TransformedTimeSeries> download = new FutureTask<>(() -> {
+                    final TransformedTimeSeries transformed = new TransformedTimeSeries(timeSeries);
+                    transformed.dataset = datasetDownloader.download(timeSeries);
+
+                    if (isAssembledConcurrently)
+                        transformed.document = assembleDocument(timeSeries, transformed.dataset);
+
+                    return transformed;
+                });
+
+                if (downloadExecutor != null)
+                    downloadExecutor.execute(download);
+
+                prefetchedDatasets.add(new PrefetchedDataset(downloadUrl, download));
+            }
+        }
+    }
+
+
+    /**
+     * A {@linkplain TransformedTimeSeriesSource} that takes the
+     * {@linkplain TimeSeries} from a started {@linkplain StagedPipeline}, which
+     * downloads their datasets, compares their fingerprints and creates their
+     * documents.
+     *
+     * @author Ingo Thomsen
+     */
+    private static class PipelineSource implements TransformedTimeSeriesSource
+    {
+        private final StagedPipeline<TransformedTimeSeries> stagedPipeline;
+
+
+        /**
+         * Constructor that requires the started pipeline.
+         *
+         * @param stagedPipeline the started pipeline that transforms the {@linkplain TimeSeries}
+         */
+        PipelineSource(final StagedPipeline<TransformedTimeSeries> stagedPipeline)
+        {
+            this.stagedPipeline = stagedPipeline;
+        }
+
+
+        @Override
+        public TransformedTimeSeries take() throws TransformerException
+        {
+            try {
+                return stagedPipeline.take();
+
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TransformerException(OceanTeaTimeSeriesDownloaderConstants.PIPELINE_CLOSED);
+
+            } catch (final CancellationException e) {
+                throw new TransformerException(e.getMessage());
+            }
+        }
+    }
+
+
+    /**
+     * A {@linkplain TimeSeries} with the download of its dataset.
+     *
+     * @author Ingo Thomsen
+     */
+    private static class PrefetchedDataset
+    {
+        private final String downloadUrl;
+        private final FutureTask<TransformedTimeSeries> download;
+
+
+        /**
+         * Constructor that sets all fields.
+         *
+         * @param downloadUrl the download URL of the dataset
+         * @param download the download, which may already be in progress
+         */
+        PrefetchedDataset(final String downloadUrl, final FutureTask<TransformedTimeSeries> download)
+        {
+            this.downloadUrl = downloadUrl;
+            this.download = download;
+        }
+
+
+        /**
+         * Waits for the download to finish. If the download was not started
+         * yet, it is executed by the calling thread.
+         *
+         * @throws TransformerException if the download failed or was interrupted
+         *
+         * @return the summary of the downloaded dataset and possibly the created document
+         */
+        TransformedTimeSeries await() throws TransformerException
+        {
+            // does nothing if the download was already started by another thread
+            download.run();
+
+            try {
+                return download.get();
+
+            } catch (final ExecutionException e) {
+                throw createDownloadException(downloadUrl, e.getCause());
+
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw createDownloadException(downloadUrl, e);
+            }
+        }
+    }
+
+
+    /**
+     * A {@linkplain TimeSeries} that is being transformed, with the summary of
+     * its downloaded dataset, its fingerprint and, if it was created by a
+     * download task or the {@linkplain StagedPipeline}, its document.
+     *
+     * @author Ingo Thomsen
+     */
+    private static class TransformedTimeSeries
+    {
+        private final TimeSeries timeSeries;
+        private final String downloadUrl;
+        private TimeSeriesDataset dataset;
+        private String fingerprint;
+        private boolean isUnchanged;
+        private DataCiteJson document;
+
+
+        /**
+         * Constructor that requires the {@linkplain TimeSeries} to be transformed.
+         *
+         * @param timeSeries the {@linkplain TimeSeries} to be transformed
+         */
+        TransformedTimeSeries(final TimeSeries timeSeries)
+        {
+            this.timeSeries = timeSeries;
+            this.downloadUrl = TimeSeriesParser.getDownloadUrl(timeSeries);
+        }
+
+
+        /**
+         * Creates the fingerprint of the {@linkplain TimeSeries} and its
+         * downloaded dataset, and checks if it changed since the last harvest.
+         *
+         * @param fingerprints the fingerprints of the last harvest
+         */
+        void compareFingerprint(final TimeSeriesFingerprints fingerprints)
+        {
+            fingerprint = TimeSeriesFingerprints.createFingerprint(timeSeries, dataset);
+            isUnchanged = fingerprints.isUnchanged(timeSeries.getIdentifier(), fingerprint);
+        }
     }
 }
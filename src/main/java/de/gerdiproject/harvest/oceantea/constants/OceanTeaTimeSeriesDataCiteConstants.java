@@ -105,6 +105,22 @@ public final class OceanTeaTimeSeriesDataCiteConstants
                                              + " Data was collected in the open water region '%s' at geo location %s at a depth of %.1f m.";
     public static final String DESCRIPTION_MEASUREMENT_UNIT_SUFFIX = " The measurement unit is %s.";
     public static final String DESCRIPTION_MISSING_VALUES_SUFFIX = " %d data points were missing ('NA').";
+    public static final String VALUE_STATISTICS_DESCRIPTION = "Statistics of the %d numeric values%s: minimum %.4g, maximum %.4g,"
+                                                              + " mean %.4g, standard deviation %.4g,"
+                                                              + " approximate quartiles %.4g, %.4g (median) and %.4g.";
+    public static final String VALUE_STATISTICS_UNIT_SUFFIX = " (in %s)";
+    public static final String BIN_DESCRIPTION = "Each measurement consists of up to %d depth bins with a height of %.2f m,"
+                                                 + " of which the first one is %.2f m away from the device.";
+    public static final String BIN_DIRECTION_SUFFIX = " The device is facing %s.";
+    public static final String BIN_STATISTICS_DESCRIPTION = "Statistics of the %d numeric values of component %s of all depth bins:"
+                                                            + " minimum %.4g, maximum %.4g, mean %.4g, standard deviation %.4g,"
+                                                            + " approximate quartiles %.4g, %.4g (median) and %.4g.";
+    public static final String SAMPLING_DESCRIPTION = "The values were sampled every %d s, covering %.1f %% of the measurement period.";
+    public static final String SAMPLING_GAPS_SUFFIX = " There are %d gaps of more than %d sampling intervals,"
+                                                      + " the longest one from %s to %s.";
+    public static final String SAMPLING_PERIODS_SUFFIX = " The collection dates only leave out the %d longest gaps.";
+    public static final String SAMPLING_DUPLICATES_SUFFIX = " %d time offsets are repeated.";
+    public static final String TECHNICAL_DESCRIPTION_SEPARATOR = " ";
 
     public static final String GEOLOCATION_PLACE_DESCRIPTION = "measurement region of %s";
 
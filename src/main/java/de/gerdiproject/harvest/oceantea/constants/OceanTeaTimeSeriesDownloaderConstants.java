@@ -33,6 +33,215 @@ public final class OceanTeaTimeSeriesDownloaderConstants
     // template string
     public static final String DATASET_DOWNLOAD_URL = TIMESERIES_URL + "%s/%s/%s/%.0f";
 
+    //
+    // time series index
+    //
+    public static final String TIMESERIES_FIELD = "timeseries";
+    public static final String TIMESERIES_SPOOL_FILE_PREFIX = "oceantea-timeseries";
+    public static final String JSON_DOWNLOAD_FAILED = "Could not download '%s': %s";
+    public static final String TIMESERIES_READ_FAILED = "Could not read the OceanTEA time series: %s";
+    public static final String TIMESERIES_SPOOL_DELETE_FAILED = "Could not delete spooled time series '%s'!";
+
+    //
+    // dataset download
+    //
+    public static final String DATASET_DATA_FIELD = "data";
+    public static final String DATASET_DOWNLOAD_FAILED = "Could not download time series dataset from '%s': %s";
+
+    //
+    // concurrent dataset downloads
+    //
+    public static final String CONCURRENT_DOWNLOADS_PARAM_KEY = "concurrentDownloads";
+    public static final int CONCURRENT_DOWNLOADS_DEFAULT = 1;
+    public static final String DOWNLOAD_THREAD_NAME = "OceanTEA-dataset-download-%d";
+    public static final long DOWNLOAD_THREAD_KEEP_ALIVE_SECONDS = 30;
+    public static final String VIRTUAL_THREADS_PARAM_KEY = "virtualThreads";
+    public static final boolean VIRTUAL_THREADS_DEFAULT = false;
+    public static final String VIRTUAL_THREAD_EXECUTOR_FACTORY = "newVirtualThreadPerTaskExecutor";
+    public static final String VIRTUAL_THREADS_UNSUPPORTED = "Virtual threads are not supported by this JVM, using a platform thread per time series instead.";
+
+    //
+    // staged pipeline
+    //
+    public static final String STAGED_PIPELINE_PARAM_KEY = "stagedPipeline";
+    public static final boolean STAGED_PIPELINE_DEFAULT = false;
+    public static final String ASSEMBLY_THREADS_PARAM_KEY = "assemblyThreads";
+    public static final int ASSEMBLY_THREADS_DEFAULT = 2;
+    public static final String PIPELINE_QUEUE_CAPACITY_PARAM_KEY = "pipelineQueueCapacity";
+    public static final int PIPELINE_QUEUE_CAPACITY_DEFAULT = 16;
+    public static final String PIPELINE_THREAD_NAME = "OceanTEA-pipeline-%d";
+    public static final String PIPELINE_EXTRACTION_STAGE = "extraction";
+    public static final String PIPELINE_DOWNLOAD_STAGE = "download";
+    public static final String PIPELINE_ASSEMBLY_STAGE = "assembly";
+    public static final String PIPELINE_LOAD_STAGE = "load";
+    public static final String PIPELINE_CLOSED = "The pipeline was closed before all time series were transformed!";
+
+    //
+    // document batches
+    //
+    public static final String MAX_BATCH_DOCUMENTS_PARAM_KEY = "maxBatchDocuments";
+    public static final int MAX_BATCH_DOCUMENTS_DEFAULT = 500;
+    public static final String MAX_BATCH_BYTES_PARAM_KEY = "maxBatchBytes";
+    public static final int MAX_BATCH_BYTES_DEFAULT = 5 * 1024 * 1024;
+    public static final String BATCH_FLUSH_INTERVAL_PARAM_KEY = "batchFlushInterval";
+    public static final int BATCH_FLUSH_INTERVAL_DEFAULT = 5000;
+    public static final String BATCH_FLUSH_THREAD_NAME = "OceanTEA-batch-flush";
+    public static final String BATCH_SUBMIT_FAILED = "Could not submit a batch of %d documents: %s";
+    public static final String BATCHER_CLOSED = "The document batcher was already closed!";
+
+    //
+    // HTTP connections
+    //
+    public static final String CONNECT_TIMEOUT_PARAM_KEY = "connectTimeout";
+    public static final int CONNECT_TIMEOUT_DEFAULT = 10000;
+    public static final String READ_TIMEOUT_PARAM_KEY = "readTimeout";
+    public static final int READ_TIMEOUT_DEFAULT = 60000;
+    public static final String MAX_CONNECTIONS_PER_HOST_PARAM_KEY = "maxConnectionsPerHost";
+    public static final int MAX_CONNECTIONS_PER_HOST_DEFAULT = 5;
+    public static final String REQUEST_DEADLINE_PARAM_KEY = "requestDeadline";
+    public static final int REQUEST_DEADLINE_DEFAULT = 600000;
+    public static final String REQUEST_DEADLINE_EXCEEDED = "The request to '%s' exceeded its deadline of %d ms!";
+    public static final String DEADLINE_THREAD_NAME = "OceanTEA-request-deadlines";
+    public static final String HTTP_STATUS_ERROR = "Server returned HTTP status %d for '%s'!";
+
+    //
+    // retries
+    //
+    public static final String MAX_RETRIES_PARAM_KEY = "maxRetries";
+    public static final int MAX_RETRIES_DEFAULT = 3;
+    public static final String RETRY_BASE_DELAY_PARAM_KEY = "retryBaseDelay";
+    public static final int RETRY_BASE_DELAY_DEFAULT = 1000;
+    public static final String RETRY_MAX_DELAY_PARAM_KEY = "retryMaxDelay";
+    public static final int RETRY_MAX_DELAY_DEFAULT = 30000;
+    public static final String DATASET_DOWNLOAD_RETRY = "Retrying the download of '%s' in %d ms (retry %d of %d): %s";
+    public static final String CIRCUIT_BREAKER_THRESHOLD_PARAM_KEY = "circuitBreakerThreshold";
+    public static final int CIRCUIT_BREAKER_THRESHOLD_DEFAULT = 5;
+    public static final String CIRCUIT_BREAKER_PAUSE_PARAM_KEY = "circuitBreakerPause";
+    public static final int CIRCUIT_BREAKER_PAUSE_DEFAULT = 60000;
+    public static final String CIRCUIT_BREAKER_OPENED = "Pausing all dataset downloads for %d ms after %d consecutive failures!";
+    public static final String CIRCUIT_BREAKER_CLOSED = "Resuming all dataset downloads.";
+
+    //
+    // offline mirror
+    //
+    public static final String MIRROR_PARAM_KEY = "mirror";
+    public static final String MIRROR_DEFAULT = "";
+    public static final String MIRROR_TIME_SERIES_FILE = "timeseries.json";
+    public static final String MIRROR_DATA_TYPES_FILE = "datatypes.json";
+    public static final String MIRROR_DATASETS_FOLDER = "datasets/";
+    public static final String MIRROR_FILE_EXTENSION = ".json";
+    public static final String MIRROR_ARCHIVE_URI_SCHEME = "jar:";
+    public static final String MIRROR_NOT_FOUND = "The OceanTEA mirror '%s' does not exist!";
+    public static final String MIRROR_OPEN_FAILED = "Could not open the OceanTEA mirror: %s";
+    public static final String MIRROR_READ_FAILED = "Could not read '%s' from the OceanTEA mirror: %s";
+
+    //
+    // snapshots
+    //
+    public static final String SNAPSHOT_PARAM_KEY = "snapshot";
+    public static final String SNAPSHOT_DEFAULT = "";
+    public static final String SNAPSHOT_DATASET_FILE_EXTENSION = ".columns";
+    public static final String SNAPSHOT_TEMP_FILE_SUFFIX = ".part";
+    public static final String SNAPSHOT_CREATED = "Wrote OceanTEA snapshot '%s' with %d datasets.";
+    public static final String SNAPSHOT_WRITE_FAILED = "Could not write the OceanTEA snapshot: %s";
+    public static final String SNAPSHOT_INCOMPLETE = "Discarded the OceanTEA snapshot, because %d time series could not be transformed!";
+    public static final String SNAPSHOT_DELETE_FAILED = "Could not delete the incomplete OceanTEA snapshot '%s'!";
+    public static final int COLUMNAR_DATASET_MAGIC = 0x4F544344;
+    public static final int COLUMNAR_DATASET_VERSION = 2;
+    public static final String COLUMNAR_DATASET_INVALID = "Not a columnar time series dataset!";
+    public static final String BIT_STREAM_EXHAUSTED = "The compressed column ended unexpectedly!";
+    public static final String COLUMNAR_DATASET_UNSUPPORTED_VERSION = "Unsupported version %d of columnar time series dataset!";
+
+    //
+    // dataset cache
+    //
+    public static final String DATASET_CACHE_SIZE_PARAM_KEY = "datasetCacheSize";
+    public static final int DATASET_CACHE_SIZE_DEFAULT = 0;
+    public static final String DATASET_CACHE_FOLDER = "cache/oceantea/datasets/";
+    public static final String DATASET_CACHE_FILE_EXTENSION = ".json";
+    public static final String DATASET_CACHE_HASH_ALGORITHM = "SHA-1";
+    public static final int DATASET_CACHE_VERSION = 4;
+    public static final String DATASET_CACHE_READ_FAILED = "Could not read cached dataset '%s'!";
+    public static final String DATASET_CACHE_WRITE_FAILED = "Could not write cached dataset '%s'!";
+    public static final String DATASET_CACHE_DELETE_FAILED = "Could not delete cached dataset '%s'!";
+    public static final String DATASET_CACHE_TOUCH_FAILED = "Could not update the last usage of cached dataset '%s'!";
+
+    //
+    // incremental harvesting
+    //
+    public static final String INCREMENTAL_HARVEST_PARAM_KEY = "incrementalHarvest";
+    public static final boolean INCREMENTAL_HARVEST_DEFAULT = false;
+    public static final String FINGERPRINTS_FILE = "cache/oceantea/fingerprints.json";
+    public static final String FINGERPRINT_HASH_ALGORITHM = "SHA-256";
+    public static final int DOCUMENT_FORMAT_VERSION = 1; // increase whenever the harvested documents change
+    public static final String FINGERPRINT_TEMPLATE = DOCUMENT_FORMAT_VERSION + "|%s|%s|%s|%s|%s|%s|%s|%s|%s|%f|%f|%f|%s";
+    public static final char FINGERPRINT_SEPARATOR = '|';
+    public static final String VERSION_HASH_ALGORITHM = "SHA-256";
+    public static final String FINGERPRINTS_READ_FAILED = "Could not read time series fingerprints '%s'!";
+    public static final String FINGERPRINTS_WRITE_FAILED = "Could not write time series fingerprints '%s'!";
+
+    //
+    // checkpoints
+    //
+    public static final String CHECKPOINT_INTERVAL_PARAM_KEY = "checkpointInterval";
+    public static final int CHECKPOINT_INTERVAL_DEFAULT = 0;
+    public static final String CHECKPOINT_FILE = "cache/oceantea/checkpoint.json";
+    public static final String CHECKPOINT_READ_FAILED = "Could not read harvest checkpoint '%s'!";
+    public static final String CHECKPOINT_WRITE_FAILED = "Could not write harvest checkpoint '%s'!";
+    public static final String CHECKPOINT_OUTDATED = "Discarding the harvest checkpoint after '%s', because the OceanTEA catalogue changed.";
+    public static final String CHECKPOINT_NOT_FOUND = "The harvest checkpoint '%s' is not part of the OceanTEA catalogue! Harvesting from the beginning.";
+    public static final String HARVEST_RESUMED = "Resuming the harvest after '%s', skipping %d time series.";
+
+    //
+    // HTTP headers
+    //
+    public static final String ETAG_HEADER = "ETag";
+    public static final String LAST_MODIFIED_HEADER = "Last-Modified";
+    public static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+    public static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+    public static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    public static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+
+    //
+    // content encodings
+    //
+    public static final String ACCEPTED_ENCODINGS = "gzip, deflate";
+    public static final String IDENTITY_ENCODING = "identity";
+    public static final String GZIP_ENCODING = "gzip";
+    public static final String X_GZIP_ENCODING = "x-gzip";
+    public static final String DEFLATE_ENCODING = "deflate";
+    public static final String UNSUPPORTED_CONTENT_ENCODING = "Unsupported content encoding '%s'!";
+
+    //
+    // value statistics
+    //
+    public static final int QUANTILE_SKETCH_ACCURACY = 200;
+    public static final double LOWER_QUARTILE = 0.25;
+    public static final double MEDIAN = 0.5;
+    public static final double UPPER_QUARTILE = 0.75;
+
+    //
+    // sampling analysis
+    //
+    public static final int SAMPLING_INTERVAL_CANDIDATES = 8;
+    public static final int SAMPLING_INTERVAL_LENGTHS = 1024;
+    public static final int GAP_THRESHOLD_INTERVALS = 5;
+    public static final int LONGEST_GAPS = 3;
+
+    //
+    // multivariate (ADCP) datasets
+    //
+    public static final int MAX_BIN_COMPONENTS = 4;
+    public static final String SPOOL_FILE_PREFIX = "oceantea-dataset";
+    public static final String SPOOL_DELETE_FAILED = "Could not delete spooled dataset '%s'!";
+
+    //
+    // harvest metrics
+    //
+    public static final String METRICS_MBEAN_NAME = "de.gerdiproject.harvest:type=HarvestMetrics,name=%s";
+    public static final String METRICS_REGISTRATION_FAILED = "Could not register the harvest metrics of '%s' via JMX!";
+    public static final String METRICS_UNREGISTRATION_FAILED = "Could not unregister the harvest metrics '%s' from JMX!";
+
     /**
      * private constructor to enforce non-instantiability
      */
@@ -41,4 +41,11 @@ public final class TimeSeriesResponse
 
     @SerializedName("t_reference")
     private String tReference;
+
+    // only provided for ADCP time series
+    @SerializedName("nBins")
+    private int numberOfBins;
+    private double adcpFirstBinHeight;
+    private double adcpBinHeight;
+    private String adcpDirection;
 }
\ No newline at end of file
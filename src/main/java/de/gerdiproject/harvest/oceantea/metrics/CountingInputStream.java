@@ -0,0 +1,85 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An {@linkplain InputStream} that counts the bytes that were read from it.
+ *
+ * @author Ingo Thomsen
+ */
+public class CountingInputStream extends FilterInputStream
+{
+    private long count;
+
+
+    /**
+     * Constructor that wraps another {@linkplain InputStream}.
+     *
+     * @param in the {@linkplain InputStream} of which the bytes are counted
+     */
+    public CountingInputStream(final InputStream in)
+    {
+        super(in);
+    }
+
+
+    /**
+     * Returns the number of bytes that were read or skipped so far.
+     *
+     * @return the number of bytes
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+
+    @Override
+    public int read() throws IOException
+    {
+        final int b = super.read();
+
+        if (b != -1)
+            count++;
+
+        return b;
+    }
+
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException
+    {
+        final int n = super.read(b, off, len);
+
+        if (n > 0)
+            count += n;
+
+        return n;
+    }
+
+
+    @Override
+    public long skip(final long n) throws IOException
+    {
+        final long skipped = super.skip(n);
+        count += skipped;
+        return skipped;
+    }
+}
@@ -0,0 +1,348 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import de.gerdiproject.harvest.oceantea.utils.PooledHttpClient;
+import de.gerdiproject.harvest.oceantea.utils.StagedPipeline;
+
+/**
+ * Thread-safe metrics of the harvest phases, consisting of latency histograms,
+ * error counts, the downloaded bytes, the number of downloaded values and
+ * the number of retried downloads. If an HTTP client is monitored, its
+ * adaptive connection limits and the observed latencies of the hosts are
+ * included, and if a {@linkplain StagedPipeline} is monitored, the queue
+ * depths and throughputs of its stages.
+ * Dataset download latencies are also recorded per station and data type,
+ * in order to find the slowest ones.
+ *
+ * @author Ingo Thomsen
+ */
+public class HarvestMetrics implements HarvestMetricsMXBean
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(HarvestMetrics.class);
+
+    private final Map<HarvestPhase, LatencyHistogram> phaseLatencies = new EnumMap<>(HarvestPhase.class);
+    private final Map<HarvestPhase, AtomicLong> phaseErrors = new EnumMap<>(HarvestPhase.class);
+    private final ConcurrentMap<String, LatencyHistogram> stationLatencies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> dataTypeLatencies = new ConcurrentHashMap<>();
+    private final AtomicLong downloadedBytes = new AtomicLong();
+    private final AtomicLong decodedBytes = new AtomicLong();
+    private final AtomicLong numberOfValues = new AtomicLong();
+    private final AtomicLong numberOfMissingValues = new AtomicLong();
+    private final AtomicLong numberOfRetries = new AtomicLong();
+    private final AtomicLong circuitBreakerOpenings = new AtomicLong();
+    private volatile PooledHttpClient httpClient;
+    private volatile StagedPipeline<?> pipeline;
+    private ObjectName registeredName;
+
+
+    /**
+     * Constructor that creates empty metrics for all {@linkplain HarvestPhase}s.
+     */
+    public HarvestMetrics()
+    {
+        for (final HarvestPhase phase : HarvestPhase.values()) {
+            phaseLatencies.put(phase, new LatencyHistogram());
+            phaseErrors.put(phase, new AtomicLong());
+        }
+    }
+
+
+    /**
+     * Registers the metrics at the platform MBean server, replacing metrics that
+     * were registered under the same name before. If these metrics were already
+     * registered under another name, that registration is removed.
+     *
+     * @param name the name under which the metrics can be read via JMX
+     */
+    public synchronized void registerMBean(final String name)
+    {
+        unregisterMBean();
+
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName(String.format(OceanTeaTimeSeriesDownloaderConstants.METRICS_MBEAN_NAME, name));
+
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+
+            server.registerMBean(this, objectName);
+            registeredName = objectName;
+
+        } catch (final JMException e) {
+            LOGGER.warn(String.format(OceanTeaTimeSeriesDownloaderConstants.METRICS_REGISTRATION_FAILED, name), e);
+        }
+    }
+
+
+    /**
+     * Removes the metrics from the platform MBean server, if they are registered.
+     * The MBean server outlives the harvester, which would otherwise keep the
+     * metrics and their classes from being garbage collected.
+     */
+    public synchronized void unregisterMBean()
+    {
+        if (registeredName == null)
+            return;
+
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+            if (server.isRegistered(registeredName))
+                server.unregisterMBean(registeredName);
+
+        } catch (final JMException e) {
+            LOGGER.warn(String.format(OceanTeaTimeSeriesDownloaderConstants.METRICS_UNREGISTRATION_FAILED, registeredName), e);
+        }
+
+        registeredName = null;
+    }
+
+
+    /**
+     * Records the latency of a harvest phase.
+     *
+     * @param phase the measured {@linkplain HarvestPhase}
+     * @param startNanos the {@linkplain System#nanoTime()} at the start of the phase
+     */
+    public void recordLatency(final HarvestPhase phase, final long startNanos)
+    {
+        phaseLatencies.get(phase).record(System.nanoTime() - startNanos);
+    }
+
+
+    /**
+     * Records an error of a harvest phase.
+     *
+     * @param phase the {@linkplain HarvestPhase} that failed
+     */
+    public void recordError(final HarvestPhase phase)
+    {
+        phaseErrors.get(phase).incrementAndGet();
+    }
+
+
+    /**
+     * Records a completely downloaded dataset.
+     *
+     * @param station the station of the time series
+     * @param dataType the data type of the time series
+     * @param startNanos the {@linkplain System#nanoTime()} at the start of the download
+     * @param bytes the number of transferred, possibly compressed bytes
+     * @param uncompressedBytes the number of bytes after decoding the response
+     * @param values the number of values of the dataset
+     * @param missingValues the number of missing values of the dataset
+     */
+    public void recordDataset(final String station, final String dataType, final long startNanos,
+                              final long bytes, final long uncompressedBytes, final long values, final long missingValues)
+    {
+        final long nanos = System.nanoTime() - startNanos;
+        stationLatencies.computeIfAbsent(station, (final String key) -> new LatencyHistogram()).record(nanos);
+        dataTypeLatencies.computeIfAbsent(dataType, (final String key) -> new LatencyHistogram()).record(nanos);
+
+        downloadedBytes.addAndGet(bytes);
+        decodedBytes.addAndGet(uncompressedBytes);
+        numberOfValues.addAndGet(values);
+        numberOfMissingValues.addAndGet(missingValues);
+    }
+
+
+    /**
+     * Records a retry of a failed dataset download.
+     */
+    public void recordRetry()
+    {
+        numberOfRetries.incrementAndGet();
+    }
+
+
+    /**
+     * Records that all dataset downloads were paused by a circuit breaker.
+     */
+    public void recordCircuitBreakerOpening()
+    {
+        circuitBreakerOpenings.incrementAndGet();
+    }
+
+
+    /**
+     * Sets the HTTP client of which the connection limits are to be monitored.
+     *
+     * @param httpClient the monitored {@linkplain PooledHttpClient}, or null
+     */
+    public void setHttpClient(final PooledHttpClient httpClient)
+    {
+        this.httpClient = httpClient;
+    }
+
+
+    /**
+     * Sets the pipeline of which the stages are to be monitored.
+     *
+     * @param pipeline the monitored {@linkplain StagedPipeline}, or null
+     */
+    public void setPipeline(final StagedPipeline<?> pipeline)
+    {
+        this.pipeline = pipeline;
+    }
+
+
+    @Override
+    public Map<String, LatencySummary> getPhaseLatencies()
+    {
+        final Map<String, LatencySummary> summaries = new TreeMap<>();
+        phaseLatencies.forEach((final HarvestPhase phase, final LatencyHistogram histogram) ->
+                               summaries.put(phase.name(), histogram.getSummary()));
+        return summaries;
+    }
+
+
+    @Override
+    public Map<String, Long> getPhaseErrors()
+    {
+        final Map<String, Long> errors = new TreeMap<>();
+        phaseErrors.forEach((final HarvestPhase phase, final AtomicLong errorCount) ->
+                            errors.put(phase.name(), errorCount.get()));
+        return errors;
+    }
+
+
+    @Override
+    public Map<String, LatencySummary> getStationLatencies()
+    {
+        return summarize(stationLatencies);
+    }
+
+
+    @Override
+    public Map<String, LatencySummary> getDataTypeLatencies()
+    {
+        return summarize(dataTypeLatencies);
+    }
+
+
+    @Override
+    public long getDownloadedBytes()
+    {
+        return downloadedBytes.get();
+    }
+
+
+    @Override
+    public long getDecodedBytes()
+    {
+        return decodedBytes.get();
+    }
+
+
+    @Override
+    public long getNumberOfValues()
+    {
+        return numberOfValues.get();
+    }
+
+
+    @Override
+    public long getNumberOfMissingValues()
+    {
+        return numberOfMissingValues.get();
+    }
+
+
+    @Override
+    public long getNumberOfRetries()
+    {
+        return numberOfRetries.get();
+    }
+
+
+    @Override
+    public long getCircuitBreakerOpenings()
+    {
+        return circuitBreakerOpenings.get();
+    }
+
+
+    @Override
+    public Map<String, ConcurrencySummary> getHostConcurrency()
+    {
+        final PooledHttpClient monitoredClient = httpClient;
+
+        return monitoredClient == null
+               ? Collections.emptyMap()
+               : monitoredClient.getConcurrencySummaries();
+    }
+
+
+    @Override
+    public Map<String, StageSummary> getPipelineStages()
+    {
+        final StagedPipeline<?> monitoredPipeline = pipeline;
+
+        return monitoredPipeline == null
+               ? Collections.emptyMap()
+               : monitoredPipeline.getStageSummaries();
+    }
+
+
+    @Override
+    public void reset()
+    {
+        phaseLatencies.values().forEach(LatencyHistogram::reset);
+        phaseErrors.values().forEach((final AtomicLong errorCount) -> errorCount.set(0));
+        stationLatencies.clear();
+        dataTypeLatencies.clear();
+        downloadedBytes.set(0);
+        decodedBytes.set(0);
+        numberOfValues.set(0);
+        numberOfMissingValues.set(0);
+        numberOfRetries.set(0);
+        circuitBreakerOpenings.set(0);
+    }
+
+
+    /**
+     * Creates summaries of latency histograms, sorted by their keys.
+     *
+     * @param histograms a map of latency histograms
+     *
+     * @return a map of latency summaries
+     */
+    private static Map<String, LatencySummary> summarize(final Map<String, LatencyHistogram> histograms)
+    {
+        final Map<String, LatencySummary> summaries = new TreeMap<>();
+        histograms.forEach((final String key, final LatencyHistogram histogram) ->
+                           summaries.put(key, histogram.getSummary()));
+        return summaries;
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX interface of the {@linkplain HarvestMetrics}.
+ *
+ * @author Ingo Thomsen
+ */
+public interface HarvestMetricsMXBean
+{
+    /**
+     * Returns the latencies of all harvest phases.
+     *
+     * @return a map of {@linkplain HarvestPhase} names to latency summaries
+     */
+    Map<String, LatencySummary> getPhaseLatencies();
+
+
+    /**
+     * Returns the number of errors of all harvest phases.
+     *
+     * @return a map of {@linkplain HarvestPhase} names to error counts
+     */
+    Map<String, Long> getPhaseErrors();
+
+
+    /**
+     * Returns the dataset download latencies per station.
+     *
+     * @return a map of station names to latency summaries
+     */
+    Map<String, LatencySummary> getStationLatencies();
+
+
+    /**
+     * Returns the dataset download latencies per data type.
+     *
+     * @return a map of data type names to latency summaries
+     */
+    Map<String, LatencySummary> getDataTypeLatencies();
+
+
+    /**
+     * Returns the number of bytes of all downloaded dataset responses, as
+     * they were transferred, which may be compressed.
+     *
+     * @return the number of downloaded bytes
+     */
+    long getDownloadedBytes();
+
+
+    /**
+     * Returns the number of bytes of all downloaded dataset responses after
+     * they were decompressed.
+     *
+     * @return the number of decoded bytes
+     */
+    long getDecodedBytes();
+
+
+    /**
+     * Returns the number of values of all downloaded datasets.
+     *
+     * @return the number of values
+     */
+    long getNumberOfValues();
+
+
+    /**
+     * Returns the number of missing values of all downloaded datasets.
+     *
+     * @return the number of missing values
+     */
+    long getNumberOfMissingValues();
+
+
+    /**
+     * Returns the number of retries of failed dataset downloads.
+     *
+     * @return the number of retries
+     */
+    long getNumberOfRetries();
+
+
+    /**
+     * Returns how often all dataset downloads were paused, because the
+     * server seemed to be overloaded.
+     *
+     * @return the number of circuit breaker openings
+     */
+    long getCircuitBreakerOpenings();
+
+
+    /**
+     * Returns the adaptive connection limits and the observed response
+     * latencies of all requested hosts.
+     *
+     * @return a map of hosts to concurrency summaries
+     */
+    Map<String, ConcurrencySummary> getHostConcurrency();
+
+
+    /**
+     * Returns the queue depths and throughputs of the stages of the current
+     * or last staged pipeline, which reveal the stage that slows down the harvest.
+     *
+     * @return a map of stage names to stage summaries
+     */
+    Map<String, StageSummary> getPipelineStages();
+
+
+    /**
+     * Removes all recorded metrics.
+     */
+    void reset();
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.metrics;
+
+/**
+ * The phases of a harvest for which latencies and errors are measured.
+ *
+ * @author Ingo Thomsen
+ */
+public enum HarvestPhase
+{
+    /**
+     * Retrieving the information about all data types.
+     */
+    DATATYPES_FETCH,
+
+    /**
+     * Retrieving the metadata of all time series.
+     */
+    TIMESERIES_FETCH,
+
+    /**
+     * Requesting a time series dataset until the response headers are received.
+     */
+    DATASET_DOWNLOAD,
+
+    /**
+     * Streaming and summarizing the body of a time series dataset response.
+     */
+    DATASET_PARSING,
+
+    /**
+     * Assembling a document from a time series and its dataset summary.
+     */
+    DOCUMENT_ASSEMBLY
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies with exponentially growing buckets.
+ * The upper bound of the first bucket is one millisecond and every following
+ * bucket doubles it, up to about 65 seconds. Slower latencies are counted in
+ * an additional overflow bucket.
+ *
+ * @author Ingo Thomsen
+ */
+public class LatencyHistogram
+{
+    private static final int NUMBER_OF_BOUNDED_BUCKETS = 17;
+    private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUMBER_OF_BOUNDED_BUCKETS + 1);
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(final long nanos)
+    {
+        final long millis = Math.max(0, nanos) / NANOS_PER_MILLI;
+
+        // bucket i contains latencies below 2^i milliseconds
+        final int bucket = Math.min(64 - Long.numberOfLeadingZeros(millis), NUMBER_OF_BOUNDED_BUCKETS);
+
+        buckets.incrementAndGet(bucket);
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+
+    /**
+     * Creates a snapshot of the recorded latencies.
+     *
+     * @return a {@linkplain LatencySummary} of the recorded latencies
+     */
+    public LatencySummary getSummary()
+    {
+        final long[] bucketCounts = new long[buckets.length()];
+        long snapshotCount = 0;
+
+        for (int i = 0; i < bucketCounts.length; i++) {
+            bucketCounts[i] = buckets.get(i);
+            snapshotCount += bucketCounts[i];
+        }
+
+        final double maxMillis = toMillis(maxNanos.get());
+        final double meanMillis = snapshotCount == 0 ? 0 : toMillis(totalNanos.get()) / snapshotCount;
+
+        return new LatencySummary(
+                   snapshotCount,
+                   meanMillis,
+                   getPercentile(bucketCounts, snapshotCount, 0.5, maxMillis),
+                   getPercentile(bucketCounts, snapshotCount, 0.95, maxMillis),
+                   getPercentile(bucketCounts, snapshotCount, 0.99, maxMillis),
+                   maxMillis);
+    }
+
+
+    /**
+     * Removes all recorded latencies.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < buckets.length(); i++)
+            buckets.set(i, 0);
+
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+
+    /**
+     * Estimates a percentile as the upper bound of the bucket containing it.
+     *
+     * @param bucketCounts the number of latencies per bucket
+     * @param totalCount the sum of all bucket counts
+     * @param percentile the percentile as fraction between 0 and 1
+     * @param maxMillis the largest recorded latency, which bounds the overflow bucket
+     *
+     * @return the estimated percentile in milliseconds
+     */
+    private static double getPercentile(final long[] bucketCounts, final long totalCount, final double percentile, final double maxMillis)
+    {
+        if (totalCount == 0)
+            return 0;
+
+        final long rank = (long) Math.ceil(percentile * totalCount);
+        long cumulativeCount = 0;
+
+        for (int i = 0; i < NUMBER_OF_BOUNDED_BUCKETS; i++) {
+            cumulativeCount += bucketCounts[i];
+
+            if (cumulativeCount >= rank)
+                return Math.min(1L << i, maxMillis);
+        }
+
+        return maxMillis;
+    }
+
+
+    /**
+     * Converts nanoseconds to fractional milliseconds.
+     *
+     * @param nanos a duration in nanoseconds
+     *
+     * @return the duration in milliseconds
+     */
+    private static double toMillis(final long nanos)
+    {
+        return (double) nanos / NANOS_PER_MILLI;
+    }
+}
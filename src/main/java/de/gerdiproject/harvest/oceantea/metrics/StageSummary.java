@@ -0,0 +1,37 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.metrics;
+
+import lombok.Value;
+
+/**
+ * An immutable snapshot of the queue and the throughput of a stage of a
+ * staged pipeline.
+ *
+ * @author Ingo Thomsen
+ */
+@Value
+public class StageSummary
+{
+    private final int parallelism;
+    private final int busyWorkers;
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final long processedItems;
+    private final long failedItems;
+    private final double throughputPerSecond;
+    private final double meanProcessingMillis;
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import de.gerdiproject.harvest.oceantea.metrics.ConcurrencySummary;
+import lombok.Getter;
+
+/**
+ * Limits the number of concurrent requests to a host, adapting the limit to
+ * the latency of the responses (AIMD): As long as the latency stays close to
+ * its baseline, which is the latency of an idle server, the limit grows by
+ * one request per round trip. If the latency rises, the limit is lowered
+ * slightly, and if the server is overloaded, it is halved. The limit is
+ * lowered at most once per round trip, because the responses that are still
+ * pending were requested under the old limit.
+ * The limiter can be shared by multiple threads.
+ *
+ * @author Ingo Thomsen
+ */
+public class AdaptiveConcurrencyLimiter
+{
+    private static final int MIN_LIMIT = 1;
+    private static final double LATENCY_SMOOTHING = 0.2;
+    private static final double BASELINE_DRIFT = 0.001;
+    private static final double LATENCY_TOLERANCE = 1.5;
+    private static final double LATENCY_BACKOFF = 0.9;
+    private static final double OVERLOAD_BACKOFF = 0.5;
+
+    @Getter
+    private final int maxLimit;
+
+    private final LongSupplier nanoClock;
+    private double limit = MIN_LIMIT;
+    private int inFlight;
+    private long decreases;
+    private long lastDecrease;
+
+    // in nanoseconds, or NaN if no latency was measured yet
+    private double smoothedLatency = Double.NaN;
+    private double baselineLatency = Double.NaN;
+
+
+    /**
+     * Constructor that sets the upper bound of the limit. The limit starts
+     * with a single request.
+     *
+     * @param maxLimit the maximum number of concurrent requests
+     */
+    public AdaptiveConcurrencyLimiter(final int maxLimit)
+    {
+        this(maxLimit, System::nanoTime);
+    }
+
+
+    /**
+     * Constructor that sets the upper bound of the limit and the clock by
+     * which the round trips between two decreases are measured, so that the
+     * limit can be adapted to synthetic latencies.
+     *
+     * @param maxLimit the maximum number of concurrent requests
+     * @param nanoClock a source of the current time in nanoseconds, like {@linkplain System#nanoTime()}
+     */
+    public AdaptiveConcurrencyLimiter(final int maxLimit, final LongSupplier nanoClock)
+    {
+        this.maxLimit = Math.max(MIN_LIMIT, maxLimit);
+        this.nanoClock = nanoClock;
+        this.lastDecrease = nanoClock.getAsLong();
+    }
+
+
+    /**
+     * Waits until the number of pending requests is below the limit and
+     * counts a new pending request.
+     *
+     * @throws InterruptedException if the waiting was interrupted
+     */
+    public synchronized void acquire() throws InterruptedException
+    {
+        while (inFlight >= getLimit())
+            wait();
+
+        inFlight++;
+    }
+
+
+    /**
+     * Waits until the number of pending requests is below the limit or the
+     * timeout passed, and counts a new pending request if possible.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     *
+     * @throws InterruptedException if the waiting was interrupted
+     *
+     * @return true if a new pending request was counted
+     */
+    public synchronized boolean tryAcquire(final long timeout, final TimeUnit unit) throws InterruptedException
+    {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        while (inFlight >= getLimit()) {
+            final long remainingNanos = deadline - System.nanoTime();
+
+            if (remainingNanos <= 0)
+                return false;
+
+            TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+        }
+
+        inFlight++;
+        return true;
+    }
+
+
+    /**
+     * Counts a finished request and adapts the limit to its outcome.
+     *
+     * @param latencyNanos the time until the response headers arrived in nanoseconds, or a negative number if it is unknown
+     * @param isOverloaded true if the request failed because the server seems to be overloaded
+     */
+    public synchronized void release(final long latencyNanos, final boolean isOverloaded)
+    {
+        // the limit only grows if it was reached
+        final boolean wasLimited = inFlight >= getLimit();
+        inFlight--;
+
+        if (isOverloaded)
+            decrease(OVERLOAD_BACKOFF);
+
+        else if (latencyNanos >= 0) {
+            updateLatencies(latencyNanos);
+
+            if (smoothedLatency > LATENCY_TOLERANCE * baselineLatency)
+                decrease(LATENCY_BACKOFF);
+
+            else if (wasLimited)
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+
+        notifyAll();
+    }
+
+
+    /**
+     * Returns the current maximum number of concurrent requests.
+     *
+     * @return the current limit
+     */
+    public synchronized int getLimit()
+    {
+        return (int) limit;
+    }
+
+
+    /**
+     * Creates a snapshot of the limit and the latencies.
+     *
+     * @return a {@linkplain ConcurrencySummary} of this limiter
+     */
+    public synchronized ConcurrencySummary getSummary()
+    {
+        return new ConcurrencySummary(
+                   getLimit(),
+                   maxLimit,
+                   inFlight,
+                   toMillis(smoothedLatency),
+                   toMillis(baselineLatency),
+                   decreases);
+    }
+
+
+    /**
+     * Adds a latency to the smoothed latency and to the baseline, which is
+     * the minimum latency, but slowly drifts towards higher latencies, so
+     * that a server which became permanently slower is not throttled forever.
+     *
+     * @param latencyNanos the latency of a request in nanoseconds
+     */
+    private void updateLatencies(final long latencyNanos)
+    {
+        if (Double.isNaN(smoothedLatency)) {
+            smoothedLatency = latencyNanos;
+            baselineLatency = latencyNanos;
+            return;
+        }
+
+        smoothedLatency += LATENCY_SMOOTHING * (latencyNanos - smoothedLatency);
+
+        if (latencyNanos < baselineLatency)
+            baselineLatency = latencyNanos;
+        else
+            baselineLatency += BASELINE_DRIFT * (latencyNanos - baselineLatency);
+    }
+
+
+    /**
+     * Lowers the limit, unless it was already lowered during the last round trip.
+     *
+     * @param factor the factor by which the limit is multiplied
+     */
+    private void decrease(final double factor)
+    {
+        final long now = nanoClock.getAsLong();
+
+        if (!Double.isNaN(smoothedLatency) && now - lastDecrease < smoothedLatency)
+            return;
+
+        limit = Math.max(MIN_LIMIT, limit * factor);
+        lastDecrease = now;
+        decreases++;
+    }
+
+
+    /**
+     * Converts nanoseconds to milliseconds.
+     *
+     * @param nanos a duration in nanoseconds
+     *
+     * @return the duration in milliseconds
+     */
+    private static double toMillis(final double nanos)
+    {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+
+/**
+ * Reads a sequence of bits that was written by a {@linkplain BitWriter},
+ * most significant bit first.
+ *
+ * @author Ingo Thomsen
+ */
+public final class BitReader
+{
+    private final long[] words;
+    private final long numberOfBits;
+    private long position;
+
+
+    /**
+     * Constructor that requires the words containing the bits.
+     *
+     * @param words the words containing the bits
+     * @param numberOfBits the number of bits that can be read
+     */
+    public BitReader(final long[] words, final long numberOfBits)
+    {
+        this.words = words;
+        this.numberOfBits = numberOfBits;
+    }
+
+
+    /**
+     * Reads a single bit.
+     *
+     * @return true if the bit is 1
+     */
+    public boolean readBit()
+    {
+        return readBits(1) != 0;
+    }
+
+
+    /**
+     * Reads a number of bits as the lowest bits of a value.
+     *
+     * @param bitCount the number of bits to read, between 0 and 64
+     *
+     * @throws IllegalStateException if there are not enough bits left
+     *
+     * @return the value of the bits
+     */
+    public long readBits(final int bitCount)
+    {
+        if (bitCount == 0)
+            return 0;
+
+        if (position + bitCount > numberOfBits)
+            throw new IllegalStateException(OceanTeaTimeSeriesDownloaderConstants.BIT_STREAM_EXHAUSTED);
+
+        final int wordIndex = (int)(position >>> 6);
+        final int availableBits = 64 - (int)(position & 63);
+        final long bits;
+
+        if (bitCount <= availableBits)
+            bits = words[wordIndex] >>> (availableBits - bitCount);
+        else {
+            final int overflowingBits = bitCount - availableBits;
+            bits = (words[wordIndex] << overflowingBits) | (words[wordIndex + 1] >>> (64 - overflowingBits));
+        }
+
+        position += bitCount;
+        return bitCount == 64 ? bits : bits & ((1L << bitCount) - 1);
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.util.Arrays;
+
+import lombok.Getter;
+
+/**
+ * A growable sequence of bits that are appended most significant bit first.
+ * The bits can be read again with a {@linkplain BitReader}.
+ *
+ * @author Ingo Thomsen
+ */
+public final class BitWriter
+{
+    private static final int INITIAL_NUMBER_OF_WORDS = 16;
+
+    private long[] words;
+
+    @Getter
+    private long numberOfBits;
+
+
+    /**
+     * Constructor for an empty bit sequence.
+     */
+    public BitWriter()
+    {
+        this(new long[INITIAL_NUMBER_OF_WORDS], 0);
+    }
+
+
+    /**
+     * Constructor that continues a bit sequence, such as one that was read
+     * from disk. The words are not copied, and any bits behind the last one
+     * must be zeros.
+     *
+     * @param words the words containing the bits
+     * @param numberOfBits the number of bits that were written
+     */
+    public BitWriter(final long[] words, final long numberOfBits)
+    {
+        this.words = words;
+        this.numberOfBits = numberOfBits;
+    }
+
+
+    /**
+     * Appends a single bit.
+     *
+     * @param bit true for 1, false for 0
+     */
+    public void writeBit(final boolean bit)
+    {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+
+    /**
+     * Appends the lowest bits of a value.
+     *
+     * @param value the value of which the bits are appended
+     * @param bitCount the number of bits to append, between 0 and 64
+     */
+    public void writeBits(final long value, final int bitCount)
+    {
+        if (bitCount == 0)
+            return;
+
+        ensureCapacity(numberOfBits + bitCount);
+
+        final int wordIndex = (int)(numberOfBits >>> 6);
+        final int freeBits = 64 - (int)(numberOfBits & 63);
+        final long bits = bitCount == 64 ? value : value & ((1L << bitCount) - 1);
+
+        if (bitCount <= freeBits)
+            words[wordIndex] |= bits << (freeBits - bitCount);
+        else {
+            final int overflowingBits = bitCount - freeBits;
+            words[wordIndex] |= bits >>> overflowingBits;
+            words[wordIndex + 1] |= bits << (64 - overflowingBits);
+        }
+
+        numberOfBits += bitCount;
+    }
+
+
+    /**
+     * Returns a copy of the words that contain the written bits.
+     *
+     * @return the words, of which the last one may be filled up with zeros
+     */
+    public long[] toLongArray()
+    {
+        return Arrays.copyOf(words, (int)((numberOfBits + 63) >>> 6));
+    }
+
+
+    /**
+     * Creates a {@linkplain BitReader} of the bits that were written so far.
+     *
+     * @return a {@linkplain BitReader} that starts at the first bit
+     */
+    public BitReader toReader()
+    {
+        return new BitReader(words, numberOfBits);
+    }
+
+
+    /**
+     * Returns the number of bytes that are occupied by the bits, including
+     * the unused capacity.
+     *
+     * @return the number of allocated bytes
+     */
+    public long getAllocatedBytes()
+    {
+        return words.length * (long) Long.BYTES;
+    }
+
+
+    /**
+     * Grows the words, so that they can hold a number of bits.
+     *
+     * @param requiredBits the number of bits that must fit
+     */
+    private void ensureCapacity(final long requiredBits)
+    {
+        final int requiredWords = (int)((requiredBits + 63) >>> 6);
+
+        if (requiredWords > words.length)
+            words = Arrays.copyOf(words, Math.max(requiredWords, words.length + (words.length >> 1)));
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import lombok.Getter;
+
+/**
+ * A circuit breaker that pauses all requests to a server that seems to be
+ * overloaded. After a number of consecutive transient failures, the circuit
+ * is opened and all requests wait until the pause is over. Then a single
+ * request is let through as probe: If it succeeds, the circuit is closed
+ * and all waiting requests continue, otherwise the pause starts again.
+ * Unlike common circuit breakers, requests are not rejected while the
+ * circuit is open, because a harvest is supposed to continue rather than to
+ * skip all documents until the server recovered.
+ * The circuit breaker can be shared by multiple threads.
+ *
+ * @author Ingo Thomsen
+ */
+public class CircuitBreaker
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    @Getter
+    private final int failureThreshold;
+
+    @Getter
+    private final long pause;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean isProbing;
+
+
+    /**
+     * Constructor that sets the number of failures that open the circuit and
+     * the duration of the pause.
+     *
+     * @param failureThreshold the number of consecutive failures that open the circuit
+     * @param pause the duration of the pause in milliseconds
+     */
+    public CircuitBreaker(final int failureThreshold, final long pause)
+    {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.pause = Math.max(0, pause);
+    }
+
+
+    /**
+     * Waits until a request is allowed, which is immediately the case unless
+     * the circuit is open or a probe is pending. If the request is the probe,
+     * its result must be recorded, or it must be released.
+     *
+     * @throws InterruptedIOException if the waiting was interrupted
+     *
+     * @return true if the request is the probe
+     */
+    public synchronized boolean acquire() throws InterruptedIOException
+    {
+        try {
+            while (true) {
+                if (state == State.CLOSED)
+                    return false;
+
+                if (state == State.OPEN) {
+                    final long remainingPause = TimeUnit.MILLISECONDS.toNanos(pause) - (System.nanoTime() - openedAt);
+
+                    if (remainingPause > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(this, remainingPause);
+                        continue;
+                    }
+
+                    state = State.HALF_OPEN;
+                }
+
+                if (!isProbing) {
+                    isProbing = true;
+                    return true;
+                }
+
+                // re-check the state regularly, in case a notification is missed
+                TimeUnit.MILLISECONDS.timedWait(this, Math.max(1, pause));
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+
+
+    /**
+     * Records a request that reached the server, which closes the circuit.
+     */
+    public synchronized void recordSuccess()
+    {
+        consecutiveFailures = 0;
+
+        if (state != State.CLOSED) {
+            state = State.CLOSED;
+            isProbing = false;
+            LOGGER.info(OceanTeaTimeSeriesDownloaderConstants.CIRCUIT_BREAKER_CLOSED);
+            notifyAll();
+        }
+    }
+
+
+    /**
+     * Records a transient failure of a request, which opens the circuit if
+     * it was the probe or if there were too many consecutive failures.
+     *
+     * @return true if the circuit was opened by the failure
+     */
+    public synchronized boolean recordFailure()
+    {
+        consecutiveFailures++;
+
+        if (state == State.HALF_OPEN || state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            isProbing = false;
+            openedAt = System.nanoTime();
+            LOGGER.warn(String.format(OceanTeaTimeSeriesDownloaderConstants.CIRCUIT_BREAKER_OPENED, pause, consecutiveFailures));
+            notifyAll();
+            return true;
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Releases the probe without recording its result, because the request
+     * was interrupted before it could prove whether the server is
+     * responsive. Another waiting request becomes the probe.
+     */
+    public synchronized void release()
+    {
+        if (state == State.HALF_OPEN && isProbing) {
+            isProbing = false;
+            notifyAll();
+        }
+    }
+
+
+    /**
+     * Checks if requests are currently paused.
+     *
+     * @return true if the circuit is not closed
+     */
+    public synchronized boolean isOpen()
+    {
+        return state != State.CLOSED;
+    }
+
+
+    /**
+     * The states of a {@linkplain CircuitBreaker}.
+     *
+     * @author Ingo Thomsen
+     */
+    private enum State
+    {
+        CLOSED, OPEN, HALF_OPEN
+    }
+}
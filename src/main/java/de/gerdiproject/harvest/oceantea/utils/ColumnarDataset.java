@@ -0,0 +1,752 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.time.Instant;
+import java.util.BitSet;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import lombok.Getter;
+
+/**
+ * All pairs of time offsets and values of a time series dataset, stored
+ * column by column in compressed form, in memory as well as on disk.
+ * Time offsets that are not integers and values that are not numbers (such as
+ * "NA") are marked as missing in bitmaps and are not stored in the columns.
+ * <ul>
+ * <li>The time offsets are delta-of-delta encoded with variable bit lengths,
+ *     so a time offset that follows the previous step needs a single bit.</li>
+ * <li>The values are XOR-encoded with their predecessors like in Facebook's
+ *     Gorilla, so repeated values need a single bit and similar values only
+ *     need their differing bits.</li>
+ * </ul>
+ * The pairs are appended one by one and read sequentially with a {@linkplain Cursor}.
+ *
+ * @author Ingo Thomsen
+ */
+public final class ColumnarDataset
+{
+    @Getter
+    private int size;
+
+    private final BitSet missingTimeOffsets;
+    private final BitSet missingValues;
+    private final BitWriter timeOffsetBits;
+    private final BitWriter valueBits;
+
+    // state of the time offset encoding
+    private int numberOfTimeOffsets;
+    private int previousTimeOffset;
+    private long previousTimeDelta;
+
+    // state of the value encoding
+    private int numberOfNumericValues;
+    private long previousValueBits;
+    private int previousLeadingZeros = -1;
+    private int previousTrailingZeros;
+
+    // false if the dataset was read and the encoder state was not yet restored
+    private boolean isEncoderStateRestored;
+
+
+    /**
+     * Constructor for an empty dataset.
+     */
+    public ColumnarDataset()
+    {
+        this(0, new BitSet(), new BitSet(), new BitWriter(), new BitWriter());
+        this.isEncoderStateRestored = true;
+    }
+
+
+    /**
+     * Constructor for a dataset that was read. The state of the encoders is
+     * restored when the first pair is appended.
+     *
+     * @param size the number of pairs
+     * @param missingTimeOffsets the bitmap of missing time offsets
+     * @param missingValues the bitmap of missing values
+     * @param timeOffsetBits the compressed time offsets
+     * @param valueBits the compressed values
+     */
+    private ColumnarDataset(final int size, final BitSet missingTimeOffsets, final BitSet missingValues, final BitWriter timeOffsetBits, final BitWriter valueBits)
+    {
+        this.size = size;
+        this.missingTimeOffsets = missingTimeOffsets;
+        this.missingValues = missingValues;
+        this.timeOffsetBits = timeOffsetBits;
+        this.valueBits = valueBits;
+    }
+
+
+    /**
+     * Appends a pair of time offset and value.
+     *
+     * @param timeOffsetString the time offset (in seconds) as string, or null
+     * @param valueString the value as string, or null
+     */
+    public void add(final String timeOffsetString, final String valueString)
+    {
+        restoreEncoderState();
+
+        try {
+            addTimeOffset(Integer.parseInt(timeOffsetString));
+        } catch (final NumberFormatException e) {
+            missingTimeOffsets.set(size);
+        }
+
+        addValue(parseValue(valueString));
+        size++;
+    }
+
+
+    /**
+     * Appends a pair of time offset and value.
+     *
+     * @param timeOffset the time offset in seconds
+     * @param value the value, or NaN if it is missing
+     */
+    public void add(final int timeOffset, final double value)
+    {
+        restoreEncoderState();
+        addTimeOffset(timeOffset);
+        addValue(value);
+        size++;
+    }
+
+
+    /**
+     * Creates a {@linkplain Cursor} that iterates all pairs in the order in
+     * which they were added.
+     *
+     * @return a {@linkplain Cursor} positioned in front of the first pair
+     */
+    public Cursor cursor()
+    {
+        return new Cursor();
+    }
+
+
+    /**
+     * Returns the number of bytes of the compressed columns and bitmaps.
+     *
+     * @return the number of allocated bytes
+     */
+    public long getAllocatedBytes()
+    {
+        return timeOffsetBits.getAllocatedBytes()
+               + valueBits.getAllocatedBytes()
+               + missingTimeOffsets.size() / Byte.SIZE
+               + missingValues.size() / Byte.SIZE;
+    }
+
+
+    /**
+     * Summarizes the dataset as {@linkplain TimeSeriesDataset}, which is
+     * identical to the one that is read from the JSON representation.
+     *
+     * @param referenceInstant reference {@linkplain Instant} for the time offsets
+     *
+     * @return a {@linkplain TimeSeriesDataset} summarizing the dataset
+     */
+    public TimeSeriesDataset toTimeSeriesDataset(final Instant referenceInstant)
+    {
+        final TimeSeriesDatasetBuilder builder = new TimeSeriesDatasetBuilder(referenceInstant);
+        final Cursor cursor = cursor();
+
+        while (cursor.next()) {
+            if (cursor.isTimeOffsetMissing())
+                builder.addMissingTimeOffset();
+            else
+                builder.addTimeOffset(cursor.getTimeOffset());
+
+            if (!cursor.isValueMissing())
+                builder.addValue(cursor.getValue());
+        }
+
+        return builder.build();
+    }
+
+
+    /**
+     * Writes the binary form of the dataset: A header, followed by the
+     * bitmaps of missing time offsets and values, and the compressed columns
+     * of time offsets and values.
+     *
+     * @param outputStream the stream to which the dataset is written
+     *
+     * @throws IOException if the dataset could not be written
+     */
+    public void write(final OutputStream outputStream) throws IOException
+    {
+        final DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(OceanTeaTimeSeriesDownloaderConstants.COLUMNAR_DATASET_MAGIC);
+        out.writeByte(OceanTeaTimeSeriesDownloaderConstants.COLUMNAR_DATASET_VERSION);
+        out.writeInt(size);
+
+        writeBitmap(out, missingTimeOffsets);
+        writeBitmap(out, missingValues);
+        writeBits(out, timeOffsetBits);
+        writeBits(out, valueBits);
+
+        out.flush();
+    }
+
+
+    /**
+     * Reads the binary form of a dataset. The columns are kept compressed as
+     * they were read and are only decoded by a {@linkplain Cursor}.
+     *
+     * @param inputStream the stream from which the dataset is read
+     *
+     * @throws IOException if the dataset could not be read or has an unknown format
+     *
+     * @return the dataset
+     */
+    public static ColumnarDataset read(final InputStream inputStream) throws IOException
+    {
+        final DataInputStream in = new DataInputStream(inputStream);
+
+        if (in.readInt() != OceanTeaTimeSeriesDownloaderConstants.COLUMNAR_DATASET_MAGIC)
+            throw new IOException(OceanTeaTimeSeriesDownloaderConstants.COLUMNAR_DATASET_INVALID);
+
+        final int version = in.readUnsignedByte();
+
+        if (version != OceanTeaTimeSeriesDownloaderConstants.COLUMNAR_DATASET_VERSION)
+            throw new IOException(String.format(OceanTeaTimeSeriesDownloaderConstants.COLUMNAR_DATASET_UNSUPPORTED_VERSION, version));
+
+        final int size = in.readInt();
+        final BitSet missingTimeOffsets = readBitmap(in);
+        final BitSet missingValues = readBitmap(in);
+        final BitWriter timeOffsetBits = readBits(in);
+        final BitWriter valueBits = readBits(in);
+
+        return new ColumnarDataset(size, missingTimeOffsets, missingValues, timeOffsetBits, valueBits);
+    }
+
+
+    /**
+     * Reads the JSON representation of a time series dataset, like the
+     * {@linkplain TimeSeriesDatasetReader} does, but keeps all pairs.
+     *
+     * @param reader a {@linkplain Reader} providing the JSON response
+     *
+     * @throws IOException if the JSON could not be read or is malformed
+     *
+     * @return the dataset
+     */
+    public static ColumnarDataset readJson(final Reader reader) throws IOException
+    {
+        final ColumnarDataset dataset = new ColumnarDataset();
+
+        try
+            (JsonReader jsonReader = new JsonReader(reader)) {
+            jsonReader.setLenient(true);
+            jsonReader.beginObject();
+
+            while (jsonReader.hasNext()) {
+                if (!OceanTeaTimeSeriesDownloaderConstants.DATASET_DATA_FIELD.equals(jsonReader.nextName())
+                    || jsonReader.peek() != JsonToken.BEGIN_ARRAY) {
+                    jsonReader.skipValue();
+                    continue;
+                }
+
+                jsonReader.beginArray();
+
+                while (jsonReader.hasNext())
+                    readPair(jsonReader, dataset);
+
+                jsonReader.endArray();
+            }
+
+            jsonReader.endObject();
+
+        } catch (final IllegalStateException e) {
+            // unexpected tokens, such as a top-level array, are not reported as IOException by the JsonReader
+            throw new MalformedJsonException(e.getMessage());
+        }
+
+        return dataset;
+    }
+
+
+    /**
+     * Appends a time offset to the time offset column. The difference between
+     * the current and the previous time step is stored with a prefix code:
+     * 0 for no difference, 10, 110 and 1110 for differences that fit into 7,
+     * 9 or 12 bits, and 1111 for a full 64 bit difference.
+     *
+     * @param timeOffset the time offset in seconds
+     */
+    private void addTimeOffset(final int timeOffset)
+    {
+        if (numberOfTimeOffsets == 0)
+            timeOffsetBits.writeBits(timeOffset, Integer.SIZE);
+        else {
+            final long delta = (long) timeOffset - previousTimeOffset;
+            final long deltaOfDelta = delta - previousTimeDelta;
+
+            if (deltaOfDelta == 0)
+                timeOffsetBits.writeBit(false);
+
+            else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+                timeOffsetBits.writeBits(0b10, 2);
+                timeOffsetBits.writeBits(deltaOfDelta + 63, 7);
+
+            } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+                timeOffsetBits.writeBits(0b110, 3);
+                timeOffsetBits.writeBits(deltaOfDelta + 255, 9);
+
+            } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                timeOffsetBits.writeBits(0b1110, 4);
+                timeOffsetBits.writeBits(deltaOfDelta + 2047, 12);
+
+            } else {
+                timeOffsetBits.writeBits(0b1111, 4);
+                timeOffsetBits.writeBits(deltaOfDelta, Long.SIZE);
+            }
+
+            previousTimeDelta = delta;
+        }
+
+        previousTimeOffset = timeOffset;
+        numberOfTimeOffsets++;
+    }
+
+
+    /**
+     * Appends a value to the value column, or marks it as missing if it is
+     * NaN. The XOR of the current and the previous value is stored as 0 if the
+     * values are equal. Otherwise, it is stored as 10 followed by the
+     * meaningful bits if they fit into the window of the previous XOR, or as
+     * 11 followed by the number of leading zeros (5 bits), the number of
+     * meaningful bits minus one (6 bits) and the meaningful bits.
+     *
+     * @param value the value, or NaN if it is missing
+     */
+    private void addValue(final double value)
+    {
+        if (Double.isNaN(value)) {
+            missingValues.set(size);
+            return;
+        }
+
+        final long bits = Double.doubleToRawLongBits(value);
+
+        if (numberOfNumericValues == 0)
+            valueBits.writeBits(bits, Long.SIZE);
+        else {
+            final long xor = bits ^ previousValueBits;
+
+            if (xor == 0)
+                valueBits.writeBit(false);
+            else {
+                valueBits.writeBit(true);
+
+                final int leadingZeros = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                final int trailingZeros = Long.numberOfTrailingZeros(xor);
+
+                if (previousLeadingZeros != -1 && leadingZeros >= previousLeadingZeros && trailingZeros >= previousTrailingZeros) {
+                    valueBits.writeBit(false);
+                    valueBits.writeBits(xor >>> previousTrailingZeros, Long.SIZE - previousLeadingZeros - previousTrailingZeros);
+                } else {
+                    final int meaningfulBits = Long.SIZE - leadingZeros - trailingZeros;
+                    valueBits.writeBit(true);
+                    valueBits.writeBits(leadingZeros, 5);
+                    valueBits.writeBits(meaningfulBits - 1, 6);
+                    valueBits.writeBits(xor >>> trailingZeros, meaningfulBits);
+
+                    previousLeadingZeros = leadingZeros;
+                    previousTrailingZeros = trailingZeros;
+                }
+            }
+        }
+
+        previousValueBits = bits;
+        numberOfNumericValues++;
+    }
+
+
+    /**
+     * Restores the state of the time offset and value encoders of a dataset
+     * that was read, by decoding all pairs once. Datasets that are only read
+     * never need it.
+     */
+    private void restoreEncoderState()
+    {
+        if (isEncoderStateRestored)
+            return;
+
+        final Decoder decoder = new Decoder(timeOffsetBits.toReader(), valueBits.toReader());
+
+        for (int i = 0; i < size; i++) {
+            if (!missingTimeOffsets.get(i))
+                decoder.nextTimeOffset();
+
+            if (!missingValues.get(i))
+                decoder.nextValue();
+        }
+
+        numberOfTimeOffsets = decoder.numberOfTimeOffsets;
+        previousTimeOffset = decoder.previousTimeOffset;
+        previousTimeDelta = decoder.previousTimeDelta;
+
+        numberOfNumericValues = decoder.numberOfValues;
+        previousValueBits = decoder.previousValueBits;
+        previousLeadingZeros = decoder.leadingZeros;
+        previousTrailingZeros = decoder.trailingZeros;
+
+        isEncoderStateRestored = true;
+    }
+
+
+    /**
+     * Parses a value, treating anything that is not a number as missing.
+     *
+     * @param valueString the value as string, or null
+     *
+     * @return the value, or NaN if it is missing
+     */
+    private static double parseValue(final String valueString)
+    {
+        if (valueString == null)
+            return Double.NaN;
+
+        try {
+            return Double.parseDouble(valueString);
+        } catch (final NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+
+    /**
+     * Reads one pair of time offset and value and appends it to a dataset.
+     * Any additional elements of the pair are skipped.
+     *
+     * @param jsonReader a {@linkplain JsonReader} that is positioned in front of a pair
+     * @param dataset the dataset to which the pair is appended
+     *
+     * @throws IOException if the JSON could not be read or is malformed
+     */
+    private static void readPair(final JsonReader jsonReader, final ColumnarDataset dataset) throws IOException
+    {
+        if (jsonReader.peek() != JsonToken.BEGIN_ARRAY) {
+            jsonReader.skipValue();
+            dataset.add(null, null);
+            return;
+        }
+
+        jsonReader.beginArray();
+        final String timeOffsetString = readScalar(jsonReader);
+        final String valueString = readScalar(jsonReader);
+
+        while (jsonReader.hasNext())
+            jsonReader.skipValue();
+
+        jsonReader.endArray();
+        dataset.add(timeOffsetString, valueString);
+    }
+
+
+    /**
+     * Reads the next element of a pair if it is a number or string.
+     *
+     * @param jsonReader a {@linkplain JsonReader} within a pair
+     *
+     * @throws IOException if the JSON could not be read or is malformed
+     *
+     * @return the element as string, or null if there is none or it is not a scalar
+     */
+    private static String readScalar(final JsonReader jsonReader) throws IOException
+    {
+        if (!jsonReader.hasNext())
+            return null;
+
+        final JsonToken token = jsonReader.peek();
+
+        if (token == JsonToken.NUMBER || token == JsonToken.STRING)
+            return jsonReader.nextString();
+
+        jsonReader.skipValue();
+        return null;
+    }
+
+
+    /**
+     * Writes a bitmap as length-prefixed array of longs.
+     *
+     * @param out the stream to which the bitmap is written
+     * @param bitmap the bitmap
+     *
+     * @throws IOException if the bitmap could not be written
+     */
+    private static void writeBitmap(final DataOutputStream out, final BitSet bitmap) throws IOException
+    {
+        final long[] words = bitmap.toLongArray();
+        out.writeInt(words.length);
+
+        for (final long word : words)
+            out.writeLong(word);
+    }
+
+
+    /**
+     * Reads a bitmap that was written by {@linkplain #writeBitmap(DataOutputStream, BitSet)}.
+     *
+     * @param in the stream from which the bitmap is read
+     *
+     * @throws IOException if the bitmap could not be read
+     *
+     * @return the bitmap
+     */
+    private static BitSet readBitmap(final DataInputStream in) throws IOException
+    {
+        final long[] words = new long[in.readInt()];
+
+        for (int i = 0; i < words.length; i++)
+            words[i] = in.readLong();
+
+        return BitSet.valueOf(words);
+    }
+
+
+    /**
+     * Writes a bit sequence as number of bits followed by the words containing them.
+     *
+     * @param out the stream to which the bits are written
+     * @param bits the bit sequence
+     *
+     * @throws IOException if the bits could not be written
+     */
+    private static void writeBits(final DataOutputStream out, final BitWriter bits) throws IOException
+    {
+        out.writeLong(bits.getNumberOfBits());
+
+        for (final long word : bits.toLongArray())
+            out.writeLong(word);
+    }
+
+
+    /**
+     * Reads a bit sequence that was written by {@linkplain #writeBits(DataOutputStream, BitWriter)}.
+     *
+     * @param in the stream from which the bits are read
+     *
+     * @throws IOException if the bits could not be read
+     *
+     * @return a {@linkplain BitWriter} that continues the bit sequence
+     */
+    private static BitWriter readBits(final DataInputStream in) throws IOException
+    {
+        final long numberOfBits = in.readLong();
+        final long[] words = new long[(int)((numberOfBits + 63) >>> 6)];
+
+        for (int i = 0; i < words.length; i++)
+            words[i] = in.readLong();
+
+        return new BitWriter(words, numberOfBits);
+    }
+
+
+    /**
+     * Reads all pairs of a {@linkplain ColumnarDataset} sequentially.
+     *
+     * @author Ingo Thomsen
+     */
+    public final class Cursor
+    {
+        private final Decoder decoder = new Decoder(timeOffsetBits.toReader(), valueBits.toReader());
+        private final int numberOfPairs = size;
+
+        private int index = -1;
+        private int timeOffset;
+        private double value;
+
+
+        /**
+         * Moves the cursor to the next pair.
+         *
+         * @return true if there is a next pair
+         */
+        public boolean next()
+        {
+            if (index + 1 >= numberOfPairs)
+                return false;
+
+            index++;
+            timeOffset = missingTimeOffsets.get(index) ? 0 : decoder.nextTimeOffset();
+            value = missingValues.get(index) ? Double.NaN : decoder.nextValue();
+            return true;
+        }
+
+
+        /**
+         * Returns the index of the current pair.
+         *
+         * @return the index of the current pair
+         */
+        public int getIndex()
+        {
+            return index;
+        }
+
+
+        /**
+         * Checks if the time offset of the current pair is missing.
+         *
+         * @return true if the time offset is missing or was not an integer
+         */
+        public boolean isTimeOffsetMissing()
+        {
+            return missingTimeOffsets.get(index);
+        }
+
+
+        /**
+         * Returns the time offset of the current pair.
+         *
+         * @return the time offset in seconds, or 0 if it is missing
+         */
+        public int getTimeOffset()
+        {
+            return timeOffset;
+        }
+
+
+        /**
+         * Checks if the value of the current pair is missing.
+         *
+         * @return true if the value is missing or was not a number
+         */
+        public boolean isValueMissing()
+        {
+            return missingValues.get(index);
+        }
+
+
+        /**
+         * Returns the value of the current pair.
+         *
+         * @return the value, or NaN if it is missing
+         */
+        public double getValue()
+        {
+            return value;
+        }
+    }
+
+
+    /**
+     * Decodes the compressed time offset and value columns.
+     *
+     * @author Ingo Thomsen
+     */
+    private static final class Decoder
+    {
+        private final BitReader timeOffsetReader;
+        private final BitReader valueReader;
+
+        private int numberOfTimeOffsets;
+        private int previousTimeOffset;
+        private long previousTimeDelta;
+
+        private int numberOfValues;
+        private long previousValueBits;
+
+        // -1 until the first window of meaningful bits was read, like in the encoder
+        private int leadingZeros = -1;
+        private int trailingZeros;
+
+
+        /**
+         * Constructor that requires the compressed columns.
+         *
+         * @param timeOffsetReader the compressed time offsets
+         * @param valueReader the compressed values
+         */
+        Decoder(final BitReader timeOffsetReader, final BitReader valueReader)
+        {
+            this.timeOffsetReader = timeOffsetReader;
+            this.valueReader = valueReader;
+        }
+
+
+        /**
+         * Decodes the next time offset.
+         *
+         * @return the time offset in seconds
+         */
+        int nextTimeOffset()
+        {
+            if (numberOfTimeOffsets++ == 0)
+                previousTimeOffset = (int) timeOffsetReader.readBits(Integer.SIZE);
+            else {
+                final long deltaOfDelta;
+
+                if (!timeOffsetReader.readBit())
+                    deltaOfDelta = 0;
+                else if (!timeOffsetReader.readBit())
+                    deltaOfDelta = timeOffsetReader.readBits(7) - 63;
+                else if (!timeOffsetReader.readBit())
+                    deltaOfDelta = timeOffsetReader.readBits(9) - 255;
+                else if (!timeOffsetReader.readBit())
+                    deltaOfDelta = timeOffsetReader.readBits(12) - 2047;
+                else
+                    deltaOfDelta = timeOffsetReader.readBits(Long.SIZE);
+
+                previousTimeDelta += deltaOfDelta;
+                previousTimeOffset = (int)(previousTimeOffset + previousTimeDelta);
+            }
+
+            return previousTimeOffset;
+        }
+
+
+        /**
+         * Decodes the next value.
+         *
+         * @return the value
+         */
+        double nextValue()
+        {
+            if (numberOfValues++ == 0)
+                previousValueBits = valueReader.readBits(Long.SIZE);
+
+            else if (valueReader.readBit()) {
+                if (valueReader.readBit()) {
+                    leadingZeros = (int) valueReader.readBits(5);
+                    trailingZeros = Long.SIZE - leadingZeros - ((int) valueReader.readBits(6) + 1);
+                }
+
+                final int meaningfulBits = Long.SIZE - leadingZeros - trailingZeros;
+                previousValueBits ^= valueReader.readBits(meaningfulBits) << trailingZeros;
+            }
+
+            return Double.longBitsToDouble(previousValueBits);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+import java.util.UnknownFormatConversionException;
+
+/**
+ * A template string in the syntax of {@linkplain String#format(Locale, String, Object...)}
+ * that is parsed only once. The template is split into its literal parts and
+ * its format specifiers, so formatting merely appends the parts and the
+ * arguments to a {@linkplain StringBuilder}. String ('%s') and integer ('%d')
+ * arguments are appended directly, and so are finite {@linkplain Double} and
+ * {@linkplain Float} arguments of specifiers with a precision, but no flags
+ * or width, such as '%.2f' or '%.4g'. Like a {@linkplain Formatter}, these
+ * round the shortest decimal representation of a number half up, which is
+ * done with a {@linkplain BigDecimal}. Numbers are only appended directly if
+ * the {@linkplain Locale} uses ASCII digits and a decimal point, whereas all
+ * other specifiers and arguments are formatted one by one by a
+ * {@linkplain Formatter} that writes into the same {@linkplain StringBuilder},
+ * so the result is exactly the same as with
+ * {@linkplain String#format(Locale, String, Object...)}.
+ * The arguments must be passed in the order of the specifiers; explicit and
+ * relative argument indices are not supported. Instances are immutable and
+ * can be used by multiple threads.
+ *
+ * @author Ingo Thomsen
+ */
+public final class CompiledTemplate
+{
+    private static final char SPECIFIER_PREFIX = '%';
+    private static final String STRING_SPECIFIER = "%s";
+    private static final String INTEGER_SPECIFIER = "%d";
+    private static final char DECIMAL_FLOAT_CONVERSION = 'f';
+    private static final char GENERAL_FLOAT_CONVERSION = 'g';
+    private static final int NO_PRECISION = -1;
+
+    private final Locale locale;
+    private final boolean hasAsciiDigits;
+    private final boolean hasDecimalPoint;
+
+    // the literal parts before, between and after the specifiers
+    private final String[] literals;
+    private final String[] specifiers;
+
+    // the precisions of '%.Nf' and '%.Ng' specifiers, or NO_PRECISION for other specifiers
+    private final int[] precisions;
+    private final int estimatedLength;
+
+
+    /**
+     * Constructor that parses a template string.
+     *
+     * @param template a template string with format specifiers
+     * @param locale the {@linkplain Locale} that is applied when formatting
+     *
+     * @throws IllegalFormatException if the template is malformed or uses argument indices
+     */
+    public CompiledTemplate(final String template, final Locale locale)
+    {
+        this.locale = locale;
+        final DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        this.hasAsciiDigits = symbols.getZeroDigit() == '0';
+        this.hasDecimalPoint = symbols.getDecimalSeparator() == '.';
+
+        final List<String> literalList = new ArrayList<>();
+        final List<String> specifierList = new ArrayList<>();
+        final StringBuilder literal = new StringBuilder();
+        int i = 0;
+
+        while (i < template.length()) {
+            final char c = template.charAt(i);
+
+            if (c != SPECIFIER_PREFIX) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+
+            // flags, width and precision are followed by the conversion letter
+            int end = i + 1;
+
+            while (end < template.length() && !Character.isLetter(template.charAt(end)) && template.charAt(end) != SPECIFIER_PREFIX)
+                end++;
+
+            // date and time conversions consist of two letters
+            if (end < template.length() && Character.toLowerCase(template.charAt(end)) == 't')
+                end++;
+
+            if (end >= template.length())
+                throw new UnknownFormatConversionException(template.substring(i));
+
+            final String specifier = template.substring(i, end + 1);
+
+            if (specifier.indexOf('$') >= 0 || specifier.indexOf('<') >= 0)
+                throw new UnknownFormatConversionException(specifier);
+
+            // escaped percent signs and line separators take no argument
+            if (specifier.equals("%%"))
+                literal.append(SPECIFIER_PREFIX);
+
+            else if (specifier.equals("%n"))
+                literal.append(System.lineSeparator());
+
+            else {
+                literalList.add(literal.toString());
+                literal.setLength(0);
+                specifierList.add(specifier);
+            }
+
+            i = end + 1;
+        }
+
+        literalList.add(literal.toString());
+
+        this.literals = literalList.toArray(new String[literalList.size()]);
+        this.specifiers = specifierList.toArray(new String[specifierList.size()]);
+        this.precisions = new int[specifiers.length];
+
+        for (int s = 0; s < specifiers.length; s++)
+            precisions[s] = getFloatPrecision(specifiers[s]);
+
+        this.estimatedLength = template.length() + 16 * specifiers.length;
+    }
+
+
+    /**
+     * Formats the arguments and appends the result to a {@linkplain StringBuilder}.
+     *
+     * @param sb the {@linkplain StringBuilder} to which the result is appended
+     * @param args the arguments of the specifiers, in the order of the specifiers
+     *
+     * @throws IllegalFormatException if an argument is missing or does not match its specifier
+     *
+     * @return the {@linkplain StringBuilder}
+     */
+    public StringBuilder appendTo(final StringBuilder sb, final Object... args)
+    {
+        Formatter formatter = null;
+
+        for (int i = 0; i < specifiers.length; i++) {
+            sb.append(literals[i]);
+
+            final String specifier = specifiers[i];
+
+            if (i >= args.length)
+                throw new MissingFormatArgumentException(specifier);
+
+            final Object arg = args[i];
+
+            if (STRING_SPECIFIER.equals(specifier) && !(arg instanceof Formattable))
+                sb.append(arg);
+
+            else if (INTEGER_SPECIFIER.equals(specifier) && hasAsciiDigits && (arg instanceof Integer || arg instanceof Long))
+                sb.append(((Number) arg).longValue());
+
+            else if (precisions[i] != NO_PRECISION && hasAsciiDigits && hasDecimalPoint
+                     && (arg instanceof Double || arg instanceof Float)
+                     && Double.isFinite(((Number) arg).doubleValue()))
+                appendFloat(sb, ((Number) arg).doubleValue(), specifier.charAt(specifier.length() - 1), precisions[i]);
+
+            else {
+                if (formatter == null)
+                    formatter = new Formatter(sb, locale);
+
+                formatter.format(specifier, arg);
+            }
+        }
+
+        return sb.append(literals[specifiers.length]);
+    }
+
+
+    /**
+     * Parses the precision of a floating point specifier without flags and
+     * width, such as '%.2f'.
+     *
+     * @param specifier a format specifier
+     *
+     * @return the precision, or {@value #NO_PRECISION} if the specifier is of another kind
+     */
+    private static int getFloatPrecision(final String specifier)
+    {
+        final int last = specifier.length() - 1;
+        final char conversion = specifier.charAt(last);
+
+        if (conversion != DECIMAL_FLOAT_CONVERSION && conversion != GENERAL_FLOAT_CONVERSION
+            || last < 3
+            || specifier.charAt(1) != '.')
+            return NO_PRECISION;
+
+        // larger precisions than 9 digits are left to the Formatter
+        if (last > 11)
+            return NO_PRECISION;
+
+        int precision = 0;
+
+        for (int i = 2; i < last; i++) {
+            final char digit = specifier.charAt(i);
+
+            if (digit < '0' || digit > '9')
+                return NO_PRECISION;
+
+            precision = 10 * precision + digit - '0';
+        }
+
+        return precision;
+    }
+
+
+    /**
+     * Appends a finite floating point number like a {@linkplain Formatter}
+     * with a '%.Nf' or '%.Ng' specifier: The sign is appended separately, so
+     * that negative zero and numbers that are rounded to zero keep it, and
+     * the shortest decimal representation of the magnitude is rounded half up.
+     *
+     * @param sb the {@linkplain StringBuilder} to which the number is appended
+     * @param value the finite number
+     * @param conversion the conversion of the specifier, 'f' or 'g'
+     * @param precision the precision of the specifier
+     */
+    private static void appendFloat(final StringBuilder sb, final double value, final char conversion, final int precision)
+    {
+        if (Double.compare(value, 0.0) < 0)
+            sb.append('-');
+
+        final BigDecimal magnitude = new BigDecimal(Double.toString(Math.abs(value)));
+
+        if (conversion == DECIMAL_FLOAT_CONVERSION)
+            sb.append(magnitude.setScale(precision, RoundingMode.HALF_UP).toPlainString());
+        else
+            appendGeneralFloat(sb, magnitude, Math.max(1, precision));
+    }
+
+
+    /**
+     * Appends a non-negative number like a {@linkplain Formatter} with a
+     * '%.Ng' specifier: After rounding to the number of significant digits,
+     * numbers from 10^-4 to below 10^N are appended as decimal number,
+     * and all others in scientific notation.
+     *
+     * @param sb the {@linkplain StringBuilder} to which the number is appended
+     * @param magnitude the non-negative number
+     * @param significantDigits the number of significant digits, which is at least one
+     */
+    private static void appendGeneralFloat(final StringBuilder sb, final BigDecimal magnitude, final int significantDigits)
+    {
+        if (magnitude.signum() == 0) {
+            sb.append(BigDecimal.ZERO.setScale(significantDigits - 1).toPlainString());
+            return;
+        }
+
+        final BigDecimal rounded = magnitude.round(new MathContext(significantDigits, RoundingMode.HALF_UP));
+        final int exponent = rounded.precision() - rounded.scale() - 1;
+
+        if (exponent >= -4 && exponent < significantDigits) {
+            sb.append(rounded.setScale(significantDigits - exponent - 1).toPlainString());
+            return;
+        }
+
+        sb.append(rounded.movePointLeft(exponent).setScale(significantDigits - 1).toPlainString())
+        .append('e')
+        .append(exponent < 0 ? '-' : '+');
+
+        // the exponent has at least two digits
+        if (Math.abs(exponent) < 10)
+            sb.append('0');
+
+        sb.append(Math.abs(exponent));
+    }
+
+
+    /**
+     * Formats the arguments.
+     *
+     * @param args the arguments of the specifiers, in the order of the specifiers
+     *
+     * @throws IllegalFormatException if an argument is missing or does not match its specifier
+     *
+     * @return the formatted string
+     */
+    public String format(final Object... args)
+    {
+        return appendTo(new StringBuilder(estimatedLength), args).toString();
+    }
+}
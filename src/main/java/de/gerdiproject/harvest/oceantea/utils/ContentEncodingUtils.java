@@ -0,0 +1,129 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+
+/**
+ * Non-instantiable utility class for decoding compressed HTTP responses
+ * while they are streamed.
+ *
+ * @author Ingo Thomsen
+ */
+public final class ContentEncodingUtils
+{
+    private static final int BUFFER_SIZE = 8192;
+
+
+    /**
+     * Private constructor to enforce non-instantiability
+     */
+    private ContentEncodingUtils()
+    {
+    }
+
+
+    /**
+     * Wraps a response stream in a stream that decodes its content encoding.
+     *
+     * @param responseStream the stream of the response body as it was transferred
+     * @param contentEncoding the value of the Content-Encoding header, or null
+     *
+     * @throws IOException if the content encoding is not supported or the
+     *             compressed stream could not be read
+     *
+     * @return a stream of the decoded response body
+     */
+    public static InputStream decode(final InputStream responseStream, final String contentEncoding) throws IOException
+    {
+        final String encoding = contentEncoding == null
+                                ? OceanTeaTimeSeriesDownloaderConstants.IDENTITY_ENCODING
+                                : contentEncoding.trim().toLowerCase(Locale.ENGLISH);
+
+        switch (encoding) {
+            case OceanTeaTimeSeriesDownloaderConstants.IDENTITY_ENCODING:
+            case "":
+                return responseStream;
+
+            case OceanTeaTimeSeriesDownloaderConstants.GZIP_ENCODING:
+            case OceanTeaTimeSeriesDownloaderConstants.X_GZIP_ENCODING:
+                return new GZIPInputStream(responseStream, BUFFER_SIZE);
+
+            case OceanTeaTimeSeriesDownloaderConstants.DEFLATE_ENCODING:
+                return inflate(responseStream);
+
+            default:
+                throw new IOException(String.format(OceanTeaTimeSeriesDownloaderConstants.UNSUPPORTED_CONTENT_ENCODING, contentEncoding));
+        }
+    }
+
+
+    /**
+     * Reads the rest of a decoded response body, which a parser may leave
+     * unread after the end of the JSON. This way, all transferred bytes are
+     * counted, and the checksum at the end of a gzip stream is verified.
+     *
+     * @param decodedStream the stream of the decoded response body
+     *
+     * @throws IOException if the stream could not be read
+     */
+    public static void readToEnd(final InputStream decodedStream) throws IOException
+    {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+
+        while (decodedStream.read(buffer) != -1) {
+            // the bytes are only counted by the underlying streams
+        }
+    }
+
+
+    /**
+     * Wraps a "deflate" encoded stream in a decoding stream. Although the
+     * encoding denotes zlib-wrapped data, some servers send raw deflate data,
+     * so the zlib header is detected.
+     *
+     * @param responseStream the stream of the deflate encoded response body
+     *
+     * @throws IOException if the stream could not be read
+     *
+     * @return a stream of the decoded response body
+     */
+    private static InputStream inflate(final InputStream responseStream) throws IOException
+    {
+        final InputStream bufferedStream = new BufferedInputStream(responseStream, BUFFER_SIZE);
+
+        bufferedStream.mark(2);
+        final int compressionMethodAndFlags = bufferedStream.read();
+        final int flags = bufferedStream.read();
+        bufferedStream.reset();
+
+        // a zlib header declares the deflate method and is a multiple of 31
+        final boolean isZlibWrapped = compressionMethodAndFlags != -1
+                                      && flags != -1
+                                      && (compressionMethodAndFlags & 0x0F) == 8
+                                      && ((compressionMethodAndFlags << 8) | flags) % 31 == 0;
+
+        return new InflaterInputStream(bufferedStream, new Inflater(!isZlibWrapped), BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDataCiteConstants;
+import de.gerdiproject.json.datacite.DataCiteJson;
+
+/**
+ * Creates {@linkplain DataCiteJson} documents that already contain the
+ * sections which are the same for all OceanTEA time series, such as the
+ * creators, contributors, research disciplines, formats, subjects,
+ * descriptions and web links. The documents share the immutable elements of
+ * these sections instead of copies, which must therefore not be changed.
+ *
+ * @author Ingo Thomsen
+ */
+public class DataCiteDocumentPrototype
+{
+    /**
+     * Creates a document that contains all constant sections. Subjects,
+     * descriptions and web links that are added to the document afterwards
+     * follow the constant ones.
+     *
+     * @param identifier the identifier of the document
+     *
+     * @return a {@linkplain DataCiteJson} document containing the constant sections
+     */
+    public DataCiteJson createDocument(final String identifier)
+    {
+        final DataCiteJson document = new DataCiteJson(identifier);
+
+        document.setResourceType(OceanTeaTimeSeriesDataCiteConstants.RESOURCE_TYPE);
+        document.setPublisher(OceanTeaTimeSeriesDataCiteConstants.PROVIDER);
+        document.setRepositoryIdentifier(OceanTeaTimeSeriesDataCiteConstants.REPOSITORY_ID);
+        document.addCreators(OceanTeaTimeSeriesDataCiteConstants.CREATORS);
+        document.addContributors(OceanTeaTimeSeriesDataCiteConstants.CONTRIBUTORS);
+        document.addResearchDisciplines(OceanTeaTimeSeriesDataCiteConstants.DISCIPLINES);
+        document.addFormats(OceanTeaTimeSeriesDataCiteConstants.FORMATS);
+        document.addSubjects(OceanTeaTimeSeriesDataCiteConstants.SUBJECTS);
+        document.addDescriptions(OceanTeaTimeSeriesDataCiteConstants.DESCRIPTIONS);
+        document.addWebLinks(OceanTeaTimeSeriesDataCiteConstants.WEB_LINKS);
+
+        return document;
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * An immutable batch of documents, together with their JSON representations,
+ * that is submitted to a bulk-capable loader in a single request.
+ *
+ * @param <T> the type of the documents
+ *
+ * @author Ingo Thomsen
+ */
+@Value
+public class DocumentBatch<T>
+{
+    private final List<T> documents;
+    private final List<String> serializedDocuments;
+
+    // the number of UTF-8 encoded bytes of all serialized documents
+    private final long byteSize;
+}
@@ -0,0 +1,305 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import lombok.Getter;
+
+/**
+ * Groups documents into {@linkplain DocumentBatch}es for loaders that can
+ * submit many documents in a single request, such as the bulk API of
+ * Elasticsearch. Each document is serialized once when it is added, and a
+ * batch is submitted as soon as it holds the maximum number of documents or
+ * the next document would exceed the maximum number of bytes. A batch that
+ * is not full is submitted after the flush interval has passed since its
+ * first document was added, so that slowly transformed documents are not
+ * held back. A batch that could not be submitted is kept and submitted
+ * again by the next flush, so that no added document is lost. The failures
+ * of timed submissions and of submissions after a document was added are
+ * thrown when the next document is added, which is not added then.
+ * The batcher can be used by multiple threads, but batches are submitted
+ * one after the other.
+ *
+ * @param <T> the type of the documents
+ *
+ * @author Ingo Thomsen
+ */
+public class DocumentBatcher<T> implements Closeable
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(DocumentBatcher.class);
+
+    @Getter
+    private final int maxDocuments;
+
+    @Getter
+    private final long maxBytes;
+
+    @Getter
+    private final long flushInterval;
+
+    private final Gson gson;
+    private final BatchConsumer<T> consumer;
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private List<T> documents = new ArrayList<>();
+    private List<String> serializedDocuments = new ArrayList<>();
+    private long byteSize;
+    private ScheduledFuture<?> scheduledFlush;
+    private IOException failure;
+    private boolean isClosed;
+
+
+    /**
+     * Constructor that requires the thresholds of the batches and their consumer.
+     *
+     * @param maxDocuments the maximum number of documents per batch
+     * @param maxBytes the maximum number of bytes of the serialized documents
+     *            of a batch, or 0 if the size of a batch is not limited
+     * @param flushInterval the maximum number of milliseconds that a batch
+     *            is held back, or 0 if batches are only submitted when they are full
+     * @param gson the {@linkplain Gson} instance that serializes the documents
+     * @param consumer the submission of a batch, for instance a bulk request
+     */
+    public DocumentBatcher(final int maxDocuments, final long maxBytes, final long flushInterval, final Gson gson, final BatchConsumer<T> consumer)
+    {
+        this.maxDocuments = Math.max(1, maxDocuments);
+        this.maxBytes = Math.max(0, maxBytes);
+        this.flushInterval = Math.max(0, flushInterval);
+        this.gson = gson;
+        this.consumer = consumer;
+        this.scheduler = this.flushInterval > 0
+                         ? HarvestExecutors.newDaemonScheduler(OceanTeaTimeSeriesDownloaderConstants.BATCH_FLUSH_THREAD_NAME)
+                         : null;
+    }
+
+
+    /**
+     * Adds a document to the current batch, submitting the batch first if
+     * the document does not fit or if the batch is still full, because it
+     * could not be submitted, and afterwards if the batch is full.
+     *
+     * @param document the document to be added
+     *
+     * @throws IOException if the document was not added, because a batch
+     *             could not be submitted or the batcher is closed
+     */
+    public synchronized void add(final T document) throws IOException
+    {
+        throwFailure();
+
+        final String serializedDocument = gson.toJson(document);
+        final long documentBytes = getUtf8Length(serializedDocument);
+
+        if (!documents.isEmpty()
+            && (documents.size() >= maxDocuments || maxBytes > 0 && byteSize + documentBytes > maxBytes))
+            flush();
+
+        documents.add(document);
+        serializedDocuments.add(serializedDocument);
+        byteSize += documentBytes;
+
+        if (documents.size() >= maxDocuments || maxBytes > 0 && byteSize >= maxBytes)
+            flushOrRememberFailure();
+
+        else if (scheduledFlush == null && scheduler != null)
+            scheduledFlush = scheduler.schedule(this::flushOnTime, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Submits the current batch, if it holds any documents. If it could not
+     * be submitted, the batch is kept in order to be submitted again.
+     *
+     * @throws IOException if the batch could not be submitted
+     */
+    public synchronized void flush() throws IOException
+    {
+        if (isClosed)
+            throw new IOException(OceanTeaTimeSeriesDownloaderConstants.BATCHER_CLOSED);
+
+        // a kept batch is submitted again, which supersedes its failure
+        failure = null;
+
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+
+        if (documents.isEmpty())
+            return;
+
+        final DocumentBatch<T> batch = new DocumentBatch<>(
+            Collections.unmodifiableList(documents),
+            Collections.unmodifiableList(serializedDocuments),
+            byteSize);
+
+        consumer.accept(batch);
+
+        // the submitted lists must not be changed anymore
+        documents = new ArrayList<>();
+        serializedDocuments = new ArrayList<>();
+        byteSize = 0;
+    }
+
+
+    /**
+     * Submits the current batch and stops the timed submissions.
+     *
+     * @throws IOException if the batch could not be submitted
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (isClosed)
+            return;
+
+        try {
+            flush();
+        } finally {
+            isClosed = true;
+
+            if (scheduler != null)
+                scheduler.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Discards the current batch without submitting it and stops the timed submissions.
+     */
+    public synchronized void abort()
+    {
+        documents = new ArrayList<>();
+        serializedDocuments = new ArrayList<>();
+        byteSize = 0;
+        isClosed = true;
+
+        if (scheduler != null)
+            scheduler.shutdownNow();
+    }
+
+
+    /**
+     * Submits the current batch when the flush interval has passed.
+     */
+    private synchronized void flushOnTime()
+    {
+        if (isClosed || failure != null)
+            return;
+
+        flushOrRememberFailure();
+    }
+
+
+    /**
+     * Submits the current batch, remembering the failure if it could not be
+     * submitted. The batch is then kept until it is submitted by the next flush.
+     */
+    private void flushOrRememberFailure()
+    {
+        final int numberOfDocuments = documents.size();
+
+        try {
+            flush();
+        } catch (final IOException e) {
+            LOGGER.warn(String.format(OceanTeaTimeSeriesDownloaderConstants.BATCH_SUBMIT_FAILED, numberOfDocuments, e.getMessage()));
+            failure = e;
+        }
+    }
+
+
+    /**
+     * Throws the remembered failure of a submission, or an exception if the
+     * batcher is closed.
+     *
+     * @throws IOException if a submission failed or the batcher is closed
+     */
+    private void throwFailure() throws IOException
+    {
+        if (failure != null) {
+            final IOException rememberedFailure = failure;
+            failure = null;
+            throw rememberedFailure;
+        }
+
+        if (isClosed)
+            throw new IOException(OceanTeaTimeSeriesDownloaderConstants.BATCHER_CLOSED);
+    }
+
+
+    /**
+     * Counts the bytes of the UTF-8 encoding of a string, without encoding it.
+     *
+     * @param text the string of which the bytes are counted
+     *
+     * @return the number of UTF-8 encoded bytes
+     */
+    private static long getUtf8Length(final String text)
+    {
+        final int length = text.length();
+        long bytes = length;
+
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+
+            if (c >= 0x800)
+                // surrogate pairs take four bytes, which are two per char
+                bytes += Character.isSurrogate(c) ? 1 : 2;
+
+            else if (c >= 0x80)
+                bytes++;
+        }
+
+        return bytes;
+    }
+
+
+    /**
+     * The submission of a {@linkplain DocumentBatch}.
+     *
+     * @param <T> the type of the documents
+     *
+     * @author Ingo Thomsen
+     */
+    @FunctionalInterface
+    public interface BatchConsumer<T>
+    {
+        /**
+         * Submits a batch of documents. If the batch could not be submitted,
+         * its documents are submitted again with the next batch, so the
+         * failed batch must not be kept.
+         *
+         * @param batch the batch to be submitted
+         *
+         * @throws IOException if the batch could not be submitted
+         */
+        void accept(DocumentBatch<T> batch) throws IOException;
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import lombok.Data;
+import lombok.Getter;
+
+/**
+ * The progress of a harvest, persisted periodically, so that a harvest which
+ * was interrupted, for instance by a restart of the service, can be resumed.
+ * A checkpoint consists of the identifier of the last harvested
+ * {@linkplain TimeSeries} and the version string of the extracted catalogue.
+ * Since the identifiers are derived from the positions of the time series in
+ * the catalogue, a checkpoint is only valid for the same version.
+ * The checkpoint is deleted as soon as a harvest is complete. This class is
+ * not thread-safe.
+ *
+ * @author Ingo Thomsen
+ */
+public class HarvestCheckpoint
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(HarvestCheckpoint.class);
+
+    private final Gson gson = new Gson();
+    private final File checkpointFile;
+
+    @Getter
+    private final int interval;
+
+    private String versionString;
+    private String lastHarvestedIdentifier;
+    private int unsavedTimeSeries;
+
+
+    /**
+     * Constructor that sets the checkpoint file and how often it is written.
+     *
+     * @param checkpointFile the file in which the checkpoint is stored
+     * @param interval the number of harvested time series after which the checkpoint is written
+     */
+    public HarvestCheckpoint(final File checkpointFile, final int interval)
+    {
+        this.checkpointFile = checkpointFile;
+        this.interval = Math.max(1, interval);
+    }
+
+
+    /**
+     * Starts a harvest of a catalogue version and looks up where a previous,
+     * unfinished harvest of the same version stopped. Checkpoints of other
+     * versions are discarded.
+     *
+     * @param currentVersionString the version string of the extracted catalogue
+     *
+     * @return the identifier of the last harvested {@linkplain TimeSeries}, or null if the harvest starts from the beginning
+     */
+    public String begin(final String currentVersionString)
+    {
+        final CheckpointState state = load();
+
+        this.versionString = currentVersionString;
+        this.lastHarvestedIdentifier = null;
+        this.unsavedTimeSeries = 0;
+
+        if (state == null || state.getLastHarvestedIdentifier() == null)
+            return null;
+
+        if (!state.getVersionString().equals(currentVersionString)) {
+            LOGGER.info(String.format(OceanTeaTimeSeriesDownloaderConstants.CHECKPOINT_OUTDATED, state.getLastHarvestedIdentifier()));
+            delete();
+            return null;
+        }
+
+        this.lastHarvestedIdentifier = state.getLastHarvestedIdentifier();
+        return lastHarvestedIdentifier;
+    }
+
+
+    /**
+     * Records that a {@linkplain TimeSeries} was harvested, which means that
+     * its document was loaded or that it was skipped deliberately, and writes
+     * the checkpoint if the interval is reached.
+     *
+     * @param identifier the identifier of the harvested {@linkplain TimeSeries}
+     *
+     * @return true if the checkpoint was written
+     */
+    public boolean recordHarvested(final String identifier)
+    {
+        lastHarvestedIdentifier = identifier;
+        unsavedTimeSeries++;
+
+        if (unsavedTimeSeries < interval)
+            return false;
+
+        save();
+        return true;
+    }
+
+
+    /**
+     * Writes the checkpoint to the checkpoint file, if a harvest is in progress.
+     */
+    public void save()
+    {
+        if (versionString == null || lastHarvestedIdentifier == null)
+            return;
+
+        unsavedTimeSeries = 0;
+
+        try {
+            final File folder = checkpointFile.getAbsoluteFile().getParentFile();
+            Files.createDirectories(folder.toPath());
+
+            // write to a temporary file first, so the checkpoint is never incomplete
+            final File tempFile = File.createTempFile(checkpointFile.getName(), null, folder);
+
+            try
+                (Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+                gson.toJson(new CheckpointState(versionString, lastHarvestedIdentifier), writer);
+            }
+
+            Files.move(tempFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (final IOException e) {
+            LOGGER.warn(String.format(OceanTeaTimeSeriesDownloaderConstants.CHECKPOINT_WRITE_FAILED, checkpointFile), e);
+        }
+    }
+
+
+    /**
+     * Finishes the harvest, so that the next harvest starts from the beginning.
+     */
+    public void complete()
+    {
+        versionString = null;
+        lastHarvestedIdentifier = null;
+        unsavedTimeSeries = 0;
+        delete();
+    }
+
+
+    /**
+     * Deletes the checkpoint file.
+     */
+    private void delete()
+    {
+        try {
+            Files.deleteIfExists(checkpointFile.toPath());
+        } catch (final IOException e) {
+            LOGGER.warn(String.format(OceanTeaTimeSeriesDownloaderConstants.CHECKPOINT_WRITE_FAILED, checkpointFile), e);
+        }
+    }
+
+
+    /**
+     * Loads the checkpoint of a previous harvest.
+     *
+     * @return the stored checkpoint, or null if there is none or it could not be read
+     */
+    private CheckpointState load()
+    {
+        if (checkpointFile.exists()) {
+            try
+                (Reader reader = Files.newBufferedReader(checkpointFile.toPath(), StandardCharsets.UTF_8)) {
+                final CheckpointState state = gson.fromJson(reader, CheckpointState.class);
+
+                if (state != null && state.getVersionString() != null)
+                    return state;
+
+            } catch (final IOException | JsonParseException e) {
+                LOGGER.warn(String.format(OceanTeaTimeSeriesDownloaderConstants.CHECKPOINT_READ_FAILED, checkpointFile), e);
+            }
+        }
+
+        return null;
+    }
+
+
+    /**
+     * The persisted part of a {@linkplain HarvestCheckpoint}.
+     *
+     * @author Ingo Thomsen
+     */
+    @Data
+    private static final class CheckpointState
+    {
+        private final String versionString;
+        private final String lastHarvestedIdentifier;
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+
+/**
+ * Creates the {@linkplain ExecutorService}s that run the downloads and
+ * transformations of a harvest, either in a bounded pool of platform threads
+ * or with one thread per task. If the JVM supports virtual threads (Java 21
+ * and later), a thread per task is a virtual thread, which is looked up via
+ * reflection, so that the harvester still runs on older JVMs. On these, the
+ * tasks run in daemon threads that are created on demand and terminated when
+ * they are idle.
+ * All threads are daemon threads, so pending tasks never prevent the JVM from
+ * shutting down.
+ *
+ * @author Ingo Thomsen
+ */
+public final class HarvestExecutors
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(HarvestExecutors.class);
+
+
+    /**
+     * Private constructor to enforce non-instantiability
+     */
+    private HarvestExecutors()
+    {
+    }
+
+
+    /**
+     * Creates a bounded pool of daemon threads. Idle threads are terminated,
+     * so an unused pool does not keep any threads alive.
+     *
+     * @param numberOfThreads the maximum number of concurrent tasks
+     * @param threadNameFormat the name of the threads, with a placeholder for their number
+     *
+     * @return an {@linkplain ExecutorService} with a fixed number of threads
+     */
+    public static ExecutorService newDaemonThreadPool(final int numberOfThreads, final String threadNameFormat)
+    {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            numberOfThreads,
+            numberOfThreads,
+            OceanTeaTimeSeriesDownloaderConstants.DOWNLOAD_THREAD_KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            createDaemonThreadFactory(threadNameFormat));
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+
+    /**
+     * Creates an executor that starts a new thread for each task, which is a
+     * virtual thread if the JVM supports it. The number of concurrent tasks
+     * must be limited by the caller.
+     *
+     * @param threadNameFormat the name of the threads, if they are no virtual threads
+     *
+     * @return an {@linkplain ExecutorService} with one thread per task
+     */
+    public static ExecutorService newThreadPerTaskExecutor(final String threadNameFormat)
+    {
+        final ExecutorService virtualThreadExecutor = newVirtualThreadPerTaskExecutor();
+
+        if (virtualThreadExecutor != null)
+            return virtualThreadExecutor;
+
+        LOGGER.info(OceanTeaTimeSeriesDownloaderConstants.VIRTUAL_THREADS_UNSUPPORTED);
+
+        // idle threads are reused for a while, so they are only created on demand
+        return new ThreadPoolExecutor(
+                   0,
+                   Integer.MAX_VALUE,
+                   OceanTeaTimeSeriesDownloaderConstants.DOWNLOAD_THREAD_KEEP_ALIVE_SECONDS,
+                   TimeUnit.SECONDS,
+                   new SynchronousQueue<>(),
+                   createDaemonThreadFactory(threadNameFormat));
+    }
+
+
+    /**
+     * Creates an executor with a single daemon thread for delayed tasks, which
+     * forgets cancelled tasks immediately.
+     *
+     * @param threadName the name of the thread
+     *
+     * @return a {@linkplain ScheduledThreadPoolExecutor} with a single thread
+     */
+    public static ScheduledThreadPoolExecutor newDaemonScheduler(final String threadName)
+    {
+        final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, createDaemonThreadFactory(threadName));
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task.
+     *
+     * @return an {@linkplain ExecutorService}, or null if the JVM does not support virtual threads
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor()
+    {
+        final Method factory = getVirtualThreadExecutorFactory();
+
+        if (factory == null)
+            return null;
+
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (final ReflectiveOperationException | RuntimeException e) { // NOPMD any failure means that there are no virtual threads
+            return null;
+        }
+    }
+
+
+    /**
+     * Looks up the method that creates virtual thread executors.
+     *
+     * @return the factory method, or null if the JVM does not support virtual threads
+     */
+    private static Method getVirtualThreadExecutorFactory()
+    {
+        try {
+            return Executors.class.getMethod(OceanTeaTimeSeriesDownloaderConstants.VIRTUAL_THREAD_EXECUTOR_FACTORY);
+        } catch (final NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Creates a factory of numbered daemon threads.
+     *
+     * @param threadNameFormat the name of the threads, with a placeholder for their number
+     *
+     * @return a {@linkplain ThreadFactory} for daemon threads
+     */
+    private static ThreadFactory createDaemonThreadFactory(final String threadNameFormat)
+    {
+        final AtomicInteger threadCount = new AtomicInteger();
+
+        return (final Runnable runnable) -> {
+            final Thread thread = new Thread(runnable, String.format(threadNameFormat, threadCount.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Non-instantiable utility class for creating hexadecimal hash strings.
+ *
+ * @author Ingo Thomsen
+ */
+public final class HashUtils
+{
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+
+    /**
+     * Private constructor to enforce non-instantiability
+     */
+    private HashUtils()
+    {
+    }
+
+
+    /**
+     * Hashes a text and returns the hash as hexadecimal string.
+     *
+     * @param algorithm the name of a {@linkplain MessageDigest} algorithm
+     *            that every Java platform supports, such as SHA-1 or SHA-256
+     * @param text the text to be hashed
+     *
+     * @return the hash of the UTF-8 encoded text as hexadecimal string
+     */
+    public static String toHexHash(final String algorithm, final String text)
+    {
+        return toHexString(getMessageDigest(algorithm).digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+
+    /**
+     * Hashes the JSON representations of objects without assembling them as
+     * strings and returns the hash as hexadecimal string. The hash is the same
+     * as the one of the concatenated JSON strings.
+     *
+     * @param algorithm the name of a {@linkplain MessageDigest} algorithm
+     *            that every Java platform supports, such as SHA-1 or SHA-256
+     * @param gson the {@linkplain Gson} instance that serializes the objects
+     * @param objects the objects to be hashed
+     *
+     * @return the hash of the UTF-8 encoded JSON representations as hexadecimal string
+     */
+    public static String toHexJsonHash(final String algorithm, final Gson gson, final Object... objects)
+    {
+        final MessageDigest digest = getMessageDigest(algorithm);
+
+        try
+            (Writer writer = new OutputStreamWriter(new DigestOutputStream(new NullOutputStream(), digest), StandardCharsets.UTF_8)) {
+            for (final Object object : objects)
+                gson.toJson(object, writer);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return toHexString(digest.digest());
+    }
+
+
+    /**
+     * Hashes JSON that is written piece by piece, for example while a large
+     * JSON array is streamed. Objects that are added with {@linkplain #add(Object)}
+     * and the tokens that are written by the {@linkplain #getJsonWriter()} are
+     * concatenated, so the hash is the same as the one of
+     * {@linkplain HashUtils#toHexJsonHash(String, Gson, Object...)} for the same JSON.
+     *
+     * @author Ingo Thomsen
+     */
+    public static final class JsonDigest
+    {
+        private final MessageDigest digest;
+        private final Gson gson;
+        private final JsonWriter jsonWriter;
+
+
+        /**
+         * Constructor that requires the hash algorithm and the serialization.
+         *
+         * @param algorithm the name of a {@linkplain MessageDigest} algorithm
+         *            that every Java platform supports, such as SHA-1 or SHA-256
+         * @param gson the {@linkplain Gson} instance that serializes the objects
+         */
+        public JsonDigest(final String algorithm, final Gson gson)
+        {
+            this.digest = getMessageDigest(algorithm);
+            this.gson = gson;
+
+            try {
+                this.jsonWriter = gson.newJsonWriter(new OutputStreamWriter(new DigestOutputStream(new NullOutputStream(), digest), StandardCharsets.UTF_8));
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            // multiple top-level values are concatenated
+            jsonWriter.setLenient(true);
+        }
+
+
+        /**
+         * Returns the writer of the JSON tokens that are hashed.
+         *
+         * @return a {@linkplain JsonWriter} that feeds the digest
+         */
+        public JsonWriter getJsonWriter()
+        {
+            return jsonWriter;
+        }
+
+
+        /**
+         * Hashes the JSON representation of an object.
+         *
+         * @param object the object to be hashed
+         */
+        public void add(final Object object)
+        {
+            gson.toJson(object, object.getClass(), jsonWriter);
+        }
+
+
+        /**
+         * Completes the hash and returns it as hexadecimal string.
+         *
+         * @return the hash of the UTF-8 encoded JSON as hexadecimal string
+         */
+        public String toHexString()
+        {
+            try {
+                jsonWriter.flush();
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            return HashUtils.toHexString(digest.digest());
+        }
+    }
+
+
+    /**
+     * Creates a {@linkplain MessageDigest} for an algorithm that is expected
+     * to be supported.
+     *
+     * @param algorithm the name of a {@linkplain MessageDigest} algorithm
+     *
+     * @return a new {@linkplain MessageDigest}
+     */
+    private static MessageDigest getMessageDigest(final String algorithm)
+    {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+
+    /**
+     * Converts a hash to a hexadecimal string.
+     *
+     * @param hash the bytes of a hash
+     *
+     * @return the hash as hexadecimal string
+     */
+    private static String toHexString(final byte[] hash)
+    {
+        final char[] hexChars = new char[hash.length * 2];
+
+        for (int i = 0; i < hash.length; i++) {
+            hexChars[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+            hexChars[2 * i + 1] = HEX_DIGITS[hash[i] & 0xF];
+        }
+
+        return new String(hexChars);
+    }
+
+
+    /**
+     * An {@linkplain OutputStream} that discards everything, for feeding a
+     * {@linkplain DigestOutputStream}.
+     *
+     * @author Ingo Thomsen
+     */
+    private static final class NullOutputStream extends OutputStream
+    {
+        @Override
+        public void write(final int b)
+        {
+            // discard
+        }
+
+
+        @Override
+        public void write(final byte[] b, final int off, final int len)
+        {
+            // discard
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.io.IOException;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import lombok.Getter;
+
+/**
+ * Signals that a server answered a request with an error status, so that
+ * the {@linkplain RetryPolicy} can tell transient from permanent errors.
+ *
+ * @author Ingo Thomsen
+ */
+public class HttpStatusException extends IOException
+{
+    private static final long serialVersionUID = 5128934760561873212L;
+
+    @Getter
+    private final int statusCode;
+
+
+    /**
+     * Constructor that requires the status code and the requested URL.
+     *
+     * @param statusCode the HTTP status code of the response
+     * @param url the requested URL
+     */
+    public HttpStatusException(final int statusCode, final String url)
+    {
+        super(String.format(OceanTeaTimeSeriesDownloaderConstants.HTTP_STATUS_ERROR, statusCode, url));
+        this.statusCode = statusCode;
+    }
+}
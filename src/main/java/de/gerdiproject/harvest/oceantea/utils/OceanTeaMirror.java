@@ -0,0 +1,273 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import lombok.Getter;
+
+/**
+ * A local copy of the OceanTEA responses, which can replace the HTTP requests
+ * in order to harvest reproducibly and without network access. The mirror is
+ * either a directory or a ZIP archive with the following content:
+ * <ul>
+ * <li>timeseries.json - the response of the "all time series" request</li>
+ * <li>datatypes.json - the response of the "all data types" request</li>
+ * <li>datasets/ - one JSON file per dataset, with the path of the download URL
+ *     relative to the time series URL, e.g. datasets/ctd/POS434-144/pH/50.json,
+ *     or one {@linkplain ColumnarDataset} file with the extension ".columns"</li>
+ * </ul>
+ * Snapshots that are written by the {@linkplain OceanTeaSnapshotWriter} are
+ * mirror archives.
+ * Files of a mirror directory are memory-mapped rather than read via buffered
+ * streams.
+ *
+ * @author Ingo Thomsen
+ */
+public class OceanTeaMirror implements Closeable
+{
+    @Getter
+    private final String location;
+
+    private final Path root;
+    private final FileSystem archiveFileSystem;
+
+
+    /**
+     * Constructor that opens a mirror directory or archive.
+     *
+     * @param location the file path of the mirror directory or ZIP archive
+     *
+     * @throws IOException if the mirror does not exist or the archive could not be opened
+     */
+    public OceanTeaMirror(final String location) throws IOException
+    {
+        this.location = location;
+
+        final Path path = Paths.get(location);
+
+        if (Files.isDirectory(path)) {
+            this.archiveFileSystem = null;
+            this.root = path;
+
+        } else if (Files.isRegularFile(path)) {
+            final URI archiveUri = URI.create(OceanTeaTimeSeriesDownloaderConstants.MIRROR_ARCHIVE_URI_SCHEME + path.toUri());
+            this.archiveFileSystem = FileSystems.newFileSystem(archiveUri, Collections.<String, Object>emptyMap());
+            this.root = archiveFileSystem.getPath("/");
+
+        } else
+            throw new IOException(String.format(OceanTeaTimeSeriesDownloaderConstants.MIRROR_NOT_FOUND, location));
+    }
+
+
+    /**
+     * Opens a JSON file of the mirror.
+     *
+     * @param relativePath the path of the file, relative to the root of the mirror
+     * @param charset the charset of the mirrored JSON files
+     *
+     * @throws IOException if the file could not be opened
+     *
+     * @return a {@linkplain Reader} of the JSON file
+     */
+    public Reader open(final String relativePath, final Charset charset) throws IOException
+    {
+        return new InputStreamReader(openFile(relativePath), charset);
+    }
+
+
+    /**
+     * Reads and summarizes the mirrored dataset of a {@linkplain TimeSeries}.
+     * If the dataset was stored as {@linkplain ColumnarDataset}, it is read
+     * instead of the JSON representation.
+     *
+     * @param timeSeries the {@linkplain TimeSeries} of which the dataset is read
+     * @param charset the charset of the mirrored JSON files
+     *
+     * @throws IOException if the dataset could not be read
+     *
+     * @return a {@linkplain TimeSeriesDataset} summarizing the mirrored dataset
+     */
+    public TimeSeriesDataset readDataset(final TimeSeries timeSeries, final Charset charset) throws IOException
+    {
+        final String columnarPath = getColumnarDatasetPath(timeSeries);
+
+        if (Files.exists(root.resolve(columnarPath))) {
+            try
+                (InputStream inputStream = openFile(columnarPath)) {
+                return ColumnarDataset.read(inputStream).toTimeSeriesDataset(timeSeries.getReferenceInstant());
+            }
+        }
+
+        try
+            (Reader reader = open(getDatasetPath(timeSeries), charset)) {
+            return TimeSeriesDatasetReader.read(reader, timeSeries.getReferenceInstant());
+        }
+    }
+
+
+    /**
+     * Assembles the path of a mirrored JSON dataset, relative to the root of the mirror.
+     *
+     * @param timeSeries the {@linkplain TimeSeries} of the dataset
+     *
+     * @return the relative path of the dataset file
+     */
+    public static String getDatasetPath(final TimeSeries timeSeries)
+    {
+        return getDatasetPathWithoutExtension(timeSeries) + OceanTeaTimeSeriesDownloaderConstants.MIRROR_FILE_EXTENSION;
+    }
+
+
+    /**
+     * Assembles the path of a mirrored {@linkplain ColumnarDataset}, relative
+     * to the root of the mirror.
+     *
+     * @param timeSeries the {@linkplain TimeSeries} of the dataset
+     *
+     * @return the relative path of the dataset file
+     */
+    public static String getColumnarDatasetPath(final TimeSeries timeSeries)
+    {
+        return getDatasetPathWithoutExtension(timeSeries) + OceanTeaTimeSeriesDownloaderConstants.SNAPSHOT_DATASET_FILE_EXTENSION;
+    }
+
+
+    /**
+     * Assembles the path of a mirrored dataset without file extension, which
+     * is the download URL relative to the time series URL.
+     *
+     * @param timeSeries the {@linkplain TimeSeries} of the dataset
+     *
+     * @return the relative path of the dataset file without extension
+     */
+    private static String getDatasetPathWithoutExtension(final TimeSeries timeSeries)
+    {
+        return OceanTeaTimeSeriesDownloaderConstants.MIRROR_DATASETS_FOLDER
+               + TimeSeriesParser.getDownloadUrl(timeSeries).substring(OceanTeaTimeSeriesDownloaderConstants.TIMESERIES_URL.length());
+    }
+
+
+    @Override
+    public void close() throws IOException
+    {
+        if (archiveFileSystem != null)
+            archiveFileSystem.close();
+    }
+
+
+    /**
+     * Opens a file of the mirror. Files of a directory are memory-mapped,
+     * whereas archived files are decompressed while they are read.
+     *
+     * @param relativePath the path of the file, relative to the root of the mirror
+     *
+     * @throws IOException if the file could not be opened
+     *
+     * @return an {@linkplain InputStream} of the file
+     */
+    private InputStream openFile(final String relativePath) throws IOException
+    {
+        final Path file = root.resolve(relativePath);
+
+        if (archiveFileSystem != null)
+            return Files.newInputStream(file);
+
+        try
+            (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // a mapping stays valid after its channel was closed
+            final MappedByteBuffer mappedFile = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ByteBufferInputStream(mappedFile);
+        }
+    }
+
+
+    /**
+     * An {@linkplain InputStream} that reads a {@linkplain ByteBuffer}.
+     *
+     * @author Ingo Thomsen
+     */
+    private static final class ByteBufferInputStream extends InputStream
+    {
+        private final ByteBuffer buffer;
+
+
+        /**
+         * Constructor that requires the buffer to be read.
+         *
+         * @param buffer the buffer to be read from its position to its limit
+         */
+        ByteBufferInputStream(final ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+
+        @Override
+        public int read()
+        {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+
+        @Override
+        public int read(final byte[] b, final int off, final int len)
+        {
+            if (len == 0)
+                return 0;
+
+            if (!buffer.hasRemaining())
+                return -1;
+
+            final int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+
+        @Override
+        public long skip(final long n)
+        {
+            final int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+
+        @Override
+        public int available()
+        {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+
+/**
+ * Writes a snapshot of OceanTEA to a ZIP archive that can be harvested as
+ * {@linkplain OceanTeaMirror}. The archive contains the same JSON responses as
+ * a mirror, but the datasets are stored as {@linkplain ColumnarDataset}s,
+ * except for multivariate datasets, which are stored as JSON.
+ * Every entry is compressed on its own and the central directory of the
+ * archive serves as index, so any dataset can be read without decompressing
+ * the rest of the archive. The archive is written to a temporary file that
+ * only replaces the target file once the snapshot is complete.
+ * Datasets can be added by multiple threads.
+ *
+ * @author Ingo Thomsen
+ */
+public class OceanTeaSnapshotWriter implements Closeable
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(OceanTeaSnapshotWriter.class);
+
+    private final Path target;
+    private final Path tempFile;
+    private final ZipOutputStream zipStream;
+    private final Set<String> entryNames = new HashSet<>();
+
+    private int numberOfDatasets;
+    private boolean isClosed;
+
+
+    /**
+     * Constructor that creates the temporary archive.
+     *
+     * @param location the file path of the snapshot archive
+     *
+     * @throws IOException if the temporary archive could not be created
+     */
+    public OceanTeaSnapshotWriter(final String location) throws IOException
+    {
+        this.target = Paths.get(location).toAbsolutePath();
+        this.tempFile = Paths.get(target + OceanTeaTimeSeriesDownloaderConstants.SNAPSHOT_TEMP_FILE_SUFFIX);
+
+        Files.createDirectories(target.getParent());
+
+        this.zipStream = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)));
+        zipStream.setLevel(Deflater.BEST_COMPRESSION);
+    }
+
+
+    /**
+     * Adds a JSON response to the snapshot.
+     *
+     * @param entryName the path of the response within the snapshot
+     * @param response the response object
+     * @param gson the {@linkplain Gson} instance that serializes the response
+     * @param charset the charset of the JSON file
+     *
+     * @throws IOException if the response could not be written
+     */
+    public synchronized void writeJson(final String entryName, final Object response, final Gson gson, final Charset charset) throws IOException
+    {
+        if (!startEntry(entryName))
+            return;
+
+        // the writer must not be closed, because it would close the archive
+        final Writer writer = new OutputStreamWriter(zipStream, charset);
+        gson.toJson(response, writer);
+        writer.flush();
+
+        zipStream.closeEntry();
+    }
+
+
+    /**
+     * Adds a JSON response that was spooled to a file to the snapshot.
+     *
+     * @param entryName the path of the response within the snapshot
+     * @param jsonFile a file containing the JSON response
+     *
+     * @throws IOException if the response could not be written
+     */
+    public synchronized void writeJsonFile(final String entryName, final Path jsonFile) throws IOException
+    {
+        if (!startEntry(entryName))
+            return;
+
+        Files.copy(jsonFile, zipStream);
+        zipStream.closeEntry();
+    }
+
+
+    /**
+     * Adds the dataset of a {@linkplain TimeSeries} to the snapshot.
+     *
+     * @param timeSeries the {@linkplain TimeSeries} of the dataset
+     * @param dataset all pairs of time offsets and values of the dataset
+     *
+     * @throws IOException if the dataset could not be written
+     */
+    public synchronized void writeDataset(final TimeSeries timeSeries, final ColumnarDataset dataset) throws IOException
+    {
+        if (!startEntry(OceanTeaMirror.getColumnarDatasetPath(timeSeries)))
+            return;
+
+        dataset.write(zipStream);
+        zipStream.closeEntry();
+        numberOfDatasets++;
+    }
+
+
+    /**
+     * Adds the JSON representation of the dataset of a {@linkplain TimeSeries}
+     * to the snapshot, which is needed for datasets that cannot be stored as
+     * {@linkplain ColumnarDataset}s, such as multivariate datasets.
+     *
+     * @param timeSeries the {@linkplain TimeSeries} of the dataset
+     * @param jsonFile a file containing the JSON representation of the dataset
+     *
+     * @throws IOException if the dataset could not be written
+     */
+    public synchronized void writeDatasetFile(final TimeSeries timeSeries, final Path jsonFile) throws IOException
+    {
+        if (!startEntry(OceanTeaMirror.getDatasetPath(timeSeries)))
+            return;
+
+        Files.copy(jsonFile, zipStream);
+        zipStream.closeEntry();
+        numberOfDatasets++;
+    }
+
+
+    /**
+     * Checks if the snapshot was completed or aborted.
+     *
+     * @return true if no more entries can be added
+     */
+    public synchronized boolean isClosed()
+    {
+        return isClosed;
+    }
+
+
+    /**
+     * Completes the snapshot and replaces the target file with it.
+     *
+     * @throws IOException if the snapshot could not be completed
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (isClosed)
+            return;
+
+        isClosed = true;
+        zipStream.close();
+        Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        LOGGER.info(String.format(OceanTeaTimeSeriesDownloaderConstants.SNAPSHOT_CREATED, target, numberOfDatasets));
+    }
+
+
+    /**
+     * Discards the incomplete snapshot, keeping the target file unchanged.
+     */
+    public synchronized void abort()
+    {
+        if (isClosed)
+            return;
+
+        isClosed = true;
+
+        try {
+            zipStream.close();
+        } catch (final IOException e) { // NOPMD the archive is deleted anyway
+        }
+
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (final IOException e) {
+            LOGGER.warn(String.format(OceanTeaTimeSeriesDownloaderConstants.SNAPSHOT_DELETE_FAILED, tempFile), e);
+        }
+    }
+
+
+    /**
+     * Starts a new entry of the archive, unless an entry with the same name
+     * was already written.
+     *
+     * @param entryName the path of the entry within the archive
+     *
+     * @throws IOException if the snapshot is closed or the entry could not be started
+     *
+     * @return true if the entry was started
+     */
+    private boolean startEntry(final String entryName) throws IOException
+    {
+        if (isClosed)
+            throw new IOException(String.format(OceanTeaTimeSeriesDownloaderConstants.SNAPSHOT_WRITE_FAILED, target));
+
+        if (!entryNames.add(entryName))
+            return false;
+
+        zipStream.putNextEntry(new ZipEntry(entryName));
+        return true;
+    }
+}
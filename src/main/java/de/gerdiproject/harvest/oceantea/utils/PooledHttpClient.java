@@ -0,0 +1,436 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import de.gerdiproject.harvest.oceantea.metrics.ConcurrencySummary;
+import lombok.Getter;
+
+/**
+ * An HTTP client that can be shared by multiple threads and limits the
+ * number of concurrent connections per host. The limit of each host is
+ * adapted to the latencies of its responses by an {@linkplain AdaptiveConcurrencyLimiter},
+ * up to a configured maximum, so that concurrent downloads do not overload
+ * the server. Connections are kept alive
+ * and reused by the keep-alive cache of the Java platform, as long as each
+ * {@linkplain PooledResponse} is closed. The cache keeps at most
+ * "http.maxConnections" idle connections per host, which is a system
+ * property of the deployment that should be at least as large as the
+ * maximum number of connections per host.
+ * If a request deadline is set, each request including the transfer of its
+ * response body is aborted when the deadline has passed, so that a stalled
+ * server cannot block a harvest. The connect and read timeouts only limit
+ * the waiting for a single packet, whereas a slow server may trickle its
+ * response much longer.
+ *
+ * @author Ingo Thomsen
+ */
+public class PooledHttpClient
+{
+    @Getter
+    private final int connectTimeout;
+
+    @Getter
+    private final int readTimeout;
+
+    @Getter
+    private final int maxConnectionsPerHost;
+
+    @Getter
+    private final int requestDeadline;
+
+    private final ConcurrentMap<String, AdaptiveConcurrencyLimiter> hostLimiters = new ConcurrentHashMap<>();
+
+
+    /**
+     * Constructor that sets the timeouts and the connection limit.
+     *
+     * @param connectTimeout the timeout for establishing a connection in milliseconds, or 0 for no timeout
+     * @param readTimeout the timeout for reading from a connection in milliseconds, or 0 for no timeout
+     * @param maxConnectionsPerHost the maximum number of concurrent connections to the same host
+     * @param requestDeadline the maximum duration of a request in milliseconds, or 0 for no deadline
+     */
+    public PooledHttpClient(final int connectTimeout, final int readTimeout, final int maxConnectionsPerHost, final int requestDeadline)
+    {
+        this.connectTimeout = Math.max(0, connectTimeout);
+        this.readTimeout = Math.max(0, readTimeout);
+        this.maxConnectionsPerHost = Math.max(1, maxConnectionsPerHost);
+        this.requestDeadline = Math.max(0, requestDeadline);
+    }
+
+
+    /**
+     * Sends a GET request and waits for the response headers. If the current
+     * connection limit of the host is reached, this method blocks until
+     * another response of the host is closed. The waiting counts towards the
+     * request deadline.
+     *
+     * @param url the requested URL
+     * @param requestHeaders the request headers
+     *
+     * @throws SocketTimeoutException if the request deadline passed
+     * @throws IOException if the request could not be sent or the waiting was interrupted
+     *
+     * @return a {@linkplain PooledResponse} that must be closed
+     */
+    public PooledResponse get(final String url, final Map<String, String> requestHeaders) throws IOException
+    {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(requestDeadline);
+        final URL target = new URL(url);
+        final AdaptiveConcurrencyLimiter limiter = hostLimiters.computeIfAbsent(
+                                                       target.getProtocol() + "://" + target.getHost() + ':' + getPort(target),
+                                                       (final String host) -> new AdaptiveConcurrencyLimiter(maxConnectionsPerHost));
+
+        try {
+            if (requestDeadline == 0)
+                limiter.acquire();
+
+            else if (!limiter.tryAcquire(requestDeadline, TimeUnit.MILLISECONDS))
+                throw createDeadlineException(url);
+
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+
+        final long requestStart = System.nanoTime();
+        final AtomicBoolean isExpired = new AtomicBoolean();
+        ScheduledFuture<?> watchdog = null;
+
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) target.openConnection();
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
+            connection.setUseCaches(false);
+            requestHeaders.forEach(connection::setRequestProperty);
+
+            if (requestDeadline != 0) {
+                final long remainingNanos = deadline - System.nanoTime();
+
+                if (remainingNanos <= 0)
+                    throw createDeadlineException(url);
+
+                // the timeouts must not exceed the deadline, because a pending connect cannot be aborted
+                final int remainingMillis = (int) Math.max(1L, TimeUnit.NANOSECONDS.toMillis(remainingNanos));
+                connection.setConnectTimeout(limitTimeout(connectTimeout, remainingMillis));
+                connection.setReadTimeout(limitTimeout(readTimeout, remainingMillis));
+
+                watchdog = DeadlineWatchdog.SCHEDULER.schedule(() -> {
+                    isExpired.set(true);
+                    connection.disconnect();
+                }, remainingNanos, TimeUnit.NANOSECONDS);
+            }
+
+            try {
+                connection.getResponseCode();
+            } catch (final IOException e) {
+                if (isExpired.get())
+                    throw createDeadlineException(url);
+
+                throw e;
+            }
+
+            return new PooledResponse(connection, limiter, System.nanoTime() - requestStart, url, requestDeadline, watchdog, isExpired);
+
+        } catch (final IOException e) {
+            if (watchdog != null)
+                watchdog.cancel(false);
+
+            limiter.release(-1, RetryPolicy.isTransient(e));
+            throw e;
+
+        } catch (final RuntimeException e) {
+            if (watchdog != null)
+                watchdog.cancel(false);
+
+            limiter.release(-1, false);
+            throw e;
+        }
+    }
+
+
+    /**
+     * Creates snapshots of the adaptive connection limits of all hosts that
+     * were requested.
+     *
+     * @return a map of hosts to {@linkplain ConcurrencySummary}s, sorted by the hosts
+     */
+    public Map<String, ConcurrencySummary> getConcurrencySummaries()
+    {
+        final Map<String, ConcurrencySummary> summaries = new TreeMap<>();
+        hostLimiters.forEach((final String host, final AdaptiveConcurrencyLimiter limiter) ->
+                             summaries.put(host, limiter.getSummary()));
+        return summaries;
+    }
+
+
+    /**
+     * Creates the exception that is thrown when a request deadline passed.
+     *
+     * @param url the requested URL
+     *
+     * @return an exception describing the passed deadline
+     */
+    private SocketTimeoutException createDeadlineException(final String url)
+    {
+        return new SocketTimeoutException(String.format(OceanTeaTimeSeriesDownloaderConstants.REQUEST_DEADLINE_EXCEEDED, url, requestDeadline));
+    }
+
+
+    /**
+     * Limits a timeout to the remaining time until a deadline.
+     *
+     * @param timeout a timeout in milliseconds, or 0 for no timeout
+     * @param remainingMillis the remaining milliseconds until the deadline
+     *
+     * @return the limited timeout in milliseconds
+     */
+    private static int limitTimeout(final int timeout, final int remainingMillis)
+    {
+        return timeout == 0 ? remainingMillis : Math.min(timeout, remainingMillis);
+    }
+
+
+    /**
+     * Returns the port of a URL, or the default port of its protocol.
+     *
+     * @param url a URL
+     *
+     * @return the port of the URL
+     */
+    private static int getPort(final URL url)
+    {
+        return url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+    }
+
+
+    /**
+     * The response of a {@linkplain PooledHttpClient} request. Closing it
+     * returns the connection to the keep-alive cache, reports the outcome of
+     * the request to the {@linkplain AdaptiveConcurrencyLimiter} and allows
+     * other requests to the same host.
+     *
+     * @author Ingo Thomsen
+     */
+    public static final class PooledResponse implements Closeable
+    {
+        private final HttpURLConnection connection;
+        private final AdaptiveConcurrencyLimiter limiter;
+        private final long latencyNanos;
+        private final String url;
+        private final int requestDeadline;
+        private final ScheduledFuture<?> watchdog;
+        private final AtomicBoolean isExpired;
+
+        private InputStream body;
+        private boolean isClosed;
+
+
+        /**
+         * Constructor that requires a connection of which the response headers
+         * were received.
+         *
+         * @param connection the connection of the response
+         * @param limiter the connection limiter of the host
+         * @param latencyNanos the time until the response headers arrived in nanoseconds
+         * @param url the requested URL
+         * @param requestDeadline the maximum duration of the request in milliseconds
+         * @param watchdog the task that aborts the request at its deadline, or null
+         * @param isExpired a flag that is set when the request deadline passed
+         */
+        PooledResponse(final HttpURLConnection connection, final AdaptiveConcurrencyLimiter limiter, final long latencyNanos,
+                       final String url, final int requestDeadline, final ScheduledFuture<?> watchdog, final AtomicBoolean isExpired)
+        {
+            this.connection = connection;
+            this.limiter = limiter;
+            this.latencyNanos = latencyNanos;
+            this.url = url;
+            this.requestDeadline = requestDeadline;
+            this.watchdog = watchdog;
+            this.isExpired = isExpired;
+        }
+
+
+        /**
+         * Returns the HTTP status code.
+         *
+         * @throws IOException if the status could not be read
+         *
+         * @return the HTTP status code
+         */
+        public int getStatusCode() throws IOException
+        {
+            return connection.getResponseCode();
+        }
+
+
+        /**
+         * Returns the value of a response header.
+         *
+         * @param name the name of the header
+         *
+         * @return the value of the header, or null if it was not sent
+         */
+        public String getHeader(final String name)
+        {
+            return connection.getHeaderField(name);
+        }
+
+
+        /**
+         * Returns the response body as it was transferred. If the request
+         * deadline passes while the body is read, a {@linkplain SocketTimeoutException}
+         * is thrown.
+         *
+         * @throws IOException if the response is an error or could not be read
+         *
+         * @return the response body
+         */
+        public InputStream getBody() throws IOException
+        {
+            if (body == null)
+                body = watchdog == null
+                       ? connection.getInputStream()
+                       : new DeadlineInputStream(connection.getInputStream());
+
+            return body;
+        }
+
+
+        @Override
+        public void close() throws IOException
+        {
+            if (isClosed)
+                return;
+
+            isClosed = true;
+            boolean isOverloaded = true;
+
+            try {
+                final int statusCode = connection.getResponseCode();
+                isOverloaded = isExpired.get() || RetryPolicy.isTransient(statusCode);
+
+                // the body must be closed, even if it was not read, for the connection to be reused
+                if (body == null)
+                    body = statusCode < HttpURLConnection.HTTP_BAD_REQUEST
+                           ? connection.getInputStream()
+                           : connection.getErrorStream();
+
+                if (body != null)
+                    body.close();
+            } finally {
+                if (watchdog != null)
+                    watchdog.cancel(false);
+
+                limiter.release(latencyNanos, isOverloaded);
+            }
+        }
+
+
+        /**
+         * A response body that reports aborted reads as passed deadline.
+         *
+         * @author Ingo Thomsen
+         */
+        private final class DeadlineInputStream extends FilterInputStream
+        {
+            /**
+             * Constructor that wraps the response body.
+             *
+             * @param in the response body
+             */
+            DeadlineInputStream(final InputStream in)
+            {
+                super(in);
+            }
+
+
+            @Override
+            public int read() throws IOException
+            {
+                try {
+                    return super.read();
+                } catch (final IOException e) {
+                    throw translate(e);
+                }
+            }
+
+
+            @Override
+            public int read(final byte[] buffer, final int offset, final int length) throws IOException
+            {
+                try {
+                    return super.read(buffer, offset, length);
+                } catch (final IOException e) {
+                    throw translate(e);
+                }
+            }
+
+
+            /**
+             * Replaces an exception that was caused by the request deadline.
+             *
+             * @param e the exception thrown by the response body
+             *
+             * @return a {@linkplain SocketTimeoutException} if the deadline passed, otherwise the exception itself
+             */
+            private IOException translate(final IOException e)
+            {
+                return isExpired.get()
+                       ? new SocketTimeoutException(String.format(OceanTeaTimeSeriesDownloaderConstants.REQUEST_DEADLINE_EXCEEDED, url, requestDeadline))
+                       : e;
+            }
+        }
+    }
+
+
+    /**
+     * Holds the daemon thread that aborts requests at their deadlines, which
+     * is only started if a deadline is set.
+     *
+     * @author Ingo Thomsen
+     */
+    private static final class DeadlineWatchdog
+    {
+        static final ScheduledThreadPoolExecutor SCHEDULER =
+            HarvestExecutors.newDaemonScheduler(OceanTeaTimeSeriesDownloaderConstants.DEADLINE_THREAD_NAME);
+
+
+        /**
+         * Private constructor to enforce non-instantiability
+         */
+        private DeadlineWatchdog()
+        {
+        }
+    }
+}
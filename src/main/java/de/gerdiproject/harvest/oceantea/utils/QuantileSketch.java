@@ -0,0 +1,193 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.util.Arrays;
+
+import lombok.Getter;
+
+/**
+ * A KLL sketch for approximating quantiles of a stream of values in a single
+ * pass. The values are kept in a hierarchy of compactors: Whenever a level is
+ * full, it is sorted and every other value is promoted to the next level,
+ * where it represents twice as many values. The capacities of the levels
+ * shrink geometrically from the top to the bottom, so the memory that is
+ * needed grows only logarithmically with the number of values.
+ * Unlike the original sketch, the promoted values are not chosen at random,
+ * but alternately start with the first and the second value of a level. Thus
+ * the same values always result in the same quantiles.
+ *
+ * @author Ingo Thomsen
+ */
+public final class QuantileSketch
+{
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 2;
+
+    private final int accuracy;
+
+    @Getter
+    private long count;
+
+    private double[][] levels = new double[1][];
+    private int[] levelSizes = new int[1];
+    private boolean[] promoteOddValues = new boolean[1];
+
+
+    /**
+     * Constructor that requires the capacity of the top level, which
+     * determines the accuracy of the approximated quantiles.
+     * Up to this number of values, the quantiles are exact.
+     *
+     * @param accuracy the capacity of the top level
+     */
+    public QuantileSketch(final int accuracy)
+    {
+        this.accuracy = accuracy;
+        this.levels[0] = new double[accuracy];
+    }
+
+
+    /**
+     * Adds a value to the sketch.
+     *
+     * @param value the value to be added
+     */
+    public void add(final double value)
+    {
+        append(0, value);
+        count++;
+
+        for (int level = 0; level < levels.length && levelSizes[level] >= getCapacity(level); level++)
+            compact(level);
+    }
+
+
+    /**
+     * Approximates a quantile of all values that were added so far.
+     *
+     * @param fraction the fraction of values that are less than or equal to the quantile, from 0 to 1
+     *
+     * @return the approximated quantile, or NaN if no values were added
+     */
+    public double getQuantile(final double fraction)
+    {
+        if (count == 0)
+            return Double.NaN;
+
+        final int retained = Arrays.stream(levelSizes).sum();
+        final double[] values = new double[retained];
+        final long[] weights = new long[retained];
+        int i = 0;
+
+        for (int level = 0; level < levels.length; level++) {
+            for (int j = 0; j < levelSizes[level]; j++) {
+                values[i] = levels[level][j];
+                weights[i] = 1L << level;
+                i++;
+            }
+        }
+
+        final Integer[] order = new Integer[retained];
+
+        for (int j = 0; j < retained; j++)
+            order[j] = j;
+
+        Arrays.sort(order, (final Integer a, final Integer b) -> Double.compare(values[a], values[b]));
+
+        // the compactions preserve the total weight, so it equals the count
+        final long rank = Math.max(1L, (long) Math.ceil(fraction * count));
+        long cumulativeWeight = 0;
+
+        for (final int j : order) {
+            cumulativeWeight += weights[j];
+
+            if (cumulativeWeight >= rank)
+                return values[j];
+        }
+
+        return values[order[retained - 1]];
+    }
+
+
+    /**
+     * Calculates the capacity of a level, depending on the current height of
+     * the hierarchy.
+     *
+     * @param level the level of which the capacity is calculated
+     *
+     * @return the capacity of the level
+     */
+    private int getCapacity(final int level)
+    {
+        final int depth = levels.length - 1 - level;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(accuracy * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+
+    /**
+     * Appends a value to a level, growing the level if necessary.
+     *
+     * @param level the level to which the value is appended
+     * @param value the value to be appended
+     */
+    private void append(final int level, final double value)
+    {
+        if (levelSizes[level] == levels[level].length)
+            levels[level] = Arrays.copyOf(levels[level], Math.max(MIN_CAPACITY, 2 * levels[level].length));
+
+        levels[level][levelSizes[level]++] = value;
+    }
+
+
+    /**
+     * Sorts a level and promotes every other value to the next level. If the
+     * level holds an odd number of values, the smallest one is kept.
+     *
+     * @param level the level to be compacted
+     */
+    private void compact(final int level)
+    {
+        if (level + 1 == levels.length)
+            addLevel();
+
+        final double[] values = levels[level];
+        final int size = levelSizes[level];
+        Arrays.sort(values, 0, size);
+
+        final int start = size % 2;
+        final int offset = promoteOddValues[level] ? 1 : 0;
+        promoteOddValues[level] = !promoteOddValues[level];
+
+        for (int i = start + offset; i < size; i += 2)
+            append(level + 1, values[i]);
+
+        levelSizes[level] = start;
+    }
+
+
+    /**
+     * Adds an empty level on top of the hierarchy.
+     */
+    private void addLevel()
+    {
+        final int height = levels.length + 1;
+        levels = Arrays.copyOf(levels, height);
+        levelSizes = Arrays.copyOf(levelSizes, height);
+        promoteOddValues = Arrays.copyOf(promoteOddValues, height);
+        levels[height - 1] = new double[MIN_CAPACITY];
+    }
+}
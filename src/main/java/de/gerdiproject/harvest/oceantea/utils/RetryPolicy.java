@@ -0,0 +1,139 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.google.gson.stream.MalformedJsonException;
+
+import lombok.Getter;
+
+/**
+ * Decides whether a failed request is retried and how long to wait before
+ * the next attempt. The waiting time grows exponentially with the number of
+ * retries and is randomized ("full jitter"), so that concurrent downloads
+ * that failed at the same time do not retry at the same time.
+ * Only transient errors are retried: timeouts, lost connections and server
+ * errors, but neither missing datasets nor malformed responses.
+ *
+ * @author Ingo Thomsen
+ */
+public class RetryPolicy
+{
+    private static final int MAX_BACKOFF_EXPONENT = 30;
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    @Getter
+    private final int maxRetries;
+
+    @Getter
+    private final long baseDelay;
+
+    @Getter
+    private final long maxDelay;
+
+
+    /**
+     * Constructor that sets the number of retries and the range of the delays.
+     *
+     * @param maxRetries the maximum number of retries per request, or 0 for no retries
+     * @param baseDelay the maximum delay before the first retry in milliseconds
+     * @param maxDelay the upper limit of all delays in milliseconds
+     */
+    public RetryPolicy(final int maxRetries, final long baseDelay, final long maxDelay)
+    {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.baseDelay = Math.max(0, baseDelay);
+        this.maxDelay = Math.max(this.baseDelay, maxDelay);
+    }
+
+
+    /**
+     * Checks if a failed request may be retried.
+     *
+     * @param error the cause of the failure
+     * @param retry the number of retries that were already made
+     *
+     * @return true if the request is to be retried
+     */
+    public boolean isRetryable(final IOException error, final int retry)
+    {
+        return retry < maxRetries && isTransient(error);
+    }
+
+
+    /**
+     * Returns a random delay before a retry, which is at most the base delay
+     * multiplied by two to the power of the number of retries that were
+     * already made.
+     *
+     * @param retry the number of retries that were already made
+     *
+     * @return the delay in milliseconds
+     */
+    public long getDelay(final int retry)
+    {
+        final long exponentialDelay = baseDelay << Math.min(retry, MAX_BACKOFF_EXPONENT);
+        final long cappedDelay = exponentialDelay < baseDelay ? maxDelay : Math.min(maxDelay, exponentialDelay);
+
+        return ThreadLocalRandom.current().nextLong(cappedDelay + 1);
+    }
+
+
+    /**
+     * Checks if an error is likely to disappear when the request is repeated,
+     * which also means that the server may be overloaded.
+     *
+     * @param error the cause of a failed request
+     *
+     * @return true if the error is transient
+     */
+    public static boolean isTransient(final IOException error)
+    {
+        if (error instanceof HttpStatusException)
+            return isTransient(((HttpStatusException) error).getStatusCode());
+
+        // timeouts are interruptions of the I/O, unlike interruptions of the thread
+        if (error instanceof SocketTimeoutException)
+            return true;
+
+        return !(error instanceof InterruptedIOException
+                 || error instanceof FileNotFoundException
+                 || error instanceof MalformedJsonException);
+    }
+
+
+    /**
+     * Checks if an HTTP status code signals an error that is likely to
+     * disappear when the request is repeated, which also means that the
+     * server may be overloaded.
+     *
+     * @param statusCode the HTTP status code of a response
+     *
+     * @return true if the status code is a transient error
+     */
+    public static boolean isTransient(final int statusCode)
+    {
+        return statusCode >= HttpURLConnection.HTTP_INTERNAL_ERROR
+               || statusCode == TOO_MANY_REQUESTS
+               || statusCode == HttpURLConnection.HTTP_CLIENT_TIMEOUT;
+    }
+}
@@ -0,0 +1,325 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import de.gerdiproject.harvest.oceantea.utils.SamplingSummary.TimeGap;
+
+/**
+ * Analyzes the sampling of a time series dataset in a single pass over its
+ * time offsets, using a bounded amount of memory:
+ * The dominant sampling interval is the most frequent difference between
+ * consecutive time offsets, which is found with the Misra-Gries algorithm.
+ * Intervals that exceed the dominant interval by a multiple are counted as
+ * gaps, and the longest gaps are retained. Since the dominant interval is not
+ * known before the whole dataset was analyzed, the intervals are counted per
+ * length and compared to the final dominant interval when the summary is
+ * built. Only if a dataset has more distinct intervals than can be counted,
+ * each interval is compared to the dominant interval at the time it is added
+ * instead, which approximates the numbers of irregular intervals and gaps.
+ * The intervals are counted in a hash table of primitive slots, with linear
+ * probing, so that counting does not create any objects.
+ *
+ * @author Ingo Thomsen
+ */
+public final class SamplingAnalyzer
+{
+    // a power of two that keeps the interval table at most half full
+    private static final int INTERVAL_SLOTS = Integer.highestOneBit(2 * OceanTeaTimeSeriesDownloaderConstants.SAMPLING_INTERVAL_LENGTHS - 1) << 1;
+
+    // spreads the bits of an interval over the bits that select its slot
+    private static final long INTERVAL_HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final long[] candidateIntervals = new long[OceanTeaTimeSeriesDownloaderConstants.SAMPLING_INTERVAL_CANDIDATES];
+    private final int[] candidateCounts = new int[OceanTeaTimeSeriesDownloaderConstants.SAMPLING_INTERVAL_CANDIDATES];
+
+    // the longest gaps, as pairs of the time offsets before and after each gap
+    private final long[] gapStarts = new long[OceanTeaTimeSeriesDownloaderConstants.LONGEST_GAPS];
+    private final long[] gapStops = new long[OceanTeaTimeSeriesDownloaderConstants.LONGEST_GAPS];
+    private int numberOfLongestGaps;
+
+    // the number of intervals per length, until there are too many distinct lengths
+    // (a length of 0 marks an empty slot, since only positive intervals are counted)
+    private final long[] countedIntervals = new long[INTERVAL_SLOTS];
+    private final int[] intervalCounts = new int[INTERVAL_SLOTS];
+    private int numberOfCountedIntervals;
+    private boolean isCountingIntervals = true;
+
+    private boolean hasPreviousTimeOffset;
+    private long previousTimeOffset;
+    private long minTimeOffset = Long.MAX_VALUE;
+    private long maxTimeOffset = Long.MIN_VALUE;
+    private int numberOfTimeOffsets;
+    private int numberOfDuplicateTimeOffsets;
+    private int numberOfUnorderedIntervals;
+
+    // approximations that are only used if there are too many distinct intervals
+    private int numberOfIrregularIntervals;
+    private int numberOfGaps;
+
+
+    /**
+     * Adds the next time offset of the dataset.
+     *
+     * @param timeOffset the time offset in seconds
+     */
+    public void addTimeOffset(final long timeOffset)
+    {
+        numberOfTimeOffsets++;
+
+        if (timeOffset < minTimeOffset)
+            minTimeOffset = timeOffset;
+
+        if (timeOffset > maxTimeOffset)
+            maxTimeOffset = timeOffset;
+
+        if (hasPreviousTimeOffset)
+            addInterval(previousTimeOffset, timeOffset);
+
+        hasPreviousTimeOffset = true;
+        previousTimeOffset = timeOffset;
+    }
+
+
+    /**
+     * Creates a {@linkplain SamplingSummary} from all time offsets that were
+     * added so far.
+     *
+     * @param referenceInstant reference {@linkplain Instant} for the time offsets
+     *
+     * @return a {@linkplain SamplingSummary}, or null if there are less than two distinct time offsets
+     */
+    public SamplingSummary build(final Instant referenceInstant)
+    {
+        final long samplingInterval = getSamplingInterval();
+
+        if (samplingInterval <= 0)
+            return null;
+
+        // the dominant interval may have changed after a gap was retained
+        final long minGapLength = getMinGapLength(samplingInterval);
+        final List<TimeGap> longestGaps = new ArrayList<>();
+
+        for (int i = 0; i < numberOfLongestGaps; i++) {
+            if (gapStops[i] - gapStarts[i] > minGapLength)
+                longestGaps.add(new TimeGap(referenceInstant.plusSeconds(gapStarts[i]),
+                                            referenceInstant.plusSeconds(gapStops[i])));
+        }
+
+        longestGaps.sort(Comparator.comparing(TimeGap::getStartInstant));
+
+        int irregularIntervals = numberOfIrregularIntervals;
+        int gaps = numberOfGaps;
+
+        if (isCountingIntervals) {
+            irregularIntervals = numberOfUnorderedIntervals;
+            gaps = 0;
+
+            for (int slot = 0; slot < INTERVAL_SLOTS; slot++) {
+                final long interval = countedIntervals[slot];
+
+                if (interval != 0 && interval != samplingInterval)
+                    irregularIntervals += intervalCounts[slot];
+
+                if (interval > minGapLength)
+                    gaps += intervalCounts[slot];
+            }
+        }
+
+        final double expectedTimeOffsets = (double)(maxTimeOffset - minTimeOffset) / samplingInterval + 1;
+        final int distinctTimeOffsets = numberOfTimeOffsets - numberOfDuplicateTimeOffsets;
+        final double coverage = 100 * Math.min(1.0, distinctTimeOffsets / expectedTimeOffsets);
+
+        return new SamplingSummary(
+                   samplingInterval,
+                   irregularIntervals,
+                   numberOfDuplicateTimeOffsets,
+                   gaps,
+                   coverage,
+                   Collections.unmodifiableList(longestGaps));
+    }
+
+
+    /**
+     * Adds the interval between two consecutive time offsets.
+     *
+     * @param start the earlier time offset
+     * @param stop the later time offset
+     */
+    private void addInterval(final long start, final long stop)
+    {
+        final long interval = stop - start;
+
+        if (interval == 0) {
+            numberOfDuplicateTimeOffsets++;
+            return;
+        }
+
+        // time offsets that are out of order do not indicate the sampling interval
+        if (interval < 0) {
+            numberOfUnorderedIntervals++;
+            numberOfIrregularIntervals++;
+            return;
+        }
+
+        countCandidate(interval);
+        countInterval(interval);
+
+        // the longest intervals are the longest gaps, if they exceed the final threshold
+        retainGap(start, stop);
+
+        final long samplingInterval = getSamplingInterval();
+
+        if (interval == samplingInterval)
+            return;
+
+        numberOfIrregularIntervals++;
+
+        if (interval > getMinGapLength(samplingInterval))
+            numberOfGaps++;
+    }
+
+
+    /**
+     * Counts an interval by its length, unless there are too many distinct
+     * lengths, in which case the counts are discarded.
+     *
+     * @param interval the difference between two consecutive time offsets
+     */
+    private void countInterval(final long interval)
+    {
+        if (!isCountingIntervals)
+            return;
+
+        final int mask = INTERVAL_SLOTS - 1;
+        int slot = (int)((interval * INTERVAL_HASH_MULTIPLIER) >>> Integer.SIZE) & mask;
+
+        while (countedIntervals[slot] != interval && countedIntervals[slot] != 0)
+            slot = (slot + 1) & mask;
+
+        if (countedIntervals[slot] == 0) {
+            if (numberOfCountedIntervals == OceanTeaTimeSeriesDownloaderConstants.SAMPLING_INTERVAL_LENGTHS) {
+                isCountingIntervals = false;
+                return;
+            }
+
+            countedIntervals[slot] = interval;
+            numberOfCountedIntervals++;
+        }
+
+        intervalCounts[slot]++;
+    }
+
+
+    /**
+     * Counts an interval with the Misra-Gries algorithm: If it is one of the
+     * candidates, its count is increased. Otherwise it replaces a candidate
+     * without a count, or all counts are decreased, if there is none.
+     *
+     * @param interval the difference between two consecutive time offsets
+     */
+    private void countCandidate(final long interval)
+    {
+        int free = -1;
+
+        for (int i = 0; i < candidateIntervals.length; i++) {
+            if (candidateCounts[i] > 0 && candidateIntervals[i] == interval) {
+                candidateCounts[i]++;
+                return;
+            }
+
+            if (free < 0 && candidateCounts[i] == 0)
+                free = i;
+        }
+
+        if (free >= 0) {
+            candidateIntervals[free] = interval;
+            candidateCounts[free] = 1;
+        } else {
+            for (int i = 0; i < candidateCounts.length; i++)
+                candidateCounts[i]--;
+        }
+    }
+
+
+    /**
+     * Returns the most frequent candidate interval.
+     *
+     * @return the dominant sampling interval, or 0 if there is none
+     */
+    private long getSamplingInterval()
+    {
+        long samplingInterval = 0;
+        int maxCount = 0;
+
+        for (int i = 0; i < candidateIntervals.length; i++) {
+            if (candidateCounts[i] > maxCount) {
+                maxCount = candidateCounts[i];
+                samplingInterval = candidateIntervals[i];
+            }
+        }
+
+        return samplingInterval;
+    }
+
+
+    /**
+     * Retains an interval as gap, if it is one of the longest intervals so far.
+     *
+     * @param start the time offset before the interval
+     * @param stop the time offset after the interval
+     */
+    private void retainGap(final long start, final long stop)
+    {
+        int index = numberOfLongestGaps;
+
+        if (numberOfLongestGaps == gapStarts.length) {
+            // replace the shortest retained gap
+            index = 0;
+
+            for (int i = 1; i < numberOfLongestGaps; i++) {
+                if (gapStops[i] - gapStarts[i] < gapStops[index] - gapStarts[index])
+                    index = i;
+            }
+
+            if (stop - start <= gapStops[index] - gapStarts[index])
+                return;
+        } else
+            numberOfLongestGaps++;
+
+        gapStarts[index] = start;
+        gapStops[index] = stop;
+    }
+
+
+    /**
+     * Calculates the length above which an interval is considered to be a gap.
+     *
+     * @param samplingInterval the dominant sampling interval
+     *
+     * @return the minimal length of a gap in seconds
+     */
+    private static long getMinGapLength(final long samplingInterval)
+    {
+        return samplingInterval * OceanTeaTimeSeriesDownloaderConstants.GAP_THRESHOLD_INTERVALS;
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.time.Instant;
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * An immutable summary of the sampling of a time series dataset, as inferred
+ * by a {@linkplain SamplingAnalyzer}: The dominant sampling interval, the
+ * gaps that are considerably longer than it, the number of time offsets which
+ * repeat their predecessor and the percentage of the measurement period that
+ * is covered by values.
+ *
+ * @author Ingo Thomsen
+ */
+@Value
+public class SamplingSummary
+{
+    private final long samplingInterval;
+    private final int numberOfIrregularIntervals;
+    private final int numberOfDuplicateTimeOffsets;
+    private final int numberOfGaps;
+    private final double coverage;
+
+    // the longest gaps, ordered by their start
+    private final List<TimeGap> longestGaps;
+
+
+    /**
+     * A period of time in which no values were sampled.
+     *
+     * @author Ingo Thomsen
+     */
+    @Value
+    public static class TimeGap
+    {
+        private final Instant startInstant;
+        private final Instant stopInstant;
+    }
+}
@@ -0,0 +1,478 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import de.gerdiproject.harvest.oceantea.metrics.StageSummary;
+
+/**
+ * A pipeline of stages that process the items of a source one after the
+ * other, each stage in a configurable number of worker threads. The stages
+ * are connected by bounded queues, so a slow stage makes the preceding
+ * stages wait instead of piling up items. Moreover, the source is only read
+ * while fewer than a fixed number of items are pending, which bounds the
+ * items that are held by the pipeline as a whole.
+ * The items are taken from the pipeline in the order of the source, no
+ * matter in which order the stages finish them. If a stage fails to process
+ * an item, the item skips the remaining stages and its exception is thrown
+ * when the item is taken.
+ * The queue depth and the throughput of each stage, including the source and
+ * the consumer of the pipeline, can be observed while the pipeline runs.
+ *
+ * @param <T> the type of the processed items
+ *
+ * @author Ingo Thomsen
+ */
+public class StagedPipeline<T>
+{
+    private final int queueCapacity;
+    private final Stage sourceStage;
+    private final Stage sinkStage;
+    private final List<Stage> stages = new ArrayList<>();
+
+    // the processed items that are yet to be taken, mapped by their position in the source
+    private final Map<Long, ProcessedItem<T>> completedItems = new HashMap<>();
+
+    private ExecutorService executor;
+    private Semaphore pendingItems;
+    private int maxPendingItems;
+    private long startNanos;
+    private long nextSequence;
+    private long numberOfItems = -1;
+    private long lastTakeNanos;
+    private boolean isClosed;
+
+
+    /**
+     * Constructor that requires the names of the source and the consumer,
+     * under which their statistics are observable.
+     *
+     * @param sourceStageName the name of the stage that reads the source
+     * @param sinkStageName the name of the stage that takes the processed items
+     * @param queueCapacity the maximum number of items that wait for a stage
+     */
+    public StagedPipeline(final String sourceStageName, final String sinkStageName, final int queueCapacity)
+    {
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.sourceStage = new Stage(sourceStageName, 1, null, null);
+        this.sinkStage = new Stage(sinkStageName, 1, null, null);
+    }
+
+
+    /**
+     * Appends a stage to the pipeline. Stages must be added before the
+     * pipeline is started.
+     *
+     * @param name the name under which the statistics of the stage are observable
+     * @param parallelism the number of worker threads of the stage
+     * @param task the processing of a single item, which may be called concurrently
+     */
+    public synchronized void addStage(final String name, final int parallelism, final Consumer<T> task)
+    {
+        stages.add(new Stage(name, Math.max(1, parallelism), task, new ArrayBlockingQueue<>(queueCapacity)));
+    }
+
+
+    /**
+     * Returns the number of threads that are needed to run the pipeline: one
+     * for reading the source and the workers of all stages.
+     *
+     * @return the number of threads of the pipeline
+     */
+    public synchronized int getNumberOfThreads()
+    {
+        int numberOfThreads = 1;
+
+        for (final Stage stage : stages)
+            numberOfThreads += stage.parallelism;
+
+        return numberOfThreads;
+    }
+
+
+    /**
+     * Starts reading the source and processing its items.
+     *
+     * @param source the items to be processed, which are read by a single thread
+     * @param executor an {@linkplain ExecutorService} that can run at least
+     *            {@linkplain #getNumberOfThreads()} tasks concurrently and
+     *            that is shut down when the pipeline is closed
+     */
+    public synchronized void start(final Iterator<T> source, final ExecutorService executor)
+    {
+        this.executor = executor;
+        this.maxPendingItems = queueCapacity * (stages.size() + 1);
+        this.pendingItems = new Semaphore(maxPendingItems);
+        this.startNanos = System.nanoTime();
+        this.lastTakeNanos = startNanos;
+
+        executor.execute(() -> extract(source));
+
+        for (int i = 0; i < stages.size(); i++) {
+            final int stageIndex = i;
+
+            for (int worker = 0; worker < stages.get(i).parallelism; worker++)
+                executor.execute(() -> process(stageIndex));
+        }
+    }
+
+
+    /**
+     * Waits for the next item of the source to be processed by all stages.
+     *
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     * @throws CancellationException if the pipeline was closed
+     * @throws RuntimeException if the item could not be read or processed
+     * @throws Error if reading or processing the item failed with an error
+     *
+     * @return the next item in the order of the source, or null if all items were taken
+     */
+    public synchronized T take() throws InterruptedException
+    {
+        // the time between two calls is spent by the consumer
+        sinkStage.processingNanos.addAndGet(System.nanoTime() - lastTakeNanos);
+
+        while (!completedItems.containsKey(nextSequence)) {
+            if (nextSequence == numberOfItems)
+                return null;
+
+            if (isClosed)
+                throw new CancellationException(OceanTeaTimeSeriesDownloaderConstants.PIPELINE_CLOSED);
+
+            wait();
+        }
+
+        final ProcessedItem<T> processedItem = completedItems.remove(nextSequence);
+        nextSequence++;
+        pendingItems.release();
+        lastTakeNanos = System.nanoTime();
+
+        if (processedItem.error != null) {
+            sinkStage.failedItems.incrementAndGet();
+
+            if (processedItem.error instanceof Error)
+                throw (Error) processedItem.error;
+
+            if (processedItem.error instanceof RuntimeException)
+                throw (RuntimeException) processedItem.error;
+
+            // a checked exception can only be thrown by sneaking past the compiler
+            throw new UndeclaredThrowableException(processedItem.error);
+        }
+
+        sinkStage.processedItems.incrementAndGet();
+        return processedItem.item;
+    }
+
+
+    /**
+     * Stops all stages and discards the items that were not taken yet.
+     */
+    public synchronized void close()
+    {
+        isClosed = true;
+        completedItems.clear();
+
+        if (executor != null)
+            executor.shutdownNow();
+
+        notifyAll();
+    }
+
+
+    /**
+     * Creates a snapshot of the statistics of all stages, including the
+     * source and the consumer of the pipeline.
+     *
+     * @return a map of stage names to stage summaries, in the order of the stages
+     */
+    public synchronized Map<String, StageSummary> getStageSummaries()
+    {
+        final Map<String, StageSummary> summaries = new LinkedHashMap<>();
+
+        if (executor == null)
+            return summaries;
+
+        final double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        summaries.put(sourceStage.name, sourceStage.getSummary(elapsedSeconds, 0, 0));
+
+        for (final Stage stage : stages)
+            summaries.put(stage.name, stage.getSummary(elapsedSeconds, stage.queue.size(), queueCapacity));
+
+        summaries.put(sinkStage.name, sinkStage.getSummary(elapsedSeconds, completedItems.size(), maxPendingItems));
+        return summaries;
+    }
+
+
+    /**
+     * Reads the source as long as the number of pending items permits it,
+     * and hands the items to the first stage. If the source fails, the
+     * exception is passed on as the last item.
+     *
+     * @param source the items to be processed
+     */
+    private void extract(final Iterator<T> source)
+    {
+        long sequence = 0;
+
+        try {
+            while (true) {
+                pendingItems.acquire();
+                final long extractionStart = System.nanoTime();
+                final ProcessedItem<T> extractedItem;
+
+                try {
+                    if (!source.hasNext())
+                        break;
+
+                    extractedItem = new ProcessedItem<>(sequence, source.next());
+
+                } catch (final Throwable e) { // NOPMD any failure must be passed on, or the consumer waits forever
+                    sourceStage.failedItems.incrementAndGet();
+                    final ProcessedItem<T> failedItem = new ProcessedItem<>(sequence, null);
+                    failedItem.error = e;
+                    complete(failedItem);
+                    sequence++;
+                    break;
+                }
+
+                sourceStage.recordProcessed(extractionStart);
+                sequence++;
+                forward(0, extractedItem);
+            }
+        } catch (final InterruptedException e) {
+            // the pipeline was closed
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        completeExtraction(sequence);
+    }
+
+
+    /**
+     * Processes the items that are queued for a stage and hands them to the
+     * next stage, until the pipeline is closed.
+     *
+     * @param stageIndex the index of the stage
+     */
+    private void process(final int stageIndex)
+    {
+        final Stage stage = stages.get(stageIndex);
+
+        try {
+            while (true) {
+                final ProcessedItem<T> processedItem = stage.queue.take();
+
+                if (processedItem.error == null)
+                    stage.process(processedItem);
+
+                forward(stageIndex + 1, processedItem);
+            }
+        } catch (final InterruptedException e) {
+            // the pipeline was closed
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Hands an item to a stage, waiting while the queue of the stage is full.
+     *
+     * @param stageIndex the index of the stage, which may be the number of
+     *            stages if the item was processed by all stages
+     * @param processedItem the item to be handed over
+     *
+     * @throws InterruptedException if the pipeline was closed while waiting
+     */
+    private void forward(final int stageIndex, final ProcessedItem<T> processedItem) throws InterruptedException
+    {
+        if (stageIndex < stages.size())
+            stages.get(stageIndex).queue.put(processedItem);
+        else
+            complete(processedItem);
+    }
+
+
+    /**
+     * Marks an item as ready to be taken.
+     *
+     * @param processedItem an item that was processed by all stages or that failed
+     */
+    private synchronized void complete(final ProcessedItem<T> processedItem)
+    {
+        if (!isClosed) {
+            completedItems.put(processedItem.sequence, processedItem);
+            notifyAll();
+        }
+    }
+
+
+    /**
+     * Marks the source as completely read.
+     *
+     * @param numberOfExtractedItems the number of items that were read from the source
+     */
+    private synchronized void completeExtraction(final long numberOfExtractedItems)
+    {
+        numberOfItems = numberOfExtractedItems;
+        notifyAll();
+    }
+
+
+    /**
+     * A stage of the pipeline with its workers' task, its queue and its statistics.
+     *
+     * @author Ingo Thomsen
+     */
+    private final class Stage
+    {
+        private final String name;
+        private final int parallelism;
+        private final Consumer<T> task;
+        private final BlockingQueue<ProcessedItem<T>> queue;
+        private final AtomicInteger busyWorkers = new AtomicInteger();
+        private final AtomicLong processedItems = new AtomicLong();
+        private final AtomicLong failedItems = new AtomicLong();
+        private final AtomicLong processingNanos = new AtomicLong();
+
+
+        /**
+         * Constructor that sets all fields.
+         *
+         * @param name the name of the stage
+         * @param parallelism the number of worker threads of the stage
+         * @param task the processing of a single item, or null if the stage is not run by workers
+         * @param queue the items that wait for the stage, or null if the stage is not run by workers
+         */
+        Stage(final String name, final int parallelism, final Consumer<T> task, final BlockingQueue<ProcessedItem<T>> queue)
+        {
+            this.name = name;
+            this.parallelism = parallelism;
+            this.task = task;
+            this.queue = queue;
+        }
+
+
+        /**
+         * Processes an item, remembering the exception or error if it fails.
+         *
+         * @param processedItem the item to be processed
+         */
+        void process(final ProcessedItem<T> processedItem)
+        {
+            busyWorkers.incrementAndGet();
+            final long processingStart = System.nanoTime();
+
+            try {
+                task.accept(processedItem.item);
+                recordProcessed(processingStart);
+
+            } catch (final Throwable e) { // NOPMD any failure must be passed on, or the consumer waits forever
+                processedItem.error = e;
+                failedItems.incrementAndGet();
+                processingNanos.addAndGet(System.nanoTime() - processingStart);
+
+            } finally {
+                busyWorkers.decrementAndGet();
+            }
+        }
+
+
+        /**
+         * Records a successfully processed item.
+         *
+         * @param processingStart the {@linkplain System#nanoTime()} at the start of the processing
+         */
+        void recordProcessed(final long processingStart)
+        {
+            processingNanos.addAndGet(System.nanoTime() - processingStart);
+            processedItems.incrementAndGet();
+        }
+
+
+        /**
+         * Creates a snapshot of the statistics of the stage.
+         *
+         * @param elapsedSeconds the number of seconds since the pipeline was started
+         * @param queueDepth the number of items that wait for the stage
+         * @param capacity the maximum number of items that can wait for the stage
+         *
+         * @return a {@linkplain StageSummary}
+         */
+        StageSummary getSummary(final double elapsedSeconds, final int queueDepth, final int capacity)
+        {
+            final long processed = processedItems.get();
+            final long failed = failedItems.get();
+            final long finished = processed + failed;
+
+            return new StageSummary(
+                       parallelism,
+                       busyWorkers.get(),
+                       queueDepth,
+                       capacity,
+                       processed,
+                       failed,
+                       elapsedSeconds > 0 ? finished / elapsedSeconds : 0,
+                       finished > 0 ? processingNanos.get() / 1e6 / finished : 0);
+        }
+    }
+
+
+    /**
+     * An item of the source with its position in the source and the
+     * exception that occurred while it was processed.
+     *
+     * @param <T> the type of the item
+     *
+     * @author Ingo Thomsen
+     */
+    private static final class ProcessedItem<T>
+    {
+        private final long sequence;
+        private final T item;
+        private Throwable error;
+
+
+        /**
+         * Constructor that requires the item and its position in the source.
+         *
+         * @param sequence the position of the item in the source
+         * @param item the item to be processed
+         */
+        ProcessedItem(final long sequence, final T item)
+        {
+            this.sequence = sequence;
+            this.item = item;
+        }
+    }
+}
@@ -21,6 +21,7 @@ import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.Point;
 
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
 import de.gerdiproject.harvest.oceantea.json.AllDataTypesResponse;
 import de.gerdiproject.harvest.oceantea.json.AllTimeSeriesResponse;
 import de.gerdiproject.harvest.oceantea.json.DataTypeResponse;
@@ -54,6 +55,12 @@ public final class TimeSeries
     // geolocation point combining longitude, latitude AND depth
     private Point geoLocationPoint;
 
+    // depth bins of ADCP time series, which are multivariate
+    private int numberOfBins;
+    private double firstBinHeight;
+    private double binHeight;
+    private String binDirection;
+
     private final String identifier;
 
 
@@ -66,7 +73,7 @@ public final class TimeSeries
      */
     public TimeSeries(final int index, final TimeSeriesResponse timeSeriesData, final DataTypeResponse dataTypeInfo)
     {
-        this.identifier = getClass().getSimpleName() + index;
+        this.identifier = createIdentifier(index);
 
         // fields with a direct mapping
         setRegion(timeSeriesData.getRegion());
@@ -87,12 +94,43 @@ public final class TimeSeries
         // converting reference ISO 8601 date (example: 2012-06-01T00:00:01Z) to Instant
         setReferenceInstant(Instant.parse(timeSeriesData.getTReference()));
 
+        // ADCP bins
+        setNumberOfBins(timeSeriesData.getNumberOfBins());
+        setFirstBinHeight(timeSeriesData.getAdcpFirstBinHeight());
+        setBinHeight(timeSeriesData.getAdcpBinHeight());
+        setBinDirection(timeSeriesData.getAdcpDirection());
+
         // enrich with data type information
         setDataTypePrintName(dataTypeInfo.getPrintName());
         setDataTypeUnit(dataTypeInfo.getUnit());
     }
 
 
+    /**
+     * Create the identifier of the time series at a position of the catalogue.
+     *
+     * @param index the unique index of the timeseries
+     *
+     * @return the identifier of the timeseries
+     */
+    public static String createIdentifier(final int index)
+    {
+        return TimeSeries.class.getSimpleName() + index;
+    }
+
+
+    /**
+     * Check if the time series is an ADCP time series, of which each
+     * measurement consists of the values of multiple depth bins.
+     *
+     * @return true if the time series is multivariate
+     */
+    public boolean isMultivariate()
+    {
+        return OceanTeaTimeSeriesDownloaderConstants.NON_UNIVARIANT_TIME_SERIES.equals(timeSeriesType);
+    }
+
+
     /**
      * Get the latitude from the geolocation {@linkplain Point}}
      *
@@ -16,8 +16,6 @@
 package de.gerdiproject.harvest.oceantea.utils;
 
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import de.gerdiproject.harvest.oceantea.json.TimeSeriesDatasetResponse;
@@ -30,7 +28,10 @@ import lombok.Setter;
  * the raw data provided by a {@linkplain TimeSeriesDatasetResponse}: Three
  * {@link Instant)s describing the start and stop of the measurements and the
  * reference for the time offsets. Also the total number and the number of
- * missing values are provided.
+ * missing values are provided, as well as {@linkplain ValueStatistics} of the
+ * numeric values and a {@linkplain SamplingSummary} of the time offsets.
+ * For multivariate datasets, the number of depth bins per measurement and
+ * {@linkplain ValueStatistics} of each component of the bins are provided.
  *
  * @author Ingo Thomsen
  */
@@ -44,6 +45,10 @@ public final class TimeSeriesDataset
     private final Instant referenceInstant;
     private final Instant startInstant;
     private final Instant stopInstant;
+    private final ValueStatistics valueStatistics;
+    private final SamplingSummary samplingSummary;
+    private final int numberOfBins;
+    private final List<ValueStatistics> binStatistics;
 
 
     /**
@@ -56,31 +61,83 @@ public final class TimeSeriesDataset
      */
     public TimeSeriesDataset(final TimeSeriesDatasetResponse timeSeriesDatasetResponse, final Instant referenceInstant)
     {
-        this.referenceInstant = referenceInstant;
-
-        // extract the values and time offsets in the TimeSeriesDatasetResponse
-        final List<Integer> timeOffsets = new ArrayList<>();
+        this(summarize(timeSeriesDatasetResponse, referenceInstant));
+    }
 
-        this.numberOfMissingValues = 0;
 
-        for (final List<String> pairOfTimeOffsetAndValue : timeSeriesDatasetResponse.getListOfPairsOfTimeOffsetAndValue())
-            try {
-                timeOffsets.add(Integer.parseInt(pairOfTimeOffsetAndValue.get(0)));
+    /**
+     * Constructor using a {@linkplain TimeSeriesDatasetBuilder} that summarized
+     * the pairs of time offsets and values.
+     *
+     * @param builder a {@linkplain TimeSeriesDatasetBuilder} containing the summary
+     */
+    private TimeSeriesDataset(final TimeSeriesDatasetBuilder builder)
+    {
+        this(builder.getReferenceInstant(), builder.getNumberOfValues(), builder.getNumberOfMissingValues(),
+             builder.getMinTimeOffset(), builder.getMaxTimeOffset(), builder.getValueStatistics(),
+             builder.getSamplingSummary(), builder.getNumberOfBins(), builder.getBinStatistics());
+    }
 
-            } catch (final NumberFormatException e) {
-                this.numberOfMissingValues++;
-            }
 
-        // extract info from values and time offsets
-        this.numberOfValues = timeOffsets.size();
+    /**
+     * Constructor using already summarized time offsets, for example as
+     * collected by a {@linkplain TimeSeriesDatasetBuilder}.
+     *
+     * @param referenceInstant reference {@linkplain Instant} for the time offsets
+     * @param numberOfValues the number of values with a valid time offset
+     * @param numberOfMissingValues the number of missing values
+     * @param minTimeOffset the smallest time offset (in seconds)
+     * @param maxTimeOffset the largest time offset (in seconds)
+     * @param valueStatistics the {@linkplain ValueStatistics} of the numeric values, or null if there are none
+     * @param samplingSummary the {@linkplain SamplingSummary} of the time offsets, or null if there is none
+     * @param numberOfBins the maximal number of depth bins per measurement, or 0 if the dataset is univariate
+     * @param binStatistics the {@linkplain ValueStatistics} of each component of the depth bins
+     */
+    public TimeSeriesDataset(final Instant referenceInstant, final int numberOfValues, final int numberOfMissingValues,
+                             final int minTimeOffset, final int maxTimeOffset, final ValueStatistics valueStatistics,
+                             final SamplingSummary samplingSummary, final int numberOfBins,
+                             final List<ValueStatistics> binStatistics)
+    {
+        this.referenceInstant = referenceInstant;
+        this.numberOfValues = numberOfValues;
+        this.numberOfMissingValues = numberOfMissingValues;
+        this.valueStatistics = valueStatistics;
+        this.samplingSummary = samplingSummary;
+        this.numberOfBins = numberOfBins;
+        this.binStatistics = binStatistics;
 
-        if (this.numberOfValues > 0) {
-            this.startInstant = Instant.ofEpochSecond(referenceInstant.getEpochSecond() + Collections.min(timeOffsets));
-            this.stopInstant = Instant.ofEpochSecond(referenceInstant.getEpochSecond() + Collections.max(timeOffsets));
+        if (numberOfValues > 0) {
+            this.startInstant = Instant.ofEpochSecond(referenceInstant.getEpochSecond() + minTimeOffset);
+            this.stopInstant = Instant.ofEpochSecond(referenceInstant.getEpochSecond() + maxTimeOffset);
 
         } else {
             this.startInstant = referenceInstant;
             this.stopInstant = referenceInstant;
         }
     }
+
+
+    /**
+     * Summarizes the pairs of time offsets and values of a
+     * {@linkplain TimeSeriesDatasetResponse} without boxing any time offsets.
+     *
+     * @param timeSeriesDatasetResponse {@linkplain TimeSeriesDatasetResponse}
+     *            containing the raw values
+     * @param referenceInstant reference {@linkplain Instant} for the time offsets
+     *
+     * @return a {@linkplain TimeSeriesDatasetBuilder} containing the summary
+     */
+    private static TimeSeriesDatasetBuilder summarize(final TimeSeriesDatasetResponse timeSeriesDatasetResponse, final Instant referenceInstant)
+    {
+        final TimeSeriesDatasetBuilder builder = new TimeSeriesDatasetBuilder(referenceInstant);
+
+        for (final List<String> pairOfTimeOffsetAndValue : timeSeriesDatasetResponse.getListOfPairsOfTimeOffsetAndValue()) {
+            builder.addTimeOffset(pairOfTimeOffsetAndValue.get(0));
+
+            if (pairOfTimeOffsetAndValue.size() > 1)
+                builder.addValue(pairOfTimeOffsetAndValue.get(1));
+        }
+
+        return builder;
+    }
 }
\ No newline at end of file
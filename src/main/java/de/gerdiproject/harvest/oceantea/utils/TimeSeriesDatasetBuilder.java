@@ -0,0 +1,235 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import lombok.Getter;
+
+/**
+ * Summarizes the pairs of time offsets and values of a time series dataset one
+ * by one and creates a {@linkplain TimeSeriesDataset} from the summary.
+ * Measurements of multivariate datasets consist of the values of multiple
+ * depth bins, which are summarized per component of the bins.
+ * Only primitive counters, a {@linkplain ValueStatisticsBuilder} and a
+ * {@linkplain SamplingAnalyzer} are updated per pair, so the memory that is
+ * needed for summarizing a dataset barely depends on its size.
+ *
+ * @author Ingo Thomsen
+ */
+public final class TimeSeriesDatasetBuilder
+{
+    @Getter
+    private final Instant referenceInstant;
+
+    @Getter
+    private int numberOfValues;
+
+    @Getter
+    private int numberOfMissingValues;
+
+    // only meaningful if there is at least one value
+    @Getter
+    private int minTimeOffset = Integer.MAX_VALUE;
+
+    @Getter
+    private int maxTimeOffset = Integer.MIN_VALUE;
+
+    private final ValueStatisticsBuilder valueStatistics = new ValueStatisticsBuilder();
+    private final SamplingAnalyzer samplingAnalyzer = new SamplingAnalyzer();
+
+    // the maximal number of depth bins per measurement, if the dataset is multivariate
+    @Getter
+    private int numberOfBins;
+
+    // statistics of each component of the depth bins, such as direction and magnitude
+    private final ValueStatisticsBuilder[] binStatistics =
+        new ValueStatisticsBuilder[OceanTeaTimeSeriesDownloaderConstants.MAX_BIN_COMPONENTS];
+    private int numberOfBinComponents;
+
+
+    /**
+     * Constructor that requires the reference {@linkplain Instant} of the dataset.
+     *
+     * @param referenceInstant reference {@linkplain Instant} for the time offsets
+     */
+    public TimeSeriesDatasetBuilder(final Instant referenceInstant)
+    {
+        this.referenceInstant = referenceInstant;
+    }
+
+
+    /**
+     * Adds the time offset of a pair of time offset and value. If the time
+     * offset is not an integer, the value is counted as missing.
+     *
+     * @param timeOffsetString the time offset (in seconds) as string, or null
+     */
+    public void addTimeOffset(final String timeOffsetString)
+    {
+        final int timeOffset;
+
+        try {
+            timeOffset = Integer.parseInt(timeOffsetString);
+        } catch (final NumberFormatException e) {
+            addMissingTimeOffset();
+            return;
+        }
+
+        addTimeOffset(timeOffset);
+    }
+
+
+    /**
+     * Adds the time offset of a pair of time offset and value.
+     *
+     * @param timeOffset the time offset in seconds
+     */
+    public void addTimeOffset(final int timeOffset)
+    {
+        numberOfValues++;
+
+        if (timeOffset < minTimeOffset)
+            minTimeOffset = timeOffset;
+
+        if (timeOffset > maxTimeOffset)
+            maxTimeOffset = timeOffset;
+
+        samplingAnalyzer.addTimeOffset(timeOffset);
+    }
+
+
+    /**
+     * Adds a pair of which the time offset is missing or not an integer,
+     * counting its value as missing.
+     */
+    public void addMissingTimeOffset()
+    {
+        numberOfMissingValues++;
+    }
+
+
+    /**
+     * Adds the value of a pair of time offset and value. Values that are not
+     * numeric, such as 'NA', are not included in the {@linkplain ValueStatistics}.
+     *
+     * @param valueString the value as string, or null
+     */
+    public void addValue(final String valueString)
+    {
+        valueStatistics.addValue(valueString);
+    }
+
+
+    /**
+     * Adds the value of a pair of time offset and value.
+     *
+     * @param value the value, or NaN if it is missing
+     */
+    public void addValue(final double value)
+    {
+        valueStatistics.addValue(value);
+    }
+
+
+    /**
+     * Adds the value of a component of a depth bin of a multivariate
+     * measurement. Components beyond the supported number are ignored.
+     *
+     * @param component the index of the component within its bin
+     * @param valueString the value as string, or null
+     */
+    public void addBinValue(final int component, final String valueString)
+    {
+        if (component >= binStatistics.length)
+            return;
+
+        if (binStatistics[component] == null)
+            binStatistics[component] = new ValueStatisticsBuilder();
+
+        numberOfBinComponents = Math.max(numberOfBinComponents, component + 1);
+        binStatistics[component].addValue(valueString);
+    }
+
+
+    /**
+     * Adds the number of depth bins of a multivariate measurement.
+     *
+     * @param numberOfBinsOfMeasurement the number of bins of the measurement
+     */
+    public void addBins(final int numberOfBinsOfMeasurement)
+    {
+        if (numberOfBinsOfMeasurement > numberOfBins)
+            numberOfBins = numberOfBinsOfMeasurement;
+    }
+
+
+    /**
+     * Creates a {@linkplain ValueStatistics} summary for each component of
+     * the depth bins.
+     *
+     * @return a list of {@linkplain ValueStatistics}, which are null for components without numeric values
+     */
+    public List<ValueStatistics> getBinStatistics()
+    {
+        final List<ValueStatistics> statistics = new ArrayList<>(numberOfBinComponents);
+
+        for (int i = 0; i < numberOfBinComponents; i++)
+            statistics.add(binStatistics[i] == null ? null : binStatistics[i].build());
+
+        return Collections.unmodifiableList(statistics);
+    }
+
+
+    /**
+     * Creates a {@linkplain ValueStatistics} summary of all values that were
+     * added so far.
+     *
+     * @return a {@linkplain ValueStatistics} summary, or null if no numeric values were added
+     */
+    public ValueStatistics getValueStatistics()
+    {
+        return valueStatistics.build();
+    }
+
+
+    /**
+     * Creates a {@linkplain SamplingSummary} of all time offsets that were
+     * added so far.
+     *
+     * @return a {@linkplain SamplingSummary}, or null if there are less than two distinct time offsets
+     */
+    public SamplingSummary getSamplingSummary()
+    {
+        return samplingAnalyzer.build(referenceInstant);
+    }
+
+
+    /**
+     * Creates a {@linkplain TimeSeriesDataset} from all pairs that were added so far.
+     *
+     * @return a {@linkplain TimeSeriesDataset} summarizing the added pairs
+     */
+    public TimeSeriesDataset build()
+    {
+        return new TimeSeriesDataset(referenceInstant, numberOfValues, numberOfMissingValues, minTimeOffset, maxTimeOffset,
+                                     getValueStatistics(), getSamplingSummary(), numberOfBins, getBinStatistics());
+    }
+}
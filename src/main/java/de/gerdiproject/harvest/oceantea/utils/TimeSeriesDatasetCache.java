@@ -0,0 +1,303 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A size-bounded disk cache for the {@linkplain TimeSeriesDataset}s of
+ * downloaded time series datasets, using the download URLs as keys.
+ * Instead of the raw JSON responses, only the summaries are stored, together
+ * with the validators (ETag and Last-Modified) that were sent by the server,
+ * so that the datasets can be revalidated with conditional requests.
+ * If the cache holds more entries than allowed, the least recently used
+ * entries are removed. Entries that were written by other versions of the
+ * cache are discarded. The cache can be used by multiple threads.
+ *
+ * @author Ingo Thomsen
+ */
+public class TimeSeriesDatasetCache
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(TimeSeriesDatasetCache.class);
+
+    private final Gson gson = new GsonBuilder().registerTypeAdapter(Instant.class, new InstantAdapter()).create();
+    private final File cacheFolder;
+    private final int maxEntries;
+
+    // maps the cache file names to the cache files, ordered from least to most recently used
+    private final Map<String, File> cacheFiles = new LinkedHashMap<>(16, 0.75f, true);
+
+
+    /**
+     * Constructor that indexes the entries which are already stored in the
+     * cache folder, in the order in which they were last used.
+     *
+     * @param cacheFolder the folder in which the cache entries are stored
+     * @param maxEntries the maximum number of cached datasets
+     */
+    public TimeSeriesDatasetCache(final File cacheFolder, final int maxEntries)
+    {
+        this.cacheFolder = cacheFolder;
+        this.maxEntries = maxEntries;
+
+        final File[] existingFiles = cacheFolder.listFiles(
+                                         (final File dir, final String name) -> name.endsWith(OceanTeaTimeSeriesDownloaderConstants.DATASET_CACHE_FILE_EXTENSION));
+
+        if (existingFiles != null) {
+            Arrays.sort(existingFiles, Comparator.comparingLong(File::lastModified));
+
+            for (final File file : existingFiles)
+                cacheFiles.put(file.getName(), file);
+
+            evictLeastRecentlyUsed();
+        }
+    }
+
+
+    /**
+     * Retrieves a cache entry and marks it as recently used.
+     *
+     * @param url the download URL of a dataset
+     *
+     * @return the cache entry of the dataset, or null if it is not cached
+     */
+    public synchronized CachedTimeSeriesDataset get(final String url)
+    {
+        final File cacheFile = cacheFiles.get(getFileName(url));
+
+        if (cacheFile == null)
+            return null;
+
+        try
+            (Reader reader = Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+            final CachedTimeSeriesDataset entry = gson.fromJson(reader, CachedTimeSeriesDataset.class);
+
+            if (entry != null && entry.getVersion() == OceanTeaTimeSeriesDownloaderConstants.DATASET_CACHE_VERSION
+                && url.equals(entry.getUrl()) && entry.getDataset() != null) {
+                // persist the usage, so the order survives restarts
+                if (!cacheFile.setLastModified(System.currentTimeMillis()))
+                    LOGGER.debug(String.format(OceanTeaTimeSeriesDownloaderConstants.DATASET_CACHE_TOUCH_FAILED, cacheFile));
+
+                return entry;
+            }
+        } catch (final IOException | JsonParseException | DateTimeException e) {
+            LOGGER.warn(String.format(OceanTeaTimeSeriesDownloaderConstants.DATASET_CACHE_READ_FAILED, cacheFile), e);
+        }
+
+        // remove unreadable, outdated or mismatching entries
+        remove(url);
+        return null;
+    }
+
+
+    /**
+     * Stores a cache entry, removing the least recently used entries if the
+     * cache is full.
+     *
+     * @param entry the cache entry of a dataset
+     */
+    public synchronized void put(final CachedTimeSeriesDataset entry)
+    {
+        final String fileName = getFileName(entry.getUrl());
+        final File cacheFile = new File(cacheFolder, fileName);
+        File tempFile = null;
+
+        try {
+            Files.createDirectories(cacheFolder.toPath());
+
+            // write to a temporary file first, so no incomplete entries can be read
+            tempFile = File.createTempFile(fileName, null, cacheFolder);
+
+            try
+                (Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+                gson.toJson(entry, writer);
+            }
+
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (final IOException | JsonIOException e) {
+            LOGGER.warn(String.format(OceanTeaTimeSeriesDownloaderConstants.DATASET_CACHE_WRITE_FAILED, cacheFile), e);
+            return;
+
+        } finally {
+            // the temporary file only remains if the entry could not be stored
+            if (tempFile != null)
+                deleteFile(tempFile);
+        }
+
+        cacheFiles.put(fileName, cacheFile);
+        evictLeastRecentlyUsed();
+    }
+
+
+    /**
+     * Removes a cache entry.
+     *
+     * @param url the download URL of a dataset
+     */
+    public synchronized void remove(final String url)
+    {
+        final File cacheFile = cacheFiles.remove(getFileName(url));
+
+        if (cacheFile != null)
+            deleteFile(cacheFile);
+    }
+
+
+    /**
+     * Returns the number of cached datasets.
+     *
+     * @return the number of cached datasets
+     */
+    public synchronized int size()
+    {
+        return cacheFiles.size();
+    }
+
+
+    /**
+     * Removes the least recently used entries until the cache is not
+     * exceeding its maximum size anymore.
+     */
+    private void evictLeastRecentlyUsed()
+    {
+        final Iterator<File> leastRecentlyUsedFirst = cacheFiles.values().iterator();
+
+        while (cacheFiles.size() > maxEntries && leastRecentlyUsedFirst.hasNext()) {
+            final File evictedFile = leastRecentlyUsedFirst.next();
+            leastRecentlyUsedFirst.remove();
+            deleteFile(evictedFile);
+        }
+    }
+
+
+    /**
+     * Deletes a cache file, logging a failure.
+     *
+     * @param cacheFile the file to be deleted
+     */
+    private static void deleteFile(final File cacheFile)
+    {
+        try {
+            Files.deleteIfExists(cacheFile.toPath());
+        } catch (final IOException e) {
+            LOGGER.warn(String.format(OceanTeaTimeSeriesDownloaderConstants.DATASET_CACHE_DELETE_FAILED, cacheFile), e);
+        }
+    }
+
+
+    /**
+     * Assembles the name of the cache file of a dataset by hashing its URL.
+     *
+     * @param url the download URL of a dataset
+     *
+     * @return the name of the cache file
+     */
+    private static String getFileName(final String url)
+    {
+        return HashUtils.toHexHash(OceanTeaTimeSeriesDownloaderConstants.DATASET_CACHE_HASH_ALGORITHM, url)
+               + OceanTeaTimeSeriesDownloaderConstants.DATASET_CACHE_FILE_EXTENSION;
+    }
+
+
+    /**
+     * A cached {@linkplain TimeSeriesDataset} with the validators that the
+     * server sent along with the dataset.
+     *
+     * @author Ingo Thomsen
+     */
+    @Data
+    @AllArgsConstructor
+    public static final class CachedTimeSeriesDataset
+    {
+        // entries of other versions may lack parts of the dataset summary
+        private final int version;
+        private final String url;
+        private final String eTag;
+        private final String lastModified;
+        private final TimeSeriesDataset dataset;
+
+
+        /**
+         * Checks if the cached dataset can be revalidated with a conditional request.
+         *
+         * @return true if the server sent an ETag or a Last-Modified date
+         */
+        public boolean hasValidators()
+        {
+            return eTag != null || lastModified != null;
+        }
+    }
+
+
+    /**
+     * Gson adapter that (de-)serializes {@linkplain Instant}s as ISO-8601 strings.
+     *
+     * @author Ingo Thomsen
+     */
+    private static final class InstantAdapter extends TypeAdapter<Instant>
+    {
+        @Override
+        public void write(final JsonWriter out, final Instant value) throws IOException
+        {
+            if (value == null)
+                out.nullValue();
+            else
+                out.value(value.toString());
+        }
+
+
+        @Override
+        public Instant read(final JsonReader in) throws IOException
+        {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            return Instant.parse(in.nextString());
+        }
+    }
+}
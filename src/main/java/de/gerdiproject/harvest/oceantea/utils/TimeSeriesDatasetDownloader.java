@@ -0,0 +1,559 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import de.gerdiproject.harvest.oceantea.metrics.CountingInputStream;
+import de.gerdiproject.harvest.oceantea.metrics.HarvestMetrics;
+import de.gerdiproject.harvest.oceantea.metrics.HarvestPhase;
+import de.gerdiproject.harvest.oceantea.utils.PooledHttpClient.PooledResponse;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesDatasetCache.CachedTimeSeriesDataset;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Downloads time series datasets and summarizes them as
+ * {@linkplain TimeSeriesDataset}s while they are streamed from the server,
+ * using the {@linkplain TimeSeriesDatasetReader}.
+ * If a {@linkplain TimeSeriesDatasetCache} is set, cached datasets are
+ * revalidated with conditional requests and only downloaded again if they
+ * changed. Cached datasets for which the server did not send any validators
+ * are considered to be immutable and are not requested again.
+ * All requests are sent via a {@linkplain PooledHttpClient}, which can be
+ * shared with other components, in order to reuse connections.
+ * Compressed responses are requested and decoded while they are streamed.
+ * If an {@linkplain OceanTeaMirror} is set, the datasets are read from the
+ * mirror instead, bypassing the cache. If an {@linkplain OceanTeaSnapshotWriter}
+ * is set, all downloaded datasets are added to the snapshot. Multivariate
+ * datasets are spooled to a temporary file for this.
+ * If {@linkplain HarvestMetrics} are set, the download and parsing of each
+ * dataset are measured. Since a dataset is parsed while it is streamed, the
+ * download phase only covers the time until the response headers arrive.
+ * If a {@linkplain RetryPolicy} is set, downloads that failed due to
+ * transient errors are retried after a randomized, growing delay. If a
+ * {@linkplain CircuitBreaker} is set, all downloads that share it are paused
+ * when the server fails repeatedly.
+ *
+ * @author Ingo Thomsen
+ */
+public class TimeSeriesDatasetDownloader
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(TimeSeriesDatasetDownloader.class);
+
+    @Getter
+    @Setter
+    private Charset charset = StandardCharsets.UTF_8;
+
+    private PooledHttpClient httpClient;
+
+    @Getter
+    @Setter
+    private RetryPolicy retryPolicy;
+
+    @Getter
+    @Setter
+    private CircuitBreaker circuitBreaker;
+
+    @Getter
+    @Setter
+    private TimeSeriesDatasetCache cache;
+
+    @Getter
+    @Setter
+    private HarvestMetrics metrics;
+
+    @Getter
+    @Setter
+    private OceanTeaMirror mirror;
+
+    @Getter
+    @Setter
+    private OceanTeaSnapshotWriter snapshotWriter;
+
+
+    /**
+     * Returns the {@linkplain PooledHttpClient} that sends all requests. If
+     * none was set, a client with the default timeouts and connection limit
+     * is created on the first call.
+     *
+     * @return the {@linkplain PooledHttpClient} of all requests
+     */
+    public synchronized PooledHttpClient getHttpClient()
+    {
+        if (httpClient == null)
+            httpClient = new PooledHttpClient(
+                OceanTeaTimeSeriesDownloaderConstants.CONNECT_TIMEOUT_DEFAULT,
+                OceanTeaTimeSeriesDownloaderConstants.READ_TIMEOUT_DEFAULT,
+                OceanTeaTimeSeriesDownloaderConstants.MAX_CONNECTIONS_PER_HOST_DEFAULT,
+                OceanTeaTimeSeriesDownloaderConstants.REQUEST_DEADLINE_DEFAULT);
+
+        return httpClient;
+    }
+
+
+    /**
+     * Sets the {@linkplain PooledHttpClient} that sends all requests, in
+     * order to share its connections with other components.
+     *
+     * @param httpClient the {@linkplain PooledHttpClient} of all requests
+     */
+    public synchronized void setHttpClient(final PooledHttpClient httpClient)
+    {
+        this.httpClient = httpClient;
+    }
+
+
+    /**
+     * Download the dataset of a {@linkplain TimeSeries} and summarize it,
+     * retrying the download if it failed due to a transient error.
+     *
+     * @param timeSeries the {@linkplain TimeSeries} of which the dataset is downloaded
+     *
+     * @throws IOException if the dataset could not be downloaded or read
+     *
+     * @return a {@linkplain TimeSeriesDataset} summarizing the downloaded dataset
+     */
+    public TimeSeriesDataset download(final TimeSeries timeSeries) throws IOException
+    {
+        if (mirror != null)
+            return readFromMirror(timeSeries);
+
+        final String url = TimeSeriesParser.getDownloadUrl(timeSeries);
+
+        // a snapshot needs all pairs of the dataset, which are not cached
+        final CachedTimeSeriesDataset cached = snapshotWriter == null
+                                               ? getCachedDataset(url, timeSeries.getReferenceInstant())
+                                               : null;
+
+        // without validators, the cached dataset cannot be revalidated by the server
+        if (cached != null && !cached.hasValidators())
+            return cached.getDataset();
+
+        for (int retry = 0;; retry++) {
+            try {
+                return downloadThroughCircuitBreaker(timeSeries, url, cached);
+
+            } catch (final IOException e) {
+                if (retryPolicy == null || !retryPolicy.isRetryable(e, retry))
+                    throw e;
+
+                waitBeforeRetry(timeSeries, retry, e);
+            }
+        }
+    }
+
+
+    /**
+     * Download the dataset of a {@linkplain TimeSeries} once, as soon as the
+     * circuit breaker allows it, and record at the circuit breaker whether
+     * the server responded.
+     *
+     * @param timeSeries the {@linkplain TimeSeries} of which the dataset is downloaded
+     * @param url the download URL of the dataset
+     * @param cached the cache entry of the dataset, or null
+     *
+     * @throws IOException if the dataset could not be downloaded or read
+     *
+     * @return a {@linkplain TimeSeriesDataset} summarizing the downloaded dataset
+     */
+    private TimeSeriesDataset downloadThroughCircuitBreaker(final TimeSeries timeSeries, final String url,
+                                                            final CachedTimeSeriesDataset cached) throws IOException
+    {
+        if (circuitBreaker == null)
+            return downloadOnce(timeSeries, url, cached);
+
+        final boolean isProbe = circuitBreaker.acquire();
+        boolean isRecorded = false;
+
+        try {
+            final TimeSeriesDataset dataset = downloadOnce(timeSeries, url, cached);
+            circuitBreaker.recordSuccess();
+            isRecorded = true;
+            return dataset;
+
+        } catch (final IOException e) {
+            isRecorded = recordFailure(e);
+            throw e;
+
+        } catch (final RuntimeException | Error e) { // NOPMD an unexpected error must not keep the probe pending
+            recordTransientFailure();
+            isRecorded = true;
+            throw e;
+
+        } finally {
+            if (isProbe && !isRecorded)
+                circuitBreaker.release();
+        }
+    }
+
+
+    /**
+     * Download the dataset of a {@linkplain TimeSeries} once and summarize it.
+     *
+     * @param timeSeries the {@linkplain TimeSeries} of which the dataset is downloaded
+     * @param url the download URL of the dataset
+     * @param cached the cache entry of the dataset, or null
+     *
+     * @throws IOException if the dataset could not be downloaded or read
+     *
+     * @return a {@linkplain TimeSeriesDataset} summarizing the downloaded dataset
+     */
+    private TimeSeriesDataset downloadOnce(final TimeSeries timeSeries, final String url, final CachedTimeSeriesDataset cached)
+    throws IOException
+    {
+        final Instant referenceInstant = timeSeries.getReferenceInstant();
+        final long downloadStart = System.nanoTime();
+
+        try
+            (PooledResponse response = request(url, cached, downloadStart)) {
+            if (cached != null && response.getStatusCode() == HttpURLConnection.HTTP_NOT_MODIFIED)
+                return cached.getDataset();
+
+            if (response.getStatusCode() >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                recordError(HarvestPhase.DATASET_DOWNLOAD);
+                throw new HttpStatusException(response.getStatusCode(), url);
+            }
+
+            final TimeSeriesDataset dataset = readDataset(response, referenceInstant, timeSeries, downloadStart);
+
+            if (cache != null)
+                cache.put(new CachedTimeSeriesDataset(
+                              OceanTeaTimeSeriesDownloaderConstants.DATASET_CACHE_VERSION,
+                              url,
+                              response.getHeader(OceanTeaTimeSeriesDownloaderConstants.ETAG_HEADER),
+                              response.getHeader(OceanTeaTimeSeriesDownloaderConstants.LAST_MODIFIED_HEADER),
+                              dataset));
+
+            return dataset;
+        }
+    }
+
+
+    /**
+     * Records a failed download at the circuit breaker. Only transient errors
+     * count as failures, whereas other errors prove that the server is
+     * responsive. An interrupted download proves neither, and is not recorded.
+     *
+     * @param error the cause of the failed download
+     *
+     * @return true if the failed download was recorded
+     */
+    private boolean recordFailure(final IOException error)
+    {
+        if (error instanceof InterruptedIOException && !(error instanceof SocketTimeoutException))
+            return false;
+
+        if (RetryPolicy.isTransient(error))
+            recordTransientFailure();
+        else
+            circuitBreaker.recordSuccess();
+
+        return true;
+    }
+
+
+    /**
+     * Records a transient failure at the circuit breaker, and counts the
+     * opening of the circuit, if the failure caused it.
+     */
+    private void recordTransientFailure()
+    {
+        if (circuitBreaker.recordFailure() && metrics != null)
+            metrics.recordCircuitBreakerOpening();
+    }
+
+
+    /**
+     * Logs a failed download and waits until it is to be retried.
+     *
+     * @param timeSeries the {@linkplain TimeSeries} of which the dataset is downloaded
+     * @param retry the number of retries that were already made
+     * @param error the cause of the failed download
+     *
+     * @throws InterruptedIOException if the waiting was interrupted
+     */
+    private void waitBeforeRetry(final TimeSeries timeSeries, final int retry, final IOException error) throws InterruptedIOException
+    {
+        final long delay = retryPolicy.getDelay(retry);
+        LOGGER.warn(String.format(
+                        OceanTeaTimeSeriesDownloaderConstants.DATASET_DOWNLOAD_RETRY,
+                        timeSeries.getIdentifier(),
+                        delay,
+                        retry + 1,
+                        retryPolicy.getMaxRetries(),
+                        error.getMessage()));
+
+        if (metrics != null)
+            metrics.recordRetry();
+
+        try {
+            Thread.sleep(delay);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+
+
+    /**
+     * Reads and summarizes the dataset of a {@linkplain TimeSeries} from the mirror.
+     *
+     * @param timeSeries the {@linkplain TimeSeries} of which the dataset is read
+     *
+     * @throws IOException if the dataset could not be read
+     *
+     * @return a {@linkplain TimeSeriesDataset} summarizing the mirrored dataset
+     */
+    private TimeSeriesDataset readFromMirror(final TimeSeries timeSeries) throws IOException
+    {
+        final long parsingStart = System.nanoTime();
+        final TimeSeriesDataset dataset;
+
+        try {
+            dataset = mirror.readDataset(timeSeries, charset);
+        } catch (final IOException e) {
+            recordError(HarvestPhase.DATASET_PARSING);
+            throw e;
+        }
+
+        if (metrics != null) {
+            metrics.recordLatency(HarvestPhase.DATASET_PARSING, parsingStart);
+            metrics.recordDataset(
+                timeSeries.getStation(),
+                timeSeries.getDataType(),
+                parsingStart,
+                0,
+                0,
+                dataset.getNumberOfValues(),
+                dataset.getNumberOfMissingValues());
+        }
+
+        return dataset;
+    }
+
+
+    /**
+     * Requests a dataset and waits for the response headers.
+     *
+     * @param url the download URL of the dataset
+     * @param cached the cache entry of the dataset, or null
+     * @param downloadStart the {@linkplain System#nanoTime()} at the start of the download
+     *
+     * @throws IOException if the request failed
+     *
+     * @return the response to the dataset request
+     */
+    private PooledResponse request(final String url, final CachedTimeSeriesDataset cached, final long downloadStart) throws IOException
+    {
+        final PooledResponse response;
+
+        try {
+            response = getHttpClient().get(url, createRequestHeaders(cached));
+        } catch (final IOException e) {
+            recordError(HarvestPhase.DATASET_DOWNLOAD);
+            throw e;
+        }
+
+        if (metrics != null)
+            metrics.recordLatency(HarvestPhase.DATASET_DOWNLOAD, downloadStart);
+
+        return response;
+    }
+
+
+    /**
+     * Reads and summarizes the body of a dataset response while it is
+     * streamed.
+     *
+     * @param response the response to a dataset request
+     * @param referenceInstant reference {@linkplain Instant} for the time offsets
+     * @param timeSeries the {@linkplain TimeSeries} of which the dataset is downloaded
+     * @param downloadStart the {@linkplain System#nanoTime()} at the start of the download
+     *
+     * @throws IOException if the dataset could not be read
+     *
+     * @return a {@linkplain TimeSeriesDataset} summarizing the downloaded dataset
+     */
+    private TimeSeriesDataset readDataset(final PooledResponse response, final Instant referenceInstant,
+                                          final TimeSeries timeSeries, final long downloadStart) throws IOException
+    {
+        final long parsingStart = System.nanoTime();
+        final TimeSeriesDataset dataset;
+        final CountingInputStream transferredStream;
+        final CountingInputStream decodedStream;
+
+        try {
+            transferredStream = new CountingInputStream(response.getBody());
+            decodedStream = new CountingInputStream(ContentEncodingUtils.decode(
+                                                        transferredStream,
+                                                        response.getHeader(OceanTeaTimeSeriesDownloaderConstants.CONTENT_ENCODING_HEADER)));
+
+            if (snapshotWriter != null && timeSeries.isMultivariate())
+                dataset = readSpooledDataset(decodedStream, timeSeries);
+            else {
+                try
+                    (Reader reader = new InputStreamReader(decodedStream, charset)) {
+                    if (snapshotWriter == null)
+                        dataset = TimeSeriesDatasetReader.read(reader, referenceInstant);
+                    else {
+                        final ColumnarDataset columnarDataset = ColumnarDataset.readJson(reader);
+                        snapshotWriter.writeDataset(timeSeries, columnarDataset);
+                        dataset = columnarDataset.toTimeSeriesDataset(referenceInstant);
+                    }
+
+                    ContentEncodingUtils.readToEnd(decodedStream);
+                }
+            }
+        } catch (final IOException e) {
+            recordError(HarvestPhase.DATASET_PARSING);
+            throw e;
+        }
+
+        if (metrics != null) {
+            metrics.recordLatency(HarvestPhase.DATASET_PARSING, parsingStart);
+            metrics.recordDataset(
+                timeSeries.getStation(),
+                timeSeries.getDataType(),
+                downloadStart,
+                transferredStream.getCount(),
+                decodedStream.getCount(),
+                dataset.getNumberOfValues(),
+                dataset.getNumberOfMissingValues());
+        }
+
+        return dataset;
+    }
+
+
+    /**
+     * Spools the JSON representation of a multivariate dataset to a temporary
+     * file, summarizes it and adds it to the snapshot. The depth bins of
+     * multivariate datasets do not fit into a {@linkplain ColumnarDataset},
+     * and spooling them to disk keeps these large datasets out of memory.
+     *
+     * @param inputStream the decoded body of the dataset response
+     * @param timeSeries the {@linkplain TimeSeries} of which the dataset is downloaded
+     *
+     * @throws IOException if the dataset could not be spooled, read or added to the snapshot
+     *
+     * @return a {@linkplain TimeSeriesDataset} summarizing the downloaded dataset
+     */
+    private TimeSeriesDataset readSpooledDataset(final InputStream inputStream, final TimeSeries timeSeries) throws IOException
+    {
+        final Path spoolFile = Files.createTempFile(OceanTeaTimeSeriesDownloaderConstants.SPOOL_FILE_PREFIX,
+                                                    OceanTeaTimeSeriesDownloaderConstants.MIRROR_FILE_EXTENSION);
+
+        try {
+            try {
+                Files.copy(inputStream, spoolFile, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                inputStream.close();
+            }
+
+            final TimeSeriesDataset dataset;
+
+            try
+                (Reader reader = Files.newBufferedReader(spoolFile, charset)) {
+                dataset = TimeSeriesDatasetReader.read(reader, timeSeries.getReferenceInstant());
+            }
+
+            snapshotWriter.writeDatasetFile(timeSeries, spoolFile);
+            return dataset;
+
+        } finally {
+            try {
+                Files.deleteIfExists(spoolFile);
+            } catch (final IOException e) {
+                LOGGER.warn(String.format(OceanTeaTimeSeriesDownloaderConstants.SPOOL_DELETE_FAILED, spoolFile), e);
+            }
+        }
+    }
+
+
+    /**
+     * Assembles the headers of a dataset request. If the dataset is cached,
+     * the request is conditional.
+     *
+     * @param cached the cache entry of the dataset, or null
+     *
+     * @return the request headers
+     */
+    private static Map<String, String> createRequestHeaders(final CachedTimeSeriesDataset cached)
+    {
+        final Map<String, String> requestHeaders = new HashMap<>();
+        requestHeaders.put(OceanTeaTimeSeriesDownloaderConstants.ACCEPT_ENCODING_HEADER, OceanTeaTimeSeriesDownloaderConstants.ACCEPTED_ENCODINGS);
+
+        if (cached != null) {
+            if (cached.getETag() != null)
+                requestHeaders.put(OceanTeaTimeSeriesDownloaderConstants.IF_NONE_MATCH_HEADER, cached.getETag());
+
+            if (cached.getLastModified() != null)
+                requestHeaders.put(OceanTeaTimeSeriesDownloaderConstants.IF_MODIFIED_SINCE_HEADER, cached.getLastModified());
+        }
+
+        return requestHeaders;
+    }
+
+
+    /**
+     * Records an error of a harvest phase, if metrics are set.
+     *
+     * @param phase the {@linkplain HarvestPhase} that failed
+     */
+    private void recordError(final HarvestPhase phase)
+    {
+        if (metrics != null)
+            metrics.recordError(phase);
+    }
+
+
+    /**
+     * Retrieves a dataset from the cache, if it was cached for the same
+     * reference {@linkplain Instant}.
+     *
+     * @param url the download URL of the dataset
+     * @param referenceInstant reference {@linkplain Instant} for the time offsets
+     *
+     * @return the cache entry of the dataset or null, if there is no matching entry
+     */
+    private CachedTimeSeriesDataset getCachedDataset(final String url, final Instant referenceInstant)
+    {
+        final CachedTimeSeriesDataset cached = cache == null ? null : cache.get(url);
+
+        return cached != null && referenceInstant.equals(cached.getDataset().getReferenceInstant())
+               ? cached
+               : null;
+    }
+}
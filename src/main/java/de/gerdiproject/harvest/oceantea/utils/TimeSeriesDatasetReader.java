@@ -0,0 +1,206 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Instant;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import de.gerdiproject.harvest.oceantea.json.TimeSeriesDatasetResponse;
+
+/**
+ * A streaming alternative to binding a whole {@linkplain TimeSeriesDatasetResponse}:
+ * The "data" array is read token by token and summarized in a single pass, so
+ * the memory that is needed does not depend on the size of the dataset.
+ * Unlike the binding, the reader also supports the measurements of
+ * multivariate (ADCP) datasets, which consist of multiple depth bins.
+ * The resulting {@linkplain TimeSeriesDataset} is identical to the one created
+ * from the corresponding {@linkplain TimeSeriesDatasetResponse}. Pairs with a
+ * time offset that is not an integer are counted as missing values, whereas
+ * JSON that does not have the structure of a dataset response is reported as
+ * {@linkplain MalformedJsonException}.
+ *
+ * @author Ingo Thomsen
+ */
+public final class TimeSeriesDatasetReader
+{
+    /**
+     * Private constructor to enforce non-instantiability
+     */
+    private TimeSeriesDatasetReader()
+    {
+    }
+
+
+    /**
+     * Read the JSON representation of a time series dataset and create a
+     * {@linkplain TimeSeriesDataset} from it.
+     *
+     * @param reader a {@linkplain Reader} providing the JSON response
+     * @param referenceInstant reference {@linkplain Instant} for the time offsets
+     *
+     * @throws IOException if the JSON could not be read or is malformed
+     *
+     * @return a {@linkplain TimeSeriesDataset} summarizing the JSON response
+     */
+    public static TimeSeriesDataset read(final Reader reader, final Instant referenceInstant) throws IOException
+    {
+        final TimeSeriesDatasetBuilder builder = new TimeSeriesDatasetBuilder(referenceInstant);
+
+        try
+            (JsonReader jsonReader = new JsonReader(reader)) {
+            // be as tolerant as Gson is when binding a TimeSeriesDatasetResponse
+            jsonReader.setLenient(true);
+            jsonReader.beginObject();
+
+            while (jsonReader.hasNext()) {
+                if (!OceanTeaTimeSeriesDownloaderConstants.DATASET_DATA_FIELD.equals(jsonReader.nextName())
+                    || jsonReader.peek() != JsonToken.BEGIN_ARRAY) {
+                    jsonReader.skipValue();
+                    continue;
+                }
+
+                jsonReader.beginArray();
+
+                while (jsonReader.hasNext())
+                    readPair(jsonReader, builder);
+
+                jsonReader.endArray();
+            }
+
+            jsonReader.endObject();
+
+        } catch (final IllegalStateException e) {
+            // unexpected tokens, such as a top-level array, are not reported as IOException by the JsonReader
+            throw new MalformedJsonException(e.getMessage());
+        }
+
+        return builder.build();
+    }
+
+
+    /**
+     * Read one pair of time offset and value and add both to a
+     * {@linkplain TimeSeriesDatasetBuilder}, as they are written in the JSON
+     * response. Measurements of multivariate datasets consist of a time offset
+     * followed by several depth bins, which may also be enclosed in an array
+     * of their own. Each bin is either a single value or an array of
+     * components, such as direction and magnitude. All values are added
+     * directly to the builder, so no lists are created for any measurement.
+     *
+     * @param jsonReader a {@linkplain JsonReader} that is positioned in front of a pair
+     * @param builder the {@linkplain TimeSeriesDatasetBuilder} to which the pair is added
+     *
+     * @throws IOException if the JSON could not be read or is malformed
+     */
+    private static void readPair(final JsonReader jsonReader, final TimeSeriesDatasetBuilder builder) throws IOException
+    {
+        if (jsonReader.peek() != JsonToken.BEGIN_ARRAY) {
+            jsonReader.skipValue();
+            builder.addTimeOffset((String) null);
+            return;
+        }
+
+        jsonReader.beginArray();
+        builder.addTimeOffset(readString(jsonReader));
+
+        if (jsonReader.hasNext()) {
+            if (jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                // the bins are enclosed in an array
+                jsonReader.beginArray();
+                builder.addBins(readBins(jsonReader, builder, 0));
+                jsonReader.endArray();
+            } else {
+                final String valueString = readString(jsonReader);
+
+                if (jsonReader.hasNext()) {
+                    // the value is the first of several bins
+                    builder.addBinValue(0, valueString);
+                    builder.addBins(readBins(jsonReader, builder, 1));
+                } else
+                    builder.addValue(valueString);
+            }
+        }
+
+        while (jsonReader.hasNext())
+            jsonReader.skipValue();
+
+        jsonReader.endArray();
+    }
+
+
+    /**
+     * Read the remaining depth bins of a measurement and add their values to
+     * a {@linkplain TimeSeriesDatasetBuilder}.
+     *
+     * @param jsonReader a {@linkplain JsonReader} that is positioned in front of a bin
+     * @param builder the {@linkplain TimeSeriesDatasetBuilder} to which the values are added
+     * @param numberOfReadBins the number of bins of the measurement that were already read
+     *
+     * @throws IOException if the JSON could not be read or is malformed
+     *
+     * @return the total number of bins of the measurement
+     */
+    private static int readBins(final JsonReader jsonReader, final TimeSeriesDatasetBuilder builder, final int numberOfReadBins) throws IOException
+    {
+        int numberOfBins = numberOfReadBins;
+
+        while (jsonReader.hasNext()) {
+            if (jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                jsonReader.beginArray();
+
+                for (int component = 0; jsonReader.hasNext(); component++)
+                    builder.addBinValue(component, readString(jsonReader));
+
+                jsonReader.endArray();
+            } else
+                builder.addBinValue(0, readString(jsonReader));
+
+            numberOfBins++;
+        }
+
+        return numberOfBins;
+    }
+
+
+    /**
+     * Read the next element of a pair, if it is a number or a string.
+     *
+     * @param jsonReader a {@linkplain JsonReader} that is positioned inside a pair
+     *
+     * @throws IOException if the JSON could not be read or is malformed
+     *
+     * @return the raw element or null, if there is none or it is neither a number nor a string
+     */
+    private static String readString(final JsonReader jsonReader) throws IOException
+    {
+        if (!jsonReader.hasNext())
+            return null;
+
+        final JsonToken token = jsonReader.peek();
+
+        if (token == JsonToken.NUMBER || token == JsonToken.STRING)
+            return jsonReader.nextString();
+
+        jsonReader.skipValue();
+        return null;
+    }
+}
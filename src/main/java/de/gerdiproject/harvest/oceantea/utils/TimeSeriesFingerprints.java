@@ -0,0 +1,270 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDataCiteConstants;
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+
+/**
+ * Fingerprints of all harvested {@linkplain TimeSeries}, mapped by their
+ * identifiers and persisted between harvests. A fingerprint is a hash of the
+ * metadata of a {@linkplain TimeSeries}, the summary of its
+ * {@linkplain TimeSeriesDataset} and the version of the document format, so
+ * it changes if anything that ends up in the harvested document changes. The
+ * fingerprints can be compared and remembered by multiple threads.
+ *
+ * @author Ingo Thomsen
+ */
+public class TimeSeriesFingerprints
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(TimeSeriesFingerprints.class);
+    private static final Type FINGERPRINT_MAP_TYPE = new TypeToken<Map<String, String>>() {} .getType();
+
+    private final Gson gson = new Gson();
+    private final File fingerprintFile;
+    private final Map<String, String> fingerprints;
+
+
+    /**
+     * Constructor that loads the fingerprints of the previous harvests.
+     *
+     * @param fingerprintFile the file in which the fingerprints are stored
+     */
+    public TimeSeriesFingerprints(final File fingerprintFile)
+    {
+        this.fingerprintFile = fingerprintFile;
+        this.fingerprints = load(fingerprintFile);
+    }
+
+
+    /**
+     * Creates the fingerprint of a {@linkplain TimeSeries} and the summary of
+     * its dataset.
+     *
+     * @param timeSeries the metadata of a time series
+     * @param timeSeriesDataset the summary of the corresponding dataset
+     *
+     * @return a hash string
+     */
+    public static String createFingerprint(final TimeSeries timeSeries, final TimeSeriesDataset timeSeriesDataset)
+    {
+        final String text = String.format(OceanTeaTimeSeriesDataCiteConstants.FORMATTING_LOCALE,
+                                          OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_TEMPLATE,
+                                          timeSeries.getRegion(),
+                                          timeSeries.getRegionPrintName(),
+                                          timeSeries.getDevice(),
+                                          timeSeries.getStation(),
+                                          timeSeries.getDataType(),
+                                          timeSeries.getDataTypePrintName(),
+                                          timeSeries.getDataTypeUnit(),
+                                          timeSeries.getTimeSeriesType(),
+                                          timeSeries.getReferenceInstant(),
+                                          timeSeries.getLongitude(),
+                                          timeSeries.getLatitude(),
+                                          timeSeries.getDepth(),
+                                          getSummaryText(timeSeriesDataset));
+
+        return HashUtils.toHexHash(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_HASH_ALGORITHM, text);
+    }
+
+
+    /**
+     * Checks if a time series was already harvested with the same fingerprint.
+     *
+     * @param identifier the identifier of the time series
+     * @param fingerprint the current fingerprint of the time series
+     *
+     * @return true if the fingerprint did not change since the last harvest
+     */
+    public boolean isUnchanged(final String identifier, final String fingerprint)
+    {
+        return fingerprint.equals(fingerprints.get(identifier));
+    }
+
+
+    /**
+     * Remembers the fingerprint of a harvested time series.
+     *
+     * @param identifier the identifier of the time series
+     * @param fingerprint the current fingerprint of the time series
+     */
+    public void put(final String identifier, final String fingerprint)
+    {
+        fingerprints.put(identifier, fingerprint);
+    }
+
+
+    /**
+     * Writes all fingerprints to the fingerprint file.
+     */
+    public void save()
+    {
+        try {
+            final File folder = fingerprintFile.getAbsoluteFile().getParentFile();
+            Files.createDirectories(folder.toPath());
+
+            // write to a temporary file first, so the fingerprints are never incomplete
+            final File tempFile = File.createTempFile(fingerprintFile.getName(), null, folder);
+
+            try
+                (Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+                gson.toJson(fingerprints, FINGERPRINT_MAP_TYPE, writer);
+            }
+
+            Files.move(tempFile.toPath(), fingerprintFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (final IOException e) {
+            LOGGER.warn(String.format(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINTS_WRITE_FAILED, fingerprintFile), e);
+        }
+    }
+
+
+    /**
+     * Lists the summary fields of a {@linkplain TimeSeriesDataset} one by one,
+     * so that only the fields that end up in the harvested document are part
+     * of the fingerprint. Decimals are written with their full precision.
+     *
+     * @param timeSeriesDataset the summary of a dataset
+     *
+     * @return the summary fields, separated by {@linkplain OceanTeaTimeSeriesDownloaderConstants#FINGERPRINT_SEPARATOR}
+     */
+    private static String getSummaryText(final TimeSeriesDataset timeSeriesDataset)
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(timeSeriesDataset.getReferenceInstant())
+        .append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR)
+        .append(timeSeriesDataset.getStartInstant())
+        .append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR)
+        .append(timeSeriesDataset.getStopInstant())
+        .append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR)
+        .append(timeSeriesDataset.getNumberOfValues())
+        .append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR)
+        .append(timeSeriesDataset.getNumberOfMissingValues());
+
+        appendValueStatistics(sb, timeSeriesDataset.getValueStatistics());
+
+        final SamplingSummary samplingSummary = timeSeriesDataset.getSamplingSummary();
+        sb.append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR);
+
+        if (samplingSummary != null) {
+            sb.append(samplingSummary.getSamplingInterval())
+            .append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR)
+            .append(samplingSummary.getNumberOfIrregularIntervals())
+            .append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR)
+            .append(samplingSummary.getNumberOfDuplicateTimeOffsets())
+            .append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR)
+            .append(samplingSummary.getNumberOfGaps())
+            .append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR)
+            .append(samplingSummary.getCoverage());
+
+            for (final SamplingSummary.TimeGap gap : samplingSummary.getLongestGaps()) {
+                sb.append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR)
+                .append(gap.getStartInstant())
+                .append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR)
+                .append(gap.getStopInstant());
+            }
+        }
+
+        sb.append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR)
+        .append(timeSeriesDataset.getNumberOfBins());
+
+        if (timeSeriesDataset.getBinStatistics() != null) {
+            for (final ValueStatistics binStatistics : timeSeriesDataset.getBinStatistics())
+                appendValueStatistics(sb, binStatistics);
+        }
+
+        return sb.toString();
+    }
+
+
+    /**
+     * Appends the fields of {@linkplain ValueStatistics} to the summary text,
+     * or only a separator if there are none.
+     *
+     * @param sb the summary text
+     * @param valueStatistics the statistics of some values, or null
+     */
+    private static void appendValueStatistics(final StringBuilder sb, final ValueStatistics valueStatistics)
+    {
+        sb.append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR);
+
+        if (valueStatistics != null) {
+            sb.append(valueStatistics.getNumberOfValues())
+            .append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR)
+            .append(valueStatistics.getMinimum())
+            .append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR)
+            .append(valueStatistics.getMaximum())
+            .append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR)
+            .append(valueStatistics.getMean())
+            .append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR)
+            .append(valueStatistics.getStandardDeviation())
+            .append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR)
+            .append(valueStatistics.getLowerQuartile())
+            .append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR)
+            .append(valueStatistics.getMedian())
+            .append(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINT_SEPARATOR)
+            .append(valueStatistics.getUpperQuartile());
+        }
+    }
+
+
+    /**
+     * Loads the fingerprints of the previous harvests.
+     *
+     * @param fingerprintFile the file in which the fingerprints are stored
+     *
+     * @return a modifiable map of fingerprints
+     */
+    private Map<String, String> load(final File fingerprintFile)
+    {
+        if (fingerprintFile.exists()) {
+            try
+                (Reader reader = Files.newBufferedReader(fingerprintFile.toPath(), StandardCharsets.UTF_8)) {
+                final Map<String, String> loadedFingerprints = gson.fromJson(reader, FINGERPRINT_MAP_TYPE);
+
+                if (loadedFingerprints != null) {
+                    // a concurrent map cannot hold null values
+                    loadedFingerprints.values().removeIf(Objects::isNull);
+                    return new ConcurrentHashMap<>(loadedFingerprints);
+                }
+
+            } catch (final IOException | JsonParseException e) {
+                LOGGER.warn(String.format(OceanTeaTimeSeriesDownloaderConstants.FINGERPRINTS_READ_FAILED, fingerprintFile), e);
+            }
+        }
+
+        return new ConcurrentHashMap<>();
+    }
+}
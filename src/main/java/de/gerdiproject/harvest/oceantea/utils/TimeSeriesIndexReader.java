@@ -0,0 +1,145 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import de.gerdiproject.harvest.oceantea.json.AllTimeSeriesResponse;
+import de.gerdiproject.harvest.oceantea.json.TimeSeriesResponse;
+
+/**
+ * Reads the {@linkplain TimeSeriesResponse}s of an {@linkplain AllTimeSeriesResponse}
+ * one by one while the JSON is streamed, so that the catalogue of time series
+ * never has to be held in memory as a whole. Fields other than the list of time
+ * series are skipped, and a missing list is read as empty list.
+ *
+ * @author Ingo Thomsen
+ */
+public class TimeSeriesIndexReader implements Closeable
+{
+    private final Gson gson;
+    private final JsonReader jsonReader;
+    private boolean hasTimeSeries;
+
+
+    /**
+     * Constructor that positions the reader at the first {@linkplain TimeSeriesResponse}.
+     *
+     * @param reader the reader of the JSON representation of an {@linkplain AllTimeSeriesResponse}
+     * @param gson the {@linkplain Gson} instance that deserializes the {@linkplain TimeSeriesResponse}s
+     *
+     * @throws IOException if the JSON is malformed or could not be read
+     */
+    public TimeSeriesIndexReader(final Reader reader, final Gson gson) throws IOException
+    {
+        this.gson = gson;
+        this.jsonReader = new JsonReader(reader);
+
+        try {
+            jsonReader.beginObject();
+
+            while (jsonReader.hasNext()) {
+                if (OceanTeaTimeSeriesDownloaderConstants.TIMESERIES_FIELD.equals(jsonReader.nextName())
+                    && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                    jsonReader.beginArray();
+                    hasTimeSeries = true;
+                    break;
+                }
+
+                jsonReader.skipValue();
+            }
+        } catch (final IllegalStateException e) {
+            // unexpected tokens, such as a top-level array, are not reported as IOException by the JsonReader
+            throw new MalformedJsonException(e.getMessage());
+        }
+    }
+
+
+    /**
+     * Reads the next {@linkplain TimeSeriesResponse}.
+     *
+     * @throws IOException if the JSON is malformed or could not be read
+     *
+     * @return the next {@linkplain TimeSeriesResponse}, or null if there are no more
+     */
+    public TimeSeriesResponse next() throws IOException
+    {
+        if (!hasMore())
+            return null;
+
+        try {
+            return gson.fromJson(jsonReader, TimeSeriesResponse.class);
+        } catch (final JsonParseException e) {
+            throw new MalformedJsonException(e.getMessage());
+        }
+    }
+
+
+    /**
+     * Skips the next {@linkplain TimeSeriesResponse} without deserializing it.
+     *
+     * @throws IOException if the JSON is malformed or could not be read
+     *
+     * @return true if a {@linkplain TimeSeriesResponse} was skipped,
+     *         or false if there are no more
+     */
+    public boolean skip() throws IOException
+    {
+        if (!hasMore())
+            return false;
+
+        jsonReader.skipValue();
+        return true;
+    }
+
+
+    /**
+     * Checks if there are more {@linkplain TimeSeriesResponse}s to be read.
+     *
+     * @throws IOException if the JSON is malformed or could not be read
+     *
+     * @return true if there are more {@linkplain TimeSeriesResponse}s
+     */
+    private boolean hasMore() throws IOException
+    {
+        if (!hasTimeSeries)
+            return false;
+
+        try {
+            hasTimeSeries = jsonReader.hasNext();
+        } catch (final IllegalStateException e) {
+            throw new MalformedJsonException(e.getMessage());
+        }
+
+        return hasTimeSeries;
+    }
+
+
+    @Override
+    public void close() throws IOException
+    {
+        jsonReader.close();
+    }
+}
@@ -15,9 +15,13 @@
  */
 package de.gerdiproject.harvest.oceantea.utils;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import com.vividsolutions.jts.geom.Point;
@@ -25,6 +29,7 @@ import com.vividsolutions.jts.geom.Point;
 import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDataCiteConstants;
 import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
 import de.gerdiproject.harvest.oceantea.json.TimeSeriesDatasetResponse;
+import de.gerdiproject.harvest.oceantea.utils.SamplingSummary.TimeGap;
 import de.gerdiproject.json.datacite.DateRange;
 import de.gerdiproject.json.datacite.Description;
 import de.gerdiproject.json.datacite.GeoLocation;
@@ -40,37 +45,90 @@ import de.gerdiproject.json.datacite.extension.generic.enums.WebLinkType;
 
 /**
  * A Parser for creating elements for a (GeRDI) DataCite document from a
- * {@linkplain TimeSeries} object.
+ * {@linkplain TimeSeries} object and its {@linkplain TimeSeriesDataset}.
+ * The template strings are parsed only once, and all strings of a time series
+ * are written into the same {@linkplain StringBuilder}. Instances are created
+ * per time series and must not be shared between threads, but several time
+ * series can be parsed concurrently.
  *
  * @author Ingo Thomsen
  */
 public class TimeSeriesParser
 {
-    private TimeSeries timeSeries;
-    private TimeSeriesDataset timeSeriesDataset;
+    private static final CompiledTemplate DOWNLOAD_URL = compile(OceanTeaTimeSeriesDownloaderConstants.DATASET_DOWNLOAD_URL);
+    private static final CompiledTemplate RESEARCH_DATA_LABEL = compile(OceanTeaTimeSeriesDataCiteConstants.REASEARCH_DATA_LABEL);
+    private static final CompiledTemplate GEO_LOCATION_AS_STRING = compile(OceanTeaTimeSeriesDataCiteConstants.GEO_LOCATION_AS_STRING);
+    private static final CompiledTemplate DESCRIPTION = compile(OceanTeaTimeSeriesDataCiteConstants.DESCRIPTION);
+    private static final CompiledTemplate DESCRIPTION_MISSING_VALUES_SUFFIX =
+        compile(OceanTeaTimeSeriesDataCiteConstants.DESCRIPTION_MISSING_VALUES_SUFFIX);
+    private static final CompiledTemplate DESCRIPTION_MEASUREMENT_UNIT_SUFFIX =
+        compile(OceanTeaTimeSeriesDataCiteConstants.DESCRIPTION_MEASUREMENT_UNIT_SUFFIX);
+    private static final CompiledTemplate VALUE_STATISTICS_DESCRIPTION = compile(OceanTeaTimeSeriesDataCiteConstants.VALUE_STATISTICS_DESCRIPTION);
+    private static final CompiledTemplate VALUE_STATISTICS_UNIT_SUFFIX = compile(OceanTeaTimeSeriesDataCiteConstants.VALUE_STATISTICS_UNIT_SUFFIX);
+    private static final CompiledTemplate BIN_DESCRIPTION = compile(OceanTeaTimeSeriesDataCiteConstants.BIN_DESCRIPTION);
+    private static final CompiledTemplate BIN_DIRECTION_SUFFIX = compile(OceanTeaTimeSeriesDataCiteConstants.BIN_DIRECTION_SUFFIX);
+    private static final CompiledTemplate BIN_STATISTICS_DESCRIPTION = compile(OceanTeaTimeSeriesDataCiteConstants.BIN_STATISTICS_DESCRIPTION);
+    private static final CompiledTemplate SAMPLING_DESCRIPTION = compile(OceanTeaTimeSeriesDataCiteConstants.SAMPLING_DESCRIPTION);
+    private static final CompiledTemplate SAMPLING_GAPS_SUFFIX = compile(OceanTeaTimeSeriesDataCiteConstants.SAMPLING_GAPS_SUFFIX);
+    private static final CompiledTemplate SAMPLING_PERIODS_SUFFIX = compile(OceanTeaTimeSeriesDataCiteConstants.SAMPLING_PERIODS_SUFFIX);
+    private static final CompiledTemplate SAMPLING_DUPLICATES_SUFFIX = compile(OceanTeaTimeSeriesDataCiteConstants.SAMPLING_DUPLICATES_SUFFIX);
+    private static final CompiledTemplate MAIN_DOCUMENT_TITLE = compile(OceanTeaTimeSeriesDataCiteConstants.MAIN_DOCUMENT_TITLE);
+    private static final CompiledTemplate GEOLOCATION_PLACE_DESCRIPTION = compile(OceanTeaTimeSeriesDataCiteConstants.GEOLOCATION_PLACE_DESCRIPTION);
+
+    private final TimeSeries timeSeries;
+    private final TimeSeriesDataset timeSeriesDataset;
+
+    // reused for all strings of the time series
+    private final StringBuilder sb = new StringBuilder();
+
+    // the title is also the name of the WebLink
+    private final String mainTitleText;
 
 
     /**
-     * Set up an {@linkplain TimeSeries} object for parsing by downloading the
-     * corresponding {@linkplain TimeSeriesDataset}.
+     * Constructor that sets up a {@linkplain TimeSeries} and its corresponding
+     * {@linkplain TimeSeriesDataset} for parsing.
      *
-     * @param time series a {@linkplain TimeSeries} object
+     * @param timeSeries a {@linkplain TimeSeries} object
+     * @param timeSeriesDataset the {@linkplain TimeSeriesDataset} of the time series
      */
-    public void setTimeSeries(final TimeSeries timeSeries)
+    public TimeSeriesParser(final TimeSeries timeSeries, final TimeSeriesDataset timeSeriesDataset)
     {
         this.timeSeries = timeSeries;
+        this.timeSeriesDataset = timeSeriesDataset;
+        this.mainTitleText = format(MAIN_DOCUMENT_TITLE,
+                                    timeSeries.getDataTypePrintName(),
+                                    timeSeries.getDepth(),
+                                    timeSeries.getRegionPrintName());
     }
 
 
     /**
-     * Sets up the corresponding {@linkplain TimeSeriesDataset} to the current
-     * {@linkplain TimeSeries}.
+     * Constructor that sets up a {@linkplain TimeSeries} and the server response
+     * to its dataset request for parsing.
      *
+     * @param timeSeries a {@linkplain TimeSeries} object
      * @param timeSeriesDatasetResponse a server response to a timeseries request
      */
-    public void setTimeSeriesDataset(final TimeSeriesDatasetResponse timeSeriesDatasetResponse)
+    public TimeSeriesParser(final TimeSeries timeSeries, final TimeSeriesDatasetResponse timeSeriesDatasetResponse)
     {
-        this.timeSeriesDataset = new TimeSeriesDataset(timeSeriesDatasetResponse, timeSeries.getReferenceInstant());
+        this(timeSeries, new TimeSeriesDataset(timeSeriesDatasetResponse, timeSeries.getReferenceInstant()));
+    }
+
+
+    /**
+     * Assemble the URL for downloading the JSON representation of a time series.
+     *
+     * @param timeSeries the {@linkplain TimeSeries} of which the URL is assembled
+     *
+     * @return URL string
+     */
+    public static String getDownloadUrl(final TimeSeries timeSeries)
+    {
+        return DOWNLOAD_URL.format(timeSeries.getTimeSeriesType(),
+                                   timeSeries.getStation(),
+                                   timeSeries.getDataType(),
+                                   timeSeries.getDepth());
     }
 
 
@@ -81,12 +139,7 @@ public class TimeSeriesParser
      */
     public String getDownloadUrl()
     {
-        return String.format(OceanTeaTimeSeriesDataCiteConstants.FORMATTING_LOCALE,
-                             OceanTeaTimeSeriesDownloaderConstants.DATASET_DOWNLOAD_URL,
-                             timeSeries.getTimeSeriesType(),
-                             timeSeries.getStation(),
-                             timeSeries.getDataType(),
-                             timeSeries.getDepth());
+        return getDownloadUrl(timeSeries);
     }
 
 
@@ -98,12 +151,11 @@ public class TimeSeriesParser
      */
     public List<ResearchData> getResearchDataList()
     {
-        final String label = String.format(OceanTeaTimeSeriesDataCiteConstants.FORMATTING_LOCALE,
-                                           OceanTeaTimeSeriesDataCiteConstants.REASEARCH_DATA_LABEL,
-                                           timeSeries.getDataTypePrintName(),
-                                           timeSeries.getDepth(),
-                                           timeSeries.getRegionPrintName(),
-                                           timeSeries.getDevice());
+        final String label = format(RESEARCH_DATA_LABEL,
+                                    timeSeries.getDataTypePrintName(),
+                                    timeSeries.getDepth(),
+                                    timeSeries.getRegionPrintName(),
+                                    timeSeries.getDevice());
 
         final ResearchData researchData = new ResearchData(getDownloadUrl(), label);
         researchData.setType(OceanTeaTimeSeriesDataCiteConstants.JSON_MIME_MEDIA_TYPE);
@@ -142,47 +194,173 @@ public class TimeSeriesParser
 
 
     /**
-     * Get DataCite description - using a template string
+     * Get DataCite descriptions - using template strings: An abstract and a
+     * technical description of the values, the depth bins of multivariate
+     * datasets and the sampling.
      *
-     * @return {@linkplain Description} object
+     * @return list of {@linkplain Description} objects
      */
     public List<Description> getDescription()
     {
         final Point point = timeSeries.getGeoLocationPoint();
-        final String geoLocationString = String.format(OceanTeaTimeSeriesDataCiteConstants.FORMATTING_LOCALE,
-                                                       OceanTeaTimeSeriesDataCiteConstants.GEO_LOCATION_AS_STRING,
-                                                       point.getX(),
-                                                       point.getY());
-
-        final StringBuilder sb = new StringBuilder();
-        sb.append(String.format(
-                      OceanTeaTimeSeriesDataCiteConstants.FORMATTING_LOCALE,
-                      OceanTeaTimeSeriesDataCiteConstants.DESCRIPTION,
-                      timeSeries.getDataTypePrintName(),
-                      timeSeriesDataset.getStartInstant(),
-                      timeSeriesDataset.getStopInstant(),
-                      timeSeriesDataset.getNumberOfValues(),
-                      timeSeries.getReferenceInstant(),
-                      timeSeries.getRegionPrintName(),
-                      geoLocationString,
-                      timeSeries.getDepth()));
+        final String geoLocationString = format(GEO_LOCATION_AS_STRING, point.getX(), point.getY());
+
+        sb.setLength(0);
+        DESCRIPTION.appendTo(sb,
+                             timeSeries.getDataTypePrintName(),
+                             timeSeriesDataset.getStartInstant(),
+                             timeSeriesDataset.getStopInstant(),
+                             timeSeriesDataset.getNumberOfValues(),
+                             timeSeries.getReferenceInstant(),
+                             timeSeries.getRegionPrintName(),
+                             geoLocationString,
+                             timeSeries.getDepth());
 
         if (timeSeriesDataset.getNumberOfMissingValues() > 0)
-            sb.append(String.format(
-                          OceanTeaTimeSeriesDataCiteConstants.FORMATTING_LOCALE,
-                          OceanTeaTimeSeriesDataCiteConstants.DESCRIPTION_MISSING_VALUES_SUFFIX,
-                          timeSeriesDataset.getNumberOfMissingValues()));
+            DESCRIPTION_MISSING_VALUES_SUFFIX.appendTo(sb, timeSeriesDataset.getNumberOfMissingValues());
 
         if (!timeSeries.getDataTypeUnit().isEmpty())
-            sb.append(String.format(
-                          OceanTeaTimeSeriesDataCiteConstants.FORMATTING_LOCALE,
-                          OceanTeaTimeSeriesDataCiteConstants.DESCRIPTION_MEASUREMENT_UNIT_SUFFIX,
-                          timeSeries.getDataTypeUnit()));
-
-        return Arrays.asList(new Description(
-                                 sb.toString(),
-                                 DescriptionType.Abstract,
+            DESCRIPTION_MEASUREMENT_UNIT_SUFFIX.appendTo(sb, timeSeries.getDataTypeUnit());
+
+        final List<Description> descriptions = new ArrayList<>();
+        descriptions.add(new Description(
+                             sb.toString(),
+                             DescriptionType.Abstract,
+                             OceanTeaTimeSeriesDataCiteConstants.LANG));
+
+        final List<String> technicalInfo = new ArrayList<>();
+
+        if (timeSeriesDataset.getValueStatistics() != null)
+            technicalInfo.add(getValueStatisticsDescription(timeSeriesDataset.getValueStatistics()));
+
+        if (timeSeries.isMultivariate())
+            technicalInfo.add(getBinDescription());
+
+        if (timeSeriesDataset.getSamplingSummary() != null)
+            technicalInfo.add(getSamplingDescription(timeSeriesDataset.getSamplingSummary()));
+
+        if (!technicalInfo.isEmpty())
+            descriptions.add(new Description(
+                                 String.join(OceanTeaTimeSeriesDataCiteConstants.TECHNICAL_DESCRIPTION_SEPARATOR, technicalInfo),
+                                 DescriptionType.TechnicalInfo,
                                  OceanTeaTimeSeriesDataCiteConstants.LANG));
+
+        return descriptions;
+    }
+
+
+    /**
+     * Assemble the description of the depth bins of a multivariate dataset,
+     * including the {@linkplain ValueStatistics} of each component of the bins.
+     *
+     * @return the description text
+     */
+    private String getBinDescription()
+    {
+        final int numberOfBins = timeSeriesDataset.getNumberOfBins() > 0
+                                 ? timeSeriesDataset.getNumberOfBins()
+                                 : timeSeries.getNumberOfBins();
+
+        sb.setLength(0);
+        BIN_DESCRIPTION.appendTo(sb, numberOfBins, timeSeries.getBinHeight(), timeSeries.getFirstBinHeight());
+
+        if (timeSeries.getBinDirection() != null)
+            BIN_DIRECTION_SUFFIX.appendTo(sb, timeSeries.getBinDirection());
+
+        final List<ValueStatistics> binStatistics = timeSeriesDataset.getBinStatistics();
+
+        for (int component = 0; component < binStatistics.size(); component++) {
+            final ValueStatistics componentStatistics = binStatistics.get(component);
+
+            if (componentStatistics != null) {
+                sb.append(OceanTeaTimeSeriesDataCiteConstants.TECHNICAL_DESCRIPTION_SEPARATOR);
+                appendValueStatistics(BIN_STATISTICS_DESCRIPTION, component + 1, componentStatistics);
+            }
+        }
+
+        return sb.toString();
+    }
+
+
+    /**
+     * Assemble the description of the {@linkplain SamplingSummary} of the
+     * dataset, mentioning gaps and repeated time offsets, if there are any.
+     * If there are more gaps than the longest ones, it is mentioned that
+     * only the longest gaps are left out by the collection dates.
+     *
+     * @param samplingSummary the {@linkplain SamplingSummary} of the dataset
+     *
+     * @return the description text
+     */
+    private String getSamplingDescription(final SamplingSummary samplingSummary)
+    {
+        sb.setLength(0);
+        SAMPLING_DESCRIPTION.appendTo(sb, samplingSummary.getSamplingInterval(), samplingSummary.getCoverage());
+
+        final List<TimeGap> longestGaps = samplingSummary.getLongestGaps();
+
+        if (samplingSummary.getNumberOfGaps() > 0 && !longestGaps.isEmpty()) {
+            final TimeGap longestGap = Collections.max(longestGaps, Comparator.comparing(
+                                                           (final TimeGap gap) -> Duration.between(gap.getStartInstant(), gap.getStopInstant())));
+            SAMPLING_GAPS_SUFFIX.appendTo(sb,
+                                          samplingSummary.getNumberOfGaps(),
+                                          OceanTeaTimeSeriesDownloaderConstants.GAP_THRESHOLD_INTERVALS,
+                                          longestGap.getStartInstant(),
+                                          longestGap.getStopInstant());
+
+            // the collection dates are only split at the retained gaps
+            if (samplingSummary.getNumberOfGaps() > longestGaps.size())
+                SAMPLING_PERIODS_SUFFIX.appendTo(sb, longestGaps.size());
+        }
+
+        if (samplingSummary.getNumberOfDuplicateTimeOffsets() > 0)
+            SAMPLING_DUPLICATES_SUFFIX.appendTo(sb, samplingSummary.getNumberOfDuplicateTimeOffsets());
+
+        return sb.toString();
+    }
+
+
+    /**
+     * Assemble the description of the {@linkplain ValueStatistics} of the
+     * dataset, mentioning the measurement unit, if there is one.
+     *
+     * @param valueStatistics the {@linkplain ValueStatistics} of the dataset
+     *
+     * @return the description text
+     */
+    private String getValueStatisticsDescription(final ValueStatistics valueStatistics)
+    {
+        final String unitString = timeSeries.getDataTypeUnit().isEmpty()
+                                  ? ""
+                                  : format(VALUE_STATISTICS_UNIT_SUFFIX, timeSeries.getDataTypeUnit());
+
+        sb.setLength(0);
+        appendValueStatistics(VALUE_STATISTICS_DESCRIPTION, unitString, valueStatistics);
+        return sb.toString();
+    }
+
+
+    /**
+     * Format {@linkplain ValueStatistics} using a template, of which the
+     * first two arguments are the number of values and the subject of the
+     * statistics, and append them to the description that is being assembled.
+     *
+     * @param template the compiled template string
+     * @param subject the subject of the statistics
+     * @param valueStatistics the {@linkplain ValueStatistics} to be formatted
+     */
+    private void appendValueStatistics(final CompiledTemplate template, final Object subject, final ValueStatistics valueStatistics)
+    {
+        template.appendTo(sb,
+                          valueStatistics.getNumberOfValues(),
+                          subject,
+                          valueStatistics.getMinimum(),
+                          valueStatistics.getMaximum(),
+                          valueStatistics.getMean(),
+                          valueStatistics.getStandardDeviation(),
+                          valueStatistics.getLowerQuartile(),
+                          valueStatistics.getMedian(),
+                          valueStatistics.getUpperQuartile());
     }
 
 
@@ -193,13 +371,7 @@ public class TimeSeriesParser
      */
     public Title getMainTitle()
     {
-        final String titleText = String.format(OceanTeaTimeSeriesDataCiteConstants.FORMATTING_LOCALE,
-                                               OceanTeaTimeSeriesDataCiteConstants.MAIN_DOCUMENT_TITLE,
-                                               timeSeries.getDataTypePrintName(),
-                                               timeSeries.getDepth(),
-                                               timeSeries.getRegionPrintName());
-
-        final Title title = new Title(titleText);
+        final Title title = new Title(mainTitleText);
         title.setLang(OceanTeaTimeSeriesDataCiteConstants.LANG);
 
         return title;
@@ -216,7 +388,7 @@ public class TimeSeriesParser
     public List<WebLink> getWebLinks()
     {
         final WebLink webLink = new WebLink(OceanTeaTimeSeriesDataCiteConstants.VIEW_URL);
-        webLink.setName(getMainTitle().getValue());
+        webLink.setName(mainTitleText);
         webLink.setType(WebLinkType.ViewURL);
 
         return Arrays.asList(webLink);
@@ -233,9 +405,7 @@ public class TimeSeriesParser
     {
         final GeoLocation geoLocation = new GeoLocation();
         geoLocation.setPoint(timeSeries.getGeoLocationPoint());
-        geoLocation.setPlace(String.format(OceanTeaTimeSeriesDataCiteConstants.FORMATTING_LOCALE,
-                                           OceanTeaTimeSeriesDataCiteConstants.GEOLOCATION_PLACE_DESCRIPTION,
-                                           timeSeries.getRegionPrintName()));
+        geoLocation.setPlace(format(GEOLOCATION_PLACE_DESCRIPTION, timeSeries.getRegionPrintName()));
 
         return Arrays.asList(geoLocation);
     }
@@ -243,17 +413,78 @@ public class TimeSeriesParser
 
     /**
      * Return the DataCite dates, which here is the {@linkplain DateRange} of the
-     * time series data set.
+     * time series data set. If the longest gaps of the sampling are known, the
+     * periods between them are added as collection dates. Since only the
+     * {@value OceanTeaTimeSeriesDownloaderConstants#LONGEST_GAPS} longest gaps
+     * are retained, shorter gaps are part of the collection dates, which is
+     * mentioned by the sampling description.
      *
-     * @return list containing one {@linkplain AbstractDate}.
+     * @return list containing one or more {@linkplain AbstractDate}s.
      */
     public List<AbstractDate> getDates()
     {
-        final long epochMilliSince = timeSeriesDataset.getStartInstant().getEpochSecond() * 1000;
-        final long epochMilliUntil = timeSeriesDataset.getStopInstant().getEpochSecond() * 1000;
+        final List<AbstractDate> dates = new ArrayList<>();
+        dates.add(createDateRange(timeSeriesDataset.getStartInstant(), timeSeriesDataset.getStopInstant(), DateType.Created));
+
+        final SamplingSummary samplingSummary = timeSeriesDataset.getSamplingSummary();
+
+        if (samplingSummary != null && !samplingSummary.getLongestGaps().isEmpty()) {
+            Instant periodStart = timeSeriesDataset.getStartInstant();
+
+            for (final TimeGap gap : samplingSummary.getLongestGaps()) {
+                dates.add(createDateRange(periodStart, gap.getStartInstant(), DateType.Collected));
+                periodStart = gap.getStopInstant();
+            }
+
+            dates.add(createDateRange(periodStart, timeSeriesDataset.getStopInstant(), DateType.Collected));
+        }
+
+        return dates;
+    }
+
+
+    /**
+     * Create a {@linkplain DateRange} with a precision of seconds.
+     *
+     * @param since the start of the range
+     * @param until the end of the range
+     * @param dateType the {@linkplain DateType} of the range
+     *
+     * @return a {@linkplain DateRange}
+     */
+    private static DateRange createDateRange(final Instant since, final Instant until, final DateType dateType)
+    {
+        final long epochMilliSince = since.getEpochSecond() * 1000;
+        final long epochMilliUntil = until.getEpochSecond() * 1000;
+
+        return new DateRange(epochMilliSince, epochMilliUntil, dateType);
+    }
+
+
+    /**
+     * Format a compiled template string, reusing the {@linkplain StringBuilder} of the time series.
+     *
+     * @param template the compiled template string
+     * @param args the arguments of the template
+     *
+     * @return the formatted string
+     */
+    private String format(final CompiledTemplate template, final Object... args)
+    {
+        sb.setLength(0);
+        return template.appendTo(sb, args).toString();
+    }
 
-        final DateRange dateRange = new DateRange(epochMilliSince, epochMilliUntil, DateType.Created);
 
-        return Arrays.asList(dateRange);
+    /**
+     * Compile a template string with the {@linkplain OceanTeaTimeSeriesDataCiteConstants#FORMATTING_LOCALE}.
+     *
+     * @param template the template string
+     *
+     * @return the {@linkplain CompiledTemplate}
+     */
+    private static CompiledTemplate compile(final String template)
+    {
+        return new CompiledTemplate(template, OceanTeaTimeSeriesDataCiteConstants.FORMATTING_LOCALE);
     }
 }
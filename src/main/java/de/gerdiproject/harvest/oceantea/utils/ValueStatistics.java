@@ -0,0 +1,38 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import lombok.Value;
+
+/**
+ * An immutable summary of the numeric values of a time series dataset, as
+ * collected by a {@linkplain ValueStatisticsBuilder}. The quartiles are
+ * approximated by a {@linkplain QuantileSketch}.
+ *
+ * @author Ingo Thomsen
+ */
+@Value
+public class ValueStatistics
+{
+    private final long numberOfValues;
+    private final double minimum;
+    private final double maximum;
+    private final double mean;
+    private final double standardDeviation;
+    private final double lowerQuartile;
+    private final double median;
+    private final double upperQuartile;
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.oceantea.utils;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+
+/**
+ * Collects statistics of the values of a time series dataset in a single pass
+ * and creates a {@linkplain ValueStatistics} summary from them. The mean and
+ * variance are updated with Welford's algorithm, which is numerically stable,
+ * and the quartiles are approximated by a {@linkplain QuantileSketch}, so the
+ * memory that is needed barely depends on the size of the dataset.
+ * Values that are not finite numbers, such as 'NA', are ignored.
+ *
+ * @author Ingo Thomsen
+ */
+public final class ValueStatisticsBuilder
+{
+    private final QuantileSketch sketch = new QuantileSketch(OceanTeaTimeSeriesDownloaderConstants.QUANTILE_SKETCH_ACCURACY);
+
+    private long numberOfValues;
+    private double minimum = Double.POSITIVE_INFINITY;
+    private double maximum = Double.NEGATIVE_INFINITY;
+    private double mean;
+
+    // sum of squared differences from the mean
+    private double squaredDeviations;
+
+
+    /**
+     * Adds a value that is written as string.
+     *
+     * @param valueString the value as string, or null
+     */
+    public void addValue(final String valueString)
+    {
+        if (valueString == null)
+            return;
+
+        try {
+            addValue(Double.parseDouble(valueString));
+        } catch (final NumberFormatException e) { // NOPMD non-numeric values are ignored
+        }
+    }
+
+
+    /**
+     * Adds a value, unless it is NaN or infinite.
+     *
+     * @param value the value to be added
+     */
+    public void addValue(final double value)
+    {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            return;
+
+        numberOfValues++;
+
+        final double delta = value - mean;
+        mean += delta / numberOfValues;
+        squaredDeviations += delta * (value - mean);
+
+        if (value < minimum)
+            minimum = value;
+
+        if (value > maximum)
+            maximum = value;
+
+        sketch.add(value);
+    }
+
+
+    /**
+     * Creates a {@linkplain ValueStatistics} summary of all values that were
+     * added so far.
+     *
+     * @return a {@linkplain ValueStatistics} summary, or null if no numeric values were added
+     */
+    public ValueStatistics build()
+    {
+        if (numberOfValues == 0)
+            return null;
+
+        return new ValueStatistics(
+                   numberOfValues,
+                   minimum,
+                   maximum,
+                   mean,
+                   Math.sqrt(squaredDeviations / numberOfValues),
+                   sketch.getQuantile(OceanTeaTimeSeriesDownloaderConstants.LOWER_QUARTILE),
+                   sketch.getQuantile(OceanTeaTimeSeriesDownloaderConstants.MEDIAN),
+                   sketch.getQuantile(OceanTeaTimeSeriesDownloaderConstants.UPPER_QUARTILE));
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.google.gson.Gson;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import de.gerdiproject.harvest.oceantea.json.AllDataTypesResponse;
+import de.gerdiproject.harvest.oceantea.json.AllTimeSeriesResponse;
+import de.gerdiproject.harvest.oceantea.json.TimeSeriesResponse;
+import de.gerdiproject.harvest.oceantea.utils.OceanTeaMirror;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeries;
+
+/**
+ * Non-instantiable utility class for writing {@linkplain OceanTeaMirror}
+ * directories from the test data of the {@linkplain TestDataProvider}, so
+ * that harvests can be tested without accessing OceanTEA. The mirrored
+ * datasets can be replaced or removed in order to simulate changed or
+ * unavailable datasets.
+ *
+ * @author Ingo Thomsen
+ */
+public final class TestMirror
+{
+    private static final Gson GSON = new Gson();
+
+
+    /**
+     * Writes a mirror of a list of time series, of which all have the same dataset.
+     *
+     * @param mirrorFolder the directory of the mirror
+     * @param allTimeSeriesJson the JSON response of the "all time series" request
+     * @param datasetJson the JSON of the dataset of each time series
+     *
+     * @throws IOException if the mirror could not be written
+     */
+    public static void write(Path mirrorFolder, String allTimeSeriesJson, String datasetJson) throws IOException
+    {
+        write(mirrorFolder, allTimeSeriesJson, TestDataProvider.getAllDataTypesJSON("all"), datasetJson);
+    }
+
+
+    /**
+     * Writes a mirror of a list of time series and their data types, of which
+     * all time series have the same dataset.
+     *
+     * @param mirrorFolder the directory of the mirror
+     * @param allTimeSeriesJson the JSON response of the "all time series" request
+     * @param allDataTypesJson the JSON response of the "all data types" request
+     * @param datasetJson the JSON of the dataset of each time series
+     *
+     * @throws IOException if the mirror could not be written
+     */
+    public static void write(Path mirrorFolder, String allTimeSeriesJson, String allDataTypesJson, String datasetJson) throws IOException
+    {
+        Files.createDirectories(mirrorFolder);
+        writeFile(mirrorFolder.resolve(OceanTeaTimeSeriesDownloaderConstants.MIRROR_TIME_SERIES_FILE), allTimeSeriesJson);
+        writeFile(mirrorFolder.resolve(OceanTeaTimeSeriesDownloaderConstants.MIRROR_DATA_TYPES_FILE), allDataTypesJson);
+
+        for (TimeSeries timeSeries : getTimeSeries(mirrorFolder))
+            writeDataset(mirrorFolder, timeSeries, datasetJson);
+    }
+
+
+    /**
+     * Creates the {@linkplain TimeSeries} of a mirror, in the order in which
+     * they are extracted.
+     *
+     * @param mirrorFolder the directory of the mirror
+     *
+     * @throws IOException if the JSON responses of the mirror could not be read
+     *
+     * @return a list of all mirrored {@linkplain TimeSeries}
+     */
+    public static List<TimeSeries> getTimeSeries(Path mirrorFolder) throws IOException
+    {
+        final AllDataTypesResponse dataTypes = GSON.fromJson(
+                                                   readFile(mirrorFolder.resolve(OceanTeaTimeSeriesDownloaderConstants.MIRROR_DATA_TYPES_FILE)),
+                                                   AllDataTypesResponse.class);
+        final List<TimeSeries> timeSeriesList = new ArrayList<>();
+        int index = 0;
+
+        for (TimeSeriesResponse response : readAllTimeSeries(mirrorFolder).getAllTimeSeriesResponses())
+            timeSeriesList.add(new TimeSeries(index++, response, dataTypes.getDatatypeResponseByName(response.getDataType())));
+
+        return timeSeriesList;
+    }
+
+
+    /**
+     * Writes or replaces the mirrored dataset of a {@linkplain TimeSeries}.
+     *
+     * @param mirrorFolder the directory of the mirror
+     * @param timeSeries the {@linkplain TimeSeries} of the dataset
+     * @param datasetJson the JSON of the dataset
+     *
+     * @throws IOException if the dataset could not be written
+     */
+    public static void writeDataset(Path mirrorFolder, TimeSeries timeSeries, String datasetJson) throws IOException
+    {
+        final Path datasetFile = mirrorFolder.resolve(OceanTeaMirror.getDatasetPath(timeSeries));
+        Files.createDirectories(datasetFile.getParent());
+        writeFile(datasetFile, datasetJson);
+    }
+
+
+    /**
+     * Removes the mirrored dataset of a {@linkplain TimeSeries}.
+     *
+     * @param mirrorFolder the directory of the mirror
+     * @param timeSeries the {@linkplain TimeSeries} of the dataset
+     *
+     * @throws IOException if the dataset could not be removed
+     */
+    public static void deleteDataset(Path mirrorFolder, TimeSeries timeSeries) throws IOException
+    {
+        Files.delete(mirrorFolder.resolve(OceanTeaMirror.getDatasetPath(timeSeries)));
+    }
+
+
+    /**
+     * Appends a time series to the mirror, which is a copy of the last
+     * mirrored time series at a greater depth.
+     *
+     * @param mirrorFolder the directory of the mirror
+     * @param datasetJson the JSON of the dataset of the new time series
+     *
+     * @throws IOException if the mirror could not be changed
+     */
+    public static void appendTimeSeries(Path mirrorFolder, String datasetJson) throws IOException
+    {
+        final AllTimeSeriesResponse allTimeSeries = readAllTimeSeries(mirrorFolder);
+        final List<TimeSeriesResponse> responses = allTimeSeries.getAllTimeSeriesResponses();
+
+        final TimeSeriesResponse newResponse = GSON.fromJson(GSON.toJson(responses.get(responses.size() - 1)), TimeSeriesResponse.class);
+        newResponse.setDepth(newResponse.getDepth() + 1);
+        responses.add(newResponse);
+
+        writeFile(mirrorFolder.resolve(OceanTeaTimeSeriesDownloaderConstants.MIRROR_TIME_SERIES_FILE), GSON.toJson(allTimeSeries));
+
+        final List<TimeSeries> timeSeriesList = getTimeSeries(mirrorFolder);
+        writeDataset(mirrorFolder, timeSeriesList.get(timeSeriesList.size() - 1), datasetJson);
+    }
+
+
+    /**
+     * Deletes a directory with all its content, if it exists.
+     *
+     * @param folder the directory to be deleted
+     *
+     * @throws IOException if the directory could not be deleted
+     */
+    public static void delete(Path folder) throws IOException
+    {
+        if (folder == null || !Files.exists(folder))
+            return;
+
+        try
+            (Stream<Path> files = Files.walk(folder)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(file);
+        }
+    }
+
+
+    /**
+     * private constructor to enforce non-instantiability
+     */
+    private TestMirror()
+    {}
+
+
+    /**
+     * Private helper to read the "all time series" response of a mirror.
+     *
+     * @param mirrorFolder the directory of the mirror
+     *
+     * @throws IOException if the response could not be read
+     *
+     * @return the "all time series" response
+     */
+    private static AllTimeSeriesResponse readAllTimeSeries(Path mirrorFolder) throws IOException
+    {
+        return GSON.fromJson(readFile(mirrorFolder.resolve(OceanTeaTimeSeriesDownloaderConstants.MIRROR_TIME_SERIES_FILE)),
+                             AllTimeSeriesResponse.class);
+    }
+
+
+    /**
+     * Private helper to read a UTF-8 encoded file.
+     *
+     * @param file the file to be read
+     *
+     * @throws IOException if the file could not be read
+     *
+     * @return the content of the file
+     */
+    private static String readFile(Path file) throws IOException
+    {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Private helper to write a UTF-8 encoded file.
+     *
+     * @param file the file to be written
+     * @param content the content of the file
+     *
+     * @throws IOException if the file could not be written
+     */
+    private static void writeFile(Path file, String content) throws IOException
+    {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
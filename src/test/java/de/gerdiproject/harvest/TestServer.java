@@ -0,0 +1,394 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDataCiteConstants;
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import de.gerdiproject.harvest.oceantea.utils.OceanTeaMirror;
+import de.gerdiproject.harvest.oceantea.utils.PooledHttpClient;
+
+/**
+ * A local HTTP server that sends the datasets of an {@linkplain OceanTeaMirror}
+ * directory, as well as the mirrored list of all time series and data types,
+ * so that downloads can be tested without accessing OceanTEA.
+ * The server can send an ETag with each dataset and answers matching
+ * conditional requests with "304 Not Modified". The datasets can be
+ * compressed with a content encoding, if the request accepts it. Upcoming
+ * requests can be made to fail with a given status code. All requests and
+ * the bytes of all sent bodies are counted.
+ *
+ * @author Ingo Thomsen
+ */
+public final class TestServer implements Closeable
+{
+    private static final String TIME_SERIES_PATH = "/timeseries/";
+    private static final String DATA_TYPES_PATH = "/datatypes/";
+
+    private final HttpServer server;
+    private final Path mirrorFolder;
+    private final Queue<Integer> failureStatusCodes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger numberOfRequests = new AtomicInteger();
+    private final AtomicInteger numberOfNotModifiedResponses = new AtomicInteger();
+    private final AtomicLong numberOfSentBytes = new AtomicLong();
+    private volatile String eTag;
+    private volatile Encoding encoding = Encoding.IDENTITY;
+
+
+    /**
+     * Constructor that starts the server on a free local port.
+     *
+     * @param mirrorFolder the directory of the mirror of which the datasets are sent
+     *
+     * @throws IOException if the server could not be started
+     */
+    public TestServer(Path mirrorFolder) throws IOException
+    {
+        this.mirrorFolder = mirrorFolder;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(TIME_SERIES_PATH, this::handle);
+        server.createContext(DATA_TYPES_PATH, this::handle);
+        server.start();
+    }
+
+
+    /**
+     * Creates a {@linkplain PooledHttpClient} that sends all requests of
+     * OceanTEA to this server.
+     *
+     * @return a {@linkplain PooledHttpClient} that requests datasets from this server
+     */
+    public PooledHttpClient createHttpClient()
+    {
+        return new RedirectingHttpClient(getUrl());
+    }
+
+
+    /**
+     * Sets the ETag that is sent with each dataset.
+     *
+     * @param eTag the ETag of all datasets, or null if no ETag is to be sent
+     */
+    public void setETag(String eTag)
+    {
+        this.eTag = eTag;
+    }
+
+
+    /**
+     * Sets the content encoding of the sent datasets.
+     *
+     * @param encoding the {@linkplain Encoding} of all datasets
+     */
+    public void setEncoding(Encoding encoding)
+    {
+        this.encoding = encoding;
+    }
+
+
+    /**
+     * Lets upcoming requests fail, one after the other.
+     *
+     * @param statusCodes the status codes of the failed responses
+     */
+    public void failNextRequests(int... statusCodes)
+    {
+        for (int statusCode : statusCodes)
+            failureStatusCodes.add(statusCode);
+    }
+
+
+    /**
+     * Returns the number of received requests.
+     *
+     * @return the number of received requests
+     */
+    public int getNumberOfRequests()
+    {
+        return numberOfRequests.get();
+    }
+
+
+    /**
+     * Returns the number of requests that were answered with "304 Not Modified".
+     *
+     * @return the number of "304 Not Modified" responses
+     */
+    public int getNumberOfNotModifiedResponses()
+    {
+        return numberOfNotModifiedResponses.get();
+    }
+
+
+    /**
+     * Returns the number of bytes of all sent response bodies, as they were
+     * transferred.
+     *
+     * @return the number of sent bytes
+     */
+    public long getNumberOfSentBytes()
+    {
+        return numberOfSentBytes.get();
+    }
+
+
+    @Override
+    public void close()
+    {
+        server.stop(0);
+    }
+
+
+    /**
+     * Private helper that assembles the URL that replaces the OceanTEA base URL.
+     *
+     * @return the base URL of this server
+     */
+    private String getUrl()
+    {
+        return "http://" + server.getAddress().getHostString() + ':' + server.getAddress().getPort() + '/';
+    }
+
+
+    /**
+     * Private helper that answers a dataset request.
+     *
+     * @param exchange the request and its response
+     *
+     * @throws IOException if the response could not be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        numberOfRequests.incrementAndGet();
+
+        try {
+            final Integer failureStatusCode = failureStatusCodes.poll();
+
+            if (failureStatusCode != null) {
+                exchange.sendResponseHeaders(failureStatusCode, -1);
+                return;
+            }
+
+            final String currentETag = eTag;
+
+            if (currentETag != null) {
+                exchange.getResponseHeaders().set(OceanTeaTimeSeriesDownloaderConstants.ETAG_HEADER, currentETag);
+
+                if (currentETag.equals(exchange.getRequestHeaders().getFirst(OceanTeaTimeSeriesDownloaderConstants.IF_NONE_MATCH_HEADER))) {
+                    numberOfNotModifiedResponses.incrementAndGet();
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+                    return;
+                }
+            }
+
+            final Path datasetFile = getMirroredFile(exchange.getRequestURI().getPath());
+
+            if (!Files.isRegularFile(datasetFile)) {
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+                return;
+            }
+
+            final Encoding currentEncoding = encoding;
+            final String acceptedEncodings = exchange.getRequestHeaders().getFirst(OceanTeaTimeSeriesDownloaderConstants.ACCEPT_ENCODING_HEADER);
+            final byte[] body;
+
+            if (currentEncoding != Encoding.IDENTITY
+                && acceptedEncodings != null
+                && acceptedEncodings.contains(currentEncoding.getName())) {
+                body = currentEncoding.encode(Files.readAllBytes(datasetFile));
+                exchange.getResponseHeaders().set(OceanTeaTimeSeriesDownloaderConstants.CONTENT_ENCODING_HEADER, currentEncoding.getName());
+            } else
+                body = Files.readAllBytes(datasetFile);
+
+            numberOfSentBytes.addAndGet(body.length);
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+
+            try
+                (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+
+    /**
+     * Private helper that looks up the mirrored file of a requested path.
+     *
+     * @param path the path of the request
+     *
+     * @return the mirrored file, which may not exist
+     */
+    private Path getMirroredFile(String path)
+    {
+        if (path.startsWith(DATA_TYPES_PATH))
+            return mirrorFolder.resolve(OceanTeaTimeSeriesDownloaderConstants.MIRROR_DATA_TYPES_FILE);
+
+        final String datasetPath = path.substring(TIME_SERIES_PATH.length());
+
+        // the time series URL itself lists all time series
+        return datasetPath.isEmpty()
+               ? mirrorFolder.resolve(OceanTeaTimeSeriesDownloaderConstants.MIRROR_TIME_SERIES_FILE)
+               : mirrorFolder.resolve(
+                   OceanTeaTimeSeriesDownloaderConstants.MIRROR_DATASETS_FOLDER
+                   + datasetPath
+                   + OceanTeaTimeSeriesDownloaderConstants.MIRROR_FILE_EXTENSION);
+    }
+
+
+    /**
+     * The content encodings in which the {@linkplain TestServer} can send the
+     * datasets. Besides the zlib format that the "deflate" encoding denotes,
+     * raw deflate data can be sent, as some servers do.
+     *
+     * @author Ingo Thomsen
+     */
+    public enum Encoding
+    {
+        IDENTITY(OceanTeaTimeSeriesDownloaderConstants.IDENTITY_ENCODING),
+        GZIP(OceanTeaTimeSeriesDownloaderConstants.GZIP_ENCODING),
+        DEFLATE(OceanTeaTimeSeriesDownloaderConstants.DEFLATE_ENCODING),
+        RAW_DEFLATE(OceanTeaTimeSeriesDownloaderConstants.DEFLATE_ENCODING);
+
+        private final String name;
+
+
+        /**
+         * Constructor that requires the value of the Content-Encoding header.
+         *
+         * @param name the name of the content encoding
+         */
+        Encoding(String name)
+        {
+            this.name = name;
+        }
+
+
+        /**
+         * Returns the value of the Content-Encoding header.
+         *
+         * @return the name of the content encoding
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+
+        /**
+         * Compresses a response body.
+         *
+         * @param body the uncompressed response body
+         *
+         * @throws IOException if the body could not be compressed
+         *
+         * @return the encoded response body
+         */
+        byte[] encode(byte[] body) throws IOException
+        {
+            final ByteArrayOutputStream encodedBody = new ByteArrayOutputStream();
+
+            try
+                (OutputStream encodingStream = createEncodingStream(encodedBody)) {
+                encodingStream.write(body);
+            }
+
+            return encodedBody.toByteArray();
+        }
+
+
+        /**
+         * Private helper that wraps a stream in a stream that encodes its content.
+         *
+         * @param outputStream the stream of the encoded content
+         *
+         * @throws IOException if the header of the encoding could not be written
+         *
+         * @return a stream that encodes its content
+         */
+        private OutputStream createEncodingStream(OutputStream outputStream) throws IOException
+        {
+            switch (this) {
+                case GZIP:
+                    return new GZIPOutputStream(outputStream);
+
+                case DEFLATE:
+                    return new DeflaterOutputStream(outputStream, new Deflater(Deflater.DEFAULT_COMPRESSION, false));
+
+                case RAW_DEFLATE:
+                    return new DeflaterOutputStream(outputStream, new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+                default:
+                    return outputStream;
+            }
+        }
+    }
+
+
+    /**
+     * A {@linkplain PooledHttpClient} that replaces the OceanTEA base URL of
+     * each request with the URL of a {@linkplain TestServer}.
+     *
+     * @author Ingo Thomsen
+     */
+    private static final class RedirectingHttpClient extends PooledHttpClient
+    {
+        private final String baseUrl;
+
+
+        /**
+         * Constructor that requires the replacing URL.
+         *
+         * @param baseUrl the base URL of the {@linkplain TestServer}
+         */
+        RedirectingHttpClient(String baseUrl)
+        {
+            super(OceanTeaTimeSeriesDownloaderConstants.CONNECT_TIMEOUT_DEFAULT,
+                  OceanTeaTimeSeriesDownloaderConstants.READ_TIMEOUT_DEFAULT,
+                  OceanTeaTimeSeriesDownloaderConstants.MAX_CONNECTIONS_PER_HOST_DEFAULT,
+                  OceanTeaTimeSeriesDownloaderConstants.REQUEST_DEADLINE_DEFAULT);
+            this.baseUrl = baseUrl;
+        }
+
+
+        @Override
+        public PooledResponse get(String url, Map<String, String> requestHeaders) throws IOException
+        {
+            return super.get(url.replace(OceanTeaTimeSeriesDataCiteConstants.BASE_URL, baseUrl), requestHeaders);
+        }
+    }
+}
@@ -15,25 +15,17 @@
  */
 package de.gerdiproject.harvest.bdd.scenarios;
 
-import org.junit.runner.RunWith;
-import org.powermock.core.classloader.annotations.PrepareForTest;
-import org.powermock.modules.junit4.PowerMockRunner;
-
 import com.tngtech.jgiven.junit.ScenarioTest;
 
 import de.gerdiproject.harvest.bdd.stages.when.WhenExtractionAndTransformation;
-import de.gerdiproject.harvest.etls.extractors.TimeSeriesExtractor;
 
 /**
  * This is the base (class) for all scenarios that use the
- * {@linkplain WhenExtractionAndTransformation} stage. It also prepares the mocking there for the
- * {@linkplain TimeSeriesExtractor} class.
+ * {@linkplain WhenExtractionAndTransformation} stage.
  *
  * @author Ingo Thomsen
  * @param <GivenStage> Given stage with steps used before {@linkplain WhenExtractionAndTransformation} stage steps
  * @param <ThenStage> Then stage with steps used after {@linkplain WhenExtractionAndTransformation} stage steps
  */
-@RunWith(PowerMockRunner.class)
-@PrepareForTest(TimeSeriesExtractor.class)
 abstract public class AbstractHarvestingScenarioTest<GivenStage, ThenStage> extends ScenarioTest<GivenStage, WhenExtractionAndTransformation, ThenStage>
 {}
\ No newline at end of file
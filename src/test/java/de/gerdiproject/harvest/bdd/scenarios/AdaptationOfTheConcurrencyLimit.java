@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.scenarios;
+
+import org.junit.Test;
+
+import com.tngtech.jgiven.junit.ScenarioTest;
+
+import de.gerdiproject.harvest.bdd.stages.given.GivenConcurrencyLimiter;
+import de.gerdiproject.harvest.bdd.stages.then.ThenConcurrencyLimit;
+import de.gerdiproject.harvest.bdd.stages.when.WhenConcurrencyLimiting;
+import de.gerdiproject.harvest.bdd.tags.Tag;
+import de.gerdiproject.harvest.oceantea.utils.AdaptiveConcurrencyLimiter;
+
+/**
+ * This scenario describes how an {@linkplain AdaptiveConcurrencyLimiter}
+ * adapts the number of concurrent requests to the latencies of the server.
+ *
+ * @author Ingo Thomsen
+ */
+@Tag("Transformation")
+@SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert") // The assertions are done in the stages
+public class AdaptationOfTheConcurrencyLimit extends ScenarioTest<GivenConcurrencyLimiter, WhenConcurrencyLimiting, ThenConcurrencyLimit>
+{
+    @Test
+    public void the_limit_grows_while_it_is_reached() throws InterruptedException
+    {
+        given().a_concurrency_limiter_for_at_most_$_requests(10);
+
+        when().$_requests_are_started(2).and()
+        .$_requests_finish_after_$_milliseconds(1, 10);
+
+        then().$_requests_were_rejected(1).and()
+        .the_limit_is_$_requests(2);
+    }
+
+
+    @Test
+    public void the_limit_does_not_grow_while_it_is_not_reached() throws InterruptedException
+    {
+        given().a_concurrency_limiter_for_at_most_$_requests(10);
+
+        when().the_limit_is_raised_to_$_by_requests_that_finish_after_$_milliseconds(2, 10).and()
+        .$_requests_are_started(1).and()
+        .$_requests_finish_after_$_milliseconds(1, 10).and()
+        .$_requests_are_started(1).and()
+        .$_requests_finish_after_$_milliseconds(1, 10).and()
+        .$_requests_are_started(1).and()
+        .$_requests_finish_after_$_milliseconds(1, 10);
+
+        then().the_limit_is_$_requests(2);
+    }
+
+
+    @Test
+    public void the_limit_does_not_exceed_its_maximum() throws InterruptedException
+    {
+        given().a_concurrency_limiter_for_at_most_$_requests(2);
+
+        when().the_limit_is_raised_to_$_by_requests_that_finish_after_$_milliseconds(2, 10).and()
+        .$_requests_are_started(2).and()
+        .$_requests_finish_after_$_milliseconds(2, 10).and()
+        .$_requests_are_started(2).and()
+        .$_requests_finish_after_$_milliseconds(2, 10);
+
+        then().the_limit_is_$_requests(2);
+    }
+
+
+    @Test
+    public void rising_latencies_decrease_the_limit_at_most_once_per_round_trip() throws InterruptedException
+    {
+        given().a_concurrency_limiter_for_at_most_$_requests(10);
+
+        when().the_limit_is_raised_to_$_by_requests_that_finish_after_$_milliseconds(4, 10).and()
+        .$_requests_are_started(4).and()
+        .$_requests_finish_after_$_milliseconds(4, 100);
+
+        then().the_limit_was_decreased_$_times(1).and()
+        .the_limit_is_$_requests(3);
+    }
+
+
+    @Test
+    public void rising_latencies_decrease_the_limit_again_in_the_next_round_trip() throws InterruptedException
+    {
+        given().a_concurrency_limiter_for_at_most_$_requests(10);
+
+        when().the_limit_is_raised_to_$_by_requests_that_finish_after_$_milliseconds(4, 10).and()
+        .$_requests_are_started(4).and()
+        .$_requests_finish_after_$_milliseconds(4, 100).and()
+        .$_requests_are_started(3).and()
+        .$_requests_finish_after_$_milliseconds(3, 100);
+
+        then().the_limit_was_decreased_$_times(2).and()
+        .the_limit_is_$_requests(3);
+    }
+
+
+    @Test
+    public void an_overloaded_server_halves_the_limit() throws InterruptedException
+    {
+        given().a_concurrency_limiter_for_at_most_$_requests(10);
+
+        when().the_limit_is_raised_to_$_by_requests_that_finish_after_$_milliseconds(8, 10).and()
+        .$_requests_are_started(8).and()
+        .$_requests_fail_because_the_server_is_overloaded(8);
+
+        then().the_limit_was_decreased_$_times(1).and()
+        .the_limit_is_$_requests(4);
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.scenarios;
+
+import org.junit.Test;
+
+import com.tngtech.jgiven.junit.ScenarioTest;
+
+import de.gerdiproject.harvest.bdd.stages.given.GivenSketchedValues;
+import de.gerdiproject.harvest.bdd.stages.then.ThenApproximatedQuantiles;
+import de.gerdiproject.harvest.bdd.stages.when.WhenQuantileApproximation;
+import de.gerdiproject.harvest.bdd.tags.Tag;
+import de.gerdiproject.harvest.oceantea.utils.QuantileSketch;
+
+/**
+ * This scenario describes that a {@linkplain QuantileSketch} approximates the
+ * median and the 95th percentile of many more values than it retains within
+ * one percent of their ranks, so that the compactions and the weighted
+ * quantiles are exercised.
+ *
+ * @author Ingo Thomsen
+ */
+@Tag("Transformation")
+@SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert") // The assertions are done in the stages
+public class ApproximationOfQuantiles extends ScenarioTest<GivenSketchedValues, WhenQuantileApproximation, ThenApproximatedQuantiles>
+{
+    @Test
+    public void quantiles_of_a_time_series_dataset()
+    {
+        given().the_values_of_the_time_series_dataset_$("POS434-156_conductivity_215");
+        when().the_values_are_added_to_a_QuantileSketch();
+        then().all_$_values_were_sketched(15296).and()
+        .the_$_quantile_is_approximated_within_$_percent_of_its_rank(0.5, 1).and()
+        .the_$_quantile_is_approximated_within_$_percent_of_its_rank(0.95, 1);
+    }
+
+
+    @Test
+    public void quantiles_of_normally_distributed_values()
+    {
+        given().$_normally_distributed_values(100000);
+        when().the_values_are_added_to_a_QuantileSketch();
+        then().all_$_values_were_sketched(100000).and()
+        .the_$_quantile_is_approximated_within_$_percent_of_its_rank(0.5, 1).and()
+        .the_$_quantile_is_approximated_within_$_percent_of_its_rank(0.95, 1);
+    }
+
+
+    /**
+     * Sorted values are promoted in the same order by every compaction, so
+     * they would accumulate the error of a sketch that always promotes the
+     * same half of a level.
+     */
+    @Test
+    public void quantiles_of_ascending_values()
+    {
+        given().$_ascending_values(100000);
+        when().the_values_are_added_to_a_QuantileSketch();
+        then().all_$_values_were_sketched(100000).and()
+        .the_$_quantile_is_approximated_within_$_percent_of_its_rank(0.5, 1).and()
+        .the_$_quantile_is_approximated_within_$_percent_of_its_rank(0.95, 1);
+    }
+}
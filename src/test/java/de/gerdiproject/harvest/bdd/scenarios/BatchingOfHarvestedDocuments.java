@@ -0,0 +1,150 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.scenarios;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.tngtech.jgiven.junit.ScenarioTest;
+
+import de.gerdiproject.harvest.bdd.stages.given.GivenDocumentBatcher;
+import de.gerdiproject.harvest.bdd.stages.then.ThenDocumentBatches;
+import de.gerdiproject.harvest.bdd.stages.when.WhenDocumentBatching;
+import de.gerdiproject.harvest.bdd.tags.Tag;
+import de.gerdiproject.harvest.oceantea.utils.DocumentBatcher;
+
+/**
+ * This scenario describes when a {@linkplain DocumentBatcher} submits the
+ * harvested documents as a batch.
+ *
+ * @author Ingo Thomsen
+ */
+@Tag("Transformation")
+@SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert") // The assertions are done in the stages
+public class BatchingOfHarvestedDocuments extends ScenarioTest<GivenDocumentBatcher, WhenDocumentBatching, ThenDocumentBatches>
+{
+    @Test
+    public void full_batches_are_submitted_by_the_number_of_documents() throws IOException
+    {
+        given().a_batcher_for_at_most_$_documents_and_$_bytes(3, 0);
+
+        when().$_documents_of_$_bytes_are_added(7, 10);
+
+        then().$_batches_were_submitted(2).and()
+        .batch_$_holds_$_documents_of_$_bytes(0, 3, 30).and()
+        .batch_$_holds_$_documents_of_$_bytes(1, 3, 30);
+    }
+
+
+    @Test
+    public void batches_are_submitted_before_they_exceed_the_byte_limit() throws IOException
+    {
+        given().a_batcher_for_at_most_$_documents_and_$_bytes(100, 100);
+
+        when().$_documents_of_$_bytes_are_added(5, 30);
+
+        then().$_batches_were_submitted(1).and()
+        .batch_$_holds_$_documents_of_$_bytes(0, 3, 90);
+    }
+
+
+    @Test
+    public void batches_are_submitted_when_they_reach_the_byte_limit() throws IOException
+    {
+        given().a_batcher_for_at_most_$_documents_and_$_bytes(100, 100);
+
+        when().$_documents_of_$_bytes_are_added(5, 50);
+
+        then().$_batches_were_submitted(2).and()
+        .batch_$_holds_$_documents_of_$_bytes(0, 2, 100).and()
+        .batch_$_holds_$_documents_of_$_bytes(1, 2, 100);
+    }
+
+
+    @Test
+    public void the_last_batch_is_submitted_at_the_end_of_the_stream() throws IOException
+    {
+        given().a_batcher_for_at_most_$_documents_and_$_bytes(3, 100);
+
+        when().$_documents_of_$_bytes_are_added(7, 10).and()
+        .the_batcher_is_closed();
+
+        then().$_batches_were_submitted(3).and()
+        .batch_$_holds_$_documents_of_$_bytes(2, 1, 10);
+    }
+
+
+    @Test
+    public void a_document_that_exceeds_the_byte_limit_is_submitted_alone() throws IOException
+    {
+        given().a_batcher_for_at_most_$_documents_and_$_bytes(100, 100);
+
+        when().$_documents_of_$_bytes_are_added(1, 40).and()
+        .$_documents_of_$_bytes_are_added(1, 250).and()
+        .$_documents_of_$_bytes_are_added(1, 40).and()
+        .the_batcher_is_closed();
+
+        then().$_batches_were_submitted(3).and()
+        .batch_$_holds_$_documents_of_$_bytes(0, 1, 40).and()
+        .batch_$_holds_$_documents_of_$_bytes(1, 1, 250).and()
+        .batch_$_holds_$_documents_of_$_bytes(2, 1, 40);
+    }
+
+
+    @Test
+    public void a_full_batch_that_could_not_be_submitted_is_submitted_again() throws IOException
+    {
+        given().a_batcher_for_at_most_$_documents_and_$_bytes_that_fails_to_submit_$_batch(3, 0, 1);
+
+        when().$_documents_of_$_bytes_are_added_although_submissions_fail(7, 10).and()
+        .the_batcher_is_closed();
+
+        then().$_documents_were_rejected(1).and()
+        .$_batches_were_submitted(2).and()
+        .batch_$_holds_$_documents_of_$_bytes(0, 3, 30).and()
+        .batch_$_holds_$_documents_of_$_bytes(1, 3, 30);
+    }
+
+
+    @Test
+    public void a_batch_of_which_the_timed_submission_failed_is_submitted_again() throws IOException, InterruptedException
+    {
+        given().a_batcher_that_submits_after_$_milliseconds_and_fails_to_submit_$_batch(10, 1);
+
+        when().$_documents_of_$_bytes_are_added(2, 10).and()
+        .the_timed_submission_fails().and()
+        .$_documents_of_$_bytes_are_added_although_submissions_fail(2, 10).and()
+        .the_batcher_is_closed();
+
+        then().$_documents_were_rejected(1).and()
+        .$_batches_were_submitted(1).and()
+        .batch_$_holds_$_documents_of_$_bytes(0, 3, 30);
+    }
+
+
+    @Test
+    public void the_batcher_of_the_harvester_submits_all_documents_at_the_end_of_the_stream() throws IOException
+    {
+        given().a_batcher_of_the_harvester_with_the_default_limits();
+
+        when().$_documents_of_$_bytes_are_added(5, 10).and()
+        .the_batcher_is_closed();
+
+        then().$_batches_were_submitted(1).and()
+        .batch_$_holds_$_documents_of_$_bytes(0, 5, 50);
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.scenarios;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.tngtech.jgiven.junit.ScenarioTest;
+
+import de.gerdiproject.harvest.bdd.stages.given.GivenOceanTeaMirror;
+import de.gerdiproject.harvest.bdd.stages.then.ThenDatasetDownload;
+import de.gerdiproject.harvest.bdd.stages.when.WhenDatasetDownload;
+import de.gerdiproject.harvest.bdd.tags.Tag;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesDatasetCache;
+
+/**
+ * This scenario describes how downloaded time series datasets are kept in
+ * a {@linkplain TimeSeriesDatasetCache} and when they are requested again.
+ *
+ * @author Ingo Thomsen
+ */
+@Tag("Transformation")
+@SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert") // The assertions are done in the stages
+public class CachingOfTimeSeriesDatasets extends ScenarioTest<GivenOceanTeaMirror, WhenDatasetDownload, ThenDatasetDownload>
+{
+    private static final String DATASET_NAME = "POS434-156_conductivity_215.first_100";
+
+
+    @Test
+    public void datasets_without_validators_are_only_requested_if_they_are_not_cached() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_server_that_sends_the_mirrored_datasets().and()
+        .a_dataset_cache_for_$_datasets(10);
+
+        when().the_dataset_of_time_series_$_is_downloaded(0).and()
+        .the_dataset_of_time_series_$_is_downloaded(0).and()
+        .the_dataset_of_time_series_$_is_downloaded(1);
+
+        then().the_server_received_$_requests(2).and()
+        .all_downloads_returned_the_same_dataset().and()
+        .the_cache_holds_$_datasets(2);
+    }
+
+
+    @Test
+    public void cached_datasets_are_found_after_a_restart() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_server_that_sends_the_mirrored_datasets().and()
+        .a_dataset_cache_for_$_datasets(10);
+
+        when().the_dataset_of_time_series_$_is_downloaded(0).and()
+        .the_cache_is_reopened().and()
+        .the_dataset_of_time_series_$_is_downloaded(0);
+
+        then().the_server_received_$_requests(1).and()
+        .the_cache_holds_$_datasets(1);
+    }
+
+
+    @Test
+    public void unchanged_datasets_are_revalidated() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_server_that_sends_the_mirrored_datasets_with_the_ETag_$("v1").and()
+        .a_dataset_cache_for_$_datasets(10);
+
+        when().the_dataset_of_time_series_$_is_downloaded(0).and()
+        .the_dataset_of_time_series_$_is_downloaded(0);
+
+        then().the_server_received_$_requests(2).and()
+        .the_server_answered_$_requests_with_Not_Modified(1).and()
+        .all_downloads_returned_the_same_dataset().and()
+        .the_cache_holds_$_datasets(1);
+    }
+
+
+    @Test
+    public void changed_datasets_are_downloaded_again() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_server_that_sends_the_mirrored_datasets_with_the_ETag_$("v1").and()
+        .a_dataset_cache_for_$_datasets(10);
+
+        when().the_dataset_of_time_series_$_is_downloaded(0).and()
+        .the_server_changes_the_ETag_to_$("v2").and()
+        .the_dataset_of_time_series_$_is_downloaded(0).and()
+        .the_dataset_of_time_series_$_is_downloaded(0);
+
+        then().the_server_received_$_requests(3).and()
+        .the_server_answered_$_requests_with_Not_Modified(1).and()
+        .the_cache_holds_$_datasets(1);
+    }
+
+
+    @Test
+    public void least_recently_used_datasets_are_evicted() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_server_that_sends_the_mirrored_datasets().and()
+        .a_dataset_cache_for_$_datasets(2);
+
+        when().the_dataset_of_time_series_$_is_downloaded(0).and()
+        .the_dataset_of_time_series_$_is_downloaded(1).and()
+        .the_dataset_of_time_series_$_is_downloaded(0).and()
+        .the_dataset_of_time_series_$_is_downloaded(2).and()
+        .the_dataset_of_time_series_$_is_downloaded(0).and()
+        .the_dataset_of_time_series_$_is_downloaded(1);
+
+        then().the_server_received_$_requests(4).and()
+        .the_cache_holds_$_datasets(2);
+    }
+
+
+    @Test
+    public void corrupt_cache_entries_are_replaced() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_server_that_sends_the_mirrored_datasets().and()
+        .a_dataset_cache_for_$_datasets(10);
+
+        when().the_dataset_of_time_series_$_is_downloaded(0).and()
+        .all_cached_datasets_are_corrupted().and()
+        .the_dataset_of_time_series_$_is_downloaded(0).and()
+        .the_dataset_of_time_series_$_is_downloaded(0);
+
+        then().the_server_received_$_requests(2).and()
+        .all_downloads_returned_the_same_dataset().and()
+        .the_cache_holds_$_datasets(1);
+    }
+
+
+    @Test
+    public void datasets_are_not_cached_by_a_cache_without_capacity() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_server_that_sends_the_mirrored_datasets().and()
+        .a_dataset_cache_for_$_datasets(0);
+
+        when().the_dataset_of_time_series_$_is_downloaded(0).and()
+        .the_dataset_of_time_series_$_is_downloaded(0);
+
+        then().the_server_received_$_requests(2).and()
+        .all_downloads_returned_the_same_dataset().and()
+        .the_cache_holds_$_datasets(0);
+    }
+}
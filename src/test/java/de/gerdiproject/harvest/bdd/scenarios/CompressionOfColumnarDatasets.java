@@ -0,0 +1,138 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.scenarios;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.tngtech.jgiven.junit.ScenarioTest;
+
+import de.gerdiproject.harvest.bdd.stages.given.GivenColumnarDataset;
+import de.gerdiproject.harvest.bdd.stages.then.ThenColumnarStorage;
+import de.gerdiproject.harvest.bdd.stages.when.WhenColumnarStorage;
+import de.gerdiproject.harvest.bdd.tags.Tag;
+import de.gerdiproject.harvest.oceantea.utils.BitReader;
+import de.gerdiproject.harvest.oceantea.utils.BitWriter;
+import de.gerdiproject.harvest.oceantea.utils.ColumnarDataset;
+
+/**
+ * This scenario describes how a {@linkplain ColumnarDataset} is compressed
+ * and stored, and how bits are written by a {@linkplain BitWriter} and read
+ * by a {@linkplain BitReader}. Every pair must be read exactly as it was
+ * written, also if more pairs are appended to a dataset that was read.
+ *
+ * @author Ingo Thomsen
+ */
+@Tag("Transformation")
+@SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert") // The assertions are done in the stages
+public class CompressionOfColumnarDatasets extends ScenarioTest<GivenColumnarDataset, WhenColumnarStorage, ThenColumnarStorage>
+{
+    @Test
+    public void regular_time_steps() throws IOException
+    {
+        given().a_dataset_of_$_pairs_with_a_regular_step_of_$_seconds(1000, 300);
+        when().the_dataset_is_written_and_read_again();
+        then().the_read_dataset_has_the_same_$_pairs(1000);
+    }
+
+
+    /**
+     * The changes of the time step are at the bounds of the 7, 9 and 12 bit
+     * ranges of the delta-of-delta encoding, and beyond them.
+     */
+    @Test
+    public void irregular_time_steps() throws IOException
+    {
+        given().a_dataset_of_which_the_time_steps_change_by_$_seconds(
+            new int[] {0, -63, 64, -64, 65, -255, 256, -256, 257, -2047, 2048, -2048, 2049, 1000000, -1000000});
+        when().the_dataset_is_written_and_read_again();
+        then().the_read_dataset_has_the_same_$_pairs(16).and()
+        .the_time_offsets_of_the_read_dataset_are_$(
+            new int[] {-1000, -1000, -1063, -1062, -1125, -1123, -1376, -1373, -1626, -1622, -3665, -3660, -5703, -5697, 994309, 994315});
+    }
+
+
+    @Test
+    public void time_steps_that_exceed_the_integer_range() throws IOException
+    {
+        given().a_dataset_with_the_time_offsets_$(new int[] {Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, 0, Integer.MAX_VALUE});
+        when().the_dataset_is_written_and_read_again();
+        then().the_read_dataset_has_the_same_$_pairs(5);
+    }
+
+
+    @Test
+    public void missing_time_offsets_and_values() throws IOException
+    {
+        given().a_dataset_with_the_JSON_$("{\"data\":[[0,1.5],[300,\"NA\"],[\"NA\",2.5],\"NA\",[900,-3.25],[1200.5,4]]}");
+        when().the_dataset_is_written_and_read_again();
+        then().the_read_dataset_has_the_same_$_pairs(6).and()
+        .$_time_offsets_and_$_values_of_the_read_dataset_are_missing(3, 2).and()
+        .the_time_offsets_of_the_read_dataset_are_$(new int[] {0, 300, 0, 0, 900, 0}).and()
+        .the_values_of_the_read_dataset_have_the_bits_of_$(new double[] {1.5, Double.NaN, 2.5, Double.NaN, -3.25, 4});
+    }
+
+
+    @Test
+    public void special_and_repeated_values() throws IOException
+    {
+        given().a_dataset_with_the_values_$_at_a_regular_step(
+            new double[] {-1.5, -0.0, 0.0, Double.NaN, 7.25, 7.25, 7.25, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+                          Double.MIN_VALUE, -Double.MAX_VALUE, 7.25, -0.0});
+        when().the_dataset_is_written_and_read_again();
+        then().the_read_dataset_has_the_same_$_pairs(13).and()
+        .$_time_offsets_and_$_values_of_the_read_dataset_are_missing(0, 1);
+    }
+
+
+    @Test
+    public void pairs_appended_to_a_read_dataset() throws IOException
+    {
+        given().a_dataset_of_$_pairs_with_a_regular_step_of_$_seconds(1000, 300);
+        when().the_dataset_is_written_and_read_again().and()
+        .$_pairs_are_appended_to_both_datasets(100);
+        then().the_read_dataset_has_the_same_$_pairs(1100);
+    }
+
+
+    @Test
+    public void an_empty_dataset() throws IOException
+    {
+        given().an_empty_dataset();
+        when().the_dataset_is_written_and_read_again();
+        then().the_read_dataset_has_the_same_$_pairs(0);
+    }
+
+
+    @Test
+    public void a_single_pair() throws IOException
+    {
+        given().a_dataset_with_the_values_$_at_a_regular_step(new double[] {-273.15});
+        when().the_dataset_is_written_and_read_again();
+        then().the_read_dataset_has_the_same_$_pairs(1);
+    }
+
+
+    @Test
+    public void bits_across_word_boundaries()
+    {
+        given().a_bit_sequence_of_random_values_with_$_bits(new int[] {1, 7, 64, 3, 63, 12, 64, 64, 2, 32, 9, 33, 1, 64});
+        when().the_bit_sequence_is_read();
+        then().all_values_are_read_as_they_were_written().and()
+        .no_more_bits_can_be_read();
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.scenarios;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+import com.tngtech.jgiven.junit.ScenarioTest;
+
+import de.gerdiproject.harvest.TestServer.Encoding;
+import de.gerdiproject.harvest.bdd.stages.given.GivenOceanTeaMirror;
+import de.gerdiproject.harvest.bdd.stages.then.ThenDatasetDownload;
+import de.gerdiproject.harvest.bdd.stages.when.WhenDatasetDownload;
+import de.gerdiproject.harvest.bdd.tags.Tag;
+import de.gerdiproject.harvest.oceantea.utils.ContentEncodingUtils;
+
+/**
+ * This scenario describes how compressed dataset responses are decoded by
+ * the {@linkplain ContentEncodingUtils}, and how their transferred and
+ * decoded bytes are counted.
+ *
+ * @author Ingo Thomsen
+ */
+@Tag("Transformation")
+@RunWith(DataProviderRunner.class)
+@SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert") // The assertions are done in the stages
+public class DecodingOfCompressedDatasets extends ScenarioTest<GivenOceanTeaMirror, WhenDatasetDownload, ThenDatasetDownload>
+{
+    private static final String DATASET_NAME = "POS434-156_conductivity_215.first_100";
+
+
+    @DataProvider({"GZIP", "DEFLATE", "RAW_DEFLATE"})
+    @Test
+    public void compressed_datasets_are_decoded(Encoding encoding) throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_server_that_sends_the_mirrored_datasets_with_the_content_encoding_$(encoding);
+
+        when().the_dataset_of_time_series_$_is_downloaded(0);
+
+        then().the_downloaded_dataset_equals_the_mirrored_dataset_of_time_series_$(0).and()
+        .the_transferred_bytes_are_those_that_the_server_sent().and()
+        .the_decoded_bytes_are_those_of_the_mirrored_dataset_of_time_series_$(0).and()
+        .fewer_bytes_were_transferred_than_decoded();
+    }
+
+
+    @Test
+    public void uncompressed_datasets_are_counted_as_they_were_transferred() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_server_that_sends_the_mirrored_datasets_with_the_content_encoding_$(Encoding.IDENTITY);
+
+        when().the_dataset_of_time_series_$_is_downloaded(0);
+
+        then().the_downloaded_dataset_equals_the_mirrored_dataset_of_time_series_$(0).and()
+        .the_transferred_bytes_are_those_that_the_server_sent().and()
+        .the_decoded_bytes_are_those_of_the_mirrored_dataset_of_time_series_$(0);
+    }
+}
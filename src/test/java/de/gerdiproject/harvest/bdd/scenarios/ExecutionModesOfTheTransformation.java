@@ -0,0 +1,78 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.scenarios;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+import com.tngtech.jgiven.junit.ScenarioTest;
+
+import de.gerdiproject.harvest.bdd.stages.given.GivenOceanTeaMirror;
+import de.gerdiproject.harvest.bdd.stages.then.ThenMirrorHarvest;
+import de.gerdiproject.harvest.bdd.stages.when.WhenMirrorHarvest;
+import de.gerdiproject.harvest.bdd.stages.when.WhenMirrorHarvest.ExecutionMode;
+import de.gerdiproject.harvest.bdd.tags.Tag;
+import de.gerdiproject.harvest.etls.transformers.TimeSeriesTransformer;
+
+/**
+ * This scenario describes that all execution modes of the
+ * {@linkplain TimeSeriesTransformer} hand over the same documents and
+ * failures, in the same order as the sequential transformation.
+ *
+ * @author Ingo Thomsen
+ */
+@Tag("Transformation")
+@RunWith(DataProviderRunner.class)
+@SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert") // The assertions are done in the stages
+public class ExecutionModesOfTheTransformation extends ScenarioTest<GivenOceanTeaMirror, WhenMirrorHarvest, ThenMirrorHarvest>
+{
+    private static final String DATASET_NAME = "POS434-156_conductivity_215.first_100";
+
+
+    @DataProvider({"PREFETCH_POOL", "THREAD_PER_SERIES", "STAGED_PIPELINE"})
+    @Test
+    public void documents_in_the_order_of_the_time_series(ExecutionMode mode) throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME);
+
+        when().the_mirror_is_harvested_in_$_mode(ExecutionMode.SEQUENTIAL).and()
+        .the_mirror_is_harvested_in_$_mode(mode);
+
+        then().$_documents_were_harvested(164).and()
+        .the_$_mode_hands_over_the_same_outcomes_in_the_same_order_as_the_$_mode(mode, ExecutionMode.SEQUENTIAL);
+    }
+
+
+    @DataProvider({"SEQUENTIAL", "PREFETCH_POOL", "THREAD_PER_SERIES", "STAGED_PIPELINE"})
+    @Test
+    public void failed_downloads_in_the_order_of_the_time_series(ExecutionMode mode) throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .the_mirrored_dataset_of_time_series_$_is_missing(5).and()
+        .the_mirrored_dataset_of_time_series_$_is_$(9, "{\"data\":[[100,");
+
+        when().the_mirror_is_harvested_in_$_mode(ExecutionMode.SEQUENTIAL).and()
+        .the_mirror_is_harvested_in_$_mode(mode);
+
+        then().$_time_series_were_transformed(164).and()
+        .only_the_transformations_of_the_time_series_$_failed(5, 9).and()
+        .the_$_mode_hands_over_the_same_outcomes_in_the_same_order_as_the_$_mode(mode, ExecutionMode.SEQUENTIAL);
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.scenarios;
+
+import org.junit.Test;
+
+import com.tngtech.jgiven.junit.ScenarioTest;
+
+import de.gerdiproject.harvest.bdd.stages.given.GivenTemplateStrings;
+import de.gerdiproject.harvest.bdd.stages.then.ThenFormattedTemplates;
+import de.gerdiproject.harvest.bdd.stages.when.WhenTemplateFormatting;
+import de.gerdiproject.harvest.bdd.tags.Tag;
+import de.gerdiproject.harvest.oceantea.utils.CompiledTemplate;
+
+/**
+ * This scenario describes that the template strings of the DataCite
+ * documents are formatted by {@linkplain CompiledTemplate}s exactly like by
+ * {@linkplain String#format(java.util.Locale, String, Object...)}.
+ *
+ * @author Ingo Thomsen
+ */
+@Tag("Transformation")
+@SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert") // The assertions are done in the stages
+public class FormattingOfTemplateStrings extends ScenarioTest<GivenTemplateStrings, WhenTemplateFormatting, ThenFormattedTemplates>
+{
+    @Test
+    public void compiled_templates_are_formatted_like_with_String_format() throws IllegalAccessException
+    {
+        given().all_template_strings_of_the_DataCite_constants();
+        when().the_templates_are_formatted_with_every_kind_of_argument();
+        then().the_compiled_templates_yield_the_same_strings_as_String_format();
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.scenarios;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+import com.tngtech.jgiven.junit.ScenarioTest;
+
+import de.gerdiproject.harvest.bdd.stages.given.GivenOceanTeaMirror;
+import de.gerdiproject.harvest.bdd.stages.then.ThenMirrorHarvest;
+import de.gerdiproject.harvest.bdd.stages.when.WhenMirrorHarvest;
+import de.gerdiproject.harvest.bdd.tags.Tag;
+import de.gerdiproject.harvest.etls.transformers.TransformerException;
+
+/**
+ * This scenario describes how malformed time series datasets are harvested:
+ * Pairs that lack an integer time offset or a value are tolerated, whereas
+ * JSON that is truncated or not structured like a dataset fails the
+ * transformation of the time series with a {@linkplain TransformerException}.
+ *
+ * @author Ingo Thomsen
+ */
+@Tag("Transformation")
+@RunWith(DataProviderRunner.class)
+@SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert") // The assertions are done in the stages
+public class HarvestOfMalformedTimeSeriesDatasets extends ScenarioTest<GivenOceanTeaMirror, WhenMirrorHarvest, ThenMirrorHarvest>
+{
+    private static final String TIME_SERIES_NAME = "POS434-156_conductivity_215";
+
+
+    @Test
+    public void pairs_without_integer_time_offset_or_value() throws IOException
+    {
+        given().a_mirror_of_the_time_series_$_with_the_dataset_JSON_$(TIME_SERIES_NAME, "{\"data\":[[\"abc\",\"1.5\"],[100],[200,\"2.5\"]]}");
+        when().the_mirror_is_harvested();
+        then().$_documents_were_harvested(1).and()
+        .the_transformation_of_$_time_series_failed_with_a_TransformerException(0);
+    }
+
+
+    /**
+     * The JSON is separated by '|', because it contains commas
+     */
+    @DataProvider(value = {
+        // @formatter:off
+        "",
+        "{\"data\":[[100,1.5],[400,2",
+        "{\"data\":[[100,1.5]]",
+        "[[100,1.5],[400,2.5]]",
+        "\"data\"",
+        "{\"data\"[[100,1.5]]}",
+        "{\"data\":[[100 1.5]]}",
+        // @formatter:on
+    }, splitBy = "\\|")
+    @Test
+    public void malformed_JSON(String datasetJson) throws IOException
+    {
+        given().a_mirror_of_the_time_series_$_with_the_dataset_JSON_$(TIME_SERIES_NAME, datasetJson);
+        when().the_mirror_is_harvested();
+        then().$_documents_were_harvested(0).and()
+        .the_transformation_of_$_time_series_failed_with_a_TransformerException(1);
+    }
+}
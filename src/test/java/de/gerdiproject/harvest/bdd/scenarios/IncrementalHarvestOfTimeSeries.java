@@ -0,0 +1,110 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.scenarios;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.tngtech.jgiven.junit.ScenarioTest;
+
+import de.gerdiproject.harvest.bdd.stages.given.GivenOceanTeaMirror;
+import de.gerdiproject.harvest.bdd.stages.then.ThenMirrorHarvest;
+import de.gerdiproject.harvest.bdd.stages.when.WhenMirrorHarvest;
+import de.gerdiproject.harvest.bdd.tags.Tag;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesFingerprints;
+
+/**
+ * This scenario describes which time series are harvested again by an
+ * incremental harvest, which compares the {@linkplain TimeSeriesFingerprints}
+ * of the time series with those of the last harvest, and how the version of
+ * the harvested catalogue changes.
+ *
+ * @author Ingo Thomsen
+ */
+@Tag("Transformation")
+@SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert") // The assertions are done in the stages
+public class IncrementalHarvestOfTimeSeries extends ScenarioTest<GivenOceanTeaMirror, WhenMirrorHarvest, ThenMirrorHarvest>
+{
+    private static final String DATASET_NAME = "POS434-156_conductivity_215.first_100";
+    private static final String CHANGED_DATASET_NAME = "POS434-156_conductivity_215";
+    private static final String NEW_DATASET_NAME = "synthetic.adcp";
+
+
+    @Test
+    public void all_time_series_are_harvested_initially() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME);
+
+        when().the_mirror_is_harvested_incrementally();
+
+        then().$_documents_were_harvested(164);
+    }
+
+
+    @Test
+    public void unchanged_time_series_are_skipped() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME);
+
+        when().the_mirror_is_harvested_incrementally().and()
+        .the_mirror_is_harvested_incrementally();
+
+        then().$_documents_were_harvested(0).and()
+        .the_version_of_the_catalogue_did_not_change();
+    }
+
+
+    @Test
+    public void time_series_with_changed_datasets_are_harvested_again() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME);
+
+        when().the_mirror_is_harvested_incrementally().and()
+        .the_mirrored_dataset_of_time_series_$_changes_to_$(5, CHANGED_DATASET_NAME).and()
+        .the_mirror_is_harvested_incrementally();
+
+        // the version only covers the metadata, whereas the fingerprints also cover the datasets
+        then().only_the_document_of_time_series_$_was_harvested(5).and()
+        .the_version_of_the_catalogue_did_not_change();
+    }
+
+
+    @Test
+    public void new_time_series_are_harvested() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME);
+
+        when().the_mirror_is_harvested_incrementally().and()
+        .a_time_series_with_the_dataset_$_is_added_to_the_mirror(NEW_DATASET_NAME).and()
+        .the_mirror_is_harvested_incrementally();
+
+        then().only_the_document_of_time_series_$_was_harvested(164).and()
+        .the_version_of_the_catalogue_changed();
+    }
+
+
+    @Test
+    public void all_time_series_are_harvested_if_the_harvest_is_not_incremental() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME);
+
+        when().the_mirror_is_harvested_incrementally().and()
+        .the_mirror_is_harvested();
+
+        then().$_documents_were_harvested(164);
+    }
+}
@@ -15,6 +15,7 @@
  */
 package de.gerdiproject.harvest.bdd.scenarios;
 
+import java.io.IOException;
 import java.time.Instant;
 
 import org.junit.Test;
@@ -56,7 +57,8 @@ public class InitializationOfATimeSeriesDataset extends ScenarioTest<GivenTimeSe
     {
         given().an_empty_TimeSeriesDatasetResponse();
         when().a_TimeSeriesDataset_is_created_for_Instant(Instant.parse("2013-05-30T23:38:23Z"));
-        then().the_TimeSeriesDataset_has_no_values().and().startInstant_and_stopInstant_are_equal();
+        then().the_TimeSeriesDataset_has_no_values().and().startInstant_and_stopInstant_are_equal().and()
+        .the_TimeSeriesDataset_has_no_value_statistics();
     }
 
 
@@ -69,6 +71,82 @@ public class InitializationOfATimeSeriesDataset extends ScenarioTest<GivenTimeSe
     }
 
 
+    @Test
+    public void value_statistics_ignore_non_numeric_values()
+    {
+        given().a_TimeSeriesDatasetResponse_with_values_$("1", "NA", "3", "2", "4");
+        when().a_TimeSeriesDataset_is_created_for_Instant(Instant.parse("2013-05-30T23:38:23Z"));
+        then().the_value_statistics_cover_$_values(4).and()
+        .the_value_statistics_have_minimum_$_maximum_$_mean_$_and_median_$(1, 4, 2.5, 2);
+    }
+
+
+    @Test
+    public void detection_of_gaps()
+    {
+        given().a_TimeSeriesDatasetResponse_with_time_offsets_$(0, 300, 600, 900, 4500, 4800);
+        when().a_TimeSeriesDataset_is_created_for_Instant(Instant.parse("2013-05-30T23:38:23Z"));
+        then().the_sampling_interval_is_$_seconds_with_$_gaps(300, 1).and()
+        .the_coverage_is_$_percent(35.3);
+    }
+
+
+    @Test
+    public void detection_of_gaps_before_the_sampling_interval_settles()
+    {
+        given().a_TimeSeriesDatasetResponse_with_time_offsets_$(0, 2000, 4000, 4060, 4120, 4180, 4240);
+        when().a_TimeSeriesDataset_is_created_for_Instant(Instant.parse("2013-05-30T23:38:23Z"));
+        then().the_sampling_interval_is_$_seconds_with_$_gaps(60, 2);
+    }
+
+
+    @Test
+    public void streaming_of_multivariate_measurements() throws IOException
+    {
+        given().the_JSON_of_the_time_series_dataset_$("synthetic.adcp");
+        when().a_TimeSeriesDataset_is_streamed_for_Instant(Instant.parse("2013-05-30T23:38:23Z"));
+        then().the_TimeSeriesDataset_has_at_least_$_values(3).and()
+        .the_TimeSeriesDataset_has_$_bins_with_$_components(4, 2).and()
+        .component_$_of_the_bins_has_$_values_with_maximum_$(1, 9, 123.0).and()
+        .component_$_of_the_bins_has_$_values_with_maximum_$(2, 9, 0.18).and()
+        .the_TimeSeriesDataset_has_no_value_statistics();
+    }
+
+
+    @Test
+    public void streaming_of_pairs_without_integer_time_offset_or_value() throws IOException
+    {
+        given().the_time_series_dataset_JSON_$("{\"data\":[[\"abc\",\"1.5\"],[100],[200,\"2.5\"],\"NA\"]}");
+        when().a_TimeSeriesDataset_is_streamed_for_Instant(Instant.parse("2013-05-30T23:38:23Z"));
+        then().the_TimeSeriesDataset_has_$_values_and_$_missing_values(2, 2).and()
+        .the_value_statistics_cover_$_values(2).and()
+        .the_value_statistics_have_minimum_$_maximum_$_mean_$_and_median_$(1.5, 2.5, 2, 1.5);
+    }
+
+
+    /**
+     * The JSON is separated by '|', because it contains commas
+     */
+    @DataProvider(value = {
+        // @formatter:off
+        "",
+        "{\"data\":[[100,1.5],[400,2",
+        "{\"data\":[[100,1.5]]",
+        "[[100,1.5],[400,2.5]]",
+        "\"data\"",
+        "{\"data\"[[100,1.5]]}",
+        "{\"data\":[[100 1.5]]}",
+        // @formatter:on
+    }, splitBy = "\\|")
+    @Test
+    public void streaming_of_malformed_JSON(String json)
+    {
+        given().the_time_series_dataset_JSON_$(json);
+        when().an_attempt_is_made_to_stream_a_TimeSeriesDataset_for_Instant(Instant.parse("2013-05-30T23:38:23Z"));
+        then().the_streaming_failed_with_an_IOException();
+    }
+
+
     /**
      * The {@linkplain Instant} are given as strings in ISO-8601 format
      */
@@ -0,0 +1,103 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.scenarios;
+
+import org.junit.Test;
+
+import com.tngtech.jgiven.junit.ScenarioTest;
+
+import de.gerdiproject.harvest.bdd.stages.given.GivenHarvestMetrics;
+import de.gerdiproject.harvest.bdd.stages.then.ThenHarvestMetrics;
+import de.gerdiproject.harvest.bdd.stages.when.WhenMetricsRecording;
+import de.gerdiproject.harvest.bdd.tags.Tag;
+import de.gerdiproject.harvest.oceantea.metrics.HarvestMetrics;
+import de.gerdiproject.harvest.oceantea.metrics.LatencyHistogram;
+
+/**
+ * This scenario describes how a {@linkplain LatencyHistogram} estimates the
+ * percentiles of latencies, and how {@linkplain HarvestMetrics} record the
+ * download latencies per station and data type.
+ *
+ * @author Ingo Thomsen
+ */
+@Tag("Transformation")
+@SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert") // The assertions are done in the stages
+public class RecordingOfHarvestMetrics extends ScenarioTest<GivenHarvestMetrics, WhenMetricsRecording, ThenHarvestMetrics>
+{
+    @Test
+    public void percentiles_are_the_upper_bounds_of_their_buckets()
+    {
+        given().an_empty_latency_histogram();
+
+        when().$_latencies_of_$_milliseconds_are_recorded(90, 3).and()
+        .$_latencies_of_$_milliseconds_are_recorded(10, 100);
+
+        then().the_histogram_holds_$_latencies_with_a_mean_of_$_milliseconds(100, 12.7).and()
+        .the_median_is_$_milliseconds(4).and()
+        .the_95th_percentile_is_$_milliseconds(100).and()
+        .the_99th_percentile_is_$_milliseconds(100).and()
+        .the_maximum_is_$_milliseconds(100);
+    }
+
+
+    @Test
+    public void percentiles_beyond_the_last_bucket_are_the_maximum()
+    {
+        given().an_empty_latency_histogram();
+
+        when().$_latencies_of_$_milliseconds_are_recorded(2, 0.5).and()
+        .$_latencies_of_$_milliseconds_are_recorded(2, 100_000);
+
+        then().the_histogram_holds_$_latencies_with_a_mean_of_$_milliseconds(4, 50_000.25).and()
+        .the_median_is_$_milliseconds(1).and()
+        .the_95th_percentile_is_$_milliseconds(100_000).and()
+        .the_maximum_is_$_milliseconds(100_000);
+    }
+
+
+    @Test
+    public void a_reset_histogram_is_empty()
+    {
+        given().an_empty_latency_histogram();
+
+        when().$_latencies_of_$_milliseconds_are_recorded(5, 10).and()
+        .the_latency_histogram_is_reset();
+
+        then().the_histogram_holds_$_latencies_with_a_mean_of_$_milliseconds(0, 0).and()
+        .the_median_is_$_milliseconds(0).and()
+        .the_99th_percentile_is_$_milliseconds(0).and()
+        .the_maximum_is_$_milliseconds(0);
+    }
+
+
+    @Test
+    public void dataset_latencies_are_recorded_per_station_and_data_type()
+    {
+        given().empty_harvest_metrics();
+
+        when().a_dataset_of_station_$_with_the_data_type_$_is_downloaded_in_$_milliseconds("B", "temperature", 300).and()
+        .a_dataset_of_station_$_with_the_data_type_$_is_downloaded_in_$_milliseconds("A", "temperature", 10).and()
+        .a_dataset_of_station_$_with_the_data_type_$_is_downloaded_in_$_milliseconds("A", "salinity", 10);
+
+        then().the_latencies_are_listed_for_the_stations_$("A", "B").and()
+        .the_latencies_are_listed_for_the_data_types_$("salinity", "temperature").and()
+        .the_latencies_of_$_datasets_were_recorded_for_station_$(2, "A").and()
+        .the_latencies_of_$_datasets_were_recorded_for_station_$(1, "B").and()
+        .the_latencies_of_$_datasets_were_recorded_for_data_type_$(2, "temperature").and()
+        .the_latencies_of_$_datasets_were_recorded_for_data_type_$(1, "salinity").and()
+        .the_median_latency_of_station_$_is_at_least_$_milliseconds("B", 300);
+    }
+}
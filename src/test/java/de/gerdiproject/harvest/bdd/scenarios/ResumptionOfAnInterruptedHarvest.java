@@ -0,0 +1,91 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.scenarios;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.tngtech.jgiven.junit.ScenarioTest;
+
+import de.gerdiproject.harvest.bdd.stages.given.GivenOceanTeaMirror;
+import de.gerdiproject.harvest.bdd.stages.then.ThenMirrorHarvest;
+import de.gerdiproject.harvest.bdd.stages.when.WhenMirrorHarvest;
+import de.gerdiproject.harvest.bdd.tags.Tag;
+import de.gerdiproject.harvest.oceantea.utils.HarvestCheckpoint;
+
+/**
+ * This scenario describes where a harvest continues after it was
+ * interrupted, depending on the {@linkplain HarvestCheckpoint} that the
+ * interrupted harvest left behind.
+ *
+ * @author Ingo Thomsen
+ */
+@Tag("Transformation")
+@SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert") // The assertions are done in the stages
+public class ResumptionOfAnInterruptedHarvest extends ScenarioTest<GivenOceanTeaMirror, WhenMirrorHarvest, ThenMirrorHarvest>
+{
+    private static final String DATASET_NAME = "POS434-156_conductivity_215.first_100";
+    private static final String NEW_DATASET_NAME = "synthetic.adcp";
+
+
+    @Test
+    public void an_interrupted_harvest_resumes_after_the_last_loaded_document() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_harvest_checkpoint_that_is_written_every_$_time_series(5);
+
+        when().the_harvest_of_the_mirror_is_interrupted_after_$_documents(12).and()
+        .the_mirror_is_harvested();
+
+        then().$_documents_were_harvested(152).and()
+        .the_harvest_started_with_the_document_of_time_series_$(12).and()
+        .no_checkpoint_was_left();
+    }
+
+
+    @Test
+    public void a_harvest_of_a_changed_catalogue_starts_from_the_beginning() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_harvest_checkpoint_that_is_written_every_$_time_series(5);
+
+        when().the_harvest_of_the_mirror_is_interrupted_after_$_documents(12).and()
+        .a_time_series_with_the_dataset_$_is_added_to_the_mirror(NEW_DATASET_NAME).and()
+        .the_mirror_is_harvested();
+
+        then().$_documents_were_harvested(165).and()
+        .the_harvest_started_with_the_document_of_time_series_$(0).and()
+        .the_version_of_the_catalogue_changed().and()
+        .no_checkpoint_was_left();
+    }
+
+
+    @Test
+    public void a_checkpoint_of_a_missing_time_series_is_ignored() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_harvest_checkpoint_that_is_written_every_$_time_series(5);
+
+        when().the_harvest_of_the_mirror_is_interrupted_after_$_documents(12).and()
+        .the_checkpoint_refers_to_the_missing_time_series_$(1000).and()
+        .the_mirror_is_harvested();
+
+        then().$_documents_were_harvested(164).and()
+        .the_harvest_started_with_the_document_of_time_series_$(0).and()
+        .no_checkpoint_was_left();
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.scenarios;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+
+import com.tngtech.jgiven.junit.ScenarioTest;
+
+import de.gerdiproject.harvest.bdd.stages.given.GivenOceanTeaMirror;
+import de.gerdiproject.harvest.bdd.stages.then.ThenDatasetDownload;
+import de.gerdiproject.harvest.bdd.stages.when.WhenDatasetDownload;
+import de.gerdiproject.harvest.bdd.tags.Tag;
+import de.gerdiproject.harvest.oceantea.utils.CircuitBreaker;
+import de.gerdiproject.harvest.oceantea.utils.RetryPolicy;
+
+/**
+ * This scenario describes which failed downloads are retried according to
+ * the {@linkplain RetryPolicy}, and how a {@linkplain CircuitBreaker} pauses
+ * the downloads while the server keeps failing.
+ *
+ * @author Ingo Thomsen
+ */
+@Tag("Transformation")
+@SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert") // The assertions are done in the stages
+public class RetriesOfFailedDownloads extends ScenarioTest<GivenOceanTeaMirror, WhenDatasetDownload, ThenDatasetDownload>
+{
+    private static final String DATASET_NAME = "POS434-156_conductivity_215.first_100";
+
+
+    @Test
+    public void transient_errors_are_retried() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_server_that_sends_the_mirrored_datasets().and()
+        .the_server_fails_the_next_requests_with_the_status_codes_$(503, 500).and()
+        .a_retry_policy_with_$_retries_after_$_milliseconds(2, 10);
+
+        when().the_download_of_time_series_$_is_attempted(0);
+
+        then().$_datasets_were_downloaded(1).and()
+        .the_server_received_$_requests(3).and()
+        .$_retries_were_made(2);
+    }
+
+
+    @Test
+    public void retries_are_limited() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_server_that_sends_the_mirrored_datasets().and()
+        .the_server_fails_the_next_requests_with_the_status_codes_$(503, 503, 503).and()
+        .a_retry_policy_with_$_retries_after_$_milliseconds(2, 10);
+
+        when().the_download_of_time_series_$_is_attempted(0);
+
+        then().the_download_failed_with_the_status_code_$(503).and()
+        .the_server_received_$_requests(3).and()
+        .$_retries_were_made(2);
+    }
+
+
+    @Test
+    public void missing_datasets_are_not_retried() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_server_that_sends_the_mirrored_datasets().and()
+        .the_server_fails_the_next_requests_with_the_status_codes_$(404).and()
+        .a_retry_policy_with_$_retries_after_$_milliseconds(2, 10);
+
+        when().the_download_of_time_series_$_is_attempted(0);
+
+        then().the_download_failed_with_the_status_code_$(404).and()
+        .the_server_received_$_requests(1).and()
+        .$_retries_were_made(0);
+    }
+
+
+    @Test
+    public void malformed_datasets_are_not_retried() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .the_mirrored_dataset_of_time_series_$_is_$(0, "[]").and()
+        .a_server_that_sends_the_mirrored_datasets().and()
+        .a_retry_policy_with_$_retries_after_$_milliseconds(2, 10);
+
+        when().the_download_of_time_series_$_is_attempted(0);
+
+        then().the_download_failed_with_a_MalformedJsonException().and()
+        .the_server_received_$_requests(1).and()
+        .$_retries_were_made(0);
+    }
+
+
+    @Test
+    public void interrupted_downloads_are_not_retried() throws IOException, InterruptedException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_server_that_sends_the_mirrored_datasets().and()
+        .the_server_fails_the_next_requests_with_the_status_codes_$(503).and()
+        .a_retry_policy_with_$_retries_after_$_milliseconds(2, 60000);
+
+        when().the_download_of_time_series_$_is_interrupted_while_it_waits_for_a_retry(0);
+
+        then().the_download_failed_with_an_InterruptedIOException().and()
+        .the_server_received_$_requests(1);
+    }
+
+
+    @Test
+    public void the_circuit_stays_closed_below_the_failure_threshold() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_server_that_sends_the_mirrored_datasets().and()
+        .the_server_fails_the_next_requests_with_the_status_codes_$(503).and()
+        .a_circuit_breaker_that_pauses_for_$_milliseconds_after_$_failures(60000, 2);
+
+        when().the_download_of_time_series_$_is_attempted(0);
+
+        then().the_download_failed_with_the_status_code_$(503).and()
+        .the_circuit_breaker_was_opened_$_times(0).and()
+        .the_circuit_breaker_is_closed();
+    }
+
+
+    @Test
+    public void the_circuit_opens_after_consecutive_failures() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_server_that_sends_the_mirrored_datasets().and()
+        .the_server_fails_the_next_requests_with_the_status_codes_$(503, 503).and()
+        .a_circuit_breaker_that_pauses_for_$_milliseconds_after_$_failures(60000, 2);
+
+        when().the_download_of_time_series_$_is_attempted(0).and()
+        .the_download_of_time_series_$_is_attempted(1);
+
+        then().the_download_failed_with_the_status_code_$(503).and()
+        .the_server_received_$_requests(2).and()
+        .the_circuit_breaker_was_opened_$_times(1).and()
+        .the_circuit_breaker_is_open();
+    }
+
+
+    @Test
+    public void a_failed_probe_opens_the_circuit_again() throws IOException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_server_that_sends_the_mirrored_datasets().and()
+        .the_server_fails_the_next_requests_with_the_status_codes_$(503, 503, 503).and()
+        .a_circuit_breaker_that_pauses_for_$_milliseconds_after_$_failures(100, 2);
+
+        when().the_download_of_time_series_$_is_attempted(0).and()
+        .the_download_of_time_series_$_is_attempted(1).and()
+        .the_download_of_time_series_$_is_attempted(2);
+
+        then().the_download_failed_with_the_status_code_$(503).and()
+        .the_server_received_$_requests(3).and()
+        .the_circuit_breaker_was_opened_$_times(2).and()
+        .the_circuit_breaker_is_open();
+    }
+
+
+    @Test
+    public void a_successful_probe_releases_all_waiting_downloads() throws IOException, InterruptedException, ExecutionException
+    {
+        given().a_mirror_of_all_time_series_with_the_dataset_$(DATASET_NAME).and()
+        .a_server_that_sends_the_mirrored_datasets().and()
+        .the_server_fails_the_next_requests_with_the_status_codes_$(503).and()
+        .a_circuit_breaker_that_pauses_for_$_milliseconds_after_$_failures(200, 1);
+
+        when().the_download_of_time_series_$_is_attempted(0).and()
+        .the_datasets_of_time_series_$_to_$_are_downloaded_concurrently(0, 2);
+
+        then().$_datasets_were_downloaded(3).and()
+        .the_server_received_$_requests(4).and()
+        .the_circuit_breaker_was_opened_$_times(1).and()
+        .the_circuit_breaker_is_closed();
+    }
+}
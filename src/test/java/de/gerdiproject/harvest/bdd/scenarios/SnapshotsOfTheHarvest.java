@@ -0,0 +1,73 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.scenarios;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import de.gerdiproject.harvest.bdd.stages.given.GivenTimeSeriesTestData;
+import de.gerdiproject.harvest.bdd.stages.then.ThenSnapshot;
+import de.gerdiproject.harvest.bdd.tags.Tag;
+import de.gerdiproject.harvest.oceantea.utils.OceanTeaMirror;
+import de.gerdiproject.harvest.oceantea.utils.OceanTeaSnapshotWriter;
+
+/**
+ * This scenario describes the snapshots that are written by the
+ * {@linkplain OceanTeaSnapshotWriter} while OceanTEA is harvested, and that
+ * are harvested as {@linkplain OceanTeaMirror} afterwards.
+ *
+ * @author Ingo Thomsen
+ */
+@Tag("Transformation")
+@SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert") // The assertions are done in the stages
+public class SnapshotsOfTheHarvest extends AbstractHarvestingScenarioTest<GivenTimeSeriesTestData, ThenSnapshot>
+{
+    @Test
+    public void the_snapshot_of_a_dataset_yields_the_same_document() throws IOException
+    {
+        given().a_time_series_dataset_named_$("POS434-156_conductivity_215");
+
+        when().harvested_while_taking_a_snapshot()
+        .and().the_snapshot_is_harvested();
+
+        then().a_snapshot_was_written()
+        .and().the_snapshot_yields_the_same_$_documents_as_the_harvest(1);
+    }
+
+
+    @Test
+    public void the_snapshot_of_all_time_series_yields_the_same_documents() throws IOException
+    {
+        given().all_time_series_datasets();
+
+        when().harvested_while_taking_a_snapshot()
+        .and().the_snapshot_is_harvested();
+
+        then().the_snapshot_yields_the_same_$_documents_as_the_harvest(164);
+    }
+
+
+    @Test
+    public void a_failed_download_discards_the_snapshot()
+    {
+        given().all_time_series_datasets();
+
+        when().harvested_while_taking_a_snapshot_but_the_dataset_of_time_series_$_is_missing(5);
+
+        then().no_snapshot_was_written();
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.given;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.ProvidedScenarioState;
+import com.tngtech.jgiven.annotation.Quoted;
+
+import de.gerdiproject.harvest.oceantea.utils.BitWriter;
+import de.gerdiproject.harvest.oceantea.utils.ColumnarDataset;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * A Given stage with steps for providing {@linkplain ColumnarDataset}s and
+ * {@linkplain BitWriter}s, of which the compressed form is to be tested.
+ *
+ * @author Ingo Thomsen
+ */
+public class GivenColumnarDataset extends Stage<GivenColumnarDataset>
+{
+    private static final long RANDOM_SEED = 20180601L;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    ColumnarDataset columnarDataset;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    List<Integer> addedTimeOffsets;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    List<Double> addedValues;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    BitWriter bitWriter;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    long[] writtenBits;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    int[] writtenBitCounts;
+
+
+    public GivenColumnarDataset an_empty_dataset()
+    {
+        createDataset();
+        return self();
+    }
+
+
+    public GivenColumnarDataset a_dataset_of_$_pairs_with_a_regular_step_of_$_seconds(int numberOfPairs, int step)
+    {
+        createDataset();
+
+        for (int i = 0; i < numberOfPairs; i++)
+            add(i * step, 20 + Math.sin(i / 10.0));
+
+        return self();
+    }
+
+
+    /**
+     * The time offsets start at -1000 seconds and the time step changes by
+     * the deltas of deltas, one after the other.
+     *
+     * @param deltasOfDeltas the changes of the time step
+     */
+    public GivenColumnarDataset a_dataset_of_which_the_time_steps_change_by_$_seconds(int[] deltasOfDeltas)
+    {
+        createDataset();
+
+        int timeOffset = -1000;
+        int delta = 0;
+        add(timeOffset, 0);
+
+        for (int i = 0; i < deltasOfDeltas.length; i++) {
+            delta += deltasOfDeltas[i];
+            timeOffset += delta;
+            add(timeOffset, i);
+        }
+
+        return self();
+    }
+
+
+    public GivenColumnarDataset a_dataset_with_the_time_offsets_$(int[] timeOffsets)
+    {
+        createDataset();
+
+        for (int i = 0; i < timeOffsets.length; i++)
+            add(timeOffsets[i], i);
+
+        return self();
+    }
+
+
+    public GivenColumnarDataset a_dataset_with_the_values_$_at_a_regular_step(double[] values)
+    {
+        createDataset();
+
+        for (int i = 0; i < values.length; i++)
+            add(i * 300, values[i]);
+
+        return self();
+    }
+
+
+    public GivenColumnarDataset a_dataset_with_the_JSON_$(@Quoted String datasetJson) throws IOException
+    {
+        columnarDataset = ColumnarDataset.readJson(new StringReader(datasetJson));
+        addedTimeOffsets = null;
+        addedValues = null;
+        return self();
+    }
+
+
+    /**
+     * Private helper that creates an empty dataset, of which the added pairs are recorded.
+     */
+    private void createDataset()
+    {
+        columnarDataset = new ColumnarDataset();
+        addedTimeOffsets = new ArrayList<>();
+        addedValues = new ArrayList<>();
+    }
+
+
+    /**
+     * Private helper that adds a pair to the dataset and records it.
+     *
+     * @param timeOffset the time offset in seconds
+     * @param value the value, or NaN if it is missing
+     */
+    private void add(int timeOffset, double value)
+    {
+        columnarDataset.add(timeOffset, value);
+        addedTimeOffsets.add(timeOffset);
+        addedValues.add(value);
+    }
+
+
+    /**
+     * Each bit count is used for a random value, so the values cross the
+     * boundaries of the words in which the bits are stored.
+     *
+     * @param bitCounts the numbers of bits of the written values
+     */
+    public GivenColumnarDataset a_bit_sequence_of_random_values_with_$_bits(int[] bitCounts)
+    {
+        final Random random = new Random(RANDOM_SEED);
+
+        bitWriter = new BitWriter();
+        writtenBitCounts = bitCounts.clone();
+        writtenBits = new long[bitCounts.length];
+
+        for (int i = 0; i < bitCounts.length; i++) {
+            final long value = random.nextLong();
+            final int bitCount = bitCounts[i];
+
+            writtenBits[i] = bitCount == Long.SIZE ? value : value & ((1L << bitCount) - 1);
+            bitWriter.writeBits(value, bitCount);
+        }
+
+        return self();
+    }
+}
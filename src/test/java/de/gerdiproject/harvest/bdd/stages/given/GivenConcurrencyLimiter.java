@@ -0,0 +1,50 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.given;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.ProvidedScenarioState;
+
+import de.gerdiproject.harvest.oceantea.utils.AdaptiveConcurrencyLimiter;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * A Given stage with steps for providing an {@linkplain AdaptiveConcurrencyLimiter}
+ * that measures its round trips with a synthetic clock, which only advances
+ * with the latencies of the requests. This way, the adaptation of the limit
+ * does not depend on the speed of the test.
+ *
+ * @author Ingo Thomsen
+ */
+public class GivenConcurrencyLimiter extends Stage<GivenConcurrencyLimiter>
+{
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    AtomicLong syntheticNanos = new AtomicLong();
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    AdaptiveConcurrencyLimiter limiter;
+
+
+    public GivenConcurrencyLimiter a_concurrency_limiter_for_at_most_$_requests(int maxLimit)
+    {
+        limiter = new AdaptiveConcurrencyLimiter(maxLimit, syntheticNanos::get);
+        return self();
+    }
+}
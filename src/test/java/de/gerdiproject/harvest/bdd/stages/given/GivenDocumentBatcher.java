@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.given;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.gson.Gson;
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.AfterScenario;
+import com.tngtech.jgiven.annotation.ProvidedScenarioState;
+
+import de.gerdiproject.harvest.etls.TimeSeriesETL;
+import de.gerdiproject.harvest.oceantea.utils.DocumentBatch;
+import de.gerdiproject.harvest.oceantea.utils.DocumentBatcher;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * A Given stage with steps for providing a {@linkplain DocumentBatcher} of
+ * string documents, which keeps all submitted {@linkplain DocumentBatch}es.
+ * The submission of a number of batches can be made to fail.
+ *
+ * @author Ingo Thomsen
+ */
+public class GivenDocumentBatcher extends Stage<GivenDocumentBatcher>
+{
+    private static final Gson GSON = new Gson();
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    List<DocumentBatch<String>> submittedBatches = new ArrayList<>();
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    DocumentBatcher<String> batcher;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    AtomicInteger remainingSubmissionFailures = new AtomicInteger();
+
+
+    public GivenDocumentBatcher a_batcher_for_at_most_$_documents_and_$_bytes(int maxDocuments, long maxBytes)
+    {
+        // batches are only submitted when they are full or the batcher is closed
+        batcher = new DocumentBatcher<>(maxDocuments, maxBytes, 0, GSON, submittedBatches::add);
+        return self();
+    }
+
+
+    public GivenDocumentBatcher a_batcher_for_at_most_$_documents_and_$_bytes_that_fails_to_submit_$_batch(int maxDocuments, long maxBytes,
+                                                                                                     int numberOfFailures)
+    {
+        remainingSubmissionFailures.set(numberOfFailures);
+        batcher = new DocumentBatcher<>(maxDocuments, maxBytes, 0, GSON, this::submit);
+        return self();
+    }
+
+
+    public GivenDocumentBatcher a_batcher_that_submits_after_$_milliseconds_and_fails_to_submit_$_batch(long flushInterval, int numberOfFailures)
+    {
+        remainingSubmissionFailures.set(numberOfFailures);
+        batcher = new DocumentBatcher<>(Integer.MAX_VALUE, 0, flushInterval, GSON, this::submit);
+        return self();
+    }
+
+
+    public GivenDocumentBatcher a_batcher_of_the_harvester_with_the_default_limits()
+    {
+        batcher = new TimeSeriesETL().createDocumentBatcher(GSON, submittedBatches::add);
+        return self();
+    }
+
+
+    /**
+     * Private helper that keeps a submitted batch, unless its submission is
+     * to fail.
+     *
+     * @param batch the submitted batch
+     *
+     * @throws IOException if the submission is to fail
+     */
+    private void submit(DocumentBatch<String> batch) throws IOException
+    {
+        if (remainingSubmissionFailures.getAndDecrement() > 0)
+            throw new IOException("Submission failed");
+
+        submittedBatches.add(batch);
+    }
+
+
+    /**
+     * Discards the documents of the batcher after the scenario, stopping its
+     * timed submissions.
+     */
+    @AfterScenario
+    @SuppressWarnings("PMD.UnusedPrivateMethod") // This method IS called once by JGiven
+    private void abortBatcher()
+    {
+        if (batcher != null)
+            batcher.abort();
+    }
+}
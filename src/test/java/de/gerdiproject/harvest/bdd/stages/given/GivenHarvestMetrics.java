@@ -0,0 +1,54 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.given;
+
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.ProvidedScenarioState;
+
+import de.gerdiproject.harvest.oceantea.metrics.HarvestMetrics;
+import de.gerdiproject.harvest.oceantea.metrics.LatencyHistogram;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * A Given stage with steps for providing empty {@linkplain HarvestMetrics}
+ * and {@linkplain LatencyHistogram}s.
+ *
+ * @author Ingo Thomsen
+ */
+public class GivenHarvestMetrics extends Stage<GivenHarvestMetrics>
+{
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    LatencyHistogram histogram;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    HarvestMetrics metrics;
+
+
+    public GivenHarvestMetrics an_empty_latency_histogram()
+    {
+        histogram = new LatencyHistogram();
+        return self();
+    }
+
+
+    public GivenHarvestMetrics empty_harvest_metrics()
+    {
+        metrics = new HarvestMetrics();
+        return self();
+    }
+}
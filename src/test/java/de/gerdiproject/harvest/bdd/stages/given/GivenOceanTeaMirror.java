@@ -0,0 +1,233 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.given;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.AfterScenario;
+import com.tngtech.jgiven.annotation.BeforeStage;
+import com.tngtech.jgiven.annotation.ProvidedScenarioState;
+import com.tngtech.jgiven.annotation.Quoted;
+
+import de.gerdiproject.harvest.TestDataProvider;
+import de.gerdiproject.harvest.TestMirror;
+import de.gerdiproject.harvest.TestServer;
+import de.gerdiproject.harvest.oceantea.utils.CircuitBreaker;
+import de.gerdiproject.harvest.oceantea.utils.OceanTeaMirror;
+import de.gerdiproject.harvest.oceantea.utils.RetryPolicy;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * A Given stage with steps for providing an {@linkplain OceanTeaMirror}
+ * directory, which is written from the test data of the {@linkplain TestDataProvider}
+ * to a temporary folder. The folder also holds all other files that are
+ * written during the harvest, and is deleted after the scenario. The mirrored
+ * datasets can also be sent by a local {@linkplain TestServer}, which can
+ * be made to fail, in order to test the {@linkplain RetryPolicy} and the
+ * {@linkplain CircuitBreaker} of the downloads.
+ *
+ * @author Ingo Thomsen
+ */
+public class GivenOceanTeaMirror extends Stage<GivenOceanTeaMirror>
+{
+    private static final String HARVEST_FOLDER_PREFIX = "oceantea-harvest";
+    private static final String MIRROR_FOLDER = "mirror";
+
+    @ProvidedScenarioState
+    Path harvestFolder;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    Path mirrorFolder;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    TestServer server;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    int datasetCacheSize;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    int checkpointInterval;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    RetryPolicy retryPolicy;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    CircuitBreaker circuitBreaker;
+
+
+    public GivenOceanTeaMirror a_mirror_of_all_time_series_with_the_dataset_$(String datasetName) throws IOException
+    {
+        TestMirror.write(mirrorFolder, TestDataProvider.getAllTimeSeriesJSON(), TestDataProvider.getTimeSeriesDatasetJSON(datasetName));
+        return self();
+    }
+
+
+    public GivenOceanTeaMirror a_mirror_of_the_time_series_$_with_the_dataset_$(String timeSeriesName, String datasetName) throws IOException
+    {
+        TestMirror.write(mirrorFolder, TestDataProvider.getAllTimeSeriesJSON(timeSeriesName), TestDataProvider.getTimeSeriesDatasetJSON(datasetName));
+        return self();
+    }
+
+
+    public GivenOceanTeaMirror a_mirror_of_the_time_series_$_with_the_dataset_JSON_$(String timeSeriesName, @Quoted String datasetJson)
+    throws IOException
+    {
+        TestMirror.write(mirrorFolder, TestDataProvider.getAllTimeSeriesJSON(timeSeriesName), datasetJson);
+        return self();
+    }
+
+
+    public GivenOceanTeaMirror the_mirrored_dataset_of_time_series_$_is_missing(int index) throws IOException
+    {
+        TestMirror.deleteDataset(mirrorFolder, TestMirror.getTimeSeries(mirrorFolder).get(index));
+        return self();
+    }
+
+
+    public GivenOceanTeaMirror the_mirrored_dataset_of_time_series_$_is_$(int index, @Quoted String datasetJson) throws IOException
+    {
+        TestMirror.writeDataset(mirrorFolder, TestMirror.getTimeSeries(mirrorFolder).get(index), datasetJson);
+        return self();
+    }
+
+
+    public GivenOceanTeaMirror a_server_that_sends_the_mirrored_datasets() throws IOException
+    {
+        server = new TestServer(mirrorFolder);
+        return self();
+    }
+
+
+    public GivenOceanTeaMirror a_server_that_sends_the_mirrored_datasets_with_the_ETag_$(String eTag) throws IOException
+    {
+        a_server_that_sends_the_mirrored_datasets();
+        server.setETag(eTag);
+        return self();
+    }
+
+
+    public GivenOceanTeaMirror a_server_that_sends_the_mirrored_datasets_with_the_content_encoding_$(TestServer.Encoding encoding)
+    throws IOException
+    {
+        a_server_that_sends_the_mirrored_datasets();
+        server.setEncoding(encoding);
+        return self();
+    }
+
+
+    public GivenOceanTeaMirror a_dataset_cache_for_$_datasets(int size)
+    {
+        datasetCacheSize = size;
+        return self();
+    }
+
+
+    public GivenOceanTeaMirror a_harvest_checkpoint_that_is_written_every_$_time_series(int interval)
+    {
+        checkpointInterval = interval;
+        return self();
+    }
+
+
+    public GivenOceanTeaMirror the_server_fails_the_next_requests_with_the_status_codes_$(int... statusCodes)
+    {
+        server.failNextRequests(statusCodes);
+        return self();
+    }
+
+
+    public GivenOceanTeaMirror a_retry_policy_with_$_retries_after_$_milliseconds(int maxRetries, long delay)
+    {
+        retryPolicy = new FixedDelayRetryPolicy(maxRetries, delay);
+        return self();
+    }
+
+
+    public GivenOceanTeaMirror a_circuit_breaker_that_pauses_for_$_milliseconds_after_$_failures(long pause, int failureThreshold)
+    {
+        circuitBreaker = new CircuitBreaker(failureThreshold, pause);
+        return self();
+    }
+
+
+    /**
+     * This step is called once - before any other steps in this stage - to
+     * create the temporary folder of the harvest.
+     *
+     * @throws IOException if the folder could not be created
+     */
+    @BeforeStage
+    @SuppressWarnings("PMD.UnusedPrivateMethod") // This method IS called once by JGiven
+    private void createHarvestFolder() throws IOException
+    {
+        harvestFolder = Files.createTempDirectory(HARVEST_FOLDER_PREFIX);
+        mirrorFolder = harvestFolder.resolve(MIRROR_FOLDER);
+    }
+
+
+    /**
+     * Stops the server, if there is one, and deletes the temporary folder of
+     * the harvest after the scenario.
+     *
+     * @throws IOException if the folder could not be deleted
+     */
+    @AfterScenario
+    @SuppressWarnings("PMD.UnusedPrivateMethod") // This method IS called once by JGiven
+    private void deleteHarvestFolder() throws IOException
+    {
+        if (server != null)
+            server.close();
+
+        TestMirror.delete(harvestFolder);
+    }
+
+
+    /**
+     * A {@linkplain RetryPolicy} that always waits for its maximum delay,
+     * so that the timing of the retries does not depend on chance.
+     *
+     * @author Ingo Thomsen
+     */
+    private static final class FixedDelayRetryPolicy extends RetryPolicy
+    {
+        /**
+         * Constructor that sets the number of retries and the delay.
+         *
+         * @param maxRetries the maximum number of retries per request
+         * @param delay the delay before each retry in milliseconds
+         */
+        FixedDelayRetryPolicy(int maxRetries, long delay)
+        {
+            super(maxRetries, delay, delay);
+        }
+
+
+        @Override
+        public long getDelay(int retry)
+        {
+            return getMaxDelay();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.given;
+
+import java.util.List;
+import java.util.Random;
+
+import com.google.gson.Gson;
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.ProvidedScenarioState;
+
+import de.gerdiproject.harvest.TestDataProvider;
+import de.gerdiproject.harvest.oceantea.json.TimeSeriesDatasetResponse;
+import de.gerdiproject.harvest.oceantea.utils.QuantileSketch;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * A Given stage with steps for providing the values of which the quantiles
+ * are approximated by a {@linkplain QuantileSketch}.
+ *
+ * @author Ingo Thomsen
+ */
+public class GivenSketchedValues extends Stage<GivenSketchedValues>
+{
+    // a fixed seed makes failing scenarios reproducible
+    private static final long RANDOM_SEED = 20180601L;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    double[] sketchedValues;
+
+
+    /**
+     * Values that are not numbers, such as "NA", are skipped.
+     *
+     * @param name the name of the time series dataset
+     */
+    public GivenSketchedValues the_values_of_the_time_series_dataset_$(String name)
+    {
+        final TimeSeriesDatasetResponse response =
+            new Gson().fromJson(TestDataProvider.getTimeSeriesDatasetJSON(name), TimeSeriesDatasetResponse.class);
+
+        sketchedValues = response.getListOfPairsOfTimeOffsetAndValue().stream()
+                         .filter((List<String> pair) -> pair.size() > 1 && isNumber(pair.get(1)))
+                         .mapToDouble((List<String> pair) -> Double.parseDouble(pair.get(1)))
+                         .toArray();
+        return self();
+    }
+
+
+    public GivenSketchedValues $_normally_distributed_values(int numberOfValues)
+    {
+        final Random random = new Random(RANDOM_SEED);
+        sketchedValues = new double[numberOfValues];
+
+        for (int i = 0; i < numberOfValues; i++)
+            sketchedValues[i] = random.nextGaussian();
+
+        return self();
+    }
+
+
+    public GivenSketchedValues $_ascending_values(int numberOfValues)
+    {
+        sketchedValues = new double[numberOfValues];
+
+        for (int i = 0; i < numberOfValues; i++)
+            sketchedValues[i] = i;
+
+        return self();
+    }
+
+
+    /**
+     * Private helper that checks if a value of a time series dataset is a number.
+     *
+     * @param value the value as string, or null
+     *
+     * @return true if the value can be parsed as double
+     */
+    private static boolean isNumber(String value)
+    {
+        if (value == null)
+            return false;
+
+        try {
+            Double.parseDouble(value);
+            return true;
+        } catch (NumberFormatException e) { // NOPMD a missing value is no number
+            return false;
+        }
+    }
+}
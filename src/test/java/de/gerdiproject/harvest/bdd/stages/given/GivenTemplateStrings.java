@@ -0,0 +1,55 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.given;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.ProvidedScenarioState;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDataCiteConstants;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * A Given stage with steps for providing the template strings of a
+ * constants class, which are all string constants with format specifiers.
+ *
+ * @author Ingo Thomsen
+ */
+public class GivenTemplateStrings extends Stage<GivenTemplateStrings>
+{
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    Map<String, String> templates = new LinkedHashMap<>();
+
+
+    public GivenTemplateStrings all_template_strings_of_the_DataCite_constants() throws IllegalAccessException
+    {
+        for (Field field : OceanTeaTimeSeriesDataCiteConstants.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                final String value = (String) field.get(null);
+
+                if (value.indexOf('%') >= 0)
+                    templates.put(field.getName(), value);
+            }
+        }
+
+        return self();
+    }
+}
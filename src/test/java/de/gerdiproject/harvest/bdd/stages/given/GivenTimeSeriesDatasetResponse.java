@@ -22,8 +22,10 @@ import java.util.Random;
 
 import com.tngtech.jgiven.Stage;
 import com.tngtech.jgiven.annotation.ProvidedScenarioState;
+import com.tngtech.jgiven.annotation.Quoted;
 
 import de.gerdiproject.harvest.IDocument;
+import de.gerdiproject.harvest.TestDataProvider;
 import de.gerdiproject.harvest.oceantea.json.TimeSeriesDatasetResponse;
 
 /**
@@ -35,10 +37,15 @@ import de.gerdiproject.harvest.oceantea.json.TimeSeriesDatasetResponse;
  */
 public class GivenTimeSeriesDatasetResponse extends Stage<GivenTimeSeriesDatasetResponse>
 {
+    // a fixed seed makes failing scenarios reproducible
+    private static final long RANDOM_SEED = 20180601L;
 
     @ProvidedScenarioState
     TimeSeriesDatasetResponse timeSeriesDatasetResponse;
 
+    @ProvidedScenarioState
+    String timeSeriesDatasetJson;
+
 
     public GivenTimeSeriesDatasetResponse an_empty_TimeSeriesDatasetResponse()
     {
@@ -50,7 +57,7 @@ public class GivenTimeSeriesDatasetResponse extends Stage<GivenTimeSeriesDataset
     public GivenTimeSeriesDatasetResponse a_TimeSeriesDatasetResponse_with_boundary_time_offsets_$_and_$(int v1, int v2)
     {
         // create list of lists
-        Random random = new Random();
+        Random random = new Random(RANDOM_SEED);
         List<List<String>> data = new ArrayList<>();
 
         data.add(Arrays.asList(Integer.toString(v1), Integer.toString(random.nextInt())));
@@ -64,7 +71,7 @@ public class GivenTimeSeriesDatasetResponse extends Stage<GivenTimeSeriesDataset
 
     public GivenTimeSeriesDatasetResponse an_TimeSeriesDatasetResponse_with_one_random_value_pair()
     {
-        Random random = new Random();
+        Random random = new Random(RANDOM_SEED);
         List<List<String>> data = new ArrayList<>();
 
         data.add(Arrays.asList(Integer.toString(random.nextInt()), Integer.toString(random.nextInt())));
@@ -73,4 +80,45 @@ public class GivenTimeSeriesDatasetResponse extends Stage<GivenTimeSeriesDataset
         timeSeriesDatasetResponse.setListOfPairsOfTimeOffsetAndValue(data);
         return self();
     }
-}
\ No newline at end of file
+
+
+    public GivenTimeSeriesDatasetResponse a_TimeSeriesDatasetResponse_with_values_$(String... values)
+    {
+        List<List<String>> data = new ArrayList<>();
+
+        for (int i = 0; i < values.length; i++)
+            data.add(Arrays.asList(Integer.toString(i), values[i]));
+
+        timeSeriesDatasetResponse = new TimeSeriesDatasetResponse();
+        timeSeriesDatasetResponse.setListOfPairsOfTimeOffsetAndValue(data);
+        return self();
+    }
+
+
+    public GivenTimeSeriesDatasetResponse a_TimeSeriesDatasetResponse_with_time_offsets_$(int... timeOffsets)
+    {
+        Random random = new Random(RANDOM_SEED);
+        List<List<String>> data = new ArrayList<>();
+
+        for (int timeOffset : timeOffsets)
+            data.add(Arrays.asList(Integer.toString(timeOffset), Integer.toString(random.nextInt())));
+
+        timeSeriesDatasetResponse = new TimeSeriesDatasetResponse();
+        timeSeriesDatasetResponse.setListOfPairsOfTimeOffsetAndValue(data);
+        return self();
+    }
+
+
+    public GivenTimeSeriesDatasetResponse the_JSON_of_the_time_series_dataset_$(String name)
+    {
+        timeSeriesDatasetJson = TestDataProvider.getTimeSeriesDatasetJSON(name);
+        return self();
+    }
+
+
+    public GivenTimeSeriesDatasetResponse the_time_series_dataset_JSON_$(@Quoted String json)
+    {
+        timeSeriesDatasetJson = json;
+        return self();
+    }
+}
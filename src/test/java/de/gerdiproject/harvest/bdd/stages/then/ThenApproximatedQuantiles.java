@@ -0,0 +1,99 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.then;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.ExpectedScenarioState;
+
+import de.gerdiproject.harvest.oceantea.utils.QuantileSketch;
+
+/**
+ * A Then stage with steps for comparing the quantiles that were approximated
+ * by a {@linkplain QuantileSketch} with the exact quantiles.
+ *
+ * @author Ingo Thomsen
+ */
+public class ThenApproximatedQuantiles extends Stage<ThenApproximatedQuantiles>
+{
+    @ExpectedScenarioState
+    double[] sketchedValues;
+
+    @ExpectedScenarioState
+    QuantileSketch quantileSketch;
+
+
+    public ThenApproximatedQuantiles all_$_values_were_sketched(long numberOfValues)
+    {
+        assertThat(sketchedValues).hasSize((int) numberOfValues);
+        assertThat(quantileSketch.getCount()).isEqualTo(numberOfValues);
+        return self();
+    }
+
+
+    /**
+     * The rank of the exact quantile is compared with the ranks of all values
+     * that are equal to the approximated quantile, so repeated values are
+     * not counted as error.
+     *
+     * @param fraction the fraction of values that are less than or equal to the quantile
+     * @param rankErrorPercent the tolerated difference of the ranks, in percent of the number of values
+     */
+    public ThenApproximatedQuantiles the_$_quantile_is_approximated_within_$_percent_of_its_rank(double fraction, double rankErrorPercent)
+    {
+        final double[] sortedValues = sketchedValues.clone();
+        Arrays.sort(sortedValues);
+
+        final double quantile = quantileSketch.getQuantile(fraction);
+        final long rank = Math.max(1L, (long) Math.ceil(fraction * sortedValues.length));
+        final long tolerance = (long) Math.ceil(rankErrorPercent / 100 * sortedValues.length);
+
+        // the ranks of the approximated quantile, starting at 1
+        final long lowestRank = countValuesBelow(sortedValues, quantile) + 1;
+        final long highestRank = countValuesBelow(sortedValues, Math.nextUp(quantile));
+
+        assertThat(highestRank).as("highest rank of %s", quantile).isGreaterThanOrEqualTo(lowestRank);
+        assertThat(highestRank).as("highest rank of %s", quantile).isGreaterThanOrEqualTo(rank - tolerance);
+        assertThat(lowestRank).as("lowest rank of %s", quantile).isLessThanOrEqualTo(rank + tolerance);
+        return self();
+    }
+
+
+    /**
+     * Private helper that counts the values that are less than a limit.
+     *
+     * @param sortedValues the values in ascending order
+     * @param limit the exclusive upper limit
+     *
+     * @return the number of values that are less than the limit
+     */
+    private static long countValuesBelow(double[] sortedValues, double limit)
+    {
+        int index = Arrays.binarySearch(sortedValues, limit);
+
+        if (index < 0)
+            return -index - 1L;
+
+        // binarySearch finds any of the equal values
+        while (index > 0 && sortedValues[index - 1] == limit)
+            index--;
+
+        return index;
+    }
+}
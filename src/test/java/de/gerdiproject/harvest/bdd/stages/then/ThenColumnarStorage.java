@@ -0,0 +1,157 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.then;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.ExpectedScenarioState;
+
+import de.gerdiproject.harvest.oceantea.utils.BitReader;
+import de.gerdiproject.harvest.oceantea.utils.ColumnarDataset;
+
+/**
+ * A Then stage with step methods for testing that a {@linkplain ColumnarDataset}
+ * or a bit sequence is read exactly as it was written.
+ *
+ * @author Ingo Thomsen
+ */
+public class ThenColumnarStorage extends Stage<ThenColumnarStorage>
+{
+    @ExpectedScenarioState
+    ColumnarDataset columnarDataset;
+
+    @ExpectedScenarioState
+    ColumnarDataset readColumnarDataset;
+
+    @ExpectedScenarioState
+    List<Integer> addedTimeOffsets;
+
+    @ExpectedScenarioState
+    List<Double> addedValues;
+
+    @ExpectedScenarioState
+    long[] writtenBits;
+
+    @ExpectedScenarioState
+    long[] readBits;
+
+    @ExpectedScenarioState
+    BitReader bitReader;
+
+
+    /**
+     * Compares the pairs of the read dataset with those of the written dataset
+     * and, unless the dataset was read from JSON, with the added pairs. The
+     * values are compared by their bits, so that -0.0 and 0.0 are distinguished.
+     *
+     * @param numberOfPairs the number of pairs that both datasets must have
+     */
+    public ThenColumnarStorage the_read_dataset_has_the_same_$_pairs(int numberOfPairs)
+    {
+        assertThat(columnarDataset.getSize()).isEqualTo(numberOfPairs);
+        assertThat(readColumnarDataset.getSize()).isEqualTo(numberOfPairs);
+
+        final ColumnarDataset.Cursor written = columnarDataset.cursor();
+        final ColumnarDataset.Cursor read = readColumnarDataset.cursor();
+
+        for (int i = 0; i < numberOfPairs; i++) {
+            assertThat(written.next()).isTrue();
+            assertThat(read.next()).isTrue();
+
+            assertThat(read.isTimeOffsetMissing()).as("time offset %d is missing", i).isEqualTo(written.isTimeOffsetMissing());
+            assertThat(read.getTimeOffset()).as("time offset %d", i).isEqualTo(written.getTimeOffset());
+            assertThat(read.isValueMissing()).as("value %d is missing", i).isEqualTo(written.isValueMissing());
+            assertThat(Double.doubleToRawLongBits(read.getValue()))
+            .as("value %d", i)
+            .isEqualTo(Double.doubleToRawLongBits(written.getValue()));
+
+            if (addedTimeOffsets != null) {
+                assertThat(read.getTimeOffset()).as("added time offset %d", i).isEqualTo(addedTimeOffsets.get(i));
+                assertThat(Double.doubleToRawLongBits(read.getValue()))
+                .as("added value %d", i)
+                .isEqualTo(Double.doubleToRawLongBits(addedValues.get(i)));
+            }
+        }
+
+        assertThat(written.next()).isFalse();
+        assertThat(read.next()).isFalse();
+        return self();
+    }
+
+
+    public ThenColumnarStorage the_time_offsets_of_the_read_dataset_are_$(int[] timeOffsets)
+    {
+        final ColumnarDataset.Cursor read = readColumnarDataset.cursor();
+
+        for (final int timeOffset : timeOffsets) {
+            assertThat(read.next()).isTrue();
+            assertThat(read.getTimeOffset()).isEqualTo(timeOffset);
+        }
+
+        return self();
+    }
+
+
+    public ThenColumnarStorage the_values_of_the_read_dataset_have_the_bits_of_$(double[] values)
+    {
+        final ColumnarDataset.Cursor read = readColumnarDataset.cursor();
+
+        for (final double value : values) {
+            assertThat(read.next()).isTrue();
+            assertThat(Double.doubleToRawLongBits(read.getValue())).isEqualTo(Double.doubleToRawLongBits(value));
+        }
+
+        return self();
+    }
+
+
+    public ThenColumnarStorage $_time_offsets_and_$_values_of_the_read_dataset_are_missing(int numberOfMissingTimeOffsets, int numberOfMissingValues)
+    {
+        final ColumnarDataset.Cursor read = readColumnarDataset.cursor();
+        int missingTimeOffsets = 0;
+        int missingValues = 0;
+
+        while (read.next()) {
+            if (read.isTimeOffsetMissing())
+                missingTimeOffsets++;
+
+            if (read.isValueMissing())
+                missingValues++;
+        }
+
+        assertThat(missingTimeOffsets).isEqualTo(numberOfMissingTimeOffsets);
+        assertThat(missingValues).isEqualTo(numberOfMissingValues);
+        return self();
+    }
+
+
+    public ThenColumnarStorage all_values_are_read_as_they_were_written()
+    {
+        assertThat(readBits).containsExactly(writtenBits);
+        return self();
+    }
+
+
+    public ThenColumnarStorage no_more_bits_can_be_read()
+    {
+        assertThatThrownBy(() -> bitReader.readBit()).isInstanceOf(IllegalStateException.class);
+        return self();
+    }
+}
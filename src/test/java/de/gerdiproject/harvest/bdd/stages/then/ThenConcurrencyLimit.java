@@ -0,0 +1,59 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.then;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.ExpectedScenarioState;
+
+import de.gerdiproject.harvest.oceantea.utils.AdaptiveConcurrencyLimiter;
+
+/**
+ * A Then stage with steps for testing the limit of an
+ * {@linkplain AdaptiveConcurrencyLimiter} after requests were finished.
+ *
+ * @author Ingo Thomsen
+ */
+public class ThenConcurrencyLimit extends Stage<ThenConcurrencyLimit>
+{
+    @ExpectedScenarioState
+    AdaptiveConcurrencyLimiter limiter;
+
+    @ExpectedScenarioState
+    int numberOfRejectedRequests;
+
+
+    public ThenConcurrencyLimit the_limit_is_$_requests(int limit)
+    {
+        assertThat(limiter.getLimit()).isEqualTo(limit);
+        return self();
+    }
+
+
+    public ThenConcurrencyLimit the_limit_was_decreased_$_times(long numberOfDecreases)
+    {
+        assertThat(limiter.getSummary().getDecreases()).isEqualTo(numberOfDecreases);
+        return self();
+    }
+
+
+    public ThenConcurrencyLimit $_requests_were_rejected(int numberOfRequests)
+    {
+        assertThat(numberOfRejectedRequests).isEqualTo(numberOfRequests);
+        return self();
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.then;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.tngtech.jgiven.Stage;
+import com.google.gson.stream.MalformedJsonException;
+import com.tngtech.jgiven.annotation.ExpectedScenarioState;
+
+import de.gerdiproject.harvest.TestMirror;
+import de.gerdiproject.harvest.TestServer;
+import de.gerdiproject.harvest.oceantea.metrics.HarvestMetrics;
+import de.gerdiproject.harvest.oceantea.utils.CircuitBreaker;
+import de.gerdiproject.harvest.oceantea.utils.HttpStatusException;
+import de.gerdiproject.harvest.oceantea.utils.OceanTeaMirror;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeries;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesDataset;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesDatasetCache;
+
+/**
+ * A Then stage with steps for testing the requests that were sent while
+ * downloading datasets, the decoded datasets and their byte counts, the
+ * entries of the {@linkplain TimeSeriesDatasetCache}, and the retries of
+ * failed downloads.
+ *
+ * @author Ingo Thomsen
+ */
+public class ThenDatasetDownload extends Stage<ThenDatasetDownload>
+{
+    @ExpectedScenarioState
+    Path mirrorFolder;
+
+    @ExpectedScenarioState
+    TestServer server;
+
+    @ExpectedScenarioState
+    Path cacheFolder;
+
+    @ExpectedScenarioState
+    TimeSeriesDatasetCache datasetCache;
+
+    @ExpectedScenarioState
+    List<TimeSeriesDataset> downloadedDatasets;
+
+    @ExpectedScenarioState
+    HarvestMetrics metrics;
+
+    @ExpectedScenarioState
+    IOException downloadError;
+
+    @ExpectedScenarioState
+    CircuitBreaker circuitBreaker;
+
+
+    public ThenDatasetDownload the_server_received_$_requests(int numberOfRequests)
+    {
+        assertThat(server.getNumberOfRequests()).isEqualTo(numberOfRequests);
+        return self();
+    }
+
+
+    public ThenDatasetDownload the_server_answered_$_requests_with_Not_Modified(int numberOfResponses)
+    {
+        assertThat(server.getNumberOfNotModifiedResponses()).isEqualTo(numberOfResponses);
+        return self();
+    }
+
+
+    public ThenDatasetDownload all_downloads_returned_the_same_dataset()
+    {
+        assertThat(downloadedDatasets).isNotEmpty();
+        assertThat(downloadedDatasets).containsOnly(downloadedDatasets.get(0));
+        return self();
+    }
+
+
+    public ThenDatasetDownload the_downloaded_dataset_equals_the_mirrored_dataset_of_time_series_$(int index) throws IOException
+    {
+        final TimeSeries timeSeries = TestMirror.getTimeSeries(mirrorFolder).get(index);
+
+        try
+            (OceanTeaMirror mirror = new OceanTeaMirror(mirrorFolder.toString())) {
+            assertThat(downloadedDatasets).containsExactly(mirror.readDataset(timeSeries, StandardCharsets.UTF_8));
+        }
+
+        return self();
+    }
+
+
+    public ThenDatasetDownload the_transferred_bytes_are_those_that_the_server_sent()
+    {
+        assertThat(metrics.getDownloadedBytes()).isPositive();
+        assertThat(metrics.getDownloadedBytes()).isEqualTo(server.getNumberOfSentBytes());
+        return self();
+    }
+
+
+    public ThenDatasetDownload the_decoded_bytes_are_those_of_the_mirrored_dataset_of_time_series_$(int index) throws IOException
+    {
+        final TimeSeries timeSeries = TestMirror.getTimeSeries(mirrorFolder).get(index);
+        assertThat(metrics.getDecodedBytes()).isEqualTo(Files.size(mirrorFolder.resolve(OceanTeaMirror.getDatasetPath(timeSeries))));
+        return self();
+    }
+
+
+    public ThenDatasetDownload fewer_bytes_were_transferred_than_decoded()
+    {
+        assertThat(metrics.getDownloadedBytes()).isLessThan(metrics.getDecodedBytes());
+        return self();
+    }
+
+
+    public ThenDatasetDownload the_cache_holds_$_datasets(int numberOfDatasets) throws IOException
+    {
+        assertThat(datasetCache.size()).isEqualTo(numberOfDatasets);
+
+        // no temporary files must be left over
+        try
+            (Stream<Path> cacheFiles = Files.list(cacheFolder)) {
+            assertThat(cacheFiles.count()).isEqualTo(numberOfDatasets);
+        }
+
+        return self();
+    }
+
+
+    public ThenDatasetDownload $_datasets_were_downloaded(int numberOfDatasets)
+    {
+        assertThat(downloadedDatasets).hasSize(numberOfDatasets);
+        return self();
+    }
+
+
+    public ThenDatasetDownload the_download_failed_with_the_status_code_$(int statusCode)
+    {
+        assertThat(downloadError).isInstanceOf(HttpStatusException.class);
+        assertThat(((HttpStatusException) downloadError).getStatusCode()).isEqualTo(statusCode);
+        return self();
+    }
+
+
+    public ThenDatasetDownload the_download_failed_with_a_MalformedJsonException()
+    {
+        assertThat(downloadError).isInstanceOf(MalformedJsonException.class);
+        return self();
+    }
+
+
+    public ThenDatasetDownload the_download_failed_with_an_InterruptedIOException()
+    {
+        assertThat(downloadError).isInstanceOf(InterruptedIOException.class);
+        return self();
+    }
+
+
+    public ThenDatasetDownload $_retries_were_made(long numberOfRetries)
+    {
+        assertThat(metrics.getNumberOfRetries()).isEqualTo(numberOfRetries);
+        return self();
+    }
+
+
+    public ThenDatasetDownload the_circuit_breaker_was_opened_$_times(long numberOfOpenings)
+    {
+        assertThat(metrics.getCircuitBreakerOpenings()).isEqualTo(numberOfOpenings);
+        return self();
+    }
+
+
+    public ThenDatasetDownload the_circuit_breaker_is_open()
+    {
+        assertThat(circuitBreaker.isOpen()).isTrue();
+        return self();
+    }
+
+
+    public ThenDatasetDownload the_circuit_breaker_is_closed()
+    {
+        assertThat(circuitBreaker.isOpen()).isFalse();
+        return self();
+    }
+}
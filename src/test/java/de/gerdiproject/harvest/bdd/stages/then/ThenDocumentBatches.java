@@ -0,0 +1,66 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.then;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.ExpectedScenarioState;
+
+import de.gerdiproject.harvest.oceantea.utils.DocumentBatch;
+import de.gerdiproject.harvest.oceantea.utils.DocumentBatcher;
+
+/**
+ * A Then stage with steps for testing the {@linkplain DocumentBatch}es that
+ * were submitted by a {@linkplain DocumentBatcher}.
+ *
+ * @author Ingo Thomsen
+ */
+public class ThenDocumentBatches extends Stage<ThenDocumentBatches>
+{
+    @ExpectedScenarioState
+    List<DocumentBatch<String>> submittedBatches;
+
+    @ExpectedScenarioState
+    int numberOfRejectedDocuments;
+
+
+    public ThenDocumentBatches $_batches_were_submitted(int numberOfBatches)
+    {
+        assertThat(submittedBatches).hasSize(numberOfBatches);
+        return self();
+    }
+
+
+    public ThenDocumentBatches $_documents_were_rejected(int numberOfDocuments)
+    {
+        assertThat(numberOfRejectedDocuments).isEqualTo(numberOfDocuments);
+        return self();
+    }
+
+
+    public ThenDocumentBatches batch_$_holds_$_documents_of_$_bytes(int index, int numberOfDocuments, long byteSize)
+    {
+        final DocumentBatch<String> batch = submittedBatches.get(index);
+
+        assertThat(batch.getDocuments()).hasSize(numberOfDocuments);
+        assertThat(batch.getSerializedDocuments()).hasSize(numberOfDocuments);
+        assertThat(batch.getByteSize()).isEqualTo(byteSize);
+        return self();
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.then;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.ExpectedScenarioState;
+
+import de.gerdiproject.harvest.oceantea.metrics.HarvestMetrics;
+import de.gerdiproject.harvest.oceantea.metrics.LatencyHistogram;
+import de.gerdiproject.harvest.oceantea.metrics.LatencySummary;
+
+/**
+ * A Then stage with steps for testing the {@linkplain LatencySummary}s of a
+ * {@linkplain LatencyHistogram} and of the datasets that were recorded by
+ * {@linkplain HarvestMetrics}.
+ *
+ * @author Ingo Thomsen
+ */
+public class ThenHarvestMetrics extends Stage<ThenHarvestMetrics>
+{
+    private static final double MILLIS_OFFSET = 0.001;
+
+    @ExpectedScenarioState
+    LatencyHistogram histogram;
+
+    @ExpectedScenarioState
+    HarvestMetrics metrics;
+
+
+    public ThenHarvestMetrics the_histogram_holds_$_latencies_with_a_mean_of_$_milliseconds(long count, double meanMillis)
+    {
+        final LatencySummary summary = histogram.getSummary();
+        assertThat(summary.getCount()).isEqualTo(count);
+        assertThat(summary.getMeanMillis()).isCloseTo(meanMillis, offset(MILLIS_OFFSET));
+        return self();
+    }
+
+
+    public ThenHarvestMetrics the_median_is_$_milliseconds(double millis)
+    {
+        assertThat(histogram.getSummary().getP50Millis()).isCloseTo(millis, offset(MILLIS_OFFSET));
+        return self();
+    }
+
+
+    public ThenHarvestMetrics the_95th_percentile_is_$_milliseconds(double millis)
+    {
+        assertThat(histogram.getSummary().getP95Millis()).isCloseTo(millis, offset(MILLIS_OFFSET));
+        return self();
+    }
+
+
+    public ThenHarvestMetrics the_99th_percentile_is_$_milliseconds(double millis)
+    {
+        assertThat(histogram.getSummary().getP99Millis()).isCloseTo(millis, offset(MILLIS_OFFSET));
+        return self();
+    }
+
+
+    public ThenHarvestMetrics the_maximum_is_$_milliseconds(double millis)
+    {
+        assertThat(histogram.getSummary().getMaxMillis()).isCloseTo(millis, offset(MILLIS_OFFSET));
+        return self();
+    }
+
+
+    public ThenHarvestMetrics the_latencies_are_listed_for_the_stations_$(String... stations)
+    {
+        assertThat(metrics.getStationLatencies().keySet()).containsExactly(stations);
+        return self();
+    }
+
+
+    public ThenHarvestMetrics the_latencies_are_listed_for_the_data_types_$(String... dataTypes)
+    {
+        assertThat(metrics.getDataTypeLatencies().keySet()).containsExactly(dataTypes);
+        return self();
+    }
+
+
+    public ThenHarvestMetrics the_latencies_of_$_datasets_were_recorded_for_station_$(long count, String station)
+    {
+        assertThat(metrics.getStationLatencies().get(station).getCount()).isEqualTo(count);
+        return self();
+    }
+
+
+    public ThenHarvestMetrics the_latencies_of_$_datasets_were_recorded_for_data_type_$(long count, String dataType)
+    {
+        assertThat(metrics.getDataTypeLatencies().get(dataType).getCount()).isEqualTo(count);
+        return self();
+    }
+
+
+    public ThenHarvestMetrics the_median_latency_of_station_$_is_at_least_$_milliseconds(String station, double millis)
+    {
+        assertThat(metrics.getStationLatencies().get(station).getP50Millis()).isGreaterThanOrEqualTo(millis);
+        return self();
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.then;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.ExpectedScenarioState;
+
+import de.gerdiproject.harvest.TestMirror;
+import de.gerdiproject.harvest.bdd.stages.when.WhenMirrorHarvest.ExecutionMode;
+import de.gerdiproject.harvest.etls.transformers.TransformerException;
+import de.gerdiproject.harvest.oceantea.utils.OceanTeaMirror;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesParser;
+
+/**
+ * A Then stage with step methods for testing the outcomes of the harvest of
+ * an {@linkplain OceanTeaMirror}.
+ *
+ * @author Ingo Thomsen
+ */
+public class ThenMirrorHarvest extends Stage<ThenMirrorHarvest>
+{
+    private static final String FAILURE_PREFIX = TransformerException.class.getSimpleName() + ": ";
+
+    @ExpectedScenarioState
+    List<String> harvestOutcomes;
+
+    @ExpectedScenarioState
+    Map<ExecutionMode, List<String>> harvestOutcomesByMode;
+
+    @ExpectedScenarioState
+    List<String> catalogueVersions;
+
+    @ExpectedScenarioState
+    Path mirrorFolder;
+
+    @ExpectedScenarioState
+    Path checkpointFile;
+
+
+    public ThenMirrorHarvest $_documents_were_harvested(int numberOfDocuments)
+    {
+        assertThat(harvestOutcomes.stream().filter((String outcome) -> !outcome.startsWith(FAILURE_PREFIX)).count())
+        .isEqualTo(numberOfDocuments);
+        return self();
+    }
+
+
+    public ThenMirrorHarvest the_transformation_of_$_time_series_failed_with_a_TransformerException(int numberOfFailures)
+    {
+        assertThat(harvestOutcomes.stream().filter((String outcome) -> outcome.startsWith(FAILURE_PREFIX)).count())
+        .isEqualTo(numberOfFailures);
+        return self();
+    }
+
+
+    public ThenMirrorHarvest only_the_transformations_of_the_time_series_$_failed(int... indices)
+    {
+        final Set<Integer> failedIndices = IntStream.of(indices).boxed().collect(Collectors.toSet());
+
+        for (int i = 0; i < harvestOutcomes.size(); i++)
+            assertThat(harvestOutcomes.get(i).startsWith(FAILURE_PREFIX)).as("failure of time series %d", i).isEqualTo(failedIndices.contains(i));
+
+        return self();
+    }
+
+
+    public ThenMirrorHarvest $_time_series_were_transformed(int numberOfTimeSeries)
+    {
+        assertThat(harvestOutcomes).hasSize(numberOfTimeSeries);
+        return self();
+    }
+
+
+    public ThenMirrorHarvest the_$_mode_hands_over_the_same_outcomes_in_the_same_order_as_the_$_mode(ExecutionMode mode,
+                                                                                                   ExecutionMode referenceMode)
+    {
+        assertThat(harvestOutcomesByMode.get(mode)).containsExactlyElementsOf(harvestOutcomesByMode.get(referenceMode));
+        return self();
+    }
+
+
+    public ThenMirrorHarvest only_the_document_of_time_series_$_was_harvested(int index) throws IOException
+    {
+        final String downloadUrl = TimeSeriesParser.getDownloadUrl(TestMirror.getTimeSeries(mirrorFolder).get(index));
+
+        assertThat(harvestOutcomes).hasSize(1);
+        assertThat(harvestOutcomes.get(0)).contains('"' + downloadUrl + '"');
+        return self();
+    }
+
+
+    public ThenMirrorHarvest the_version_of_the_catalogue_did_not_change()
+    {
+        final int lastHarvest = catalogueVersions.size() - 1;
+        assertThat(catalogueVersions.get(lastHarvest)).isEqualTo(catalogueVersions.get(lastHarvest - 1));
+        return self();
+    }
+
+
+    public ThenMirrorHarvest the_version_of_the_catalogue_changed()
+    {
+        final int lastHarvest = catalogueVersions.size() - 1;
+        assertThat(catalogueVersions.get(lastHarvest)).isNotEqualTo(catalogueVersions.get(lastHarvest - 1));
+        return self();
+    }
+
+
+    public ThenMirrorHarvest the_harvest_started_with_the_document_of_time_series_$(int index) throws IOException
+    {
+        final String downloadUrl = TimeSeriesParser.getDownloadUrl(TestMirror.getTimeSeries(mirrorFolder).get(index));
+
+        assertThat(harvestOutcomes).isNotEmpty();
+        assertThat(harvestOutcomes.get(0)).contains('"' + downloadUrl + '"');
+        return self();
+    }
+
+
+    public ThenMirrorHarvest no_checkpoint_was_left()
+    {
+        assertThat(checkpointFile).isNotNull();
+        assertThat(Files.exists(checkpointFile)).isFalse();
+        return self();
+    }
+}
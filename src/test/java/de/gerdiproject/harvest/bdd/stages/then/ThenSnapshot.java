@@ -0,0 +1,90 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.then;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.google.gson.Gson;
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.ExpectedScenarioState;
+
+import de.gerdiproject.harvest.IDocument;
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import de.gerdiproject.harvest.oceantea.utils.OceanTeaMirror;
+import de.gerdiproject.harvest.oceantea.utils.OceanTeaSnapshotWriter;
+
+/**
+ * A Then stage with step methods for testing the snapshots that are written
+ * by the {@linkplain OceanTeaSnapshotWriter} during a harvest, and the
+ * documents of harvesting them as {@linkplain OceanTeaMirror}.
+ *
+ * @author Ingo Thomsen
+ */
+public class ThenSnapshot extends Stage<ThenSnapshot>
+{
+    private static final Gson GSON = new Gson();
+
+    @ExpectedScenarioState
+    List<IDocument> resultingIDocuments;
+
+    @ExpectedScenarioState
+    List<IDocument> snapshotDocuments;
+
+    @ExpectedScenarioState
+    Path snapshotFile;
+
+
+    public ThenSnapshot the_snapshot_yields_the_same_$_documents_as_the_harvest(int numberOfDocuments)
+    {
+        assertThat(resultingIDocuments).hasSize(numberOfDocuments);
+        assertThat(toJson(snapshotDocuments)).containsExactlyElementsOf(toJson(resultingIDocuments));
+        return self();
+    }
+
+
+    public ThenSnapshot no_snapshot_was_written()
+    {
+        assertThat(snapshotFile).doesNotExist();
+        assertThat(Paths.get(snapshotFile + OceanTeaTimeSeriesDownloaderConstants.SNAPSHOT_TEMP_FILE_SUFFIX)).doesNotExist();
+        return self();
+    }
+
+
+    public ThenSnapshot a_snapshot_was_written()
+    {
+        assertThat(Files.isRegularFile(snapshotFile)).isTrue();
+        return self();
+    }
+
+
+    /**
+     * Private helper that serializes documents, so that they can be compared.
+     *
+     * @param documents the documents to be serialized
+     *
+     * @return the JSON representations of the documents
+     */
+    private static List<String> toJson(List<IDocument> documents)
+    {
+        return documents.stream().map(GSON::toJson).collect(Collectors.toList());
+    }
+}
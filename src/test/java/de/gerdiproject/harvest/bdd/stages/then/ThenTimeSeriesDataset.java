@@ -16,13 +16,16 @@
 package de.gerdiproject.harvest.bdd.stages.then;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 
+import java.io.IOException;
 import java.time.Instant;
 
 import com.tngtech.jgiven.Stage;
 import com.tngtech.jgiven.annotation.ExpectedScenarioState;
 
 import de.gerdiproject.harvest.oceantea.utils.TimeSeriesDataset;
+import de.gerdiproject.harvest.oceantea.utils.ValueStatistics;
 
 /**
  * A Then stage with steps methods for testing the created
@@ -36,6 +39,9 @@ public class ThenTimeSeriesDataset extends Stage<ThenTimeSeriesDataset>
     @ExpectedScenarioState
     TimeSeriesDataset timeSeriesDataset;
 
+    @ExpectedScenarioState
+    Exception streamingException;
+
 
     public ThenTimeSeriesDataset the_TimeSeriesDataset_startInstant_is_$(Instant instant)
     {
@@ -65,10 +71,83 @@ public class ThenTimeSeriesDataset extends Stage<ThenTimeSeriesDataset>
     }
 
 
+    public ThenTimeSeriesDataset the_TimeSeriesDataset_has_$_values_and_$_missing_values(int numberOfValues, int numberOfMissingValues)
+    {
+        assertThat(timeSeriesDataset.getNumberOfValues()).isEqualTo(numberOfValues);
+        assertThat(timeSeriesDataset.getNumberOfMissingValues()).isEqualTo(numberOfMissingValues);
+        return self();
+    }
+
+
+    public ThenTimeSeriesDataset the_streaming_failed_with_an_IOException()
+    {
+        assertThat(streamingException).isInstanceOf(IOException.class);
+        return self();
+    }
+
+
     public ThenTimeSeriesDataset startInstant_and_stopInstant_are_equal()
     {
         assertThat(timeSeriesDataset.getStartInstant()).isEqualTo(timeSeriesDataset.getStopInstant());
         return self();
     }
 
+
+    public ThenTimeSeriesDataset the_sampling_interval_is_$_seconds_with_$_gaps(long samplingInterval, int numberOfGaps)
+    {
+        assertThat(timeSeriesDataset.getSamplingSummary().getSamplingInterval()).isEqualTo(samplingInterval);
+        assertThat(timeSeriesDataset.getSamplingSummary().getNumberOfGaps()).isEqualTo(numberOfGaps);
+        return self();
+    }
+
+
+    public ThenTimeSeriesDataset the_coverage_is_$_percent(double coverage)
+    {
+        assertThat(timeSeriesDataset.getSamplingSummary().getCoverage()).isCloseTo(coverage, within(0.1));
+        return self();
+    }
+
+
+    public ThenTimeSeriesDataset the_TimeSeriesDataset_has_$_bins_with_$_components(int numberOfBins, int numberOfComponents)
+    {
+        assertThat(timeSeriesDataset.getNumberOfBins()).isEqualTo(numberOfBins);
+        assertThat(timeSeriesDataset.getBinStatistics()).hasSize(numberOfComponents);
+        return self();
+    }
+
+
+    public ThenTimeSeriesDataset component_$_of_the_bins_has_$_values_with_maximum_$(int component, long count, double maximum)
+    {
+        ValueStatistics componentStatistics = timeSeriesDataset.getBinStatistics().get(component - 1);
+        assertThat(componentStatistics.getNumberOfValues()).isEqualTo(count);
+        assertThat(componentStatistics.getMaximum()).isEqualTo(maximum);
+        return self();
+    }
+
+
+    public ThenTimeSeriesDataset the_TimeSeriesDataset_has_no_value_statistics()
+    {
+        assertThat(timeSeriesDataset.getValueStatistics()).isNull();
+        return self();
+    }
+
+
+    public ThenTimeSeriesDataset the_value_statistics_cover_$_values(long count)
+    {
+        assertThat(timeSeriesDataset.getValueStatistics().getNumberOfValues()).isEqualTo(count);
+        return self();
+    }
+
+
+    public ThenTimeSeriesDataset the_value_statistics_have_minimum_$_maximum_$_mean_$_and_median_$(double minimum, double maximum,
+                                                                                                    double mean, double median)
+    {
+        ValueStatistics valueStatistics = timeSeriesDataset.getValueStatistics();
+        assertThat(valueStatistics.getMinimum()).isEqualTo(minimum);
+        assertThat(valueStatistics.getMaximum()).isEqualTo(maximum);
+        assertThat(valueStatistics.getMean()).isEqualTo(mean);
+        assertThat(valueStatistics.getMedian()).isEqualTo(median);
+        return self();
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,113 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.ExpectedScenarioState;
+import com.tngtech.jgiven.annotation.ProvidedScenarioState;
+
+import de.gerdiproject.harvest.oceantea.utils.BitReader;
+import de.gerdiproject.harvest.oceantea.utils.BitWriter;
+import de.gerdiproject.harvest.oceantea.utils.ColumnarDataset;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * A When stage with steps for storing a {@linkplain ColumnarDataset} in its
+ * binary form, reading it again and appending to it, and for reading the bits of a
+ * {@linkplain BitWriter} with a {@linkplain BitReader}.
+ *
+ * @author Ingo Thomsen
+ */
+public class WhenColumnarStorage extends Stage<WhenColumnarStorage>
+{
+    @ExpectedScenarioState
+    ColumnarDataset columnarDataset;
+
+    @ExpectedScenarioState
+    List<Integer> addedTimeOffsets;
+
+    @ExpectedScenarioState
+    List<Double> addedValues;
+
+    @ExpectedScenarioState
+    BitWriter bitWriter;
+
+    @ExpectedScenarioState
+    int[] writtenBitCounts;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    ColumnarDataset readColumnarDataset;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    long[] readBits;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    BitReader bitReader;
+
+
+    public WhenColumnarStorage the_dataset_is_written_and_read_again() throws IOException
+    {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        columnarDataset.write(outputStream);
+
+        readColumnarDataset = ColumnarDataset.read(new ByteArrayInputStream(outputStream.toByteArray()));
+        return self();
+    }
+
+
+    /**
+     * The time step alternates between three lengths and every seventh value
+     * is missing, so all branches of the encoders continue the read columns.
+     *
+     * @param numberOfPairs the number of pairs that are appended
+     */
+    public WhenColumnarStorage $_pairs_are_appended_to_both_datasets(int numberOfPairs)
+    {
+        int timeOffset = addedTimeOffsets.get(addedTimeOffsets.size() - 1);
+
+        for (int i = 0; i < numberOfPairs; i++) {
+            timeOffset += 300 + (i % 3) * 7;
+            final double value = i % 7 == 0 ? Double.NaN : 10 + Math.cos(i / 3.0);
+
+            columnarDataset.add(timeOffset, value);
+            readColumnarDataset.add(timeOffset, value);
+            addedTimeOffsets.add(timeOffset);
+            addedValues.add(value);
+        }
+
+        return self();
+    }
+
+
+    public WhenColumnarStorage the_bit_sequence_is_read()
+    {
+        bitReader = bitWriter.toReader();
+        readBits = new long[writtenBitCounts.length];
+
+        for (int i = 0; i < writtenBitCounts.length; i++)
+            readBits[i] = bitReader.readBits(writtenBitCounts[i]);
+
+        return self();
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.when;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.ExpectedScenarioState;
+import com.tngtech.jgiven.annotation.ProvidedScenarioState;
+
+import de.gerdiproject.harvest.oceantea.utils.AdaptiveConcurrencyLimiter;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * A When stage with steps for starting and finishing requests that are
+ * limited by an {@linkplain AdaptiveConcurrencyLimiter}. Instead of sending
+ * requests, the synthetic clock of the limiter is advanced by the latency
+ * of the finished requests.
+ *
+ * @author Ingo Thomsen
+ */
+public class WhenConcurrencyLimiting extends Stage<WhenConcurrencyLimiting>
+{
+    @ExpectedScenarioState
+    AtomicLong syntheticNanos;
+
+    @ExpectedScenarioState
+    AdaptiveConcurrencyLimiter limiter;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    int numberOfRejectedRequests;
+
+
+    public WhenConcurrencyLimiting $_requests_are_started(int numberOfRequests) throws InterruptedException
+    {
+        startRequests(numberOfRequests);
+        return self();
+    }
+
+
+    public WhenConcurrencyLimiting $_requests_finish_after_$_milliseconds(int numberOfRequests, long latency)
+    {
+        finishRequests(numberOfRequests, latency);
+        return self();
+    }
+
+
+    public WhenConcurrencyLimiting $_requests_fail_because_the_server_is_overloaded(int numberOfRequests)
+    {
+        for (int i = 0; i < numberOfRequests; i++)
+            limiter.release(-1, true);
+
+        return self();
+    }
+
+
+    public WhenConcurrencyLimiting the_limit_is_raised_to_$_by_requests_that_finish_after_$_milliseconds(int limit, long latency)
+    throws InterruptedException
+    {
+        // each round trip fills the current limit
+        while (limiter.getLimit() < limit) {
+            final int numberOfRequests = limiter.getLimit();
+            startRequests(numberOfRequests);
+            finishRequests(numberOfRequests, latency);
+        }
+
+        return self();
+    }
+
+
+    /**
+     * Private helper that starts requests without waiting, counting the
+     * requests that exceed the limit as rejected.
+     *
+     * @param numberOfRequests the number of requests to be started
+     *
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private void startRequests(int numberOfRequests) throws InterruptedException
+    {
+        for (int i = 0; i < numberOfRequests; i++) {
+            if (!limiter.tryAcquire(0, TimeUnit.NANOSECONDS))
+                numberOfRejectedRequests++;
+        }
+    }
+
+
+    /**
+     * Private helper that advances the synthetic clock by the latency of
+     * requests, which then finish one after the other.
+     *
+     * @param numberOfRequests the number of requests that finish
+     * @param latency the latency of the requests in milliseconds
+     */
+    private void finishRequests(int numberOfRequests, long latency)
+    {
+        final long latencyNanos = TimeUnit.MILLISECONDS.toNanos(latency);
+        syntheticNanos.addAndGet(latencyNanos);
+
+        for (int i = 0; i < numberOfRequests; i++)
+            limiter.release(latencyNanos, false);
+    }
+}
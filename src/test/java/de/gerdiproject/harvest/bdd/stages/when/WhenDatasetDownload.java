@@ -0,0 +1,223 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.BeforeStage;
+import com.tngtech.jgiven.annotation.ExpectedScenarioState;
+import com.tngtech.jgiven.annotation.ProvidedScenarioState;
+
+import de.gerdiproject.harvest.TestMirror;
+import de.gerdiproject.harvest.TestServer;
+import de.gerdiproject.harvest.oceantea.metrics.HarvestMetrics;
+import de.gerdiproject.harvest.oceantea.utils.CircuitBreaker;
+import de.gerdiproject.harvest.oceantea.utils.RetryPolicy;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeries;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesDataset;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesDatasetCache;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesDatasetDownloader;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * A When stage with steps for downloading the datasets of mirrored time
+ * series from a local {@linkplain TestServer} via the
+ * {@linkplain TimeSeriesDatasetDownloader}, which caches the datasets in
+ * the temporary folder of the harvest. Failed downloads are retried
+ * according to the given {@linkplain RetryPolicy} and {@linkplain CircuitBreaker},
+ * if there are any.
+ *
+ * @author Ingo Thomsen
+ */
+public class WhenDatasetDownload extends Stage<WhenDatasetDownload>
+{
+    private static final String CACHE_FOLDER = "cache";
+    private static final String CORRUPT_CACHE_ENTRY = "{\"version\":";
+    private static final long DOWNLOAD_TIMEOUT = 10;
+    private static final long POLL_INTERVAL = 10;
+
+    @ExpectedScenarioState
+    Path harvestFolder;
+
+    @ExpectedScenarioState
+    Path mirrorFolder;
+
+    @ExpectedScenarioState
+    TestServer server;
+
+    @ExpectedScenarioState
+    int datasetCacheSize;
+
+    @ExpectedScenarioState
+    RetryPolicy retryPolicy;
+
+    @ExpectedScenarioState
+    CircuitBreaker circuitBreaker;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    Path cacheFolder;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    TimeSeriesDatasetCache datasetCache;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    List<TimeSeriesDataset> downloadedDatasets = new ArrayList<>();
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    HarvestMetrics metrics = new HarvestMetrics();
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    IOException downloadError;
+
+    private final TimeSeriesDatasetDownloader downloader = new TimeSeriesDatasetDownloader();
+
+
+    public WhenDatasetDownload the_dataset_of_time_series_$_is_downloaded(int index) throws IOException
+    {
+        downloadedDatasets.add(downloader.download(TestMirror.getTimeSeries(mirrorFolder).get(index)));
+        return self();
+    }
+
+
+    public WhenDatasetDownload the_download_of_time_series_$_is_attempted(int index) throws IOException
+    {
+        attemptDownload(TestMirror.getTimeSeries(mirrorFolder).get(index));
+        return self();
+    }
+
+
+    public WhenDatasetDownload the_download_of_time_series_$_is_interrupted_while_it_waits_for_a_retry(int index)
+    throws IOException, InterruptedException
+    {
+        final TimeSeries timeSeries = TestMirror.getTimeSeries(mirrorFolder).get(index);
+        final int previousRequests = server.getNumberOfRequests();
+
+        final Thread downloadThread = new Thread(() -> attemptDownload(timeSeries));
+        downloadThread.start();
+
+        // the retry is awaited as soon as the failed request was answered
+        while (server.getNumberOfRequests() == previousRequests)
+            Thread.sleep(POLL_INTERVAL);
+
+        downloadThread.interrupt();
+        downloadThread.join(TimeUnit.SECONDS.toMillis(DOWNLOAD_TIMEOUT));
+        return self();
+    }
+
+
+    public WhenDatasetDownload the_datasets_of_time_series_$_to_$_are_downloaded_concurrently(int firstIndex, int lastIndex)
+    throws IOException, InterruptedException, ExecutionException
+    {
+        final List<TimeSeries> timeSeriesList = TestMirror.getTimeSeries(mirrorFolder);
+        final List<Callable<TimeSeriesDataset>> downloads = new ArrayList<>();
+
+        for (int i = firstIndex; i <= lastIndex; i++) {
+            final TimeSeries timeSeries = timeSeriesList.get(i);
+            downloads.add(() -> downloader.download(timeSeries));
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(downloads.size());
+
+        try {
+            // downloads that are still waiting after the timeout are cancelled and fail the step
+            for (Future<TimeSeriesDataset> download : executor.invokeAll(downloads, DOWNLOAD_TIMEOUT, TimeUnit.SECONDS))
+                downloadedDatasets.add(download.get());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return self();
+    }
+
+
+    public WhenDatasetDownload the_server_changes_the_ETag_to_$(String eTag)
+    {
+        server.setETag(eTag);
+        return self();
+    }
+
+
+    public WhenDatasetDownload all_cached_datasets_are_corrupted() throws IOException
+    {
+        try
+            (Stream<Path> cacheFiles = Files.list(cacheFolder)) {
+            for (Path cacheFile : (Iterable<Path>) cacheFiles::iterator)
+                Files.write(cacheFile, CORRUPT_CACHE_ENTRY.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return self();
+    }
+
+
+    public WhenDatasetDownload the_cache_is_reopened()
+    {
+        datasetCache = new TimeSeriesDatasetCache(cacheFolder.toFile(), datasetCacheSize);
+        downloader.setCache(datasetCache);
+        return self();
+    }
+
+
+    /**
+     * This step is called once - before any other steps in this stage - to
+     * set up the downloader with a cache, a client of the server, metrics
+     * and the given retry policy and circuit breaker.
+     */
+    @BeforeStage
+    @SuppressWarnings("PMD.UnusedPrivateMethod") // This method IS called once by JGiven
+    private void createDownloader()
+    {
+        cacheFolder = harvestFolder.resolve(CACHE_FOLDER);
+        downloader.setHttpClient(server.createHttpClient());
+        downloader.setRetryPolicy(retryPolicy);
+        downloader.setCircuitBreaker(circuitBreaker);
+        downloader.setMetrics(metrics);
+        the_cache_is_reopened();
+    }
+
+
+    /**
+     * Private helper that downloads the dataset of a {@linkplain TimeSeries},
+     * keeping the dataset or the error that was caused by the download.
+     *
+     * @param timeSeries the {@linkplain TimeSeries} of which the dataset is downloaded
+     */
+    private void attemptDownload(TimeSeries timeSeries)
+    {
+        try {
+            downloadedDatasets.add(downloader.download(timeSeries));
+        } catch (IOException e) {
+            downloadError = e;
+        }
+    }
+}
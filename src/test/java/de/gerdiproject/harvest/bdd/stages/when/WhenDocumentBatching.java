@@ -0,0 +1,90 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.when;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.ExpectedScenarioState;
+import com.tngtech.jgiven.annotation.ProvidedScenarioState;
+
+import de.gerdiproject.harvest.oceantea.utils.DocumentBatcher;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * A When stage with steps for adding string documents to a
+ * {@linkplain DocumentBatcher}. The documents are sized by the bytes of
+ * their JSON representation, which includes the enclosing quotes.
+ *
+ * @author Ingo Thomsen
+ */
+public class WhenDocumentBatching extends Stage<WhenDocumentBatching>
+{
+    @ExpectedScenarioState
+    DocumentBatcher<String> batcher;
+
+    @ExpectedScenarioState
+    AtomicInteger remainingSubmissionFailures;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    int numberOfRejectedDocuments;
+
+
+    public WhenDocumentBatching $_documents_of_$_bytes_are_added(int numberOfDocuments, int byteSize) throws IOException
+    {
+        final String document = String.join("", Collections.nCopies(byteSize - 2, "a"));
+
+        for (int i = 0; i < numberOfDocuments; i++)
+            batcher.add(document);
+
+        return self();
+    }
+
+
+    public WhenDocumentBatching $_documents_of_$_bytes_are_added_although_submissions_fail(int numberOfDocuments, int byteSize)
+    {
+        final String document = String.join("", Collections.nCopies(byteSize - 2, "a"));
+
+        for (int i = 0; i < numberOfDocuments; i++) {
+            try {
+                batcher.add(document);
+            } catch (IOException e) {
+                numberOfRejectedDocuments++;
+            }
+        }
+
+        return self();
+    }
+
+
+    public WhenDocumentBatching the_timed_submission_fails() throws InterruptedException
+    {
+        while (remainingSubmissionFailures.get() > 0)
+            Thread.sleep(10);
+
+        return self();
+    }
+
+
+    public WhenDocumentBatching the_batcher_is_closed() throws IOException
+    {
+        batcher.close();
+        return self();
+    }
+}
@@ -15,48 +15,51 @@
  */
 package de.gerdiproject.harvest.bdd.stages.when;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
-import org.mockito.ArgumentMatchers;
-import org.mockito.Mockito;
-import org.powermock.api.mockito.PowerMockito;
-
-import com.google.gson.Gson;
 import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.AfterScenario;
 import com.tngtech.jgiven.annotation.BeforeStage;
 import com.tngtech.jgiven.annotation.ExpectedScenarioState;
 import com.tngtech.jgiven.annotation.ProvidedScenarioState;
 
 import de.gerdiproject.harvest.IDocument;
 import de.gerdiproject.harvest.TestDataProvider;
+import de.gerdiproject.harvest.TestMirror;
+import de.gerdiproject.harvest.TestServer;
 import de.gerdiproject.harvest.config.Configuration;
 import de.gerdiproject.harvest.etls.TimeSeriesETL;
 import de.gerdiproject.harvest.etls.extractors.TimeSeriesExtractor;
+import de.gerdiproject.harvest.etls.transformers.TimeSeriesTransformer;
 import de.gerdiproject.harvest.etls.loaders.AbstractIteratorLoader;
 import de.gerdiproject.harvest.etls.loaders.LoaderException;
 import de.gerdiproject.harvest.etls.loaders.events.CreateLoaderEvent;
 import de.gerdiproject.harvest.event.EventSystem;
-import de.gerdiproject.harvest.oceantea.json.AllDataTypesResponse;
-import de.gerdiproject.harvest.oceantea.json.AllTimeSeriesResponse;
-import de.gerdiproject.harvest.oceantea.json.TimeSeriesDatasetResponse;
-import de.gerdiproject.harvest.utils.data.HttpRequester;
+import de.gerdiproject.harvest.oceantea.utils.OceanTeaMirror;
+import de.gerdiproject.harvest.oceantea.utils.OceanTeaSnapshotWriter;
+import de.gerdiproject.harvest.oceantea.utils.PooledHttpClient;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeries;
 import de.gerdiproject.json.datacite.DataCiteJson;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 /**
  * This When stage provides the step method to test the actual harvesting
- * (extraction and transformation) of given JSON response strings. For this a
- * mock {@linkplain HttpRequester} is returned by a (stubbed) constructor in the
- * Extraction class {@linkplain TimeSeriesExtractor}. This mock returns the
- * provided JSON data from the {@linkplain TestDataProvider} instead of calling
- * OceanTEA itself.
+ * (extraction and transformation) of given JSON response strings. Instead of
+ * calling OceanTEA itself, the list of all time series, their data types and
+ * their datasets from the {@linkplain TestDataProvider} are sent by a local
+ * {@linkplain TestServer}. A snapshot can be taken during the
+ * harvest, which can be harvested as {@linkplain OceanTeaMirror} afterwards.
  *
  * @author Ingo Thomsen, Robin Weiss
  */
 public class WhenExtractionAndTransformation extends Stage<WhenExtractionAndTransformation>
 {
-    private static final Gson GSON = new Gson();
-
     @ExpectedScenarioState
     String allTimeSeriesJSONResponse;
 
@@ -69,11 +72,93 @@ public class WhenExtractionAndTransformation extends Stage<WhenExtractionAndTran
     @ProvidedScenarioState
     List<IDocument> resultingIDocuments = new ArrayList<>();
 
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    Path snapshotFile;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    List<IDocument> snapshotDocuments = new ArrayList<>();
+
+    private Path harvestFolder;
+
 
     /**
      * Step method for harvesting (extraction & transformation) of test JSON strings
      */
     public WhenExtractionAndTransformation harvested()
+    {
+        harvest(-1);
+        return self();
+    }
+
+
+    /**
+     * Step method for harvesting the test JSON strings while a snapshot is taken
+     */
+    public WhenExtractionAndTransformation harvested_while_taking_a_snapshot()
+    {
+        snapshotFile = harvestFolder.resolve("snapshot.zip");
+        harvest(-1);
+        return self();
+    }
+
+
+    /**
+     * Step method for harvesting the test JSON strings while a snapshot is
+     * taken, but the server does not send the dataset of one time series
+     *
+     * @param index the index of the time series of which the dataset is missing
+     */
+    public WhenExtractionAndTransformation harvested_while_taking_a_snapshot_but_the_dataset_of_time_series_$_is_missing(int index)
+    {
+        snapshotFile = harvestFolder.resolve("snapshot.zip");
+        harvest(index);
+        return self();
+    }
+
+
+    /**
+     * Step method for harvesting the snapshot as {@linkplain OceanTeaMirror}
+     *
+     * @throws IOException if the snapshot could not be opened
+     */
+    public WhenExtractionAndTransformation the_snapshot_is_harvested() throws IOException
+    {
+        try
+            (OceanTeaMirror snapshot = new OceanTeaMirror(snapshotFile.toString())) {
+            final TestServerETL etl = new TestServerETL(null);
+            etl.init("Dummy");
+            etl.mirror = snapshot;
+
+            final TimeSeriesExtractor extractor = new TimeSeriesExtractor();
+            final TimeSeriesTransformer transformer = new TimeSeriesTransformer();
+            extractor.init(etl);
+            transformer.init(etl);
+
+            try {
+                final Iterator<DataCiteJson> documents = transformer.transform(extractor.extract());
+
+                while (documents.hasNext())
+                    snapshotDocuments.add(documents.next());
+            } finally {
+                transformer.clear();
+                extractor.clear();
+            }
+        }
+
+        return self();
+    }
+
+
+    /**
+     * Private helper that harvests the test JSON strings, which are sent by a
+     * local server, and takes a snapshot if a snapshot file is set.
+     *
+     * @param missingDatasetIndex the index of a time series of which the
+     *            dataset is not sent, or -1 if all datasets are sent
+     */
+    private void harvest(int missingDatasetIndex)
     {
         // make sure harvested documents are loaded into 'resultingIDocuments'
         EventSystem.addSynchronousListener(CreateLoaderEvent.class, (CreateLoaderEvent e) -> new MockedLoader());
@@ -82,60 +167,112 @@ public class WhenExtractionAndTransformation extends Stage<WhenExtractionAndTran
         Configuration configuration = new Configuration(null);
         configuration.addEventListeners();
 
-        final TimeSeriesETL etl = new TimeSeriesETL();
+        // send the time series and their datasets from a local server
+        final Path mirrorFolder = harvestFolder.resolve("mirror");
+
+        try {
+            TestMirror.write(mirrorFolder, allTimeSeriesJSONResponse, allDataTypesJSONResponse, timeSeriesDatasetJSONResponse);
 
-        etl.init("Dummy");
-        etl.prepareHarvest();
-        etl.harvest();
+            if (missingDatasetIndex >= 0) {
+                final TimeSeries missingDatasetTimeSeries = TestMirror.getTimeSeries(mirrorFolder).get(missingDatasetIndex);
+                TestMirror.deleteDataset(mirrorFolder, missingDatasetTimeSeries);
+            }
 
-        EventSystem.removeSynchronousListener(CreateLoaderEvent.class);
-        return self();
+            try
+                (TestServer server = new TestServer(mirrorFolder)) {
+                final TestServerETL etl = new TestServerETL(server.createHttpClient());
+
+                if (snapshotFile != null)
+                    etl.snapshotWriter = new OceanTeaSnapshotWriter(snapshotFile.toString());
+
+                etl.init("Dummy");
+                etl.prepareHarvest();
+                etl.harvest();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            EventSystem.removeSynchronousListener(CreateLoaderEvent.class);
+        }
     }
 
 
     /**
-     * This step is called once - before any other steps in this stage - to create a
-     * mock HttpRequester to provide JSON strings. It also makes calling the
-     * {@linkplain HttpRequester} constructor returning this mock.
+     * This method is called once - before any other steps in this stage - to
+     * create a temporary folder for the mirror that is sent by the local server.
+     *
+     * @throws IOException if the folder could not be created
      */
     @BeforeStage
     @SuppressWarnings("PMD.UnusedPrivateMethod") // This method IS called once by JGiven
-    private void prepareHarvesterLibaryForMockAccess()
+    private void createHarvestFolder() throws IOException
     {
-        // create a mock HttpRequester for intercepting JSON requests
-        HttpRequester mockHttpRequester = PowerMockito.mock(HttpRequester.class);
+        harvestFolder = Files.createTempDirectory("oceantea-harvest");
+    }
 
-        // set returned objects (created from JSON strings) for the stubbed methods
-        setStubReturnValue(mockHttpRequester, AllTimeSeriesResponse.class, allTimeSeriesJSONResponse);
-        setStubReturnValue(mockHttpRequester, AllDataTypesResponse.class, allDataTypesJSONResponse);
-        setStubReturnValue(mockHttpRequester, TimeSeriesDatasetResponse.class, timeSeriesDatasetJSONResponse);
 
-        try {
-            // intercept the constructor call for HttpRequester to return the mock instead.
-            PowerMockito.whenNew(HttpRequester.class).withAnyArguments().thenReturn(mockHttpRequester);
-        } catch (Exception e) {
-            throw new RuntimeException("Could not mock call to constructor of class HttpRequester", e);
-        }
+    /**
+     * This method is called once - after the scenario - to delete the temporary
+     * folder of the mirror and the snapshot.
+     *
+     * @throws IOException if the folder could not be deleted
+     */
+    @AfterScenario
+    @SuppressWarnings("PMD.UnusedPrivateMethod") // This method IS called once by JGiven
+    private void deleteHarvestFolder() throws IOException
+    {
+        TestMirror.delete(harvestFolder);
     }
 
 
     /**
-     * Private generic helper to define for a mock HttpRequester the behavior of the
-     * getObjectFromUrl() method: If requesting a JSON response for a specific
-     * targetClass the respective JSON string - provided through the scenario state
-     * variable - is returned.
+     * A {@linkplain TimeSeriesETL} that requests all time series and their
+     * datasets from a local {@linkplain TestServer}, and optionally takes a
+     * snapshot or harvests a mirror instead.
      *
-     * @param mock the mocked HttpRequester
-     * @param targetClass the requested target class
-     * @param aJSONResponse the JSON response string to be returned
-     * @param <T> response type for which the mocking behavior is defined
+     * @author Ingo Thomsen
      */
-    private <T> void setStubReturnValue(HttpRequester mock, Class<T> targetClass, String aJSONResponse)
+    private static final class TestServerETL extends TimeSeriesETL
     {
-        T value = GSON.fromJson(aJSONResponse, targetClass);
-        Mockito.when(mock.getObjectFromUrl(Mockito.anyString(), ArgumentMatchers.eq(targetClass))).thenReturn(value);
+        private final PooledHttpClient httpClient;
+        private OceanTeaSnapshotWriter snapshotWriter;
+        private OceanTeaMirror mirror;
+
+
+        /**
+         * Constructor that sets the client of the local server.
+         *
+         * @param httpClient a client that sends all requests to the local server
+         */
+        TestServerETL(PooledHttpClient httpClient)
+        {
+            super();
+            this.httpClient = httpClient;
+        }
+
+
+        @Override
+        public synchronized PooledHttpClient getHttpClient()
+        {
+            return httpClient;
+        }
+
+
+        @Override
+        public synchronized OceanTeaSnapshotWriter getSnapshotWriter()
+        {
+            return snapshotWriter;
+        }
+
+
+        @Override
+        public synchronized OceanTeaMirror getMirror()
+        {
+            return mirror;
+        }
     }
 
+
     /**
      * This mockedLoader stores harvested documents in scenario state variable
      * 'resultingIDocuments'.
@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.when;
+
+import java.util.concurrent.TimeUnit;
+
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.ExpectedScenarioState;
+
+import de.gerdiproject.harvest.oceantea.metrics.HarvestMetrics;
+import de.gerdiproject.harvest.oceantea.metrics.LatencyHistogram;
+
+/**
+ * A When stage with steps for recording latencies in a
+ * {@linkplain LatencyHistogram} and downloaded datasets in
+ * {@linkplain HarvestMetrics}.
+ *
+ * @author Ingo Thomsen
+ */
+public class WhenMetricsRecording extends Stage<WhenMetricsRecording>
+{
+    private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @ExpectedScenarioState
+    LatencyHistogram histogram;
+
+    @ExpectedScenarioState
+    HarvestMetrics metrics;
+
+
+    public WhenMetricsRecording $_latencies_of_$_milliseconds_are_recorded(int numberOfLatencies, double millis)
+    {
+        for (int i = 0; i < numberOfLatencies; i++)
+            histogram.record((long)(millis * NANOS_PER_MILLI));
+
+        return self();
+    }
+
+
+    public WhenMetricsRecording the_latency_histogram_is_reset()
+    {
+        histogram.reset();
+        return self();
+    }
+
+
+    public WhenMetricsRecording a_dataset_of_station_$_with_the_data_type_$_is_downloaded_in_$_milliseconds(
+        String station, String dataType, long millis)
+    {
+        // the download started the given time ago
+        metrics.recordDataset(station, dataType, System.nanoTime() - millis * NANOS_PER_MILLI, 1, 1, 1, 0);
+        return self();
+    }
+}
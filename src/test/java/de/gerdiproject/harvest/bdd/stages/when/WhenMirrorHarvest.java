@@ -0,0 +1,348 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.ExpectedScenarioState;
+import com.tngtech.jgiven.annotation.ProvidedScenarioState;
+
+import de.gerdiproject.harvest.TestDataProvider;
+import de.gerdiproject.harvest.TestMirror;
+import de.gerdiproject.harvest.config.Configuration;
+import de.gerdiproject.harvest.etls.TimeSeriesETL;
+import de.gerdiproject.harvest.etls.extractors.TimeSeriesExtractor;
+import de.gerdiproject.harvest.etls.transformers.TimeSeriesTransformer;
+import de.gerdiproject.harvest.etls.transformers.TransformerException;
+import de.gerdiproject.harvest.oceantea.utils.HarvestCheckpoint;
+import de.gerdiproject.harvest.oceantea.utils.OceanTeaMirror;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeries;
+import de.gerdiproject.json.GsonUtils;
+import de.gerdiproject.json.datacite.DataCiteJson;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * This When stage provides step methods for harvesting a given
+ * {@linkplain OceanTeaMirror} with the {@linkplain TimeSeriesExtractor} and
+ * the {@linkplain TimeSeriesTransformer}. The outcome of each transformed
+ * time series is recorded in the order in which the documents are handed
+ * over: either the JSON of the document, or the class and message of the
+ * {@linkplain TransformerException} that was thrown instead. The outcomes
+ * of each {@linkplain ExecutionMode} are kept, so that they can be compared.
+ * Between incremental harvests, the mirror can be changed. A harvest can
+ * also be interrupted, leaving a {@linkplain HarvestCheckpoint} in the
+ * temporary folder of the harvest, if a checkpoint interval is given.
+ *
+ * @author Ingo Thomsen
+ */
+public class WhenMirrorHarvest extends Stage<WhenMirrorHarvest>
+{
+    private static final Gson GSON = GsonUtils.createGerdiDocumentGsonBuilder().create();
+    private static final String ETL_NAME = "Dummy";
+    private static final int CONCURRENT_DOWNLOADS = 4;
+    private static final String FINGERPRINTS_FILE = "fingerprints.json";
+    private static final String CHECKPOINT_FILE = "checkpoint.json";
+    private static final String CHECKPOINT_IDENTIFIER_FIELD = "lastHarvestedIdentifier";
+
+    @ExpectedScenarioState
+    Path harvestFolder;
+
+    @ExpectedScenarioState
+    Path mirrorFolder;
+
+    @ExpectedScenarioState
+    int checkpointInterval;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    Path checkpointFile;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    List<String> harvestOutcomes;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    Map<ExecutionMode, List<String>> harvestOutcomesByMode = new EnumMap<>(ExecutionMode.class);
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    List<String> catalogueVersions = new ArrayList<>();
+
+
+    public WhenMirrorHarvest the_mirror_is_harvested() throws IOException
+    {
+        return the_mirror_is_harvested_in_$_mode(ExecutionMode.SEQUENTIAL);
+    }
+
+
+    public WhenMirrorHarvest the_mirror_is_harvested_in_$_mode(ExecutionMode mode) throws IOException
+    {
+        final MirrorHarvestETL etl = createETL();
+
+        if (mode != ExecutionMode.SEQUENTIAL)
+            etl.concurrentDownloads = CONCURRENT_DOWNLOADS;
+
+        etl.isUsingVirtualThreads = mode == ExecutionMode.THREAD_PER_SERIES;
+        etl.isUsingStagedPipeline = mode == ExecutionMode.STAGED_PIPELINE;
+
+        harvestOutcomes = harvest(etl);
+        harvestOutcomesByMode.put(mode, harvestOutcomes);
+        return self();
+    }
+
+
+    public WhenMirrorHarvest the_mirror_is_harvested_incrementally() throws IOException
+    {
+        final MirrorHarvestETL etl = createETL();
+        etl.isIncremental = true;
+
+        harvestOutcomes = harvest(etl);
+        return self();
+    }
+
+
+    public WhenMirrorHarvest the_harvest_of_the_mirror_is_interrupted_after_$_documents(int numberOfDocuments) throws IOException
+    {
+        harvestOutcomes = harvest(createETL(), numberOfDocuments);
+        return self();
+    }
+
+
+    public WhenMirrorHarvest the_checkpoint_refers_to_the_missing_time_series_$(int index) throws IOException
+    {
+        final JsonObject checkpointJson = GSON.fromJson(new String(Files.readAllBytes(checkpointFile), StandardCharsets.UTF_8), JsonObject.class);
+        checkpointJson.addProperty(CHECKPOINT_IDENTIFIER_FIELD, TimeSeries.createIdentifier(index));
+        Files.write(checkpointFile, GSON.toJson(checkpointJson).getBytes(StandardCharsets.UTF_8));
+        return self();
+    }
+
+
+    public WhenMirrorHarvest the_mirrored_dataset_of_time_series_$_changes_to_$(int index, String datasetName) throws IOException
+    {
+        TestMirror.writeDataset(mirrorFolder, TestMirror.getTimeSeries(mirrorFolder).get(index), TestDataProvider.getTimeSeriesDatasetJSON(datasetName));
+        return self();
+    }
+
+
+    public WhenMirrorHarvest a_time_series_with_the_dataset_$_is_added_to_the_mirror(String datasetName) throws IOException
+    {
+        TestMirror.appendTimeSeries(mirrorFolder, TestDataProvider.getTimeSeriesDatasetJSON(datasetName));
+        return self();
+    }
+
+
+    /**
+     * Private helper that creates an ETL which harvests the mirror and stores
+     * its fingerprints and its checkpoint in the temporary folder of the harvest.
+     *
+     * @return a new, initialized ETL
+     */
+    private MirrorHarvestETL createETL()
+    {
+        // create a configuration
+        Configuration configuration = new Configuration(null);
+        configuration.addEventListeners();
+
+        final MirrorHarvestETL etl = new MirrorHarvestETL();
+        etl.init(ETL_NAME);
+        etl.fingerprintsFile = harvestFolder.resolve(FINGERPRINTS_FILE).toFile();
+
+        if (checkpointInterval > 0) {
+            checkpointFile = harvestFolder.resolve(CHECKPOINT_FILE);
+            etl.checkpoint = new HarvestCheckpoint(checkpointFile.toFile(), checkpointInterval);
+        }
+
+        return etl;
+    }
+
+
+    /**
+     * Private helper that harvests the whole mirror.
+     *
+     * @param etl the ETL that configures the extractor and the transformer
+     *
+     * @throws IOException if the mirror could not be opened
+     *
+     * @return the outcomes of all transformed time series
+     */
+    private List<String> harvest(MirrorHarvestETL etl) throws IOException
+    {
+        return harvest(etl, Integer.MAX_VALUE);
+    }
+
+
+    /**
+     * Private helper that harvests the mirror, continuing after time series
+     * that failed to be transformed, until a number of outcomes was recorded.
+     * The version of the harvested catalogue is recorded as well.
+     *
+     * @param etl the ETL that configures the extractor and the transformer
+     * @param maxOutcomes the number of outcomes after which the harvest is interrupted
+     *
+     * @throws IOException if the mirror could not be opened
+     *
+     * @return the outcomes of the transformed time series
+     */
+    private List<String> harvest(MirrorHarvestETL etl, int maxOutcomes) throws IOException
+    {
+        final List<String> outcomes = new ArrayList<>();
+
+        try
+            (OceanTeaMirror mirror = new OceanTeaMirror(mirrorFolder.toString())) {
+            etl.mirror = mirror;
+
+            final TimeSeriesExtractor extractor = new TimeSeriesExtractor();
+            final TimeSeriesTransformer transformer = new TimeSeriesTransformer();
+            extractor.init(etl);
+            transformer.init(etl);
+            catalogueVersions.add(extractor.getUniqueVersionString());
+
+            try {
+                final Iterator<DataCiteJson> documents = transformer.transform(extractor.extract());
+
+                // asking for the next document marks the previous one as loaded
+                while (documents.hasNext() && outcomes.size() < maxOutcomes) {
+                    try {
+                        outcomes.add(GSON.toJson(documents.next()));
+                    } catch (TransformerException e) {
+                        outcomes.add(e.getClass().getSimpleName() + ": " + e.getMessage());
+                    }
+                }
+            } finally {
+                transformer.clear();
+                extractor.clear();
+            }
+        }
+
+        return outcomes;
+    }
+
+
+    /**
+     * The execution modes of the {@linkplain TimeSeriesTransformer}.
+     *
+     * @author Ingo Thomsen
+     */
+    public enum ExecutionMode
+    {
+        /**
+         * One time series after the other
+         */
+        SEQUENTIAL,
+
+        /**
+         * Prefetching datasets in a pool of threads
+         */
+        PREFETCH_POOL,
+
+        /**
+         * Prefetching datasets in a (virtual) thread per time series
+         */
+        THREAD_PER_SERIES,
+
+        /**
+         * Passing the time series through a staged pipeline
+         */
+        STAGED_PIPELINE
+    }
+
+
+    /**
+     * A {@linkplain TimeSeriesETL} that harvests a mirror in a given
+     * execution mode, without writing any files to the working directory.
+     *
+     * @author Ingo Thomsen
+     */
+    private static final class MirrorHarvestETL extends TimeSeriesETL
+    {
+        private OceanTeaMirror mirror;
+        private File fingerprintsFile;
+        private HarvestCheckpoint checkpoint;
+        private boolean isIncremental;
+        private int concurrentDownloads = 1;
+        private boolean isUsingVirtualThreads;
+        private boolean isUsingStagedPipeline;
+
+
+        @Override
+        public synchronized OceanTeaMirror getMirror()
+        {
+            return mirror;
+        }
+
+
+        @Override
+        public int getDatasetCacheSize()
+        {
+            return 0;
+        }
+
+
+        @Override
+        public File getFingerprintsFile()
+        {
+            return fingerprintsFile;
+        }
+
+
+        @Override
+        public synchronized HarvestCheckpoint getCheckpoint()
+        {
+            return checkpoint;
+        }
+
+
+        @Override
+        public boolean isIncrementalHarvest()
+        {
+            return isIncremental;
+        }
+
+
+        @Override
+        public int getConcurrentDownloads()
+        {
+            return concurrentDownloads;
+        }
+
+
+        @Override
+        public boolean isUsingVirtualThreads()
+        {
+            return isUsingVirtualThreads;
+        }
+
+
+        @Override
+        public boolean isUsingStagedPipeline()
+        {
+            return isUsingStagedPipeline;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.when;
+
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.ExpectedScenarioState;
+import com.tngtech.jgiven.annotation.ProvidedScenarioState;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDownloaderConstants;
+import de.gerdiproject.harvest.oceantea.utils.QuantileSketch;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * A When stage with steps for adding values to a {@linkplain QuantileSketch}.
+ *
+ * @author Ingo Thomsen
+ */
+public class WhenQuantileApproximation extends Stage<WhenQuantileApproximation>
+{
+    @ExpectedScenarioState
+    double[] sketchedValues;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    QuantileSketch quantileSketch;
+
+
+    /**
+     * The sketch has the accuracy that is used for the value statistics of
+     * the harvested datasets.
+     */
+    public WhenQuantileApproximation the_values_are_added_to_a_QuantileSketch()
+    {
+        quantileSketch = new QuantileSketch(OceanTeaTimeSeriesDownloaderConstants.QUANTILE_SKETCH_ACCURACY);
+
+        for (final double value : sketchedValues)
+            quantileSketch.add(value);
+
+        return self();
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.bdd.stages.when;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.tngtech.jgiven.Stage;
+import com.tngtech.jgiven.annotation.ExpectedScenarioState;
+import com.tngtech.jgiven.annotation.ProvidedScenarioState;
+
+import de.gerdiproject.harvest.oceantea.constants.OceanTeaTimeSeriesDataCiteConstants;
+import de.gerdiproject.harvest.oceantea.utils.CompiledTemplate;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * A When stage with steps for formatting template strings, both as
+ * {@linkplain CompiledTemplate} and with {@linkplain String#format(java.util.Locale, String, Object...)}.
+ * Each specifier is formatted with every argument that matches its
+ * conversion, including null, rounding ties, NaN and infinities. The
+ * arguments are rotated from one specifier to the next, so that the
+ * specifiers of a template receive different arguments.
+ *
+ * @author Ingo Thomsen
+ */
+public class WhenTemplateFormatting extends Stage<WhenTemplateFormatting>
+{
+    private static final Pattern SPECIFIER = Pattern.compile("%[^a-zA-Z%]*[a-zA-Z%]");
+
+    private static final Object[] STRING_ARGUMENTS = {
+        "text", null, "100 %s", Instant.parse("2013-05-30T23:38:23Z"), 42
+    };
+
+    private static final Object[] INTEGER_ARGUMENTS = {
+        0, 42, -7, Long.MAX_VALUE, Integer.MIN_VALUE, null
+    };
+
+    private static final Object[] FLOAT_ARGUMENTS = {
+        0.25, 0.35, 2.5, 1.00005, 0.00005, -0.05, -0.0, 123456.789, 1e-10, 1e20,
+        Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, null, 1.5f
+    };
+
+    @ExpectedScenarioState
+    Map<String, String> templates;
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    List<String> compiledResults = new ArrayList<>();
+
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    List<String> formattedResults = new ArrayList<>();
+
+
+    public WhenTemplateFormatting the_templates_are_formatted_with_every_kind_of_argument()
+    {
+        final int rounds = Math.max(STRING_ARGUMENTS.length, Math.max(INTEGER_ARGUMENTS.length, FLOAT_ARGUMENTS.length));
+
+        for (Map.Entry<String, String> template : templates.entrySet()) {
+            final List<Object[]> argumentsPerSpecifier = getArgumentsPerSpecifier(template.getValue());
+            final CompiledTemplate compiledTemplate =
+                new CompiledTemplate(template.getValue(), OceanTeaTimeSeriesDataCiteConstants.FORMATTING_LOCALE);
+
+            for (int round = 0; round < rounds; round++) {
+                final Object[] args = new Object[argumentsPerSpecifier.size()];
+
+                for (int i = 0; i < args.length; i++) {
+                    final Object[] arguments = argumentsPerSpecifier.get(i);
+                    args[i] = arguments[(round + i) % arguments.length];
+                }
+
+                final String prefix = template.getKey() + Arrays.toString(args) + ": ";
+                compiledResults.add(prefix + formatOrFail(() -> compiledTemplate.format(args)));
+                formattedResults.add(prefix + formatOrFail(() -> String.format(
+                                                                OceanTeaTimeSeriesDataCiteConstants.FORMATTING_LOCALE,
+                                                                template.getValue(),
+                                                                args)));
+            }
+        }
+
+        return self();
+    }
+
+
+    /**
+     * Private helper that chooses the arguments for each specifier of a
+     * template, depending on its conversion.
+     *
+     * @param template a template string
+     *
+     * @return the possible arguments of each specifier that takes an argument
+     */
+    private static List<Object[]> getArgumentsPerSpecifier(String template)
+    {
+        final List<Object[]> argumentsPerSpecifier = new ArrayList<>();
+        final Matcher matcher = SPECIFIER.matcher(template);
+
+        while (matcher.find()) {
+            final String specifier = matcher.group();
+            final char conversion = specifier.charAt(specifier.length() - 1);
+
+            if (conversion == 's')
+                argumentsPerSpecifier.add(STRING_ARGUMENTS);
+
+            else if (conversion == 'd')
+                argumentsPerSpecifier.add(INTEGER_ARGUMENTS);
+
+            else if (conversion != '%' && conversion != 'n')
+                argumentsPerSpecifier.add(FLOAT_ARGUMENTS);
+        }
+
+        return argumentsPerSpecifier;
+    }
+
+
+    /**
+     * Private helper that formats a string, or names the exception that was
+     * thrown instead.
+     *
+     * @param formatting the formatting of the string
+     *
+     * @return the formatted string or the class name of the exception
+     */
+    private static String formatOrFail(Supplier<String> formatting)
+    {
+        try {
+            return formatting.get();
+        } catch (IllegalFormatException e) {
+            return e.getClass().getSimpleName();
+        }
+    }
+}
@@ -15,6 +15,8 @@
  */
 package de.gerdiproject.harvest.bdd.stages.when;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.time.Instant;
 
 import com.tngtech.jgiven.Stage;
@@ -23,12 +25,13 @@ import com.tngtech.jgiven.annotation.ProvidedScenarioState;
 
 import de.gerdiproject.harvest.oceantea.json.TimeSeriesDatasetResponse;
 import de.gerdiproject.harvest.oceantea.utils.TimeSeriesDataset;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesDatasetReader;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 /**
- * A When stage with a step for the transformation of a given
- * {@linkplain TimeSeriesDatasetResponse} to the corresponding
- * {@linkplain TimeSeriesDataset}.
+ * A When stage with steps for the transformation of a given
+ * {@linkplain TimeSeriesDatasetResponse} or the JSON of a time series dataset
+ * to the corresponding {@linkplain TimeSeriesDataset}.
  *
  * @author Ingo Thomsen
  */
@@ -38,14 +41,40 @@ public class WhenTransformation extends Stage<WhenTransformation>
     @ExpectedScenarioState
     TimeSeriesDatasetResponse timeSeriesDatasetResponse;
 
+    @ExpectedScenarioState
+    String timeSeriesDatasetJson;
+
     @ProvidedScenarioState
     @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
     TimeSeriesDataset timeSeriesDataset;
 
+    @ProvidedScenarioState
+    @SuppressFBWarnings("URF_UNREAD_FIELD") // As ProvidedScenarioState this is read by another Stage class
+    Exception streamingException;
+
 
     public WhenTransformation a_TimeSeriesDataset_is_created_for_Instant(Instant referenceInstant)
     {
         timeSeriesDataset = new TimeSeriesDataset(timeSeriesDatasetResponse, referenceInstant);
         return self();
     }
+
+
+    public WhenTransformation a_TimeSeriesDataset_is_streamed_for_Instant(Instant referenceInstant) throws IOException
+    {
+        timeSeriesDataset = TimeSeriesDatasetReader.read(new StringReader(timeSeriesDatasetJson), referenceInstant);
+        return self();
+    }
+
+
+    public WhenTransformation an_attempt_is_made_to_stream_a_TimeSeriesDataset_for_Instant(Instant referenceInstant)
+    {
+        try {
+            timeSeriesDataset = TimeSeriesDatasetReader.read(new StringReader(timeSeriesDatasetJson), referenceInstant);
+        } catch (Exception e) { // NOPMD - any exception is examined by the Then stage
+            streamingException = e;
+        }
+
+        return self();
+    }
 }
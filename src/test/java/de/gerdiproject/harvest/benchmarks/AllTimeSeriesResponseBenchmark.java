@@ -0,0 +1,74 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+
+import de.gerdiproject.harvest.TestDataProvider;
+import de.gerdiproject.harvest.oceantea.json.AllTimeSeriesResponse;
+
+/**
+ * JMH benchmark for deserializing the bundled {@linkplain AllTimeSeriesResponse},
+ * which the extractor requests before every harvest.
+ *
+ * @author Ingo Thomsen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllTimeSeriesResponseBenchmark
+{
+    private final Gson gson = new Gson();
+    private String allTimeSeriesJson;
+
+
+    /**
+     * Reads the bundled JSON response.
+     */
+    @Setup
+    public void setUp()
+    {
+        allTimeSeriesJson = TestDataProvider.getAllTimeSeriesJSON();
+    }
+
+
+    /**
+     * Deserializes the JSON response.
+     *
+     * @return the deserialized {@linkplain AllTimeSeriesResponse}
+     */
+    @Benchmark
+    public AllTimeSeriesResponse deserialize()
+    {
+        return gson.fromJson(allTimeSeriesJson, AllTimeSeriesResponse.class);
+    }
+}
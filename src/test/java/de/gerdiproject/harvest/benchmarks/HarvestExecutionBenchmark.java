@@ -0,0 +1,205 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.gson.Gson;
+
+import de.gerdiproject.harvest.TestDataProvider;
+import de.gerdiproject.harvest.oceantea.json.AllDataTypesResponse;
+import de.gerdiproject.harvest.oceantea.json.AllTimeSeriesResponse;
+import de.gerdiproject.harvest.oceantea.json.TimeSeriesResponse;
+import de.gerdiproject.harvest.oceantea.utils.HarvestExecutors;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeries;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesDataset;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesDatasetReader;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesParser;
+
+/**
+ * JMH benchmark for the execution modes of the transformer, harvesting a
+ * number of copies of the bundled test time series. Each time series waits
+ * for a simulated server response, streams its dataset and assembles its
+ * document, and the documents are handed over in order, within a window of
+ * pending time series like the one of the transformer. The memory that is
+ * allocated per harvest is reported by the GC profiler ("-prof gc").
+ * The thread per task mode uses virtual threads if the JVM supports them.
+ *
+ * @author Ingo Thomsen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HarvestExecutionBenchmark
+{
+    private static final String TIME_SERIES_NAME = "POS434-156_conductivity_215";
+    private static final String SEQUENTIAL = "sequential";
+    private static final String THREAD_POOL = "threadPool";
+    private static final String THREAD_PER_TASK = "threadPerTask";
+    private static final String THREAD_NAME = "benchmark-%d";
+    private static final int NUMBER_OF_TIME_SERIES = 200;
+
+    /**
+     * The execution mode of the harvest.
+     */
+    @Param({SEQUENTIAL, THREAD_POOL, THREAD_PER_TASK})
+    public String mode;
+
+    /**
+     * The number of concurrently processed time series.
+     */
+    @Param({"16", "64"})
+    public int concurrency;
+
+    /**
+     * The simulated latency of a dataset response in milliseconds.
+     */
+    @Param({"5"})
+    public int latencyMillis;
+
+    private TimeSeries timeSeries;
+    private String datasetJson;
+    private ExecutorService executor;
+    private int windowSize;
+
+
+    /**
+     * Creates the {@linkplain TimeSeries} and the executor of the execution mode.
+     */
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        final Gson gson = new Gson();
+        final AllDataTypesResponse dataTypes = gson.fromJson(TestDataProvider.getAllDataTypesJSON("all"), AllDataTypesResponse.class);
+        final TimeSeriesResponse timeSeriesResponse = gson.fromJson(
+                                                          TestDataProvider.getAllTimeSeriesJSON(TIME_SERIES_NAME),
+                                                          AllTimeSeriesResponse.class).getAllTimeSeriesResponses().get(0);
+
+        timeSeries = new TimeSeries(0, timeSeriesResponse, dataTypes.getDatatypeResponseByName(timeSeriesResponse.getDataType()));
+        datasetJson = TestDataProvider.getTimeSeriesDatasetJSON(TIME_SERIES_NAME);
+
+        // the same windows as the ones of the transformer
+        if (THREAD_POOL.equals(mode)) {
+            executor = HarvestExecutors.newDaemonThreadPool(concurrency, THREAD_NAME);
+            windowSize = 2 * concurrency;
+
+        } else if (THREAD_PER_TASK.equals(mode)) {
+            executor = HarvestExecutors.newThreadPerTaskExecutor(THREAD_NAME);
+            windowSize = concurrency;
+
+        } else
+            windowSize = 1;
+    }
+
+
+    /**
+     * Stops the threads of the execution mode.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+
+    /**
+     * Harvests all time series, handing over the documents in order.
+     *
+     * @param blackhole consumes the assembled documents
+     *
+     * @throws ExecutionException if a time series could not be harvested
+     * @throws InterruptedException if the harvest was interrupted
+     */
+    @Benchmark
+    public void harvest(final Blackhole blackhole) throws ExecutionException, InterruptedException
+    {
+        final Deque<FutureTask<Object[]>> window = new ArrayDeque<>();
+        int startedTimeSeries = 0;
+
+        while (startedTimeSeries < NUMBER_OF_TIME_SERIES || !window.isEmpty()) {
+            while (window.size() < windowSize && startedTimeSeries < NUMBER_OF_TIME_SERIES) {
+                final FutureTask<Object[]> task = new FutureTask<>(this::harvestTimeSeries);
+
+                if (executor != null)
+                    executor.execute(task);
+
+                window.add(task);
+                startedTimeSeries++;
+            }
+
+            final FutureTask<Object[]> head = window.poll();
+
+            // does nothing if the task was already started by another thread
+            head.run();
+            blackhole.consume(head.get());
+        }
+    }
+
+
+    /**
+     * Waits for a simulated response, streams the dataset and assembles all
+     * parts of a document that the transformer retrieves from the parser.
+     *
+     * @throws IOException if the dataset JSON is malformed
+     * @throws InterruptedException if the waiting was interrupted
+     *
+     * @return the parts of the document
+     */
+    private Object[] harvestTimeSeries() throws IOException, InterruptedException
+    {
+        Thread.sleep(latencyMillis);
+
+        final TimeSeriesDataset timeSeriesDataset = TimeSeriesDatasetReader.read(new StringReader(datasetJson), timeSeries.getReferenceInstant());
+        final TimeSeriesParser parser = new TimeSeriesParser(timeSeries, timeSeriesDataset);
+
+        return new Object[] {
+                   parser.getSubjectsStrings(),
+                   parser.getDescription(),
+                   parser.getWebLinks(),
+                   parser.getResearchDataList(),
+                   parser.getPublicationYear(),
+                   parser.getMainTitle(),
+                   parser.getGeoLocations(),
+                   parser.getDates()
+               };
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+
+import de.gerdiproject.harvest.TestDataProvider;
+import de.gerdiproject.harvest.oceantea.json.TimeSeriesDatasetResponse;
+import de.gerdiproject.harvest.oceantea.utils.ColumnarDataset;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesDataset;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesDatasetReader;
+
+/**
+ * JMH benchmarks for creating {@linkplain TimeSeriesDataset}s, either by
+ * binding a {@linkplain TimeSeriesDatasetResponse} with Gson or by streaming
+ * the JSON with the {@linkplain TimeSeriesDatasetReader}, as well as for
+ * compressing all pairs into a {@linkplain ColumnarDataset}. The datasets are
+ * the bundled test dataset and synthetic datasets of configurable size.
+ *
+ * @author Ingo Thomsen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeSeriesDatasetBenchmark
+{
+    private static final String BUNDLED_DATASET = "bundled";
+    private static final String BUNDLED_DATASET_NAME = "POS434-156_conductivity_215";
+    private static final int SYNTHETIC_TIME_STEP = 300;
+    private static final Instant REFERENCE_INSTANT = Instant.parse("2013-05-30T23:38:23Z");
+
+    private final Gson gson = new Gson();
+
+    /**
+     * Either the bundled test dataset or the number of values of a synthetic dataset.
+     */
+    @Param({BUNDLED_DATASET, "10000", "1000000"})
+    public String dataset;
+
+    private String datasetJson;
+    private TimeSeriesDatasetResponse datasetResponse;
+
+
+    /**
+     * Provides the JSON of the dataset and the corresponding bound response.
+     */
+    @Setup
+    public void setUp()
+    {
+        datasetJson = BUNDLED_DATASET.equals(dataset)
+                      ? TestDataProvider.getTimeSeriesDatasetJSON(BUNDLED_DATASET_NAME)
+                      : createSyntheticDatasetJson(Integer.parseInt(dataset));
+
+        datasetResponse = gson.fromJson(datasetJson, TimeSeriesDatasetResponse.class);
+    }
+
+
+    /**
+     * Binds the JSON to a {@linkplain TimeSeriesDatasetResponse} and summarizes it.
+     *
+     * @return the created {@linkplain TimeSeriesDataset}
+     */
+    @Benchmark
+    public TimeSeriesDataset bindAndSummarize()
+    {
+        return new TimeSeriesDataset(gson.fromJson(datasetJson, TimeSeriesDatasetResponse.class), REFERENCE_INSTANT);
+    }
+
+
+    /**
+     * Summarizes an already bound {@linkplain TimeSeriesDatasetResponse}.
+     *
+     * @return the created {@linkplain TimeSeriesDataset}
+     */
+    @Benchmark
+    public TimeSeriesDataset summarizeResponse()
+    {
+        return new TimeSeriesDataset(datasetResponse, REFERENCE_INSTANT);
+    }
+
+
+    /**
+     * Streams the JSON and summarizes it in a single pass.
+     *
+     * @throws IOException if the JSON is malformed
+     *
+     * @return the created {@linkplain TimeSeriesDataset}
+     */
+    @Benchmark
+    public TimeSeriesDataset streamAndSummarize() throws IOException
+    {
+        return TimeSeriesDatasetReader.read(new StringReader(datasetJson), REFERENCE_INSTANT);
+    }
+
+
+    /**
+     * Streams the JSON and compresses all pairs into a {@linkplain ColumnarDataset}.
+     *
+     * @throws IOException if the JSON is malformed
+     *
+     * @return the created {@linkplain ColumnarDataset}
+     */
+    @Benchmark
+    public ColumnarDataset streamToColumns() throws IOException
+    {
+        return ColumnarDataset.readJson(new StringReader(datasetJson));
+    }
+
+
+    /**
+     * Creates a dataset JSON like the ones of OceanTEA, with a fixed time step
+     * and a missing value every thousand values.
+     *
+     * @param numberOfValues the number of pairs of time offsets and values
+     *
+     * @return a JSON string
+     */
+    private static String createSyntheticDatasetJson(final int numberOfValues)
+    {
+        final StringBuilder sb = new StringBuilder(numberOfValues * 20);
+        sb.append("{\"data\":[");
+
+        for (int i = 0; i < numberOfValues; i++) {
+            if (i > 0)
+                sb.append(',');
+
+            sb.append('[').append(i * SYNTHETIC_TIME_STEP).append(',');
+
+            if (i % 1000 == 999)
+                sb.append("\"NA\"");
+            else
+                sb.append(String.format(Locale.ENGLISH, "%.6f", Math.sin(i / 100.0)));
+
+            sb.append(']');
+        }
+
+        return sb.append("]}").toString();
+    }
+}
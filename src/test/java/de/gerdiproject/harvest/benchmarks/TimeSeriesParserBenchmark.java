@@ -0,0 +1,105 @@
+/**
+ * Copyright © 2018 Ingo Thomsen (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.gson.Gson;
+
+import de.gerdiproject.harvest.TestDataProvider;
+import de.gerdiproject.harvest.oceantea.json.AllDataTypesResponse;
+import de.gerdiproject.harvest.oceantea.json.AllTimeSeriesResponse;
+import de.gerdiproject.harvest.oceantea.json.TimeSeriesResponse;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeries;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesDataset;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesDatasetReader;
+import de.gerdiproject.harvest.oceantea.utils.TimeSeriesParser;
+
+/**
+ * JMH benchmark for assembling the non-constant parts of a document with the
+ * {@linkplain TimeSeriesParser}, using the bundled test time series.
+ *
+ * @author Ingo Thomsen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeSeriesParserBenchmark
+{
+    private static final String TIME_SERIES_NAME = "POS434-156_conductivity_215";
+
+    private TimeSeries timeSeries;
+    private TimeSeriesDataset timeSeriesDataset;
+
+
+    /**
+     * Creates the {@linkplain TimeSeries} and its {@linkplain TimeSeriesDataset}.
+     *
+     * @throws IOException if the dataset JSON is malformed
+     */
+    @Setup
+    public void setUp() throws IOException
+    {
+        final Gson gson = new Gson();
+        final AllDataTypesResponse dataTypes = gson.fromJson(TestDataProvider.getAllDataTypesJSON("all"), AllDataTypesResponse.class);
+        final TimeSeriesResponse timeSeriesResponse = gson.fromJson(
+                                                          TestDataProvider.getAllTimeSeriesJSON(TIME_SERIES_NAME),
+                                                          AllTimeSeriesResponse.class).getAllTimeSeriesResponses().get(0);
+
+        timeSeries = new TimeSeries(0, timeSeriesResponse, dataTypes.getDatatypeResponseByName(timeSeriesResponse.getDataType()));
+        timeSeriesDataset = TimeSeriesDatasetReader.read(
+                                new StringReader(TestDataProvider.getTimeSeriesDatasetJSON(TIME_SERIES_NAME)),
+                                timeSeries.getReferenceInstant());
+    }
+
+
+    /**
+     * Assembles all parts of a document that the transformer retrieves from the parser.
+     *
+     * @param blackhole consumes the assembled parts
+     */
+    @Benchmark
+    public void assembleDocumentParts(final Blackhole blackhole)
+    {
+        final TimeSeriesParser parser = new TimeSeriesParser(timeSeries, timeSeriesDataset);
+
+        blackhole.consume(parser.getSubjectsStrings());
+        blackhole.consume(parser.getDescription());
+        blackhole.consume(parser.getWebLinks());
+        blackhole.consume(parser.getResearchDataList());
+        blackhole.consume(parser.getPublicationYear());
+        blackhole.consume(parser.getMainTitle());
+        blackhole.consume(parser.getGeoLocations());
+        blackhole.consume(parser.getDates());
+    }
+}